@@ -3,12 +3,13 @@ set -e
 
 function help_text {
     cat <<EOF
-    Usage: $0 [ -c|--clear-logs CLEAR_LOGS ] [ -u|--upload-report UPLOAD_REPORT ] [ -r|--report-bucket REPORT_BUCKET ] [ -p|--profile AWS_PROFILE ] [-h]
+    Usage: $0 [ -c|--clear-logs CLEAR_LOGS ] [ -u|--upload-report UPLOAD_REPORT ] [ -r|--report-bucket REPORT_BUCKET ] [ -p|--profile AWS_PROFILE ] [ -g|--gatling-report ] [-h]
 
         --clear-logs                            (optional) Clear the log folder in the S3 bucket after creating the report.
         --upload-report                         (optional) Upload HTML report to S3 bucket.
         --report-bucket REPORT_BUCKET           (required) name of the S3 bucket to download logs from and upload the reports to.
         --profile AWS_PROFILE                   (optional) The profile to use from ~/.aws/credentials.
+        --gatling-report                        (optional) Also render the standard Gatling report with Maven (slow and memory hungry for long runs).
 EOF
     exit 1
 }
@@ -31,6 +32,10 @@ while [ $# -gt 0 ]; do
             UPLOAD_REPORT=true
             shift; shift;
         ;;
+        -g|--gatling-report)
+            GATLING_REPORT=true
+            shift
+        ;;
         -p|--profile)
             export AWS_DEFAULT_PROFILE="$2"
             shift; shift
@@ -50,7 +55,7 @@ then
     exit 1
 fi
 
-RUN_ID="Report"-${SIMULATION}-${SIMULATION_TYPE}-${ENVIRONMENT}-$(date +%Y%m%d-%H%M%S)
+REPORT_ID="Report"-${SIMULATION}-${SIMULATION_TYPE}-${ENVIRONMENT}-$(date +%Y%m%d-%H%M%S)
 
 
 echo '******* PARAMETERS *******'
@@ -58,6 +63,9 @@ echo 'REPORT_BUCKET: ' ${REPORT_BUCKET}
 echo 'CLEAR_LOGS: ' ${CLEAR_LOGS}
 echo 'UPLOAD_REPORT: ' ${UPLOAD_REPORT}
 echo 'AWS_DEFAULT_PROFILE: ' ${AWS_DEFAULT_PROFILE}
+echo 'GATLING_REPORT: ' ${GATLING_REPORT}
+echo 'HISTORY_DIRECTORY: ' ${HISTORY_DIRECTORY}
+echo 'REPORT_ID: ' ${REPORT_ID}
 echo 'RUN_ID: ' ${RUN_ID}
 
 # Determine script dir and move to it
@@ -66,9 +74,9 @@ echo 'DIR: ' ${DIR}/..
 #cd ${DIR}/..
 
 # Create a directory for results
-mkdir -p target/gatling/${RUN_ID}
-echo 'Directory created: ' ${RUN_ID}
-RESULTS_DIRECTORY=target/gatling/${RUN_ID}/ #TODO: Make RUN_ID an env variable to be provided by runner
+mkdir -p target/gatling/${REPORT_ID}
+echo 'Directory created: ' ${REPORT_ID}
+RESULTS_DIRECTORY=target/gatling/${REPORT_ID}/
 echo 'RESULTS_DIRECTORY: ' ${RESULTS_DIRECTORY}
 
 # Safeguard only - remove any files in the results directory if exist
@@ -77,18 +85,39 @@ rm -f -r ${RESULTS_DIRECTORY}
 ## Download all logs for all test gatling clients
 aws s3 cp s3://${REPORT_BUCKET}/logs/ ${RESULTS_DIRECTORY} --recursive --no-progress
 
-## Consolidate the reports
-mvn gatling:test -Dgatling.reportsOnly=${RUN_ID}
+## Consolidate the reports with a single streaming merge of all logs
+AGGREGATOR_JAR=${AGGREGATOR_JAR:-${DIR}/../gatling-report-aggregator/target/gatling-report-aggregator-1.0-SNAPSHOT-jar-with-dependencies.jar}
+if [[ ! -f ${AGGREGATOR_JAR} ]]
+then
+  echo "Report aggregator not found at ${AGGREGATOR_JAR}, build it with: mvn -f ${DIR}/../gatling-report-aggregator/pom.xml package"
+  exit 1
+fi
+## Add the run to the run history in HISTORY_DIRECTORY (if set) and compare it with the earlier runs of the same simulation, type and environment
+HISTORY_ARGS=()
+if [[ -n $HISTORY_DIRECTORY ]]
+then
+  # The run id of the runner when it is set, so a run recorded again replaces its earlier record
+  HISTORY_ARGS=(--history "${HISTORY_DIRECTORY}" --run-id "${RUN_ID:-${REPORT_ID}}")
+  [[ -n $SIMULATION ]] && HISTORY_ARGS+=(--simulation "${SIMULATION}")
+  [[ -n $SIMULATION_TYPE ]] && HISTORY_ARGS+=(--simulation-type "${SIMULATION_TYPE}")
+  [[ -n $ENVIRONMENT ]] && HISTORY_ARGS+=(--environment "${ENVIRONMENT}")
+fi
+java ${AGGREGATOR_JAVA_OPTS:--Xmx512m} -Dlogback.configurationFile=logback-aggregator.xml -jar ${AGGREGATOR_JAR} ${RESULTS_DIRECTORY} ${RESULTS_DIRECTORY} "${HISTORY_ARGS[@]}"
+
+if [ "${GATLING_REPORT}" = true ]
+then
+  mvn gatling:test -Dgatling.reportsOnly=${REPORT_ID}
+fi
 
 #Go to current results directory i.e. target/gatling
 cd ${RESULTS_DIRECTORY}/..
 
 #Set the tar (compressed) file name
-TAR_FILENAME=${RUN_ID}.tar.gz
+TAR_FILENAME=${REPORT_ID}.tar.gz
 echo 'TAR_FILENAME: ' ${TAR_FILENAME}
 
 #Create the tar file
-tar -zcf ${TAR_FILENAME} -C ${RUN_ID} .
+tar -zcf ${TAR_FILENAME} -C ${REPORT_ID} .
 
 if [ "${CLEAR_LOGS}" = true ]
 then
@@ -0,0 +1,331 @@
+package runner;
+
+import org.slf4j.Logger;
+import report.live.ControlChannel;
+import report.live.FleetInterval;
+import report.live.IntervalStats;
+import report.live.LoadStep;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Searches the highest rate the system under test sustains within its SLOs, in a single run of the fleet.
+ * Every step holds a fleet-wide target rate for a fixed duration; the live metrics of the step (after a warm-up) are
+ * judged against the SLOs and the next target is published to the load generators through the control channel.
+ * STEP mode raises the rate by a fixed increment until a step fails, BINARY mode halves the interval between the
+ * highest passing and the lowest failing rate until it is smaller than the resolution.
+ */
+class CapacitySearch implements Consumer<FleetInterval> {
+
+    private static final Logger LOG = getLogger(CapacitySearch.class);
+    /** A step whose achieved throughput is below this share of its target is saturated, whatever its latency. */
+    private static final double MIN_THROUGHPUT_RATIO = 0.9;
+
+    enum Mode { STEP, BINARY }
+
+    private final Mode mode;
+    private final int startRpm;
+    private final int maxRpm;
+    private final int stepRpm;
+    private final int resolutionRpm;
+    private final long stepMillis;
+    private final long warmupMillis;
+    private final long switchLeadMillis;
+    private final Slo slo;
+    private final double kneeFactor;
+    private final ControlChannel controlChannel;
+
+    private final List<StepResult> results = new ArrayList<>();
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private LoadStep current;
+    private IntervalStats currentStats;
+    private long currentMillis;
+    private int currentIntervals;
+    private int currentSaturatedIntervals;
+    private int highestPassingRpm = -1;
+    private int lowestFailingRpm;
+
+    /**
+     * @param switchLeadMillis how long before a step starts it is published, so that every load generator has seen it
+     */
+    CapacitySearch(Mode mode, int startRpm, int maxRpm, int stepRpm, int resolutionRpm, long stepMillis, long warmupMillis,
+                   long switchLeadMillis, Slo slo, double kneeFactor, ControlChannel controlChannel) {
+        this.mode = mode;
+        this.startRpm = startRpm;
+        this.maxRpm = maxRpm;
+        this.stepRpm = stepRpm;
+        this.resolutionRpm = resolutionRpm;
+        this.stepMillis = stepMillis;
+        this.warmupMillis = warmupMillis;
+        this.switchLeadMillis = switchLeadMillis;
+        this.slo = slo;
+        this.kneeFactor = kneeFactor;
+        this.controlChannel = controlChannel;
+        this.lowestFailingRpm = maxRpm + 1;
+    }
+
+    /**
+     * The most steps the search can take, to bound the duration of the run.
+     */
+    int maxSteps() {
+        if (mode == Mode.STEP) {
+            return (maxRpm - startRpm) / stepRpm + 1;
+        }
+        int steps = 1;
+        for (int range = maxRpm + 1 - startRpm; range > resolutionRpm; range = (range + 1) / 2) {
+            steps++;
+        }
+        return steps;
+    }
+
+    /**
+     * Starts the first step. The load generators already run at startRpm (their TARGET_RPM) from the given instant on.
+     */
+    synchronized void start(long firstStepStart) {
+        beginStep(new LoadStep(0, startRpm, firstStepStart, false));
+        LOG.info("Capacity search ({}) from {} to {} RPM, {} s per step (first {} s warm-up), {}", mode, startRpm, maxRpm,
+                stepMillis / 1000, warmupMillis / 1000, slo);
+    }
+
+    @Override
+    public synchronized void accept(FleetInterval interval) {
+        if (current == null || isFinished()) {
+            return;
+        }
+
+        final long windowStart = current.startAt + warmupMillis;
+        final long windowEnd = current.startAt + stepMillis;
+        if (interval.intervalStart >= windowStart && interval.intervalStart + interval.intervalMillis <= windowEnd) {
+            currentStats.add(interval.getTotal());
+            currentMillis += interval.intervalMillis;
+            currentIntervals++;
+            if (!interval.getSaturatedGenerators().isEmpty()) {
+                currentSaturatedIntervals++;
+            }
+        }
+        if (interval.intervalStart + interval.intervalMillis >= windowEnd) {
+            completeStep(interval.intervalStart + interval.intervalMillis);
+        }
+    }
+
+    private void completeStep(long now) {
+        final StepResult result = new StepResult(current.index, (int) current.targetRpm, currentStats, currentMillis,
+                currentIntervals, currentSaturatedIntervals, slo);
+        results.add(result);
+        LOG.info("Capacity search: {}", result);
+
+        final int next = nextTarget(result);
+        if (next < 0) {
+            finish();
+        } else {
+            final LoadStep step = new LoadStep(current.index + 1, next, Math.max(now, System.currentTimeMillis()) + switchLeadMillis, false);
+            controlChannel.publish(step);
+            beginStep(step);
+        }
+    }
+
+    /**
+     * @return the target of the next step, or -1 when the search is done
+     */
+    private int nextTarget(StepResult result) {
+        if (result.passed) {
+            highestPassingRpm = Math.max(highestPassingRpm, result.targetRpm);
+        } else {
+            lowestFailingRpm = Math.min(lowestFailingRpm, result.targetRpm);
+        }
+
+        if (mode == Mode.STEP) {
+            final int next = result.targetRpm + stepRpm;
+            return result.passed && next <= maxRpm ? next : -1;
+        }
+
+        // BINARY: nothing to search below a failing start
+        if (highestPassingRpm < 0 || lowestFailingRpm - highestPassingRpm <= resolutionRpm) {
+            return -1;
+        }
+        return highestPassingRpm + (lowestFailingRpm - highestPassingRpm) / 2;
+    }
+
+    private void beginStep(LoadStep step) {
+        current = step;
+        currentStats = new IntervalStats();
+        currentMillis = 0;
+        currentIntervals = 0;
+        currentSaturatedIntervals = 0;
+    }
+
+    /**
+     * Tells the load generators to stop and reports the result.
+     */
+    synchronized void finish() {
+        if (isFinished()) {
+            return;
+        }
+        controlChannel.publish(new LoadStep(current == null ? 0 : current.index + 1, 0, System.currentTimeMillis(), true));
+        finished.countDown();
+        LOG.info(report());
+    }
+
+    boolean isFinished() {
+        return finished.getCount() == 0;
+    }
+
+    boolean awaitFinished(long timeout, TimeUnit unit) throws InterruptedException {
+        return finished.await(timeout, unit);
+    }
+
+    synchronized int getHighestPassingRpm() {
+        return highestPassingRpm;
+    }
+
+    synchronized List<StepResult> getResults() {
+        return Collections.unmodifiableList(new ArrayList<>(results));
+    }
+
+    /**
+     * The knee is the lowest measured rate at which the system stops scaling: its p95 grew more than kneeFactor
+     * times the p95 of the lowest passing rate, or it could not reach its target throughput.
+     *
+     * @return the step at the knee, or null if the curve has none
+     */
+    synchronized StepResult findKnee() {
+        final List<StepResult> curve = new ArrayList<>(results);
+        curve.sort(Comparator.comparingInt(step -> step.targetRpm));
+
+        final StepResult baseline = curve.stream().filter(step -> step.passed).findFirst().orElse(null);
+        for (StepResult step : curve) {
+            if (step.saturated() || (baseline != null && step.targetRpm > baseline.targetRpm && step.p95 > kneeFactor * Math.max(1, baseline.p95))) {
+                return step;
+            }
+        }
+        return null;
+    }
+
+    synchronized String report() {
+        final StringBuilder report = new StringBuilder("\n******************** CAPACITY SEARCH ********************");
+        final List<StepResult> curve = new ArrayList<>(results);
+        curve.sort(Comparator.comparingInt(step -> step.targetRpm));
+        report.append(String.format("%n%10s %12s %8s %8s %8s %8s  %s", "RPM", "achieved RPS", "KO %", "p50", "p95", "p99", "result"));
+        for (StepResult step : curve) {
+            report.append(String.format("%n%10d %12.1f %8.2f %8d %8d %8d  %s", step.targetRpm, step.achievedRps,
+                    step.errorPercentage, step.p50, step.p95, step.p99, (step.passed ? "pass" : step.violation)
+                            + (step.saturatedIntervals > 0 ? " (load generators saturated)" : "")));
+        }
+
+        if (highestPassingRpm < 0) {
+            report.append("\nNo step met the SLOs, the capacity is below ").append(startRpm).append(" RPM");
+        } else {
+            report.append(String.format("%nHighest compliant rate: %d RPM (%.1f RPS)", highestPassingRpm, highestPassingRpm / 60.0));
+            if (highestPassingRpm + (mode == Mode.STEP ? stepRpm : resolutionRpm) > maxRpm && lowestFailingRpm > maxRpm) {
+                report.append(" - every tested rate passed, the capacity may be higher than ").append(maxRpm).append(" RPM");
+            }
+        }
+
+        final StepResult knee = findKnee();
+        report.append(knee == null ? "\nNo knee within the tested range" : "\nKnee at " + knee.targetRpm + " RPM");
+        if (curve.stream().anyMatch(step -> step.saturatedIntervals > 0)) {
+            report.append("\nWARNING - The load generators were saturated in some steps, these measure the generators rather than the system: add load generators or use a larger generator profile");
+        }
+        report.append("\n*********************************************************");
+        return report.toString();
+    }
+
+    /**
+     * Latency and error objectives a step has to meet. A latency threshold of 0 is not checked.
+     */
+    static class Slo {
+        final double maxErrorPercentage;
+        final long maxP95Millis;
+        final long maxP99Millis;
+        /** Share of the measured intervals in which a load generator may be saturated, 1 to only report it. */
+        final double maxSaturatedShare;
+
+        Slo(double maxErrorPercentage, long maxP95Millis, long maxP99Millis) {
+            this(maxErrorPercentage, maxP95Millis, maxP99Millis, 1);
+        }
+
+        Slo(double maxErrorPercentage, long maxP95Millis, long maxP99Millis, double maxSaturatedShare) {
+            this.maxErrorPercentage = maxErrorPercentage;
+            this.maxP95Millis = maxP95Millis;
+            this.maxP99Millis = maxP99Millis;
+            this.maxSaturatedShare = maxSaturatedShare;
+        }
+
+        /**
+         * @return the first violated objective, or null if the stats meet all of them
+         */
+        String check(IntervalStats stats, double achievedRps, double targetRps, double saturatedShare) {
+            if (stats.getCount() == 0)
+                return "no requests measured";
+            // First, a saturated generator explains the latency and the throughput it measured
+            if (saturatedShare > maxSaturatedShare)
+                return String.format("load generators saturated in %.0f%% of the step", saturatedShare * 100);
+            if (stats.getErrorPercentage() > maxErrorPercentage)
+                return String.format("KO %.2f%% > %.2f%%", stats.getErrorPercentage(), maxErrorPercentage);
+            if (maxP95Millis > 0 && stats.getPercentile(95) > maxP95Millis)
+                return "p95 " + stats.getPercentile(95) + " ms > " + maxP95Millis + " ms";
+            if (maxP99Millis > 0 && stats.getPercentile(99) > maxP99Millis)
+                return "p99 " + stats.getPercentile(99) + " ms > " + maxP99Millis + " ms";
+            if (achievedRps < MIN_THROUGHPUT_RATIO * targetRps)
+                return String.format("achieved %.1f of %.1f req/s", achievedRps, targetRps);
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("SLO: KO <= %.2f%%, p95 <= %s, p99 <= %s%s", maxErrorPercentage,
+                    maxP95Millis > 0 ? maxP95Millis + " ms" : "-", maxP99Millis > 0 ? maxP99Millis + " ms" : "-",
+                    maxSaturatedShare < 1 ? String.format(", generators saturated <= %.0f%%", maxSaturatedShare * 100) : "");
+        }
+    }
+
+    static class StepResult {
+        final int index;
+        final int targetRpm;
+        final double achievedRps;
+        final double errorPercentage;
+        final long p50;
+        final long p95;
+        final long p99;
+        final String violation;
+        final boolean passed;
+        /** Measured intervals in which a load generator was saturated. */
+        final int saturatedIntervals;
+        /** The step failed because the load generators, not the system under test, ran out of capacity. */
+        final boolean generatorBound;
+
+        StepResult(int index, int targetRpm, IntervalStats stats, long measuredMillis, int measuredIntervals, int saturatedIntervals, Slo slo) {
+            this.index = index;
+            this.targetRpm = targetRpm;
+            this.achievedRps = measuredMillis == 0 ? 0 : stats.getCount() * 1000.0 / measuredMillis;
+            this.errorPercentage = stats.getErrorPercentage();
+            this.p50 = stats.getPercentile(50);
+            this.p95 = stats.getPercentile(95);
+            this.p99 = stats.getPercentile(99);
+            final double saturatedShare = measuredIntervals == 0 ? 0 : (double) saturatedIntervals / measuredIntervals;
+            this.violation = slo.check(stats, achievedRps, targetRpm / 60.0, saturatedShare);
+            this.passed = violation == null;
+            this.saturatedIntervals = saturatedIntervals;
+            this.generatorBound = !passed && saturatedShare > slo.maxSaturatedShare;
+        }
+
+        boolean saturated() {
+            return achievedRps < MIN_THROUGHPUT_RATIO * targetRpm / 60.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("step %d at %d RPM: %.1f req/s, %.2f%% KO, p50 %d ms, p95 %d ms, p99 %d ms - %s%s",
+                    index, targetRpm, achievedRps, errorPercentage, p50, p95, p99, passed ? "pass" : "fail (" + violation + ")",
+                    saturatedIntervals > 0 ? ", load generators saturated in " + saturatedIntervals + " interval(s)" : "");
+        }
+    }
+}
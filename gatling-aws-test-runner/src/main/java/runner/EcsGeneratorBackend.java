@@ -0,0 +1,309 @@
+package runner;
+
+import org.slf4j.Logger;
+import report.live.ControlChannel;
+import report.live.MetricsChannel;
+import report.live.S3ControlChannel;
+import report.live.S3MetricsChannel;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.ec2.Ec2Client;
+import software.amazon.awssdk.services.ec2.Ec2ClientBuilder;
+import software.amazon.awssdk.services.ec2.model.DescribeSubnetsRequest;
+import software.amazon.awssdk.services.ec2.model.DescribeSubnetsResponse;
+import software.amazon.awssdk.services.ec2.model.Filter;
+import software.amazon.awssdk.services.ec2.model.Subnet;
+import software.amazon.awssdk.services.ecs.EcsAsyncClient;
+import software.amazon.awssdk.services.ecs.EcsAsyncClientBuilder;
+import software.amazon.awssdk.services.ecs.EcsClient;
+import software.amazon.awssdk.services.ecs.EcsClientBuilder;
+import software.amazon.awssdk.services.ecs.model.*;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Runs every load generator as a Fargate task of the task definition (see run.sh). The live metrics and load steps
+ * go through the report bucket, and the containers upload their logs to its logs/ folder. Unless LOG_SHIPPING is
+ * false a LogCollector downloads them to LOGS_DIRECTORY/&lt;run id&gt;/logs while the test runs.
+ */
+class EcsGeneratorBackend implements GeneratorBackend {
+
+    private static final Logger LOG = getLogger(EcsGeneratorBackend.class);
+    private static final String CONTAINER_NAME = "gatlingRunnerContainer";
+    private static final int DESCRIBE_TASKS_BATCH_SIZE = 100;
+
+    private final GatlingAwsTestRunner.Config config;
+    private final EcsClient ecsClient;
+    private final Ec2Client ec2Client;
+    private final Map<String, LogCollector> logCollectors = new HashMap<>();
+    // Where in the bucket the logs of every run go, see LOGS_PREFIX in run.sh
+    private final Map<String, String> logsPrefixes = new HashMap<>();
+    private NetworkConfiguration networkConfiguration;
+
+    EcsGeneratorBackend(GatlingAwsTestRunner.Config config) {
+        this.config = config;
+
+        // Endpoint overrides allow pointing the runner at a local fake ECS/EC2 endpoint
+        final EcsClientBuilder ecsClientBuilder = EcsClient.builder();
+        final Ec2ClientBuilder ec2ClientBuilder = Ec2Client.builder();
+        if (config.ecsEndpoint != null)
+            ecsClientBuilder.endpointOverride(URI.create(config.ecsEndpoint));
+        if (config.ec2Endpoint != null)
+            ec2ClientBuilder.endpointOverride(URI.create(config.ec2Endpoint));
+
+        this.ecsClient = ecsClientBuilder.build();
+        this.ec2Client = ec2ClientBuilder.build();
+    }
+
+    @Override
+    public String describe() {
+        return "ECS task definition " + config.getTaskDefinition() + " on " + config.clusterName;
+    }
+
+    @Override
+    public boolean isBusy() {
+        final Cluster cluster = ecsClient.describeClusters(DescribeClustersRequest.builder().clusters(config.clusterName).build()).clusters().get(0);
+
+        return cluster.runningTasksCount() != 0 && cluster.pendingTasksCount() != 0;
+    }
+
+    @Override
+    public List<String> launch(List<Map<String, String>> environments) {
+        // Build every request up front so the subnet lookup and request creation don't delay the launch itself
+        final List<RunTaskRequest> runTaskRequests = environments.stream().map(this::createRunTaskRequest).collect(Collectors.toList());
+
+        if (!environments.isEmpty())
+            logsPrefixes.put(environments.get(0).get("RUN_ID"), environments.get(0).getOrDefault("LOGS_PREFIX", "logs"));
+        if (config.logShipping && !environments.isEmpty())
+            startLogCollector(environments.get(0));
+
+        if ("sequential".equalsIgnoreCase(config.launchMode)) {
+            return launchSequentially(runTaskRequests);
+        } else {
+            return launchConcurrently(runTaskRequests);
+        }
+    }
+
+    private void startLogCollector(Map<String, String> environment) {
+        final String runId = environment.get("RUN_ID");
+        // S3 keeps the modification time in whole seconds and the clocks may differ a bit
+        final LogCollector logCollector = new LogCollector(buildS3Client(), config.gatlingReportBucket,
+                logsPrefix(runId), Paths.get(config.logsDirectory, runId, "logs").toAbsolutePath(),
+                Instant.now().minusSeconds(60));
+        logCollector.start(config.logCollectIntervalSeconds);
+        logCollectors.put(runId, logCollector);
+    }
+
+    private List<String> launchSequentially(List<RunTaskRequest> runTaskRequests) {
+        final long start = System.currentTimeMillis();
+        final List<String> taskArns = new ArrayList<>();
+
+        for (int i = 0; i < runTaskRequests.size(); i++) {
+            LOG.info("Starting container {}/{}", i + 1, runTaskRequests.size());
+
+            final RunTaskResponse response;
+            try {
+                response = ecsClient.runTask(runTaskRequests.get(i));
+            } catch (EcsException e) {
+                stop(taskArns, "Launch failed");
+                throw new IllegalStateException("Container " + (i + 1) + " of " + runTaskRequests.size() + " could not be started: " + e.getMessage(), e);
+            }
+            // RunTask reports most launch problems (e.g. no Fargate capacity) as failures rather than exceptions
+            if (response.tasks().isEmpty() || !response.failures().isEmpty()) {
+                response.tasks().forEach(task -> taskArns.add(task.taskArn()));
+                stop(taskArns, "Launch failed");
+                throw new IllegalStateException("Container " + (i + 1) + " of " + runTaskRequests.size() + " could not be started: "
+                        + response.failures().stream().map(Failure::reason).collect(Collectors.toList()));
+            }
+            response.tasks().forEach(task -> taskArns.add(task.taskArn()));
+        }
+
+        LOG.info("Fleet launch finished: {}/{} containers started in {} ms", taskArns.size(), runTaskRequests.size(), System.currentTimeMillis() - start);
+        return taskArns;
+    }
+
+    private List<String> launchConcurrently(List<RunTaskRequest> runTaskRequests) {
+        try (EcsAsyncClient ecsAsyncClient = launchClientBuilder(config.ecsEndpoint).build()) {
+            final FleetLauncher fleetLauncher = new FleetLauncher(ecsAsyncClient, config.launchConcurrency,
+                    config.launchMaxAttempts, config.launchBackoffMillis, config.launchMaxBackoffMillis);
+
+            final FleetLauncher.LaunchResult launchResult = fleetLauncher.launch(runTaskRequests);
+
+            if (!launchResult.failures.isEmpty()) {
+                // The containers that did start would keep loading the system under test without the rest of the fleet
+                stop(launchResult.taskArns, "Launch failed");
+                throw new IllegalStateException(launchResult.failures.size() + " of " + runTaskRequests.size()
+                        + " containers could not be started: " + launchResult.failures);
+            }
+            return launchResult.taskArns;
+        }
+    }
+
+    private RunTaskRequest createRunTaskRequest(Map<String, String> environment) {
+        final List<KeyValuePair> containerEnvironment = environment.entrySet().stream()
+                .map(variable -> KeyValuePair.builder().name(variable.getKey()).value(variable.getValue()).build())
+                .collect(Collectors.toList());
+
+        final TaskOverride taskOverride = TaskOverride.builder()
+                .containerOverrides(ContainerOverride.builder()
+                        .name(CONTAINER_NAME)
+                        .environment(containerEnvironment)
+                        .build())
+                .build();
+
+        return RunTaskRequest.builder()
+                .launchType(LaunchType.FARGATE)
+                .cluster(config.clusterName)
+                .taskDefinition(config.getTaskDefinition())
+                .startedBy("Gatling Load Test: " + config.simulation)
+                .count(1)
+                .networkConfiguration(getNetworkConfiguration())
+                .overrides(taskOverride)
+                .build();
+    }
+
+    @Override
+    public TaskWatcher.TaskSource tasks() {
+        return this::describeTasks;
+    }
+
+    private List<TaskWatcher.TaskOutcome> describeTasks(Collection<String> taskArns) {
+        final List<String> arns = new ArrayList<>(taskArns);
+        final List<TaskWatcher.TaskOutcome> outcomes = new ArrayList<>(arns.size());
+
+        for (int from = 0; from < arns.size(); from += DESCRIBE_TASKS_BATCH_SIZE) {
+            final DescribeTasksRequest request = DescribeTasksRequest.builder()
+                    .cluster(config.clusterName)
+                    .tasks(arns.subList(from, Math.min(from + DESCRIBE_TASKS_BATCH_SIZE, arns.size())))
+                    .build();
+            final DescribeTasksResponse response = ecsClient.describeTasks(request);
+
+            response.tasks().forEach(task -> outcomes.add(TaskWatcher.TaskOutcome.from(task, CONTAINER_NAME)));
+            // MISSING: stopped tasks eventually disappear from ECS, and a task just started may not be visible yet
+            for (Failure failure : response.failures()) {
+                outcomes.add(new TaskWatcher.TaskOutcome(failure.arn(), "MISSING".equals(failure.reason()) ? "MISSING" : "STOPPED",
+                        null, null, failure.reason(), null, null));
+            }
+        }
+        return outcomes;
+    }
+
+    @Override
+    public void stop(Collection<String> taskArns, String reason) {
+        LOG.info("Stopping {} task(s): {}", taskArns.size(), reason);
+        for (String taskArn : new ArrayList<>(taskArns)) {
+            try {
+                ecsClient.stopTask(StopTaskRequest.builder().cluster(config.clusterName).task(taskArn).reason(reason).build());
+            } catch (EcsException e) {
+                LOG.warn("Could not stop task {}: {}", taskArn, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public MetricsChannel metricsChannel(String runId) {
+        return new S3MetricsChannel(buildS3Client(), config.gatlingReportBucket, runId);
+    }
+
+    @Override
+    public ControlChannel controlChannel(String runId) {
+        return new S3ControlChannel(buildS3Client(), config.gatlingReportBucket, runId);
+    }
+
+    @Override
+    public void storeLog(String runId, String name, String content) {
+        try (S3Client s3Client = buildS3Client()) {
+            s3Client.putObject(PutObjectRequest.builder().bucket(config.gatlingReportBucket).key(logsPrefix(runId) + "/" + name).build(),
+                    RequestBody.fromString(content, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Override
+    public String logsLocation(String runId) {
+        return "s3://" + config.gatlingReportBucket + "/" + logsPrefix(runId) + "/";
+    }
+
+    private String logsPrefix(String runId) {
+        return logsPrefixes.getOrDefault(runId, "logs");
+    }
+
+    /**
+     * Downloads the rest of the logs of the run, the parts shipped during the test are already there.
+     */
+    @Override
+    public Optional<Path> collectLogs(String runId) throws IOException {
+        final LogCollector logCollector = logCollectors.remove(runId);
+        if (logCollector == null) {
+            return Optional.empty();
+        }
+        try (logCollector) {
+            return Optional.of(logCollector.finish());
+        }
+    }
+
+    /**
+     * The client of FleetLauncher, without the SDK's own retries: the launcher retries RunTask itself, with its own
+     * backoff, and with both every throttled request would be sent up to four times per launcher attempt.
+     */
+    static EcsAsyncClientBuilder launchClientBuilder(String ecsEndpoint) {
+        final EcsAsyncClientBuilder ecsAsyncClientBuilder = EcsAsyncClient.builder()
+                .overrideConfiguration(configuration -> configuration.retryPolicy(RetryPolicy.none()));
+        if (ecsEndpoint != null)
+            ecsAsyncClientBuilder.endpointOverride(URI.create(ecsEndpoint));
+        return ecsAsyncClientBuilder;
+    }
+
+    private S3Client buildS3Client() {
+        final S3ClientBuilder s3ClientBuilder = S3Client.builder();
+        if (config.s3Endpoint != null)
+            s3ClientBuilder.endpointOverride(URI.create(config.s3Endpoint)).serviceConfiguration(c -> c.pathStyleAccessEnabled(true));
+        return s3ClientBuilder.build();
+    }
+
+    private NetworkConfiguration getNetworkConfiguration() {
+        // The subnets don't change during a run, so they are only looked up once
+        if (networkConfiguration == null) {
+            networkConfiguration = NetworkConfiguration.builder()
+                    .awsvpcConfiguration(AwsVpcConfiguration.builder()
+                            .assignPublicIp(AssignPublicIp.ENABLED)
+                            .subnets(getSubnets(config.vpcId))
+                            .build())
+                    .build();
+        }
+        return networkConfiguration;
+    }
+
+    private List<String> getSubnets(String vpcId) {
+        final DescribeSubnetsRequest describeSubnetsRequest = DescribeSubnetsRequest.builder()
+                .filters(Filter.builder().name("vpc-id").values(vpcId).build())
+                .build();
+
+        final DescribeSubnetsResponse describeSubnetsResponse = ec2Client.describeSubnets(describeSubnetsRequest);
+
+        return describeSubnetsResponse.subnets().stream().map(Subnet::subnetId).collect(Collectors.toList());
+    }
+
+    @Override
+    public void close() {
+        logCollectors.values().forEach(LogCollector::close);
+        ecsClient.close();
+        ec2Client.close();
+    }
+}
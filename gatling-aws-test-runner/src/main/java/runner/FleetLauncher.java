@@ -0,0 +1,197 @@
+package runner;
+
+import org.slf4j.Logger;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.services.ecs.EcsAsyncClient;
+import software.amazon.awssdk.services.ecs.model.Failure;
+import software.amazon.awssdk.services.ecs.model.RunTaskRequest;
+import software.amazon.awssdk.services.ecs.model.RunTaskResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Launches the whole load generator fleet through the async ECS client.
+ * RunTask calls are sent concurrently (bounded by maxConcurrency) and calls that fail because of API throttling
+ * or temporary Fargate capacity shortages are retried with exponential backoff and jitter.
+ */
+class FleetLauncher {
+
+    private static final Logger LOG = getLogger(FleetLauncher.class);
+
+    private final EcsAsyncClient ecsAsyncClient;
+    private final int maxConcurrency;
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+
+    FleetLauncher(EcsAsyncClient ecsAsyncClient, int maxConcurrency, int maxAttempts, long baseBackoffMillis, long maxBackoffMillis) {
+        this.ecsAsyncClient = ecsAsyncClient;
+        this.maxConcurrency = maxConcurrency;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * Sends one RunTask call per request and waits until every call has either started a task or given up.
+     *
+     * @param requests the RunTask requests, one per load generator
+     * @return the launched task ARNs (in request order) and the requests that could not be launched
+     */
+    LaunchResult launch(List<RunTaskRequest> requests) {
+        final Semaphore permits = new Semaphore(maxConcurrency);
+        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fleet-launcher-backoff");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final List<CompletableFuture<String>> launches = new ArrayList<>(requests.size());
+        final long startNanos = System.nanoTime();
+
+        try {
+            for (int i = 0; i < requests.size(); i++) {
+                permits.acquireUninterruptibly();
+                final int generator = i + 1;
+                launches.add(runTask(requests.get(i), 1, scheduler)
+                        .whenComplete((taskArn, error) -> {
+                            permits.release();
+                            if (error == null) {
+                                LOG.info("Started container {}/{}: {}", generator, requests.size(), taskArn);
+                            } else {
+                                LOG.error("Could not start container {}/{}: {}", generator, requests.size(), unwrap(error).getMessage());
+                            }
+                        }));
+            }
+
+            final List<String> taskArns = new ArrayList<>();
+            final List<String> failures = new ArrayList<>();
+            for (CompletableFuture<String> launch : launches) {
+                try {
+                    taskArns.add(launch.join());
+                } catch (CompletionException e) {
+                    failures.add(unwrap(e).getMessage());
+                }
+            }
+
+            final Duration launchDuration = Duration.ofNanos(System.nanoTime() - startNanos);
+            LOG.info("Fleet launch finished: {}/{} containers started in {} ms", taskArns.size(), requests.size(), launchDuration.toMillis());
+
+            return new LaunchResult(taskArns, failures, launchDuration);
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private CompletableFuture<String> runTask(RunTaskRequest request, int attempt, ScheduledExecutorService scheduler) {
+        return ecsAsyncClient.runTask(request)
+                .handle((response, error) -> {
+                    if (error != null) {
+                        Throwable cause = unwrap(error);
+                        if (attempt < maxAttempts && isRetryable(cause)) {
+                            return retry(request, attempt, cause.getMessage(), scheduler);
+                        }
+                        return CompletableFuture.<String>failedFuture(cause);
+                    }
+
+                    if (!response.tasks().isEmpty()) {
+                        return CompletableFuture.completedFuture(response.tasks().get(0).taskArn());
+                    }
+
+                    String reason = describeFailures(response);
+                    if (attempt < maxAttempts && isRetryable(response)) {
+                        return retry(request, attempt, reason, scheduler);
+                    }
+                    return CompletableFuture.<String>failedFuture(new IllegalStateException("RunTask failed after " + attempt + " attempt(s): " + reason));
+                })
+                .thenCompose(future -> future);
+    }
+
+    private CompletableFuture<String> retry(RunTaskRequest request, int attempt, String reason, ScheduledExecutorService scheduler) {
+        final long backoff = backoffMillis(attempt);
+        LOG.warn("RunTask attempt {}/{} failed ({}), retrying in {} ms", attempt, maxAttempts, reason, backoff);
+
+        final CompletableFuture<String> retried = new CompletableFuture<>();
+        scheduler.schedule(() -> runTask(request, attempt + 1, scheduler).whenComplete((taskArn, error) -> {
+            if (error == null) {
+                retried.complete(taskArn);
+            } else {
+                retried.completeExceptionally(unwrap(error));
+            }
+        }), backoff, TimeUnit.MILLISECONDS);
+        return retried;
+    }
+
+    /**
+     * Full jitter exponential backoff: a random delay between 0 and min(max, base * 2^(attempt - 1)).
+     */
+    long backoffMillis(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis * (1L << Math.min(attempt - 1, 20)));
+        return ThreadLocalRandom.current().nextLong(0, ceiling + 1);
+    }
+
+    private static boolean isRetryable(Throwable error) {
+        if (error instanceof SdkServiceException) {
+            SdkServiceException serviceException = (SdkServiceException) error;
+            return serviceException.isThrottlingException() || serviceException.statusCode() >= 500;
+        }
+        return false;
+    }
+
+    /**
+     * Fargate reports temporary capacity shortages as RunTask failures instead of exceptions.
+     */
+    private static boolean isRetryable(RunTaskResponse response) {
+        return !response.failures().isEmpty() && response.failures().stream()
+                .map(Failure::reason)
+                .allMatch(reason -> reason != null && (reason.contains("Capacity is unavailable") || reason.startsWith("RESOURCE:")));
+    }
+
+    private static String describeFailures(RunTaskResponse response) {
+        if (response.failures().isEmpty()) {
+            return "no task returned";
+        }
+        StringBuilder description = new StringBuilder();
+        for (Failure failure : response.failures()) {
+            if (description.length() > 0) {
+                description.append("; ");
+            }
+            description.append(failure.reason());
+            if (failure.detail() != null) {
+                description.append(" - ").append(failure.detail());
+            }
+        }
+        return description.toString();
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    static class LaunchResult {
+        final List<String> taskArns;
+        final List<String> failures;
+        final Duration launchDuration;
+
+        LaunchResult(List<String> taskArns, List<String> failures, Duration launchDuration) {
+            this.taskArns = Collections.unmodifiableList(taskArns);
+            this.failures = Collections.unmodifiableList(failures);
+            this.launchDuration = launchDuration;
+        }
+    }
+}
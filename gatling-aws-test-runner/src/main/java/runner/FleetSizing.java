@@ -0,0 +1,51 @@
+package runner;
+
+/**
+ * The number of load generators a fleet-wide target rate needs, from the rate a single generator sustains (measured
+ * by the calibration probe), and how the fleet-wide users and target are split over them.
+ */
+class FleetSizing {
+
+    final int containers;
+    final int usersPerContainer;
+    /** Fleet-wide in the open workload model, per container in the closed one, like TARGET_RPM. */
+    final int targetRpm;
+    /** Containers the target needed before they were capped at the maximum. */
+    final int requiredContainers;
+
+    private FleetSizing(int containers, int usersPerContainer, int targetRpm, int requiredContainers) {
+        this.containers = containers;
+        this.usersPerContainer = usersPerContainer;
+        this.targetRpm = targetRpm;
+        this.requiredContainers = requiredContainers;
+    }
+
+    /**
+     * @param targetRpm        fleet-wide target rate
+     * @param users            fleet-wide users
+     * @param perContainerRpm  rate a single load generator sustains
+     * @param headroom         share of every generator's capacity left unused, e.g. 0.3 to run them at 77%
+     * @param maxContainers    upper bound of the fleet
+     * @param openWorkload     whether the containers share TARGET_RPM (open model) or each reach it (closed model)
+     */
+    static FleetSizing size(int targetRpm, int users, int perContainerRpm, double headroom, int maxContainers, boolean openWorkload) {
+        if (perContainerRpm <= 0)
+            throw new IllegalArgumentException("The per container rate has to be positive, got " + perContainerRpm);
+
+        final int required = Math.max(1, (int) Math.ceil(targetRpm * (1 + headroom) / perContainerRpm));
+        final int containers = Math.min(required, maxContainers);
+        final int usersPerContainer = Math.max(1, (int) Math.ceil((double) users / containers));
+        final int containerTargetRpm = openWorkload ? targetRpm : (int) Math.ceil((double) targetRpm / containers);
+        return new FleetSizing(containers, usersPerContainer, containerTargetRpm, required);
+    }
+
+    boolean isCapped() {
+        return requiredContainers > containers;
+    }
+
+    @Override
+    public String toString() {
+        return containers + " container(s) with " + usersPerContainer + " user(s) each"
+                + (isCapped() ? " (capped, the target needs " + requiredContainers + ")" : "");
+    }
+}
@@ -1,20 +1,31 @@
 package runner;
 
 import org.slf4j.Logger;
-import software.amazon.awssdk.services.ec2.Ec2Client;
-import software.amazon.awssdk.services.ec2.model.DescribeSubnetsRequest;
-import software.amazon.awssdk.services.ec2.model.DescribeSubnetsResponse;
-import software.amazon.awssdk.services.ec2.model.Filter;
-import software.amazon.awssdk.services.ec2.model.Subnet;
-import software.amazon.awssdk.services.ecs.EcsClient;
-import software.amazon.awssdk.services.ecs.model.*;
-
+import report.ReportAggregator;
+import report.RunStatistics;
+import report.history.RegressionDetector;
+import report.history.RegressionReport;
+import report.history.RunHistory;
+import report.history.RunSummary;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static java.lang.Integer.parseInt;
+import static java.lang.Long.parseLong;
 import static java.lang.System.getenv;
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -22,10 +33,16 @@ public class GatlingAwsTestRunner {
 
     private static final Logger LOG = getLogger(GatlingAwsTestRunner.class);
     private final Config config;
-    private final EcsClient ecsClient;
-    private final Ec2Client ec2Client;
+    private final GeneratorBackend backend;
     private int lgIterator = 0;
-    List<KeyValuePair> environmentVariables = new ArrayList<>();
+    Map<String, String> environmentVariables = new LinkedHashMap<>();
+    private final List<String> launchedTasks = new ArrayList<>();
+    private Instant launchStarted;
+    private Instant startAt;
+    private LiveMetricsMonitor liveMetricsMonitor;
+    private CapacitySearch capacitySearch;
+    private SlaGuard slaGuard;
+    private RegressionReport regressions;
 
     public static void main(String[] args) {
         GatlingAwsTestRunner gatlingAwsTestRunner = new GatlingAwsTestRunner();
@@ -35,25 +52,33 @@ public class GatlingAwsTestRunner {
 
     public GatlingAwsTestRunner() {
         this.config = new Config();
-        this.ecsClient = EcsClient.builder().build();
-        this.ec2Client = Ec2Client.builder().build();
+        this.backend = config.isLocal() ? new LocalGeneratorBackend(config) : new EcsGeneratorBackend(config);
     }
 
     private void runLoadTest() {
 
-        if (anyTasksActive()) {
-            throw new IllegalStateException("There are already tasks active on the cluster!");
+        if (backend.isBusy()) {
+            throw new IllegalStateException("There are already tasks active on " + backend.describe() + "!");
         }
 
-        LOG.info("Starting load test on AWS with {} containers", config.numOfLoadGenerators);
+        if (config.autoSize)
+            autoSize();
+
+        LOG.info("Starting load test with {} containers on {}", config.numOfLoadGenerators, backend.describe());
         //LOG.info("Feeder starting from {}", config.feederStart);
 
         StringBuilder summary = new StringBuilder("\n******************** SIMULATION VALUES ********************");
         summary.append("\nEnvironment: ").append(config.environment);
         summary.append("\nSimulation: ").append(config.simulation);
+        summary.append("\nRun ID: ").append(config.runId);
+        summary.append("\nLoad generators: ").append(backend.describe());
         summary.append("\nUsers: ").append(config.usersPerContainer * config.numOfLoadGenerators);
 
-        if(config.targetRpm > 0)
+        // In the open workload model TARGET_RPM is the target of the whole fleet, each container drives its share of it
+        if(config.targetRpm > 0 && config.isOpenWorkload())
+            summary.append("\nTarget RPM: ").append(config.targetRpm).append(" requests per minute (")
+                    .append(String.format("%.2f", (double) config.targetRpm / config.numOfLoadGenerators)).append(" per container)");
+        else if(config.targetRpm > 0)
             summary.append("\nTarget RPM: ").append(config.targetRpm * config.numOfLoadGenerators).append(" requests per minute");
 
         if(config.rampUpDuration > 0)
@@ -65,173 +90,583 @@ public class GatlingAwsTestRunner {
         if(config.rampUpDuration > 0 && config.peakLoadDuration > 0)
             summary.append("\nTotal duration: ").append(config.rampUpDuration + config.peakLoadDuration).append(" minute(s)");
 
+        if(config.autoSize)
+            summary.append("\nAuto-sized: ").append(config.numOfLoadGenerators).append(" container(s) for ")
+                    .append(config.isOpenWorkload() ? config.targetRpm : config.targetRpm * config.numOfLoadGenerators)
+                    .append(" requests per minute with ").append(Math.round(config.autoSizeHeadroom * 100)).append("% headroom");
+
+        if(config.searchMode != null)
+            summary.append("\nCapacity search: ").append(config.searchMode).append(" from ").append(config.searchStartRpm)
+                    .append(" to ").append(config.searchMaxRpm).append(" requests per minute");
+
         summary.append("\n**********************************************************");
 
         LOG.info(String.valueOf(summary));
 
+        if (config.searchMode != null)
+            createCapacitySearch();
+
         int currentFeeder = config.feederStart;
 
+        // All generators hold their injection until the same instant, however long their containers take to start
+        if (config.coordinatedStart) {
+            startAt = Instant.now().plusSeconds(config.startDelaySeconds);
+            LOG.info("Coordinated start of all load generators at {}", startAt);
+        }
+
         setEnvironmentVariables();
+
+        final List<Map<String, String>> generatorEnvironments = new ArrayList<>();
         for (lgIterator = 0; lgIterator < config.numOfLoadGenerators; lgIterator++) {
-            final RunTaskRequest runTaskRequest = createRunTaskRequest(currentFeeder);
+            generatorEnvironments.add(createGeneratorEnvironment(environmentVariables, lgIterator, currentFeeder));
+            currentFeeder += config.usersPerContainer;
+        }
 
-            LOG.info("Starting container {}/{}", lgIterator + 1, config.numOfLoadGenerators);
+        // Started inside the try, so a failed launch still closes the monitor, the log collector and the clients
+        try {
+            if (config.liveMetrics)
+                startLiveMetricsMonitor();
 
-            ecsClient.runTask(runTaskRequest);
+            launchStarted = Instant.now();
+            launchedTasks.addAll(backend.launch(generatorEnvironments));
 
-            currentFeeder += config.usersPerContainer;
-        }
+            if (capacitySearch != null) {
+                // The first step starts once the generators have ramped up to the start rate
+                final Instant rampedUp = (startAt != null ? startAt : Instant.now()).plus(Duration.ofMinutes(getSearchRampUpDuration()));
+                capacitySearch.start(rampedUp.toEpochMilli());
+            }
 
-        if (config.waitForTestCompletion) {
-            waitForTestCompletion();
+            if (config.waitForTestCompletion) {
+                waitForTestCompletion();
+            }
+        } finally {
+            if (liveMetricsMonitor != null)
+                liveMetricsMonitor.close();
+            if (liveMetricsMonitor != null && config.autoSize && liveMetricsMonitor.getSaturatedIntervals() > 0)
+                LOG.warn("The load generators of the auto-sized fleet were saturated in {} interval(s), raise AUTO_SIZE_HEADROOM or use a larger generator profile",
+                        liveMetricsMonitor.getSaturatedIntervals());
+            // Nothing ran when the launch failed
+            if (capacitySearch != null && !launchedTasks.isEmpty())
+                finishCapacitySearch();
+            if (config.waitForTestCompletion && !launchedTasks.isEmpty())
+                generateReport();
+            backend.close();
         }
 
+        if (config.failOnRegression && regressions != null && regressions.hasRegressions())
+            throw new IllegalStateException("Performance regression against the runs " + regressions.baselineRunIds + ": "
+                    + regressions.findings.stream().map(RegressionReport.Finding::describe).collect(Collectors.joining("; ")));
+
         // This is recommended to be used when using Jenkins for triggering tests.
         if (!config.waitForTestCompletion)
-            LOG.info("The test has been started in ECS cluster of your AWS account. ");
+            LOG.info("The test has been started on {}. ", backend.describe());
 
     }
 
-    private void setEnvironmentVariables() {
-        environmentVariables.add(KeyValuePair.builder().name("REPORT_BUCKET").value(config.gatlingReportBucket).build());
-        environmentVariables.add(KeyValuePair.builder().name("USERS").value(String.valueOf(config.usersPerContainer)).build());
-        environmentVariables.add(KeyValuePair.builder().name("SIMULATION").value(config.simulation).build());
-
-        if(config.simulationType != null)
-            environmentVariables.add(KeyValuePair.builder().name("SIMULATION_TYPE").value(config.simulationType).build());
-
-        environmentVariables.add(KeyValuePair.builder().name("ENVIRONMENT").value(config.environment).build());
-        // optional, don't set if null
-        if(config.peakLoadDuration > 0)
-            environmentVariables.add(KeyValuePair.builder().name("PEAK_LOAD_DURATION").value(String.valueOf(config.peakLoadDuration)).build());
+    /**
+     * Builds the consolidated report when the backend gathered the logs of the generators (generateReport.sh does
+     * it for the logs in S3).
+     */
+    private void generateReport() {
+        try {
+            final Optional<Path> logs = backend.collectLogs(config.runId);
+            if (logs.isPresent()) {
+                final Path reportDirectory = logs.get().resolveSibling("report");
+                final RunStatistics statistics = new ReportAggregator().generate(logs.get(), reportDirectory);
+                if (config.historyDirectory != null)
+                    recordHistory(statistics, reportDirectory);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Could not generate the report: {}", e.getMessage());
+        }
+    }
 
-        if(config.rampUpDuration > 0)
-            environmentVariables.add(KeyValuePair.builder().name("RAMP_UP_DURATION").value(String.valueOf(config.rampUpDuration)).build());
+    /**
+     * Adds the run to the run history and compares it with the latest runs of the same simulation, simulation type and
+     * environment. A capacity search doesn't run at a comparable load, so it isn't compared.
+     */
+    private void recordHistory(RunStatistics statistics, Path reportDirectory) throws IOException {
+        if (capacitySearch != null) {
+            LOG.info("A capacity search isn't added to the run history");
+            return;
+        }
+        final RunSummary summary = RunSummary.of(config.runId, config.simulation, config.simulationType != null ? config.simulationType : "",
+                config.environment, statistics);
+        final RegressionDetector detector = new RegressionDetector(config.historyBaselineRuns, Math.min(3, config.historyBaselineRuns),
+                config.regressionThreshold, config.regressionMinChangePercent, 100);
+        regressions = new RunHistory(Paths.get(config.historyDirectory), detector).record(summary, reportDirectory);
+    }
 
-        if(config.targetRpm > 0)
-            environmentVariables.add(KeyValuePair.builder().name("TARGET_RPM").value(String.valueOf(config.targetRpm)).build());
+    private void startLiveMetricsMonitor() {
+        liveMetricsMonitor = new LiveMetricsMonitor(backend.metricsChannel(config.runId),
+                config.numOfLoadGenerators, config.metricsIntervalSeconds * 1000L);
+        if (capacitySearch != null)
+            liveMetricsMonitor.addListener(capacitySearch);
+
+        final List<SlaGuard.Rule> slaRules = SlaGuard.parseRules(config.slaRules);
+        if (!slaRules.isEmpty()) {
+            // Don't judge the start of the test, e.g. while the system under test warms up
+            final Instant evaluateFrom = (startAt != null ? startAt : Instant.now()).plusSeconds(config.slaGraceSeconds);
+            slaGuard = new SlaGuard(slaRules, Math.max(1, config.slaWindowSeconds / config.metricsIntervalSeconds),
+                    config.slaSustainSeconds * 1000L, config.slaMinRequests, evaluateFrom.toEpochMilli(), this::abort);
+            liveMetricsMonitor.addListener(slaGuard);
+            LOG.info("SLA guard: {} over {} second windows, aborting after {} seconds of breach, from {}", slaRules,
+                    config.slaWindowSeconds, config.slaSustainSeconds, evaluateFrom);
+        }
+        liveMetricsMonitor.start();
+    }
 
+    /**
+     * Stops the whole fleet. The load generators still upload the logs they wrote so far, and the reason is stored
+     * next to them for the report.
+     */
+    private void abort(String reason) {
+        try {
+            backend.storeLog(config.runId, "aborted.txt", reason + "\n");
+        } catch (RuntimeException e) {
+            LOG.warn("Could not store the abort reason: {}", e.getMessage());
+        }
+        stopTasks("Aborted by the SLA guard");
     }
 
-    private RunTaskRequest createRunTaskRequest(int currentFeeder) {
-        final NetworkConfiguration networkConfiguration = getNetworkConfiguration();
+    /**
+     * Sizes the fleet for the fleet-wide TARGET_RPM and USERS from the rate a single load generator sustains, so that
+     * every generator keeps AUTO_SIZE_HEADROOM of its capacity to spare.
+     */
+    private void autoSize() {
+        if (config.targetRpm <= 0)
+            throw new IllegalStateException("AUTO_SIZE sizes the fleet for TARGET_RPM, which has to be set");
+        if (config.searchMode != null)
+            throw new IllegalStateException("AUTO_SIZE can't be combined with a capacity search, which needs a fixed fleet");
+        if (!config.liveMetrics)
+            throw new IllegalStateException("The calibration probe is judged from the live metrics, LIVE_METRICS can't be disabled");
+
+        final int perContainerRpm = calibrate();
+        final FleetSizing sizing = FleetSizing.size(config.targetRpm, config.usersPerContainer, perContainerRpm,
+                config.autoSizeHeadroom, config.autoSizeMaxContainers, config.isOpenWorkload());
+        LOG.info("Auto-sizing: one load generator sustains {} RPM, {} RPM with {}% headroom takes {}", perContainerRpm,
+                config.targetRpm, Math.round(config.autoSizeHeadroom * 100), sizing);
+        if (sizing.isCapped())
+            LOG.warn("The fleet is capped at AUTO_SIZE_MAX_CONTAINERS={}, its load generators will run above the headroom or saturate",
+                    config.autoSizeMaxContainers);
+
+        config.numOfLoadGenerators = sizing.containers;
+        config.usersPerContainer = sizing.usersPerContainer;
+        config.targetRpm = sizing.targetRpm;
+    }
 
-        environmentVariables.add(KeyValuePair.builder().name("FEEDER_START").value(String.valueOf(currentFeeder)).build());
+    /**
+     * Runs a step search on a single load generator, in the open workload model and under its own run id, until the
+     * generator saturates or a step misses the error objective. Its logs go to calibration/ instead of logs/, so the
+     * report of the test doesn't include them.
+     *
+     * @return the highest rate the generator sustained
+     */
+    private int calibrate() {
+        final String probeRunId = config.runId + "-calibration";
+        final CapacitySearch probe = new CapacitySearch(CapacitySearch.Mode.STEP, config.calibrationStartRpm, config.calibrationMaxRpm,
+                config.calibrationStepRpm, config.calibrationStepRpm, config.calibrationStepSeconds * 1000L,
+                config.calibrationWarmupSeconds * 1000L, config.metricsIntervalSeconds * 1000L,
+                // Only the generator is measured: slow responses don't matter as long as the generator keeps up with the rate
+                new CapacitySearch.Slo(config.sloMaxErrorPercentage, 0, 0, config.calibrationMaxSaturatedShare),
+                config.searchKneeFactor, backend.controlChannel(probeRunId));
+
+        final Instant probeStart = Instant.now().plusSeconds(config.startDelaySeconds);
+        final int probeMinutes = (int) Math.ceil(probe.maxSteps() * config.calibrationStepSeconds / 60.0) + 1;
+        final Map<String, String> probeEnvironment = new LinkedHashMap<>();
+        if(config.gatlingReportBucket != null)
+            probeEnvironment.put("REPORT_BUCKET", config.gatlingReportBucket);
+        probeEnvironment.put("LOGS_PREFIX", "calibration/" + probeRunId);
+        probeEnvironment.put("RUN_ID", probeRunId);
+        probeEnvironment.put("LIVE_METRICS", "true");
+        probeEnvironment.put("METRICS_INTERVAL_SECONDS", String.valueOf(config.metricsIntervalSeconds));
+        probeEnvironment.put("GENERATOR_MONITOR", "true");
+        // All the users of the fleet, the maximum number of concurrent iterations doesn't limit the probe
+        probeEnvironment.put("USERS", String.valueOf(config.usersPerContainer));
+        probeEnvironment.put("NUM_OF_LOAD_GENERATORS", "1");
+        probeEnvironment.put("SIMULATION", config.simulation);
+        if(config.simulationType != null)
+            probeEnvironment.put("SIMULATION_TYPE", config.simulationType);
+        probeEnvironment.put("ENVIRONMENT", config.environment);
+        probeEnvironment.put("CAPACITY_SEARCH", "true");
+        probeEnvironment.put("WORKLOAD_MODEL", "open");
+        probeEnvironment.put("TARGET_RPM", String.valueOf(config.calibrationStartRpm));
+        probeEnvironment.put("RAMP_UP_DURATION", "1");
+        probeEnvironment.put("PEAK_LOAD_DURATION", String.valueOf(probeMinutes));
+        probeEnvironment.put("START_AT", String.valueOf(probeStart.toEpochMilli()));
+        if(config.feederRecordsPerUser != null)
+            probeEnvironment.put("FEEDER_RECORDS_PER_USER", config.feederRecordsPerUser);
+
+        LOG.info("Calibrating on {} with one load generator from {} to {} RPM, {} s per step", backend.describe(),
+                config.calibrationStartRpm, config.calibrationMaxRpm, config.calibrationStepSeconds);
+
+        final List<String> probeTasks = new ArrayList<>();
+        final LiveMetricsMonitor probeMonitor = new LiveMetricsMonitor(backend.metricsChannel(probeRunId),
+                1, config.metricsIntervalSeconds * 1000L);
+        probeMonitor.addListener(probe);
+        probeMonitor.start();
+        try {
+            probeTasks.addAll(backend.launch(List.of(createGeneratorEnvironment(probeEnvironment, 0, config.feederStart))));
+
+            probe.start(probeStart.plus(Duration.ofMinutes(1)).toEpochMilli());
+            final long timeoutSeconds = config.startDelaySeconds + 60 + probeMinutes * 60L + config.metricsIntervalSeconds * 3L;
+            if (!probe.awaitFinished(timeoutSeconds, TimeUnit.SECONDS)) {
+                LOG.warn("The calibration probe did not finish within {} seconds, sizing from the completed steps", timeoutSeconds);
+                probe.finish();
+            }
+            if (!createTaskWatcher().awaitStopped(probeTasks, Duration.ofMinutes(3)))
+                backend.stop(probeTasks, "Calibration finished");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while calibrating", e);
+        } finally {
+            probeMonitor.close();
+            // Stops following calibration/ in the report bucket, the probe's logs are kept next to those of the run
+            try {
+                backend.collectLogs(probeRunId).ifPresent(logs -> LOG.info("Calibration logs in {}", logs));
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Could not collect the calibration logs: {}", e.getMessage());
+            }
+        }
 
-        final TaskOverride taskOverride = TaskOverride.builder()
-                .containerOverrides(ContainerOverride.builder()
-                        .name("gatlingRunnerContainer")
-                        .environment(environmentVariables)
-                        .build())
-                .build();
+        final int perContainerRpm = probe.getHighestPassingRpm();
+        if (perContainerRpm <= 0)
+            throw new IllegalStateException("The calibration probe failed its first step at " + config.calibrationStartRpm
+                    + " RPM, lower CALIBRATION_START_RPM or check the system under test");
+
+        final List<CapacitySearch.StepResult> steps = probe.getResults();
+        final boolean generatorBound = steps.stream().anyMatch(step -> step.generatorBound);
+        final boolean allPassed = steps.stream().allMatch(step -> step.passed);
+        if (!generatorBound && !allPassed)
+            LOG.warn("The system under test limited the calibration at {} RPM before the load generator saturated, the fleet is sized on a lower bound of the generator capacity",
+                    perContainerRpm);
+        return perContainerRpm;
+    }
 
-        return RunTaskRequest.builder()
-                .launchType(LaunchType.FARGATE)
-                .cluster(config.clusterName)
-                .taskDefinition(config.taskDefinitionName)
-                .startedBy("Gatling Load Test: " + config.simulation)
-                .count(1)
-                .networkConfiguration(networkConfiguration)
-                .overrides(taskOverride)
-                .build();
+    private void createCapacitySearch() {
+        if (!config.liveMetrics)
+            throw new IllegalStateException("A capacity search judges every step from the live metrics, LIVE_METRICS can't be disabled");
+
+        capacitySearch = new CapacitySearch(CapacitySearch.Mode.valueOf(config.searchMode.toUpperCase()),
+                config.searchStartRpm, config.searchMaxRpm, config.searchStepRpm, config.searchResolutionRpm,
+                config.searchStepSeconds * 1000L, config.searchWarmupSeconds * 1000L,
+                // Generators poll the control channel every half interval
+                config.metricsIntervalSeconds * 1000L,
+                new CapacitySearch.Slo(config.sloMaxErrorPercentage, config.sloP95Millis, config.sloP99Millis, config.sloMaxSaturatedShare),
+                config.searchKneeFactor,
+                backend.controlChannel(config.runId));
     }
 
-    private void waitForTestCompletion() {
-        if (config.waitForTestCompletion) {
-            LOG.info("Waiting until all tasks on cluster are completed...");
-            int sleepTime = getInitialSleepTime();
-
-            while (true) {
-                try {
-                    LOG.info("Waiting for " + sleepTime/1000 + " seconds before checking cluster state");
-                    Thread.sleep(sleepTime);
-                    Cluster cluster = getClusterState();
-
-                    if (cluster.runningTasksCount() == 0 && cluster.pendingTasksCount() == 0)
-                        break;
-
-                    LOG.info("Status: {} pending tasks and {} running tasks", cluster.pendingTasksCount(), cluster.runningTasksCount());
-                    sleepTime = 60000;
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
+    private void finishCapacitySearch() {
+        // The last intervals are reported when the monitor closes, so the search normally finished by now
+        try {
+            if (!capacitySearch.awaitFinished(config.metricsIntervalSeconds, TimeUnit.SECONDS)) {
+                LOG.warn("The load generators stopped before the capacity search finished, the result only covers the completed steps");
+                capacitySearch.finish();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
-    private int getInitialSleepTime(){
-        int sleepTime = 0;
+    private int getSearchRampUpDuration() {
+        return config.rampUpDuration > 0 ? config.rampUpDuration : 1;
+    }
 
-        if (config.peakLoadDuration > 0)
-            sleepTime = sleepTime + config.peakLoadDuration;
+    /**
+     * Upper bound of the search (ramp up excluded) in whole minutes, which bounds the simulation on the generators.
+     */
+    private int getSearchDuration() {
+        return (int) Math.ceil(capacitySearch.maxSteps() * config.searchStepSeconds / 60.0) + 1;
+    }
 
-        if (config.rampUpDuration > 0)
-            sleepTime = sleepTime + config.rampUpDuration;
+    private void setEnvironmentVariables() {
+        if(config.gatlingReportBucket != null)
+            environmentVariables.put("REPORT_BUCKET", config.gatlingReportBucket);
+        environmentVariables.put("RUN_ID", config.runId);
+        environmentVariables.put("LIVE_METRICS", String.valueOf(config.liveMetrics));
+        environmentVariables.put("METRICS_INTERVAL_SECONDS", String.valueOf(config.metricsIntervalSeconds));
+        environmentVariables.put("USERS", String.valueOf(config.usersPerContainer));
+        environmentVariables.put("NUM_OF_LOAD_GENERATORS", String.valueOf(config.numOfLoadGenerators));
+        environmentVariables.put("SIMULATION", config.simulation);
 
-        if (sleepTime == 0)
-            sleepTime = 60000;
+        if(config.simulationType != null)
+            environmentVariables.put("SIMULATION_TYPE", config.simulationType);
 
-        return sleepTime;
-    }
+        environmentVariables.put("ENVIRONMENT", config.environment);
+        // optional, don't set if null
+        if (capacitySearch != null) {
+            // The generators start at the first step and then follow the steps the search publishes
+            environmentVariables.put("CAPACITY_SEARCH", "true");
+            environmentVariables.put("WORKLOAD_MODEL", "open");
+            environmentVariables.put("TARGET_RPM", String.valueOf(config.searchStartRpm));
+            environmentVariables.put("RAMP_UP_DURATION", String.valueOf(getSearchRampUpDuration()));
+            environmentVariables.put("PEAK_LOAD_DURATION", String.valueOf(getSearchDuration()));
+        } else {
+            if(config.peakLoadDuration > 0)
+                environmentVariables.put("PEAK_LOAD_DURATION", String.valueOf(config.peakLoadDuration));
+
+            if(config.rampUpDuration > 0)
+                environmentVariables.put("RAMP_UP_DURATION", String.valueOf(config.rampUpDuration));
+
+            if(config.targetRpm > 0)
+                environmentVariables.put("TARGET_RPM", String.valueOf(config.targetRpm));
+        }
+
+        if(config.feederRecordsPerUser != null)
+            environmentVariables.put("FEEDER_RECORDS_PER_USER", config.feederRecordsPerUser);
+
+        if(config.workloadModel != null && capacitySearch == null)
+            environmentVariables.put("WORKLOAD_MODEL", config.workloadModel);
+
+        if(config.replayTrace != null)
+            environmentVariables.put("REPLAY_TRACE", config.replayTrace);
+
+        if(config.replaySpeed != null)
+            environmentVariables.put("REPLAY_SPEED", config.replaySpeed);
+
+        if(config.correctedLatency != null)
+            environmentVariables.put("CORRECTED_LATENCY", config.correctedLatency);
+
+        if(config.generatorMonitor != null)
+            environmentVariables.put("GENERATOR_MONITOR", config.generatorMonitor);
+
+        environmentVariables.put("LOG_SHIPPING", String.valueOf(config.logShipping));
+        if(config.logFormat != null)
+            environmentVariables.put("LOG_FORMAT", config.logFormat);
+
+        if (startAt != null)
+            environmentVariables.put("START_AT", String.valueOf(startAt.toEpochMilli()));
 
-    private AwsVpcConfiguration getAwsVpcConfiguration() {
-        return AwsVpcConfiguration.builder()
-                .assignPublicIp(AssignPublicIp.ENABLED)
-                .subnets(getSubnets(config.vpcId))
-                .build();
     }
 
-    private NetworkConfiguration getNetworkConfiguration() {
-        return NetworkConfiguration.builder()
-                .awsvpcConfiguration(getAwsVpcConfiguration())
-                .build();
+    private Map<String, String> createGeneratorEnvironment(Map<String, String> sharedEnvironment, int generatorIndex, int currentFeeder) {
+        // Every container gets its own copy of the shared variables plus its own feeder offset
+        final Map<String, String> generatorEnvironment = new LinkedHashMap<>(sharedEnvironment);
+        generatorEnvironment.put("FEEDER_START", String.valueOf(currentFeeder));
+        generatorEnvironment.put("GENERATOR_INDEX", String.valueOf(generatorIndex));
+        return generatorEnvironment;
     }
 
-    private List<String> getSubnets(String vpcId) {
-        final DescribeSubnetsRequest describeSubnetsRequest = DescribeSubnetsRequest.builder()
-                .filters(Filter.builder().name("vpc-id").values(vpcId).build())
-                .build();
+    private void waitForTestCompletion() {
+        LOG.info("Waiting until all {} tasks are completed...", launchedTasks.size());
+
+        final TaskWatcher taskWatcher = createTaskWatcher();
+
+        final TaskWatcher.WatchResult result;
+        try {
+            // A capacity search ends whenever it found the capacity, and a replay when its share of the trace was sent,
+            // so their generators can't stop early
+            final Duration expectedDuration = capacitySearch != null || config.isReplayWorkload() ? Duration.ZERO : getExpectedDuration();
+            result = taskWatcher.watch(launchedTasks, startAt != null ? startAt : launchStarted, startAt != null, expectedDuration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        for (TaskWatcher.TaskOutcome outcome : result.outcomes) {
+            LOG.info("Task {}: {}", outcome.taskArn, outcome.describe());
+        }
+
+        final String abortReason = slaGuard != null ? slaGuard.getAbortReason() : null;
+        if (abortReason != null) {
+            // Give the load generators the time to upload their partial logs
+            try {
+                taskWatcher.awaitStopped(launchedTasks, Duration.ofMinutes(3));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IllegalStateException("Test aborted after " + Duration.between(launchStarted, Instant.now()).getSeconds()
+                    + " seconds, the partial logs are in " + backend.logsLocation(config.runId) + ". " + abortReason);
+        }
+
+        if (result.failedEarly()) {
+            stopTasks("Load generator " + result.earlyFailure.taskArn + " stopped early");
+            throw new IllegalStateException("Load generator " + result.earlyFailure.taskArn + " stopped early: " + result.earlyFailure.describe());
+        }
 
-        final DescribeSubnetsResponse describeSubnetsResponse = ec2Client.describeSubnets(describeSubnetsRequest);
+        // E.g. a Gatling assertion that failed at the end of the test
+        final List<TaskWatcher.TaskOutcome> failures = result.failures();
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException(failures.size() + " of " + launchedTasks.size() + " load generator(s) failed: "
+                    + failures.stream().map(failure -> failure.taskArn + " (" + failure.describe() + ")").collect(Collectors.joining("; ")));
+        }
 
-        return describeSubnetsResponse.subnets().stream().map(Subnet::subnetId).collect(Collectors.toList());
+        LOG.info("All tasks completed {} seconds after launch", Duration.between(launchStarted, Instant.now()).getSeconds());
     }
 
-    private Cluster getClusterState() {
-        DescribeClustersRequest request = DescribeClustersRequest.builder().clusters(config.clusterName).build();
-        return ecsClient.describeClusters(request).clusters().get(0);
+    private TaskWatcher createTaskWatcher() {
+        return new TaskWatcher(backend.tasks(),
+                Duration.ofSeconds(config.minPollIntervalSeconds), Duration.ofSeconds(config.maxPollIntervalSeconds),
+                Duration.ofSeconds(config.earlyExitToleranceSeconds));
     }
 
-    private boolean anyTasksActive() {
-        Cluster cluster = getClusterState();
+    private Duration getExpectedDuration() {
+        int minutes = 0;
+
+        if (config.peakLoadDuration > 0)
+            minutes = minutes + config.peakLoadDuration;
+
+        if (config.rampUpDuration > 0)
+            minutes = minutes + config.rampUpDuration;
 
-        return cluster.runningTasksCount() != 0 && cluster.pendingTasksCount() != 0;
+        return Duration.ofMinutes(minutes);
+    }
+
+    private void stopTasks(String reason) {
+        backend.stop(launchedTasks, reason);
     }
 
     static class Config {
-        // Required params
+        // Where the load generators run: "ecs" (Fargate tasks) or "local" (Gatling processes on this machine, no AWS needed)
+        final String backend = getEnvVarOrDefault("BACKEND", "ecs");
+
+        // Required params (for the ecs backend)
         //TODO::::
-        final String vpcId = Objects.requireNonNull(getenv("VPC_ID"), "VPC_ID is required."); //"vpc-b3ad53d6";
-        final String clusterName = Objects.requireNonNull(getenv("CLUSTER_NAME"), "CLUSTER_NAME is required.");//"gatling-cluster";
-        final String taskDefinitionName = Objects.requireNonNull(getenv("TASK_DEFINITION"), "TASK_DEFINITION_NAME is required.");//"gatling-tests";
-        final String gatlingReportBucket = Objects.requireNonNull(System.getenv("REPORT_BUCKET"), "REPORT_BUCKET is required."); //"gatling-results-prashant";
+        final String vpcId = requiredForEcs("VPC_ID", "VPC_ID is required."); //"vpc-b3ad53d6";
+        final String clusterName = requiredForEcs("CLUSTER_NAME", "CLUSTER_NAME is required.");//"gatling-cluster";
+        final String taskDefinitionName = requiredForEcs("TASK_DEFINITION", "TASK_DEFINITION_NAME is required.");//"gatling-tests";
+        // Generator size profile (small, medium, large): runs the task definition of the profile, e.g. gatling-tests-small
+        final String generatorProfile = getenv("GENERATOR_PROFILE");
+        final String gatlingReportBucket = requiredForEcs("REPORT_BUCKET", "REPORT_BUCKET is required."); //"gatling-results-prashant";
+
+        // Local backend: the classpath of the simulations (e.g. mvn dependency:build-classpath of gatling-tests plus its
+        // target/test-classes), JVM options of every generator and where their results go
+        final String localClasspath = getEnvVarOrDefault("LOCAL_CLASSPATH", System.getProperty("java.class.path"));
+        final String localJavaOpts = getEnvVarOrDefault("LOCAL_JAVA_OPTS", "-Xmx1G -XX:+UseG1GC -XX:+ParallelRefProcEnabled");
+        final String localDirectory = getEnvVarOrDefault("LOCAL_DIRECTORY", "target/local-runs");
 
         //Optional with defaults
-        final int numOfLoadGenerators = parseInt(getEnvVarOrDefault("NUM_OF_LOAD_GENERATORS", "1"));
+        // Set by the calibration probe with AUTO_SIZE
+        int numOfLoadGenerators = parseInt(getEnvVarOrDefault("NUM_OF_LOAD_GENERATORS", "1"));
 
         // The below feederStart and usersPerContainer values would be used if there is a feeder being used by simulation, and we need to use different set of feeder records per container.
         // For example: Using different set of users per container.
         final int feederStart = parseInt(getEnvVarOrDefault("FEEDER_START", "0"));
-        final int usersPerContainer = parseInt(getEnvVarOrDefault("USERS", "10"));
+        int usersPerContainer = parseInt(getEnvVarOrDefault("USERS", "10"));
+        // Feeder records per user, so that every container gets FEEDER_RECORDS_PER_USER * USERS records of its own
+        final String feederRecordsPerUser = getenv("FEEDER_RECORDS_PER_USER");
 
         final String simulation = Objects.requireNonNull(System.getenv("SIMULATION"), "SIMULATION is required."); //"simulations.PostCode.PostCodeSimulation";
         final String simulationType = System.getenv("SIMULATION_TYPE");
         final String environment = Objects.requireNonNull(System.getenv("ENVIRONMENT"), "ENVIRONMENT is required."); //"test";
         final int peakLoadDuration = parseInt(getenv("PEAK_LOAD_DURATION")); // minutes
         final int rampUpDuration = parseInt(getenv("RAMP_UP_DURATION")); // minutes
-        final int targetRpm = parseInt(getenv("TARGET_RPM")); // request per minute
+        int targetRpm = parseInt(getenv("TARGET_RPM")); // request per minute
         final boolean waitForTestCompletion = true;
 
+        // Workload model: "closed" paces every user (TARGET_RPM per container), "open" drives arrivals (TARGET_RPM for the whole fleet).
+        // Unset leaves the choice to the simulation config
+        final String workloadModel = getenv("WORKLOAD_MODEL");
+
+        // Replay workload model: the trace the generators replay (an access log, HAR file or index in their data folder)
+        // and how many times as fast as recorded. Unset leaves them to the simulation config
+        final String replayTrace = getenv("REPLAY_TRACE");
+        final String replaySpeed = getenv("REPLAY_SPEED");
+
+        // Coordinated omission corrected latency: the generators also record the intended send time of every request
+        final String correctedLatency = getenv("CORRECTED_LATENCY");
+
+        // Generator monitoring: the generators sample their CPU, GC, heap, event loop lag and connections unless this is false
+        final String generatorMonitor = getenv("GENERATOR_MONITOR");
+
+        // Log shipping: the generators upload simulation.log in compressed parts while the test runs, and the runner
+        // downloads them to LOGS_DIRECTORY/RUN_ID/logs as they come in and writes the report next to them at the end
+        final boolean logShipping = Boolean.parseBoolean(getEnvVarOrDefault("LOG_SHIPPING", "true"));
+        final String logsDirectory = getEnvVarOrDefault("LOGS_DIRECTORY", "target/runs");
+        final long logCollectIntervalSeconds = parseLong(getEnvVarOrDefault("LOG_COLLECT_INTERVAL_SECONDS", "30"));
+        // Format of the shipped parts: "text" (gzip) or "binary" (BinaryLogWriter). Unset leaves it to the generators
+        final String logFormat = getenv("LOG_FORMAT");
+
+        // Fleet launch: "concurrent" (default) sends the RunTask calls in parallel through the async client, "sequential" one by one
+        final String launchMode = getEnvVarOrDefault("LAUNCH_MODE", "concurrent");
+        final int launchConcurrency = parseInt(getEnvVarOrDefault("LAUNCH_CONCURRENCY", "10"));
+        final int launchMaxAttempts = parseInt(getEnvVarOrDefault("LAUNCH_MAX_ATTEMPTS", "8"));
+        final long launchBackoffMillis = parseLong(getEnvVarOrDefault("LAUNCH_BACKOFF_MS", "500"));
+        final long launchMaxBackoffMillis = parseLong(getEnvVarOrDefault("LAUNCH_MAX_BACKOFF_MS", "20000"));
+
+        // Task watching: poll interval bounds and how much earlier than expected a generator may stop before the run fails
+        final long minPollIntervalSeconds = parseLong(getEnvVarOrDefault("POLL_INTERVAL_MIN_SECONDS", "5"));
+        final long maxPollIntervalSeconds = parseLong(getEnvVarOrDefault("POLL_INTERVAL_MAX_SECONDS", "30"));
+        final long earlyExitToleranceSeconds = parseLong(getEnvVarOrDefault("EARLY_EXIT_TOLERANCE_SECONDS", "60"));
+
+        // Coordinated start: the generators hold injection until START_DELAY_SECONDS after the launch started
+        final boolean coordinatedStart = Boolean.parseBoolean(getEnvVarOrDefault("COORDINATED_START", "true"));
+        final long startDelaySeconds = parseLong(getEnvVarOrDefault("START_DELAY_SECONDS", "120"));
+
+        // Live metrics: the containers publish interval snapshots to s3://REPORT_BUCKET/metrics/RUN_ID/ and the runner merges them
+        final String runId = getEnvVarOrDefault("RUN_ID", LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+        final boolean liveMetrics = Boolean.parseBoolean(getEnvVarOrDefault("LIVE_METRICS", "true"));
+        final int metricsIntervalSeconds = parseInt(getEnvVarOrDefault("METRICS_INTERVAL_SECONDS", "5"));
+
+        // Capacity search: SEARCH_MODE "step" or "binary" searches the highest fleet-wide rate that meets the SLOs in one run
+        final String searchMode = getenv("SEARCH_MODE");
+        final int searchStartRpm = parseInt(getEnvVarOrDefault("SEARCH_START_RPM", targetRpm > 0 ? String.valueOf(targetRpm) : "600"));
+        final int searchMaxRpm = parseInt(getEnvVarOrDefault("SEARCH_MAX_RPM", String.valueOf(searchStartRpm * 10)));
+        final int searchStepRpm = parseInt(getEnvVarOrDefault("SEARCH_STEP_RPM", String.valueOf(Math.max(1, searchStartRpm / 2))));
+        final int searchResolutionRpm = parseInt(getEnvVarOrDefault("SEARCH_RESOLUTION_RPM", String.valueOf(Math.max(1, searchStartRpm / 10))));
+        final int searchStepSeconds = parseInt(getEnvVarOrDefault("SEARCH_STEP_SECONDS", "120"));
+        final int searchWarmupSeconds = parseInt(getEnvVarOrDefault("SEARCH_WARMUP_SECONDS", "30"));
+        final double searchKneeFactor = Double.parseDouble(getEnvVarOrDefault("SEARCH_KNEE_FACTOR", "2"));
+        final double sloMaxErrorPercentage = Double.parseDouble(getEnvVarOrDefault("SLO_MAX_ERROR_PERCENT", "1"));
+        final long sloP95Millis = parseLong(getEnvVarOrDefault("SLO_P95_MS", "1000"));
+        final long sloP99Millis = parseLong(getEnvVarOrDefault("SLO_P99_MS", "0"));
+        // 1 only reports saturated load generators, lower fails the steps in which they ran out of capacity
+        final double sloMaxSaturatedShare = Double.parseDouble(getEnvVarOrDefault("SLO_MAX_SATURATED_SHARE", "1"));
+
+        // Auto-sizing: TARGET_RPM and USERS are fleet-wide, a single generator is calibrated first and the fleet gets as many
+        // containers as the target needs with AUTO_SIZE_HEADROOM of their capacity to spare
+        final boolean autoSize = Boolean.parseBoolean(getEnvVarOrDefault("AUTO_SIZE", "false"));
+        final double autoSizeHeadroom = Double.parseDouble(getEnvVarOrDefault("AUTO_SIZE_HEADROOM", "0.3"));
+        final int autoSizeMaxContainers = parseInt(getEnvVarOrDefault("AUTO_SIZE_MAX_CONTAINERS", "100"));
+        // The probe never needs to go beyond what the whole target takes
+        final int calibrationMaxRpm = parseInt(getEnvVarOrDefault("CALIBRATION_MAX_RPM", String.valueOf((int) Math.ceil(targetRpm * (1 + autoSizeHeadroom)))));
+        final int calibrationStepRpm = parseInt(getEnvVarOrDefault("CALIBRATION_STEP_RPM", String.valueOf(Math.max(1, calibrationMaxRpm / 10))));
+        final int calibrationStartRpm = parseInt(getEnvVarOrDefault("CALIBRATION_START_RPM", String.valueOf(calibrationStepRpm)));
+        final int calibrationStepSeconds = parseInt(getEnvVarOrDefault("CALIBRATION_STEP_SECONDS", "60"));
+        final int calibrationWarmupSeconds = parseInt(getEnvVarOrDefault("CALIBRATION_WARMUP_SECONDS", "15"));
+        final double calibrationMaxSaturatedShare = Double.parseDouble(getEnvVarOrDefault("CALIBRATION_MAX_SATURATED_SHARE", "0.2"));
+
+        // SLA guard: rules checked on rolling windows of the live metrics, a rule breached for SLA_SUSTAIN_SECONDS stops the fleet
+        final String slaRules = getenv("SLA_RULES");
+        final int slaWindowSeconds = parseInt(getEnvVarOrDefault("SLA_WINDOW_SECONDS", "60"));
+        final int slaSustainSeconds = parseInt(getEnvVarOrDefault("SLA_SUSTAIN_SECONDS", "60"));
+        final long slaMinRequests = parseLong(getEnvVarOrDefault("SLA_MIN_REQUESTS", "20"));
+        final long slaGraceSeconds = parseLong(getEnvVarOrDefault("SLA_GRACE_SECONDS", "60"));
+
+        // Run history: the summary of every report is kept in HISTORY_DIRECTORY and the run is compared with the latest
+        // HISTORY_BASELINE_RUNS completed runs of the same simulation, simulation type and environment
+        final String historyDirectory = getenv("HISTORY_DIRECTORY");
+        final int historyBaselineRuns = parseInt(getEnvVarOrDefault("HISTORY_BASELINE_RUNS", "5"));
+        final double regressionThreshold = Double.parseDouble(getEnvVarOrDefault("REGRESSION_THRESHOLD", "3.5"));
+        final double regressionMinChangePercent = Double.parseDouble(getEnvVarOrDefault("REGRESSION_MIN_CHANGE_PERCENT", "10"));
+        final boolean failOnRegression = Boolean.parseBoolean(getEnvVarOrDefault("FAIL_ON_REGRESSION", "false"));
+
+        // Optional endpoint overrides, e.g. for running against a local fake ECS/EC2 endpoint or S3 stand-in
+        final String ecsEndpoint = getenv("ECS_ENDPOINT");
+        final String ec2Endpoint = getenv("EC2_ENDPOINT");
+        final String s3Endpoint = getenv("S3_ENDPOINT");
+
+        String getTaskDefinition() {
+            return generatorProfile == null || generatorProfile.isBlank() ? taskDefinitionName : taskDefinitionName + "-" + generatorProfile.toLowerCase();
+        }
+
+        boolean isLocal() {
+            return "local".equalsIgnoreCase(backend);
+        }
+
+        String requiredForEcs(String var, String message) {
+            return isLocal() ? getenv(var) : Objects.requireNonNull(getenv(var), message);
+        }
+
+        boolean isOpenWorkload() {
+            return "open".equalsIgnoreCase(workloadModel);
+        }
+
+        boolean isReplayWorkload() {
+            return "replay".equalsIgnoreCase(workloadModel) || replayTrace != null;
+        }
+
         String getEnvVarOrDefault(String var, String defaultValue) {
             if (getenv(var) == null) {
                 return defaultValue;
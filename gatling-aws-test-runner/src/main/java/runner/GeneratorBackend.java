@@ -0,0 +1,71 @@
+package runner;
+
+import report.live.ControlChannel;
+import report.live.MetricsChannel;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Where the load generators of a run execute. The runner decides what every generator runs (its environment) and
+ * judges the run from the live metrics; the backend launches, watches and stops the generators and carries their
+ * metrics, load steps and logs.
+ */
+interface GeneratorBackend extends AutoCloseable {
+
+    /**
+     * @return what the generators run on, for the summary
+     */
+    String describe();
+
+    /**
+     * @return whether load generators of another run are still active
+     */
+    boolean isBusy();
+
+    /**
+     * Starts one load generator per environment.
+     *
+     * @return the ids of the launched generators, in the order of the environments
+     * @throws IllegalStateException if a generator could not be started
+     */
+    List<String> launch(List<Map<String, String>> environments);
+
+    /**
+     * @return the state of the launched generators, for the TaskWatcher
+     */
+    TaskWatcher.TaskSource tasks();
+
+    /**
+     * Asks the generators to stop. They still hand in the logs they wrote so far.
+     */
+    void stop(Collection<String> generatorIds, String reason);
+
+    MetricsChannel metricsChannel(String runId);
+
+    ControlChannel controlChannel(String runId);
+
+    /**
+     * Stores a file next to the logs of the generators, e.g. the reason the run was aborted.
+     */
+    void storeLog(String runId, String name, String content);
+
+    /**
+     * @return where the generators leave their logs, for the messages of the runner
+     */
+    String logsLocation(String runId);
+
+    /**
+     * Gathers the logs of all generators of the run in one directory, named like run.sh uploads them.
+     *
+     * @return the directory, or empty when the logs stay remote (generateReport.sh downloads them)
+     */
+    Optional<Path> collectLogs(String runId) throws IOException;
+
+    @Override
+    void close();
+}
@@ -0,0 +1,122 @@
+package runner;
+
+import org.slf4j.Logger;
+import report.live.FleetInterval;
+import report.live.FleetMetrics;
+import report.live.IntervalSnapshot;
+import report.live.IntervalStats;
+import report.live.MetricsChannel;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Polls the metrics channel while the test runs, merges the interval snapshots of all load generators and logs the
+ * fleet-wide throughput and response time percentiles of every completed interval. Intervals in which a load generator
+ * was saturated (CPU, GC or event loop lag, see GeneratorSample) are flagged, since their response times are suspect.
+ */
+class LiveMetricsMonitor implements AutoCloseable {
+
+    private static final Logger LOG = getLogger(LiveMetricsMonitor.class);
+
+    private final MetricsChannel metricsChannel;
+    private final FleetMetrics fleetMetrics;
+    private final long pollIntervalMillis;
+    private final List<Consumer<FleetInterval>> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "live-metrics-monitor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile FleetInterval latest;
+    private final AtomicInteger saturatedIntervals = new AtomicInteger();
+
+    LiveMetricsMonitor(MetricsChannel metricsChannel, int expectedGenerators, long intervalMillis) {
+        this.metricsChannel = metricsChannel;
+        this.pollIntervalMillis = intervalMillis;
+        // Give slow generators (and slow uploads) two more intervals before an interval is reported without them
+        this.fleetMetrics = new FleetMetrics(expectedGenerators, 3 * intervalMillis);
+    }
+
+    void addListener(Consumer<FleetInterval> listener) {
+        listeners.add(listener);
+    }
+
+    void start() {
+        scheduler.scheduleWithFixedDelay(this::poll, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    int getSaturatedIntervals() {
+        return saturatedIntervals.get();
+    }
+
+    FleetInterval getLatest() {
+        return latest;
+    }
+
+    void poll() {
+        try {
+            for (IntervalSnapshot snapshot : metricsChannel.poll()) {
+                fleetMetrics.add(snapshot);
+            }
+            for (FleetInterval interval : fleetMetrics.complete(System.currentTimeMillis())) {
+                report(interval);
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("Could not poll live metrics: {}", e.getMessage());
+        }
+    }
+
+    private void report(FleetInterval interval) {
+        latest = interval;
+        LOG.info("Fleet: {}", interval.summary());
+        final Map<String, String> saturated = interval.getSaturatedGenerators();
+        if (!saturated.isEmpty()) {
+            saturatedIntervals.incrementAndGet();
+            LOG.warn("Load generator(s) saturated, discount this interval: {}", saturated);
+        }
+        if (LOG.isDebugEnabled()) {
+            for (Map.Entry<String, IntervalStats> request : interval.getRequests().entrySet()) {
+                final IntervalStats stats = request.getValue();
+                LOG.debug("  {}: {} req/s, {} KO, p50 {} ms, p95 {} ms, p99 {} ms", request.getKey(), String.format("%.1f", interval.getRps(stats)),
+                        stats.getKo(), stats.getPercentile(50), stats.getPercentile(95), stats.getPercentile(99));
+            }
+        }
+        for (Consumer<FleetInterval> listener : listeners) {
+            listener.accept(interval);
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        // The channel and the fleet metrics aren't thread-safe, so the last poll waits for the one in progress
+        boolean terminated = false;
+        try {
+            terminated = scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (terminated) {
+            // Pick up what the generators published while they shut down
+            poll();
+            for (FleetInterval interval : fleetMetrics.complete(Long.MAX_VALUE)) {
+                report(interval);
+            }
+        } else {
+            LOG.warn("The live metrics were still being polled, the last interval(s) are not reported");
+        }
+        metricsChannel.close();
+        if (saturatedIntervals.get() > 0) {
+            LOG.warn("Load generators were saturated in {} interval(s), see the Load generators section of the report", saturatedIntervals.get());
+        }
+    }
+}
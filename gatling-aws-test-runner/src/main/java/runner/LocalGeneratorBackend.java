@@ -0,0 +1,292 @@
+package runner;
+
+import org.slf4j.Logger;
+import report.agent.GeneratorAgent;
+import report.live.ControlChannel;
+import report.live.FileControlChannel;
+import report.live.InMemoryMetricsChannel;
+import report.live.MetricsChannel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Runs every load generator as a Gatling JVM on this machine, for high throughput runs on a single large box and for
+ * running the whole runner without AWS. Every generator gets its own directory under LOCAL_DIRECTORY/&lt;run id&gt;/
+ * (its results, like the container's) and its share of the cores: with taskset on the path the process is pinned to
+ * them, and the JVM and Netty size their thread pools by them either way.
+ * <p>
+ * What run.sh does next to Gatling in a container happens in the runner: a GeneratorAgent per generator follows its
+ * simulation.log and publishes to an in-process metrics channel, load steps go through a FileControlChannel, and
+ * collectLogs gathers the logs with the names run.sh uploads them under.
+ */
+class LocalGeneratorBackend implements GeneratorBackend {
+
+    private static final Logger LOG = getLogger(LocalGeneratorBackend.class);
+
+    private final GatlingAwsTestRunner.Config config;
+    private final Path directory;
+    private final int cores = Runtime.getRuntime().availableProcessors();
+    private final String taskset = findOnPath("taskset");
+    private final Map<String, InMemoryMetricsChannel> metricsChannels = new ConcurrentHashMap<>();
+    private final Map<String, Generator> generators = new ConcurrentHashMap<>();
+
+    LocalGeneratorBackend(GatlingAwsTestRunner.Config config) {
+        this.config = config;
+        this.directory = Paths.get(config.localDirectory).toAbsolutePath();
+    }
+
+    @Override
+    public String describe() {
+        return "local processes on " + cores + " core(s)" + (taskset == null ? "" : ", pinned with taskset");
+    }
+
+    @Override
+    public boolean isBusy() {
+        return generators.values().stream().anyMatch(generator -> generator.process.isAlive());
+    }
+
+    @Override
+    public List<String> launch(List<Map<String, String>> environments) {
+        final List<String> ids = new ArrayList<>(environments.size());
+        for (int i = 0; i < environments.size(); i++) {
+            final Map<String, String> environment = environments.get(i);
+            final String runId = environment.get("RUN_ID");
+            final String name = "generator-" + environment.getOrDefault("GENERATOR_INDEX", String.valueOf(i));
+            try {
+                final Generator generator = start(runId, name, environment, cores(i, environments.size()));
+                generators.put(generator.id, generator);
+                ids.add(generator.id);
+            } catch (IOException e) {
+                stop(ids, "Launch failed");
+                throw new IllegalStateException("Load generator " + name + " could not be started: " + e.getMessage(), e);
+            } catch (RuntimeException e) {
+                stop(ids, "Launch failed");
+                throw e;
+            }
+        }
+        LOG.info("Started {} local load generator(s) in {}", ids.size(), directory);
+        return ids;
+    }
+
+    /**
+     * @return the cores of the given generator: an equal share each when there are enough, else one core, round robin
+     */
+    private int[] cores(int index, int count) {
+        if (count >= cores) {
+            return new int[]{index % cores};
+        }
+        final int share = cores / count;
+        return new int[]{index * share, index * share + share - 1};
+    }
+
+    private Generator start(String runId, String name, Map<String, String> environment, int[] cores) throws IOException {
+        final Path workDirectory = runDirectory(runId).resolve(name);
+        final Path resultsDirectory = workDirectory.resolve("results");
+        Files.createDirectories(resultsDirectory);
+
+        final int processors = cores.length == 1 ? 1 : cores[1] - cores[0] + 1;
+        final List<String> command = new ArrayList<>();
+        if (taskset != null) {
+            command.addAll(Arrays.asList(taskset, "-c", cores.length == 1 ? String.valueOf(cores[0]) : cores[0] + "-" + cores[1]));
+        }
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(Arrays.asList(config.localJavaOpts.trim().split("\\s+")));
+        command.add("-XX:ActiveProcessorCount=" + processors);
+        command.add("-Dio.netty.eventLoopThreads=" + processors);
+        command.addAll(Arrays.asList("-cp", config.localClasspath, "io.gatling.app.Gatling",
+                "-s", environment.get("SIMULATION"), "-rf", resultsDirectory.toString(), "-nr"));
+
+        final ProcessBuilder processBuilder = new ProcessBuilder(command)
+                .directory(workDirectory.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(workDirectory.resolve("gatling.out").toFile());
+        processBuilder.environment().putAll(environment);
+        // What the container has by itself: its name, and where the simulation writes its side logs
+        processBuilder.environment().put("HOSTNAME", name);
+        processBuilder.environment().put("RESULTS_DIRECTORY", resultsDirectory.toString());
+        processBuilder.environment().put("INTENDED_LOG", resultsDirectory.resolve("intended.log").toString());
+        processBuilder.environment().put("GENERATOR_LOG", resultsDirectory.resolve("generator.log").toString());
+        processBuilder.environment().put("CONTROL_DIRECTORY", directory.toString());
+
+        final Generator generator = new Generator(runId + "/" + name, name, workDirectory, processBuilder.start());
+        LOG.info("Load generator {} (pid {}) on core(s) {}", name, generator.process.pid(),
+                cores.length == 1 ? cores[0] : cores[0] + "-" + cores[1]);
+
+        if (!"false".equalsIgnoreCase(environment.get("LIVE_METRICS"))) {
+            final Map<String, String> agentEnvironment = new HashMap<>();
+            agentEnvironment.put("RUN_ID", runId);
+            agentEnvironment.put("HOSTNAME", name);
+            agentEnvironment.put("RESULTS_DIRECTORY", resultsDirectory.toString());
+            agentEnvironment.put("METRICS_INTERVAL_SECONDS", environment.getOrDefault("METRICS_INTERVAL_SECONDS", "5"));
+            try {
+                generator.agent = new GeneratorAgent(new GeneratorAgent.Config(agentEnvironment), metricsChannel(runId));
+                generator.agent.start();
+            } catch (RuntimeException e) {
+                // The caller only knows the generators that started completely
+                generator.process.destroy();
+                throw e;
+            }
+        }
+        // Like run.sh, publish the rest of the metrics once Gatling exited
+        generator.process.onExit().thenRun(generator::exited);
+        return generator;
+    }
+
+    @Override
+    public TaskWatcher.TaskSource tasks() {
+        return this::describeGenerators;
+    }
+
+    private List<TaskWatcher.TaskOutcome> describeGenerators(Collection<String> ids) {
+        final List<TaskWatcher.TaskOutcome> outcomes = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            final Generator generator = generators.get(id);
+            if (generator == null) {
+                outcomes.add(new TaskWatcher.TaskOutcome(id, "STOPPED", null, null, "unknown generator", null, null));
+            } else if (generator.stoppedAt == null) {
+                outcomes.add(new TaskWatcher.TaskOutcome(id, "RUNNING", null, null, null, null, null));
+            } else {
+                outcomes.add(new TaskWatcher.TaskOutcome(id, "STOPPED", generator.process.exitValue(), null, generator.stopReason,
+                        "see " + generator.workDirectory.resolve("gatling.out"), generator.stoppedAt));
+            }
+        }
+        return outcomes;
+    }
+
+    @Override
+    public void stop(Collection<String> ids, String reason) {
+        LOG.info("Stopping {} load generator(s): {}", ids.size(), reason);
+        for (String id : new ArrayList<>(ids)) {
+            final Generator generator = generators.get(id);
+            if (generator != null && generator.process.isAlive()) {
+                generator.stopReason = reason;
+                // SIGTERM, like ECS: Gatling's shutdown hooks still flush the logs
+                generator.process.destroy();
+            }
+        }
+    }
+
+    @Override
+    public MetricsChannel metricsChannel(String runId) {
+        return metricsChannels.computeIfAbsent(runId, id -> new InMemoryMetricsChannel());
+    }
+
+    @Override
+    public ControlChannel controlChannel(String runId) {
+        return new FileControlChannel(directory, runId);
+    }
+
+    @Override
+    public void storeLog(String runId, String name, String content) {
+        try {
+            final Path logsDirectory = runDirectory(runId).resolve("logs");
+            Files.createDirectories(logsDirectory);
+            Files.writeString(logsDirectory.resolve(name), content, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String logsLocation(String runId) {
+        return runDirectory(runId).resolve("logs").toString();
+    }
+
+    /**
+     * Copies the logs of every generator of the run to &lt;run&gt;/logs, as &lt;generator&gt;-simulation.log etc.
+     */
+    @Override
+    public Optional<Path> collectLogs(String runId) throws IOException {
+        final Path logsDirectory = runDirectory(runId).resolve("logs");
+        Files.createDirectories(logsDirectory);
+        for (Generator generator : generators.values()) {
+            if (!generator.id.startsWith(runId + "/")) {
+                continue;
+            }
+            final Path resultsDirectory = generator.workDirectory.resolve("results");
+            try (Stream<Path> files = Files.walk(resultsDirectory, 2)) {
+                for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                    final String fileName = file.getFileName().toString();
+                    if (fileName.equals("simulation.log") || fileName.equals("intended.log") || fileName.equals("generator.log")) {
+                        Files.copy(file, logsDirectory.resolve(generator.name + "-" + fileName), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+            }
+        }
+        return Optional.of(logsDirectory);
+    }
+
+    private Path runDirectory(String runId) {
+        return directory.resolve(runId);
+    }
+
+    private static String findOnPath(String executable) {
+        final String path = System.getenv("PATH");
+        if (path == null) {
+            return null;
+        }
+        return Stream.of(path.split(File.pathSeparator))
+                .map(entry -> Paths.get(entry, executable))
+                .filter(Files::isExecutable)
+                .map(Path::toString)
+                .findFirst()
+                .orElse(null);
+    }
+
+    @Override
+    public void close() {
+        final List<String> running = new ArrayList<>();
+        generators.forEach((id, generator) -> {
+            if (generator.process.isAlive()) {
+                running.add(id);
+            }
+        });
+        if (!running.isEmpty()) {
+            stop(running, "Runner closed");
+        }
+    }
+
+    private static class Generator {
+        final String id;
+        final String name;
+        final Path workDirectory;
+        final Process process;
+        volatile GeneratorAgent agent;
+        volatile String stopReason;
+        volatile Instant stoppedAt;
+
+        Generator(String id, String name, Path workDirectory, Process process) {
+            this.id = id;
+            this.name = name;
+            this.workDirectory = workDirectory;
+            this.process = process;
+        }
+
+        void exited() {
+            if (agent != null) {
+                agent.close();
+            }
+            // Stopped only once its last metrics are published, like a container once run.sh finished
+            stoppedAt = Instant.now();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package runner;
+
+import org.slf4j.Logger;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Downloads the logs the containers ship to the logs/ folder of the report bucket while the test runs: the compressed
+ * parts of simulation.log as soon as they are uploaded, and whatever run.sh uploads at the end. Only objects stored
+ * after the launch are taken, the folder may still hold the logs of earlier runs. By the time the test is over most
+ * of the log is already here, so the report can be built right away.
+ */
+class LogCollector implements AutoCloseable {
+
+    private static final Logger LOG = getLogger(LogCollector.class);
+
+    private final S3Client s3Client;
+    private final String bucket;
+    private final String prefix;
+    private final Path directory;
+    private final Instant since;
+    /** Sizes of the downloaded objects by key, a key stored again with another size is downloaded again. */
+    private final Map<String, Long> downloaded = new HashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "log-collector");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private long downloadedBytes;
+
+    LogCollector(S3Client s3Client, String bucket, String prefix, Path directory, Instant since) {
+        this.s3Client = s3Client;
+        this.bucket = bucket;
+        this.prefix = prefix.endsWith("/") ? prefix : prefix + "/";
+        this.directory = directory;
+        this.since = since;
+    }
+
+    void start(long intervalSeconds) {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                sync();
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Could not collect the logs from s3://{}/{}: {}", bucket, prefix, e.getMessage());
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Downloads the objects that are new since the last sync.
+     */
+    synchronized void sync() throws IOException {
+        Files.createDirectories(directory);
+        final ListObjectsV2Request request = ListObjectsV2Request.builder().bucket(bucket).prefix(prefix).build();
+        for (S3Object object : s3Client.listObjectsV2Paginator(request).contents()) {
+            final String name = object.key().substring(prefix.length());
+            if (name.isEmpty() || name.contains("/") || object.lastModified().isBefore(since)
+                    || object.size().equals(downloaded.get(object.key()))) {
+                continue;
+            }
+            final Path file = directory.resolve(name);
+            final Path temporary = directory.resolve(name + ".download");
+            Files.deleteIfExists(temporary);
+            try {
+                s3Client.getObject(GetObjectRequest.builder().bucket(bucket).key(object.key()).build(), ResponseTransformer.toFile(temporary));
+            } catch (S3Exception e) {
+                LOG.warn("Could not download s3://{}/{}: {}", bucket, object.key(), e.getMessage());
+                continue;
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            downloaded.put(object.key(), object.size());
+            downloadedBytes += object.size();
+        }
+    }
+
+    /**
+     * Stops following the bucket and downloads what is left.
+     *
+     * @return the directory holding the logs
+     */
+    Path finish() throws IOException {
+        scheduler.shutdownNow();
+        final long before = downloadedBytes;
+        sync();
+        LOG.info("Collected the logs in {}, {} KB of {} KB after the test", directory, (downloadedBytes - before) / 1024,
+                downloadedBytes / 1024);
+        return directory;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        s3Client.close();
+    }
+}
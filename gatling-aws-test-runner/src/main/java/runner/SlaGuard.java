@@ -0,0 +1,187 @@
+package runner;
+
+import org.slf4j.Logger;
+import report.live.FleetInterval;
+import report.live.IntervalStats;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Evaluates SLA rules on rolling windows of the live fleet metrics while the test runs. A rule that stays breached for
+ * the sustain period aborts the test: the breach callback is called once, with the reason.
+ * <p>
+ * Rules are written as {@code <request name>:<metric><threshold>,...} separated by {@code ;}, where the request name
+ * {@code *} is every request together and the metric is {@code ko} (error percentage) or a percentile such as
+ * {@code p95} (milliseconds), e.g. {@code *:ko<5,p95<800;GET_Postcode:p99<2000}.
+ */
+class SlaGuard implements Consumer<FleetInterval> {
+
+    private static final Logger LOG = getLogger(SlaGuard.class);
+    static final String ALL_REQUESTS = "*";
+
+    private final List<Rule> rules;
+    private final int windowIntervals;
+    private final long sustainMillis;
+    private final long minRequests;
+    private final long evaluateFrom;
+    private final Consumer<String> onBreach;
+
+    private final Deque<FleetInterval> window = new ArrayDeque<>();
+    private final Map<Rule, Long> breachedSince = new HashMap<>();
+    private String abortReason;
+
+    /**
+     * @param windowIntervals number of metrics intervals a rule is evaluated on
+     * @param sustainMillis   how long a rule has to stay breached before the test is aborted
+     * @param minRequests     windows with fewer requests (of the rule's request name) are not judged
+     * @param evaluateFrom    intervals before this instant (epoch millis), e.g. during the ramp up, are ignored
+     * @param onBreach        called once with the reason when the test has to be aborted
+     */
+    SlaGuard(List<Rule> rules, int windowIntervals, long sustainMillis, long minRequests, long evaluateFrom, Consumer<String> onBreach) {
+        this.rules = rules;
+        this.windowIntervals = windowIntervals;
+        this.sustainMillis = sustainMillis;
+        this.minRequests = minRequests;
+        this.evaluateFrom = evaluateFrom;
+        this.onBreach = onBreach;
+    }
+
+    @Override
+    public void accept(FleetInterval interval) {
+        final String reason;
+        synchronized (this) {
+            if (abortReason != null || interval.intervalStart < evaluateFrom) {
+                return;
+            }
+            window.addLast(interval);
+            while (window.size() > windowIntervals) {
+                window.removeFirst();
+            }
+
+            reason = evaluate(interval.intervalStart + interval.intervalMillis);
+            if (reason == null) {
+                return;
+            }
+            abortReason = reason;
+        }
+
+        LOG.error("SLA breached, aborting the test: {}", reason);
+        onBreach.accept(reason);
+    }
+
+    /**
+     * @return the reason to abort, or null while every rule is met (or not breached for long enough)
+     */
+    private String evaluate(long now) {
+        for (Rule rule : rules) {
+            final IntervalStats stats = windowStats(rule.requestName);
+            final String breach = stats.getCount() < minRequests ? null : rule.check(stats);
+
+            if (breach == null) {
+                if (breachedSince.remove(rule) != null) {
+                    LOG.info("SLA rule {} is met again", rule);
+                }
+                continue;
+            }
+
+            final long since = breachedSince.computeIfAbsent(rule, r -> {
+                LOG.warn("SLA rule {} breached over the last {} interval(s): {}", r, window.size(), breach);
+                return now - window.getLast().intervalMillis;
+            });
+            if (now - since >= sustainMillis) {
+                return "SLA rule " + rule + " breached for " + (now - since) / 1000 + " seconds: " + breach;
+            }
+        }
+        return null;
+    }
+
+    private IntervalStats windowStats(String requestName) {
+        final IntervalStats stats = new IntervalStats();
+        for (FleetInterval interval : window) {
+            final IntervalStats requestStats = ALL_REQUESTS.equals(requestName) ? interval.getTotal() : interval.getRequests().get(requestName);
+            if (requestStats != null) {
+                stats.add(requestStats);
+            }
+        }
+        return stats;
+    }
+
+    synchronized String getAbortReason() {
+        return abortReason;
+    }
+
+    /**
+     * Parses the SLA_RULES syntax, see the class comment.
+     */
+    static List<Rule> parseRules(String rules) {
+        final List<Rule> parsed = new ArrayList<>();
+        if (rules == null || rules.isBlank()) {
+            return parsed;
+        }
+
+        for (String requestRules : rules.split(";")) {
+            if (requestRules.isBlank()) {
+                continue;
+            }
+            final int separator = requestRules.lastIndexOf(':');
+            if (separator < 1) {
+                throw new IllegalArgumentException("Invalid SLA rule, expected <request name>:<metric><threshold>: " + requestRules);
+            }
+            final String requestName = requestRules.substring(0, separator).trim();
+            for (String condition : requestRules.substring(separator + 1).split(",")) {
+                final String[] parts = condition.trim().split("<");
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException("Invalid SLA condition, expected <metric><threshold>: " + condition);
+                }
+                parsed.add(new Rule(requestName, parts[0].trim().toLowerCase(), Double.parseDouble(parts[1].trim())));
+            }
+        }
+        return Collections.unmodifiableList(parsed);
+    }
+
+    static class Rule {
+        final String requestName;
+        final String metric;
+        final double threshold;
+        private final double percentile;
+
+        Rule(String requestName, String metric, double threshold) {
+            this.requestName = requestName;
+            this.metric = metric;
+            this.threshold = threshold;
+            if ("ko".equals(metric)) {
+                this.percentile = -1;
+            } else if (metric.startsWith("p")) {
+                this.percentile = Double.parseDouble(metric.substring(1));
+            } else {
+                throw new IllegalArgumentException("Unknown SLA metric " + metric + ", use ko or a percentile such as p95");
+            }
+        }
+
+        /**
+         * @return a description of the breach, or null if the stats meet the rule
+         */
+        String check(IntervalStats stats) {
+            final double value = percentile < 0 ? stats.getErrorPercentage() : stats.getPercentile(percentile);
+            if (value < threshold) {
+                return null;
+            }
+            return percentile < 0 ? String.format("KO %.2f%% (%d of %d requests)", value, stats.getKo(), stats.getCount())
+                    : String.format("%s %.0f ms", metric, value);
+        }
+
+        @Override
+        public String toString() {
+            return requestName + ":" + metric + "<" + (threshold == Math.rint(threshold) ? String.valueOf((long) threshold) : String.valueOf(threshold));
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package runner;
+
+import org.slf4j.Logger;
+import software.amazon.awssdk.services.ecs.model.Container;
+import software.amazon.awssdk.services.ecs.model.Task;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Watches the tasks started for a load test (through DescribeTasks for ECS, see GeneratorBackend) until all of them
+ * have stopped.
+ * Polling is adaptive: frequent while the containers start up and around the expected end of the test, and
+ * less frequent in between. A generator that stops well before the expected end of the test fails the watch
+ * immediately, one that exits with a non-zero code at the end is reported as failed (see WatchResult.failures).
+ * ECS is eventually consistent and may report a task it just started as MISSING, which only counts as stopped after
+ * a grace period (MISSING_GRACE by default).
+ */
+class TaskWatcher {
+
+    private static final Logger LOG = getLogger(TaskWatcher.class);
+    private static final Duration STARTUP_PHASE = Duration.ofMinutes(2);
+    private static final Duration MISSING_GRACE = Duration.ofMinutes(1);
+
+    private final TaskSource taskSource;
+    private final Duration minPollInterval;
+    private final Duration maxPollInterval;
+    private final Duration earlyExitTolerance;
+    private final Duration missingGrace;
+
+    TaskWatcher(TaskSource taskSource, Duration minPollInterval, Duration maxPollInterval, Duration earlyExitTolerance) {
+        this(taskSource, minPollInterval, maxPollInterval, earlyExitTolerance, MISSING_GRACE);
+    }
+
+    TaskWatcher(TaskSource taskSource, Duration minPollInterval, Duration maxPollInterval, Duration earlyExitTolerance, Duration missingGrace) {
+        this.taskSource = taskSource;
+        this.minPollInterval = minPollInterval;
+        this.maxPollInterval = maxPollInterval;
+        this.earlyExitTolerance = earlyExitTolerance;
+        this.missingGrace = missingGrace;
+    }
+
+    /**
+     * Blocks until every task has stopped, or until one of them died early.
+     *
+     * @param taskArns         the tasks the backend launched
+     * @param started          when the tasks were launched, or the coordinated start instant of the test
+     * @param coordinatedStart whether the generators hold injection until the started instant
+     * @param expectedDuration how long the test is expected to run, or zero when unknown
+     * @return the outcome of every task
+     */
+    WatchResult watch(Collection<String> taskArns, Instant started, boolean coordinatedStart, Duration expectedDuration) throws InterruptedException {
+        final Instant expectedEnd = expectedDuration.isZero() ? null : started.plus(expectedDuration);
+        final Instant launched = Instant.now();
+        final Map<String, TaskOutcome> outcomes = new LinkedHashMap<>();
+        boolean startChecked = !coordinatedStart;
+
+        while (true) {
+            final List<TaskOutcome> latest = taskSource.describe(taskArns);
+            final Instant now = Instant.now();
+            int pending = 0;
+            int running = 0;
+            int stopped = 0;
+
+            for (TaskOutcome outcome : latest) {
+                outcomes.put(outcome.taskArn, outcome);
+
+                if (outcome.isMissing() && now.isBefore(launched.plus(missingGrace))) {
+                    pending++;
+                } else if (outcome.isStopped() || outcome.isMissing()) {
+                    stopped++;
+                    if (diedEarly(outcome, expectedEnd, now)) {
+                        LOG.error("Load generator {} stopped early: {}", outcome.taskArn, outcome.describe());
+                        return new WatchResult(new ArrayList<>(outcomes.values()), outcome);
+                    }
+                } else if ("RUNNING".equals(outcome.lastStatus)) {
+                    running++;
+                } else {
+                    pending++;
+                }
+            }
+
+            if (stopped == taskArns.size()) {
+                return new WatchResult(new ArrayList<>(outcomes.values()), null);
+            }
+
+            if (!startChecked && !Instant.now().isBefore(started)) {
+                startChecked = true;
+                if (pending > 0) {
+                    LOG.warn("{} load generator(s) were not running yet at the coordinated start, their load will start late. Consider increasing START_DELAY_SECONDS", pending);
+                } else {
+                    LOG.info("All load generators were running at the coordinated start {}", started);
+                }
+            }
+
+            final Duration sleep = nextPollInterval(Instant.now(), started, expectedEnd);
+            LOG.info("Status: {} pending, {} running and {} stopped task(s), checking again in {} seconds", pending, running, stopped, sleep.getSeconds());
+            Thread.sleep(sleep.toMillis());
+        }
+    }
+
+    /**
+     * Blocks until every task has stopped, e.g. after they were asked to stop, or until the timeout.
+     *
+     * @return whether every task stopped
+     */
+    boolean awaitStopped(Collection<String> taskArns, Duration timeout) throws InterruptedException {
+        final Instant deadline = Instant.now().plus(timeout);
+        while (true) {
+            // Stopped tasks eventually disappear from ECS
+            final long running = taskSource.describe(taskArns).stream().filter(outcome -> !outcome.isStopped() && !outcome.isMissing()).count();
+            if (running == 0) {
+                return true;
+            }
+            if (Instant.now().isAfter(deadline)) {
+                LOG.warn("{} task(s) still not stopped after {} seconds", running, timeout.getSeconds());
+                return false;
+            }
+            LOG.info("Waiting for {} task(s) to stop", running);
+            Thread.sleep(minPollInterval.toMillis());
+        }
+    }
+
+    /**
+     * By the stop time alone, Gatling also exits with a non-zero code when an assertion failed at the normal end.
+     * Without an expected end no stop is early.
+     */
+    private boolean diedEarly(TaskOutcome outcome, Instant expectedEnd, Instant now) {
+        final Instant stoppedAt = outcome.stoppedAt != null ? outcome.stoppedAt : now;
+        return expectedEnd != null && stoppedAt.plus(earlyExitTolerance).isBefore(expectedEnd);
+    }
+
+    /**
+     * Polls at the minimum interval during start-up and once the expected end is near (or unknown), and backs off
+     * to at most the maximum interval while the test is in its steady state.
+     */
+    Duration nextPollInterval(Instant now, Instant started, Instant expectedEnd) {
+        if (expectedEnd == null || now.isBefore(started.plus(STARTUP_PHASE))) {
+            // Sleep straight until a coordinated start that is further away than the minimum interval
+            final Duration untilStart = Duration.between(now, started);
+            return untilStart.compareTo(minPollInterval) > 0 ? min(untilStart, maxPollInterval) : minPollInterval;
+        }
+
+        final Duration remaining = Duration.between(now, expectedEnd);
+        if (remaining.compareTo(maxPollInterval) <= 0) {
+            return minPollInterval;
+        }
+
+        final Duration half = remaining.dividedBy(2);
+        return half.compareTo(maxPollInterval) < 0 ? max(half, minPollInterval) : maxPollInterval;
+    }
+
+    private static Duration max(Duration a, Duration b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+
+    /**
+     * The current state of the launched tasks.
+     */
+    interface TaskSource {
+        List<TaskOutcome> describe(Collection<String> taskArns);
+    }
+
+    static class TaskOutcome {
+        final String taskArn;
+        final String lastStatus;
+        final Integer exitCode;
+        final String stopCode;
+        final String stoppedReason;
+        final String containerReason;
+        final Instant stoppedAt;
+
+        TaskOutcome(String taskArn, String lastStatus, Integer exitCode, String stopCode, String stoppedReason, String containerReason, Instant stoppedAt) {
+            this.taskArn = taskArn;
+            this.lastStatus = lastStatus;
+            this.exitCode = exitCode;
+            this.stopCode = stopCode;
+            this.stoppedReason = stoppedReason;
+            this.containerReason = containerReason;
+            this.stoppedAt = stoppedAt;
+        }
+
+        static TaskOutcome from(Task task, String containerName) {
+            final Container container = task.containers().stream()
+                    .filter(c -> containerName.equals(c.name()))
+                    .findFirst()
+                    .orElse(task.containers().isEmpty() ? null : task.containers().get(0));
+
+            return new TaskOutcome(task.taskArn(), task.lastStatus(),
+                    container == null ? null : container.exitCode(),
+                    task.stopCodeAsString(),
+                    task.stoppedReason(),
+                    container == null ? null : container.reason(),
+                    task.stoppedAt());
+        }
+
+        boolean isStopped() {
+            return "STOPPED".equals(lastStatus);
+        }
+
+        boolean isMissing() {
+            return "MISSING".equals(lastStatus);
+        }
+
+        /**
+         * Stopped with a non-zero exit code, or without one because the container never ran. A task that disappeared
+         * has an unknown exit code and doesn't count.
+         */
+        boolean isFailed() {
+            return isStopped() && (exitCode == null || exitCode != 0);
+        }
+
+        String describe() {
+            StringBuilder description = new StringBuilder("exit code ").append(exitCode);
+            if (stopCode != null)
+                description.append(", stop code ").append(stopCode);
+            if (stoppedReason != null)
+                description.append(", reason: ").append(stoppedReason);
+            if (containerReason != null)
+                description.append(", container reason: ").append(containerReason);
+            return description.toString();
+        }
+    }
+
+    static class WatchResult {
+        final List<TaskOutcome> outcomes;
+        final TaskOutcome earlyFailure;
+
+        WatchResult(List<TaskOutcome> outcomes, TaskOutcome earlyFailure) {
+            this.outcomes = Collections.unmodifiableList(outcomes);
+            this.earlyFailure = earlyFailure;
+        }
+
+        boolean failedEarly() {
+            return earlyFailure != null;
+        }
+
+        List<TaskOutcome> failures() {
+            return outcomes.stream().filter(TaskOutcome::isFailed).collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package runner;
+
+import org.junit.jupiter.api.Test;
+import report.live.FleetMetrics;
+import report.live.InMemoryControlChannel;
+import report.live.InMemoryMetricsChannel;
+import report.live.IntervalSnapshot;
+import report.live.IntervalStats;
+import report.live.LoadStep;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntToLongFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives the search with a synthetic system under test: every step, the load generator publishes the requests the
+ * system served at its target rate through the live metrics, and follows the next step of the control channel.
+ */
+class CapacitySearchTest {
+
+    private static final long T = 1790518400000L;
+    private static final long INTERVAL_MILLIS = 10_000;
+    /** A warm-up interval and two measured intervals. */
+    private static final long STEP_MILLIS = 3 * INTERVAL_MILLIS;
+    private static final String REQUEST = "GET_Postcode";
+
+    private final InMemoryControlChannel controlChannel = new InMemoryControlChannel();
+    private final InMemoryMetricsChannel metricsChannel = new InMemoryMetricsChannel();
+    private final FleetMetrics fleetMetrics = new FleetMetrics(1, 0);
+
+    @Test
+    void stepsUpUntilAStepFails() {
+        final CapacitySearch search = search(CapacitySearch.Mode.STEP, 200, 1000, 200, 3);
+
+        final List<Integer> targets = run(search, 200, 600);
+
+        assertEquals(List.of(200, 400, 600, 800), targets);
+        assertEquals(600, search.getHighestPassingRpm());
+        final CapacitySearch.StepResult failed = search.getResults().get(3);
+        assertFalse(failed.passed);
+        assertTrue(failed.violation.matches("p95 20\\d\\d ms > 500 ms"), failed.violation);
+        assertEquals(10, failed.achievedRps, 0.001);
+        assertTrue(controlChannel.poll().last, "the load generators are told to stop");
+    }
+
+    @Test
+    void stopsAtTheMaximumRate() {
+        final CapacitySearch search = search(CapacitySearch.Mode.STEP, 200, 700, 200, 3);
+
+        assertEquals(3, search.maxSteps());
+        assertEquals(List.of(200, 400, 600), run(search, 200, 1000));
+        assertEquals(600, search.getHighestPassingRpm());
+        assertTrue(search.report().contains("every tested rate passed"), search.report());
+    }
+
+    @Test
+    void halvesTheIntervalBetweenThePassingAndTheFailingRates() {
+        final CapacitySearch search = search(CapacitySearch.Mode.BINARY, 100, 1000, 0, 3);
+
+        final List<Integer> targets = run(search, 100, 630);
+
+        assertEquals(List.of(100, 550, 775, 662, 606, 634), targets);
+        assertEquals(6, search.maxSteps());
+        assertEquals(606, search.getHighestPassingRpm());
+        assertTrue(search.report().contains("Highest compliant rate: 606 RPM"), search.report());
+    }
+
+    @Test
+    void searchesNothingBelowAFailingStart() {
+        final CapacitySearch search = search(CapacitySearch.Mode.BINARY, 100, 1000, 0, 3);
+
+        assertEquals(List.of(100), run(search, 100, 50));
+        assertEquals(-1, search.getHighestPassingRpm());
+        assertTrue(search.report().contains("the capacity is below 100 RPM"), search.report());
+    }
+
+    @Test
+    void findsTheKneeWhereTheLatencyGrows() {
+        // Without a latency objective every step passes, the knee shows where the system stops scaling
+        final CapacitySearch search = search(CapacitySearch.Mode.STEP, 100, 800, 100, 3,
+                new CapacitySearch.Slo(5, 0, 0));
+
+        run(search, 100, rpm -> rpm <= 400 ? 100 : rpm == 500 ? 250 : 400, Integer.MAX_VALUE);
+
+        assertEquals(8, search.getResults().size());
+        assertEquals(600, search.findKnee().targetRpm);
+    }
+
+    @Test
+    void findsTheKneeWhereTheThroughputStopsGrowing() {
+        final CapacitySearch search = search(CapacitySearch.Mode.STEP, 100, 800, 100, 3,
+                new CapacitySearch.Slo(5, 0, 0));
+
+        run(search, 100, rpm -> 100, 440);
+
+        // The latency stays flat, but 500 RPM only achieved 440
+        assertEquals(5, search.getResults().size());
+        assertEquals(500, search.findKnee().targetRpm);
+        assertTrue(search.findKnee().saturated());
+    }
+
+    @Test
+    void hasNoKneeOnAFlatCurve() {
+        final CapacitySearch search = search(CapacitySearch.Mode.STEP, 100, 500, 100, 3);
+
+        run(search, 100, 1000);
+
+        assertNull(search.findKnee());
+        assertTrue(search.report().contains("No knee within the tested range"), search.report());
+    }
+
+    @Test
+    void checksTheObjectivesInOrder() {
+        final CapacitySearch.Slo slo = new CapacitySearch.Slo(1, 500, 1000, 0.5);
+
+        assertEquals("no requests measured", slo.check(new IntervalStats(), 0, 10, 0));
+        assertNull(slo.check(stats(100, 0, 100), 10, 10, 0.5));
+        // A saturated generator explains everything else it measured
+        assertEquals("load generators saturated in 60% of the step", slo.check(stats(50, 50, 5000), 1, 10, 0.6));
+        assertEquals("KO 2.00% > 1.00%", slo.check(stats(98, 2, 5000), 1, 10, 0));
+        // The histogram keeps 2 significant digits
+        assertTrue(slo.check(stats(100, 0, 5000), 1, 10, 0).matches("p95 50\\d\\d ms > 500 ms"));
+        assertTrue(slo.check(record(stats(98, 0, 100), 2, 2000), 10, 10, 0).matches("p99 20\\d\\d ms > 1000 ms"));
+        assertEquals("achieved 8.9 of 10.0 req/s", slo.check(stats(100, 0, 100), 8.9, 10, 0));
+        assertNull(slo.check(stats(100, 0, 100), 9, 10, 0));
+    }
+
+    @Test
+    void doesNotCheckAZeroLatencyThreshold() {
+        final CapacitySearch.Slo slo = new CapacitySearch.Slo(0, 0, 0);
+
+        assertNull(slo.check(stats(100, 0, 60_000), 10, 10, 1));
+        assertEquals("KO 1.00% > 0.00%", slo.check(stats(99, 1, 100), 10, 10, 0));
+    }
+
+    private CapacitySearch search(CapacitySearch.Mode mode, int startRpm, int maxRpm, int stepRpm, double kneeFactor) {
+        return search(mode, startRpm, maxRpm, stepRpm, kneeFactor, new CapacitySearch.Slo(1, 500, 0));
+    }
+
+    private CapacitySearch search(CapacitySearch.Mode mode, int startRpm, int maxRpm, int stepRpm, double kneeFactor,
+                                  CapacitySearch.Slo slo) {
+        return new CapacitySearch(mode, startRpm, maxRpm, stepRpm, 50, STEP_MILLIS, INTERVAL_MILLIS, 0, slo, kneeFactor,
+                controlChannel);
+    }
+
+    /**
+     * A system that serves up to capacityRpm in 100 ms, and is overloaded beyond: it serves its capacity in 2 seconds.
+     */
+    private List<Integer> run(CapacitySearch search, int startRpm, int capacityRpm) {
+        return run(search, startRpm, rpm -> rpm <= capacityRpm ? 100 : 2000, capacityRpm);
+    }
+
+    /**
+     * Runs the search to its end, like the load generators and the live metrics monitor of a run.
+     *
+     * @return the target of every step
+     */
+    private List<Integer> run(CapacitySearch search, int startRpm, IntToLongFunction responseTime, int capacityRpm) {
+        final List<Integer> targets = new ArrayList<>();
+        int targetRpm = startRpm;
+        long stepStart = T;
+        search.start(stepStart);
+
+        while (!search.isFinished()) {
+            targets.add(targetRpm);
+            final long requests = Math.round(Math.min(targetRpm, capacityRpm) * INTERVAL_MILLIS / 60_000.0);
+            for (long start = stepStart; start < stepStart + STEP_MILLIS; start += INTERVAL_MILLIS) {
+                final IntervalStats stats = record(new IntervalStats(), requests, responseTime.applyAsLong(targetRpm));
+                metricsChannel.publish(new IntervalSnapshot("generator-0", start, INTERVAL_MILLIS, Map.of(REQUEST, stats)));
+                metricsChannel.poll().forEach(fleetMetrics::add);
+                fleetMetrics.complete(start + INTERVAL_MILLIS).forEach(search);
+            }
+
+            final LoadStep step = controlChannel.poll();
+            assertEquals(targets.size(), step.index);
+            targetRpm = (int) step.targetRpm;
+            stepStart = step.startAt;
+        }
+        return targets;
+    }
+
+    private static IntervalStats stats(int ok, int ko, long responseTime) {
+        final IntervalStats stats = new IntervalStats();
+        for (int i = 0; i < ok; i++) {
+            stats.record(responseTime, true);
+        }
+        for (int i = 0; i < ko; i++) {
+            stats.record(responseTime, false);
+        }
+        return stats;
+    }
+
+    private static IntervalStats record(IntervalStats stats, long count, long responseTime) {
+        for (long i = 0; i < count; i++) {
+            stats.record(responseTime, true);
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,185 @@
+package runner;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.ecs.EcsAsyncClient;
+import software.amazon.awssdk.services.ecs.model.RunTaskRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Launches against a local fake ECS endpoint (the endpoint override of ECS_ENDPOINT) that answers RunTask with
+ * scripted responses: throttling, Fargate capacity failures and client errors, then tasks.
+ */
+class FleetLauncherTest {
+
+    private static final String THROTTLED = "{\"__type\":\"ThrottlingException\",\"message\":\"Rate exceeded\"}";
+    private static final String NO_CAPACITY = "{\"tasks\":[],\"failures\":[{\"reason\":\"Capacity is unavailable at this time. Please try again later or in a different availability zone\"}]}";
+    private static final String INVALID = "{\"__type\":\"InvalidParameterException\",\"message\":\"No Container Instances were found in your cluster.\"}";
+
+    private static final Queue<Response> script = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger runTaskCalls = new AtomicInteger();
+    private static final AtomicInteger startedTasks = new AtomicInteger();
+    // Shared by the tests, closing the client takes the quiet period of its event loops
+    private static HttpServer server;
+    private static EcsAsyncClient ecsAsyncClient;
+
+    @BeforeAll
+    static void startFakeEcs() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", FleetLauncherTest::handle);
+        server.start();
+
+        // The client of the ECS backend, so the retries under test are the launcher's own
+        ecsAsyncClient = EcsGeneratorBackend.launchClientBuilder("http://localhost:" + server.getAddress().getPort())
+                .region(Region.EU_WEST_1)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("test", "test")))
+                .build();
+    }
+
+    @BeforeEach
+    void resetFakeEcs() {
+        script.clear();
+        runTaskCalls.set(0);
+        startedTasks.set(0);
+    }
+
+    @AfterAll
+    static void stopFakeEcs() {
+        ecsAsyncClient.close();
+        server.stop(0);
+    }
+
+    @Test
+    void launchesEveryRequest() {
+        final FleetLauncher.LaunchResult result = launcher(4, 3).launch(requests(10));
+
+        assertEquals(10, result.taskArns.size());
+        assertEquals(10, new HashSet<>(result.taskArns).size());
+        assertTrue(result.failures.isEmpty());
+        assertEquals(10, runTaskCalls.get());
+    }
+
+    @Test
+    void retriesThrottlingAndCapacityFailures() {
+        script.add(new Response(400, THROTTLED));
+        script.add(new Response(500, "{\"__type\":\"ServerException\",\"message\":\"Service unavailable\"}"));
+        script.add(new Response(200, NO_CAPACITY));
+
+        final FleetLauncher.LaunchResult result = launcher(1, 4).launch(requests(1));
+
+        assertEquals(List.of("arn:aws:ecs:eu-west-1:000000000000:task/gatling/1"), result.taskArns);
+        assertTrue(result.failures.isEmpty());
+        assertEquals(4, runTaskCalls.get());
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        for (int i = 0; i < 3; i++) {
+            script.add(new Response(200, NO_CAPACITY));
+        }
+
+        final FleetLauncher.LaunchResult result = launcher(1, 3).launch(requests(2));
+
+        // The first request used up the script, the second one started a task
+        assertEquals(1, result.taskArns.size());
+        assertEquals(1, result.failures.size());
+        assertTrue(result.failures.get(0).startsWith("RunTask failed after 3 attempt(s): Capacity is unavailable"), result.failures.get(0));
+        assertEquals(4, runTaskCalls.get());
+    }
+
+    @Test
+    void doesNotRetryClientErrors() {
+        script.add(new Response(400, INVALID));
+
+        final FleetLauncher.LaunchResult result = launcher(1, 5).launch(requests(1));
+
+        assertTrue(result.taskArns.isEmpty());
+        assertEquals(1, result.failures.size());
+        assertTrue(result.failures.get(0).startsWith("No Container Instances were found"), result.failures.get(0));
+        assertEquals(1, runTaskCalls.get());
+    }
+
+    @Test
+    void backsOffWithFullJitter() {
+        final FleetLauncher launcher = new FleetLauncher(ecsAsyncClient, 1, 10, 100, 1000);
+
+        for (int attempt = 1; attempt <= 10; attempt++) {
+            final long ceiling = Math.min(1000, 100L << (attempt - 1));
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (int i = 0; i < 1000; i++) {
+                final long backoff = launcher.backoffMillis(attempt);
+                min = Math.min(min, backoff);
+                max = Math.max(max, backoff);
+            }
+            assertTrue(min >= 0 && max <= ceiling, "attempt " + attempt + ": " + min + ".." + max + " outside 0.." + ceiling);
+            // Below the base delay too, a capped delay would never be
+            assertTrue(min < 100, "attempt " + attempt + ": no delay below the base delay");
+        }
+    }
+
+    private FleetLauncher launcher(int maxConcurrency, int maxAttempts) {
+        return new FleetLauncher(ecsAsyncClient, maxConcurrency, maxAttempts, 1, 10);
+    }
+
+    private static List<RunTaskRequest> requests(int count) {
+        final List<RunTaskRequest> requests = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            requests.add(RunTaskRequest.builder().cluster("gatling").taskDefinition("gatling-tests").count(1).build());
+        }
+        return requests;
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        final String target = exchange.getRequestHeaders().getFirst("X-Amz-Target");
+        Response response;
+        if (target == null || !target.endsWith(".RunTask")) {
+            response = new Response(400, "{\"__type\":\"UnknownOperationException\"}");
+        } else {
+            runTaskCalls.incrementAndGet();
+            response = script.poll();
+            if (response == null) {
+                response = new Response(200, "{\"tasks\":[{\"taskArn\":\"arn:aws:ecs:eu-west-1:000000000000:task/gatling/"
+                        + startedTasks.incrementAndGet() + "\",\"lastStatus\":\"PROVISIONING\"}],\"failures\":[]}");
+            }
+        }
+
+        final byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/x-amz-json-1.1");
+        exchange.sendResponseHeaders(response.status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static class Response {
+        final int status;
+        final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
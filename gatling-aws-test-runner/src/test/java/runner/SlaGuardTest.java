@@ -0,0 +1,170 @@
+package runner;
+
+import org.junit.jupiter.api.Test;
+import report.live.FleetInterval;
+import report.live.FleetMetrics;
+import report.live.IntervalSnapshot;
+import report.live.IntervalStats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlaGuardTest {
+
+    private static final long INTERVAL_MILLIS = 10_000;
+    private static final String REQUEST = "GET_Postcode";
+
+    private final List<String> breaches = new ArrayList<>();
+
+    @Test
+    void abortsOnceARuleStaysBreachedForTheSustainPeriod() {
+        final SlaGuard guard = guard("*:ko<5", 20_000, 1, 0);
+
+        guard.accept(interval(0, 90, 10));
+        assertTrue(breaches.isEmpty(), "breached for 10 of 20 seconds");
+
+        guard.accept(interval(INTERVAL_MILLIS, 90, 10));
+        assertEquals(1, breaches.size());
+        assertTrue(breaches.get(0).startsWith("SLA rule *:ko<5 breached for 20 seconds: KO 10.00%"), breaches.get(0));
+        assertEquals(breaches.get(0), guard.getAbortReason());
+    }
+
+    @Test
+    void aRuleThatIsMetAgainStartsItsSustainPeriodOver() {
+        final SlaGuard guard = guard("*:ko<5", 20_000, 1, 0);
+
+        guard.accept(interval(0, 90, 10));
+        guard.accept(interval(INTERVAL_MILLIS, 100, 0));
+        guard.accept(interval(2 * INTERVAL_MILLIS, 90, 10));
+
+        assertTrue(breaches.isEmpty());
+        assertNull(guard.getAbortReason());
+    }
+
+    @Test
+    void judgesTheWholeWindow() {
+        final SlaGuard guard = guard(REQUEST + ":p95<500", 0, 3, 0);
+
+        guard.accept(interval(0, 100, 0, 100));
+        guard.accept(interval(INTERVAL_MILLIS, 100, 0, 100));
+        // 10 slow requests of 300 in the window stay below the 95th percentile
+        guard.accept(interval(2 * INTERVAL_MILLIS, 90, 0, 100, 10, 2000));
+        assertTrue(breaches.isEmpty());
+
+        // Once the fast intervals left the window they do not
+        guard.accept(interval(3 * INTERVAL_MILLIS, 0, 0, 100, 100, 2000));
+        assertEquals(1, breaches.size());
+        // The histogram keeps 2 significant digits
+        assertTrue(breaches.get(0).matches(".*: p95 20\\d\\d ms"), breaches.get(0));
+    }
+
+    @Test
+    void doesNotJudgeWindowsWithTooFewRequests() {
+        final SlaGuard guard = guard("*:ko<5", 0, 1, 50);
+
+        guard.accept(interval(0, 10, 10));
+        assertTrue(breaches.isEmpty());
+
+        guard.accept(interval(INTERVAL_MILLIS, 40, 10));
+        assertEquals(1, breaches.size());
+    }
+
+    @Test
+    void onlyCountsTheRequestsOfTheRule() {
+        final SlaGuard guard = guard("Other:ko<5", 0, 1, 1);
+
+        guard.accept(interval(0, 0, 100));
+
+        assertTrue(breaches.isEmpty());
+    }
+
+    @Test
+    void ignoresIntervalsBeforeEvaluateFrom() {
+        final SlaGuard guard = new SlaGuard(SlaGuard.parseRules("*:ko<5"), 2, 0, 0, 2 * INTERVAL_MILLIS, breaches::add);
+
+        guard.accept(interval(0, 0, 100));
+        guard.accept(interval(INTERVAL_MILLIS, 0, 100));
+        assertTrue(breaches.isEmpty());
+
+        // The window doesn't hold the ignored intervals either
+        guard.accept(interval(2 * INTERVAL_MILLIS, 100, 0));
+        assertTrue(breaches.isEmpty());
+
+        guard.accept(interval(3 * INTERVAL_MILLIS, 0, 100));
+        assertEquals(1, breaches.size());
+    }
+
+    @Test
+    void callsTheBreachCallbackOnlyOnce() {
+        final SlaGuard guard = guard("*:ko<5;" + REQUEST + ":p99<100", 0, 1, 0);
+
+        for (int i = 0; i < 5; i++) {
+            guard.accept(interval(i * INTERVAL_MILLIS, 0, 100));
+        }
+
+        assertEquals(1, breaches.size());
+        assertEquals(breaches.get(0), guard.getAbortReason());
+    }
+
+    @Test
+    void parsesRules() {
+        final List<SlaGuard.Rule> rules = SlaGuard.parseRules(" *:ko<5, p95 < 800 ;GET_Postcode:P99<2000.5;");
+
+        assertEquals(3, rules.size());
+        assertEquals("*:ko<5", rules.get(0).toString());
+        assertEquals("*:p95<800", rules.get(1).toString());
+        assertEquals("GET_Postcode:p99<2000.5", rules.get(2).toString());
+        assertEquals(SlaGuard.ALL_REQUESTS, rules.get(0).requestName);
+        assertTrue(SlaGuard.parseRules(null).isEmpty());
+        assertTrue(SlaGuard.parseRules(" ").isEmpty());
+    }
+
+    @Test
+    void rejectsInvalidRules() {
+        assertThrows(IllegalArgumentException.class, () -> SlaGuard.parseRules("ko<5"));
+        assertThrows(IllegalArgumentException.class, () -> SlaGuard.parseRules(":ko<5"));
+        assertThrows(IllegalArgumentException.class, () -> SlaGuard.parseRules("*:ko>5"));
+        assertThrows(IllegalArgumentException.class, () -> SlaGuard.parseRules("*:ko<5<6"));
+        assertThrows(IllegalArgumentException.class, () -> SlaGuard.parseRules("*:mean<5"));
+        assertThrows(IllegalArgumentException.class, () -> SlaGuard.parseRules("*:ko<five"));
+        assertThrows(IllegalArgumentException.class, () -> SlaGuard.parseRules("*:pmax<5"));
+    }
+
+    private SlaGuard guard(String rules, long sustainMillis, int windowIntervals, long minRequests) {
+        return new SlaGuard(SlaGuard.parseRules(rules), windowIntervals, sustainMillis, minRequests, 0, breaches::add);
+    }
+
+    private static FleetInterval interval(long start, int ok, int ko) {
+        return interval(start, ok, ko, 100);
+    }
+
+    private static FleetInterval interval(long start, int ok, int ko, long responseTime) {
+        return interval(start, ok, ko, responseTime, 0, 0);
+    }
+
+    /**
+     * One interval of a single generator, through FleetMetrics like the live metrics.
+     */
+    private static FleetInterval interval(long start, int ok, int ko, long responseTime, int slow, long slowResponseTime) {
+        final IntervalStats stats = new IntervalStats();
+        for (int i = 0; i < ok; i++) {
+            stats.record(responseTime, true);
+        }
+        for (int i = 0; i < ko; i++) {
+            stats.record(responseTime, false);
+        }
+        for (int i = 0; i < slow; i++) {
+            stats.record(slowResponseTime, true);
+        }
+
+        final FleetMetrics metrics = new FleetMetrics(1, 0);
+        metrics.add(new IntervalSnapshot("generator-0", start, INTERVAL_MILLIS, Map.of(REQUEST, stats)));
+        return metrics.complete(start + 2 * INTERVAL_MILLIS).get(0);
+    }
+}
@@ -0,0 +1,188 @@
+package runner;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TaskWatcherTest {
+
+    private static final Duration MIN_POLL = Duration.ofMillis(10);
+    private static final Duration MAX_POLL = Duration.ofSeconds(60);
+    private static final Duration TOLERANCE = Duration.ofMinutes(1);
+    private static final List<String> TASKS = List.of("task-0", "task-1");
+
+    @Test
+    void failsAsSoonAsAGeneratorStopsEarly() throws InterruptedException {
+        final Instant started = Instant.now();
+        final FakeTasks tasks = new FakeTasks(
+                arn -> running(arn),
+                arn -> arn.equals("task-1") ? stopped(arn, 1, started.plusSeconds(60)) : running(arn));
+
+        final TaskWatcher.WatchResult result = watcher(tasks).watch(TASKS, started, false, Duration.ofMinutes(10));
+
+        assertTrue(result.failedEarly());
+        assertEquals("task-1", result.earlyFailure.taskArn);
+        assertEquals(2, tasks.polls);
+    }
+
+    @Test
+    void judgesAnEarlyStopByItsStopTime() throws InterruptedException {
+        // The watch notices the stop after the expected end, but the generator stopped 8 minutes before it
+        final Instant started = Instant.now().minus(Duration.ofMinutes(20));
+        final FakeTasks tasks = new FakeTasks(arn -> stopped(arn, 1, started.plus(Duration.ofMinutes(2))));
+
+        final TaskWatcher.WatchResult result = watcher(tasks).watch(TASKS, started, false, Duration.ofMinutes(10));
+
+        assertTrue(result.failedEarly());
+        assertEquals("task-0", result.earlyFailure.taskArn);
+    }
+
+    @Test
+    void reportsANonZeroExitAtTheEnd() throws InterruptedException {
+        final Instant started = Instant.now().minus(Duration.ofMinutes(10));
+        // Within the tolerance of the expected end, e.g. a Gatling assertion that failed
+        final Instant stoppedAt = started.plus(Duration.ofMinutes(9).plusSeconds(30));
+        final FakeTasks tasks = new FakeTasks(arn -> stopped(arn, arn.equals("task-0") ? 2 : 0, stoppedAt));
+
+        final TaskWatcher.WatchResult result = watcher(tasks).watch(TASKS, started, false, Duration.ofMinutes(10));
+
+        assertFalse(result.failedEarly());
+        assertEquals(2, result.outcomes.size());
+        assertEquals(1, result.failures().size());
+        assertEquals("task-0", result.failures().get(0).taskArn);
+        assertTrue(result.failures().get(0).describe().startsWith("exit code 2"));
+    }
+
+    @Test
+    void waitsForATaskMissingWithinTheGracePeriod() throws InterruptedException {
+        final Instant started = Instant.now();
+        final FakeTasks tasks = new FakeTasks(
+                arn -> missing(arn),
+                arn -> running(arn),
+                arn -> stopped(arn, 0, Instant.now()));
+
+        final TaskWatcher.WatchResult result = watcher(tasks, Duration.ofMinutes(1)).watch(TASKS, started, false, Duration.ZERO);
+
+        assertFalse(result.failedEarly());
+        assertTrue(result.failures().isEmpty());
+        assertEquals(3, tasks.polls);
+    }
+
+    @Test
+    void countsATaskMissingBeyondTheGracePeriodAsStopped() throws InterruptedException {
+        final Instant started = Instant.now();
+        final FakeTasks tasks = new FakeTasks(arn -> missing(arn));
+
+        final TaskWatcher.WatchResult result = watcher(tasks, Duration.ofMillis(50)).watch(TASKS, started, false, Duration.ofMinutes(10));
+
+        assertTrue(tasks.polls > 1, "pending within the grace period");
+        // Gone before the expected end, the same as a generator that stopped early
+        assertTrue(result.failedEarly());
+        // Its exit code is unknown
+        assertTrue(result.failures().isEmpty());
+    }
+
+    @Test
+    void awaitsStoppedOrMissingTasks() throws InterruptedException {
+        final FakeTasks tasks = new FakeTasks(
+                arn -> running(arn),
+                arn -> arn.equals("task-0") ? missing(arn) : stopped(arn, 0, Instant.now()));
+
+        assertTrue(watcher(tasks).awaitStopped(TASKS, Duration.ofSeconds(10)));
+        assertEquals(2, tasks.polls);
+        assertFalse(watcher(new FakeTasks(arn -> running(arn))).awaitStopped(TASKS, Duration.ofMillis(30)));
+    }
+
+    @Test
+    void pollsUntilTheCoordinatedStart() {
+        final TaskWatcher watcher = new TaskWatcher(new FakeTasks(), Duration.ofSeconds(5), MAX_POLL, TOLERANCE);
+        final Instant started = Instant.now();
+        final Instant expectedEnd = started.plus(Duration.ofMinutes(30));
+
+        assertEquals(MAX_POLL, watcher.nextPollInterval(started.minus(Duration.ofMinutes(10)), started, expectedEnd));
+        assertEquals(Duration.ofSeconds(30), watcher.nextPollInterval(started.minusSeconds(30), started, expectedEnd));
+        assertEquals(Duration.ofSeconds(5), watcher.nextPollInterval(started.minusSeconds(2), started, expectedEnd));
+    }
+
+    @Test
+    void pollsOftenDuringTheStartUpAndNearTheEnd() {
+        final TaskWatcher watcher = new TaskWatcher(new FakeTasks(), Duration.ofSeconds(5), MAX_POLL, TOLERANCE);
+        final Instant started = Instant.now();
+        final Instant expectedEnd = started.plus(Duration.ofMinutes(30));
+
+        // The start-up phase lasts 2 minutes
+        assertEquals(Duration.ofSeconds(5), watcher.nextPollInterval(started.plus(Duration.ofMinutes(2)).minusMillis(1), started, expectedEnd));
+        assertEquals(MAX_POLL, watcher.nextPollInterval(started.plus(Duration.ofMinutes(2)), started, expectedEnd));
+        // Half the remaining time once it is less than twice the maximum
+        assertEquals(Duration.ofMillis(30_500), watcher.nextPollInterval(expectedEnd.minusSeconds(61), started, expectedEnd));
+        assertEquals(Duration.ofSeconds(5), watcher.nextPollInterval(expectedEnd.minus(MAX_POLL), started, expectedEnd));
+        assertEquals(Duration.ofSeconds(5), watcher.nextPollInterval(expectedEnd.plusSeconds(30), started, expectedEnd));
+        // Without an expected end
+        assertEquals(Duration.ofSeconds(5), watcher.nextPollInterval(started.plus(Duration.ofMinutes(10)), started, null));
+    }
+
+    @Test
+    void describesAStoppedTask() {
+        final TaskWatcher.TaskOutcome outcome = new TaskWatcher.TaskOutcome("task-0", "STOPPED", null, "TaskFailedToStart",
+                "CannotPullContainerError", null, null);
+
+        assertTrue(outcome.isFailed(), "a container that never ran has no exit code");
+        assertEquals("exit code null, stop code TaskFailedToStart, reason: CannotPullContainerError", outcome.describe());
+        assertNull(new TaskWatcher.WatchResult(List.of(outcome), null).earlyFailure);
+        assertSame(outcome, new TaskWatcher.WatchResult(List.of(outcome), null).failures().get(0));
+    }
+
+    private static TaskWatcher watcher(FakeTasks tasks) {
+        return new TaskWatcher(tasks, MIN_POLL, MAX_POLL, TOLERANCE);
+    }
+
+    private static TaskWatcher watcher(FakeTasks tasks, Duration missingGrace) {
+        return new TaskWatcher(tasks, MIN_POLL, MAX_POLL, TOLERANCE, missingGrace);
+    }
+
+    private static TaskWatcher.TaskOutcome running(String arn) {
+        return new TaskWatcher.TaskOutcome(arn, "RUNNING", null, null, null, null, null);
+    }
+
+    private static TaskWatcher.TaskOutcome missing(String arn) {
+        return new TaskWatcher.TaskOutcome(arn, "MISSING", null, null, "MISSING", null, null);
+    }
+
+    private static TaskWatcher.TaskOutcome stopped(String arn, int exitCode, Instant stoppedAt) {
+        return new TaskWatcher.TaskOutcome(arn, "STOPPED", exitCode, "EssentialContainerExited", null, null, stoppedAt);
+    }
+
+    /**
+     * Answers each poll with the next of its states for every task, and keeps answering the last one.
+     */
+    private static class FakeTasks implements TaskWatcher.TaskSource {
+
+        private final List<Function<String, TaskWatcher.TaskOutcome>> states;
+        private int polls;
+
+        @SafeVarargs
+        FakeTasks(Function<String, TaskWatcher.TaskOutcome>... states) {
+            this.states = List.of(states);
+        }
+
+        @Override
+        public List<TaskWatcher.TaskOutcome> describe(Collection<String> taskArns) {
+            final Function<String, TaskWatcher.TaskOutcome> state = states.get(Math.min(polls, states.size() - 1));
+            polls++;
+            final List<TaskWatcher.TaskOutcome> outcomes = new ArrayList<>();
+            taskArns.forEach(arn -> outcomes.add(state.apply(arn)));
+            return outcomes;
+        }
+    }
+}
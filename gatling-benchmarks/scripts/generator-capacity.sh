@@ -0,0 +1,106 @@
+#!/bin/bash
+# Finds the highest rate a single load generator sustains at every generator profile, on this machine and against the
+# Postcode stub (benchmark.stub.PostcodeStub) instead of api.postcodes.io: per profile a binary capacity search of the
+# runner (local backend, one generator with the heap, GC and processor count of the profile) whose steps fail once the
+# generator was saturated in more than a fifth of their intervals or falls behind its target. The stub is never the
+# limit, so the highest passing rate is the capacity of the generator itself.
+# Build the project first (mvn package), the generators run from the jar of this module.
+# ENV VARS:
+# - PROFILES: The generator profiles to measure. Default "small medium large"
+# - BENCHMARK_JAR: The jar with dependencies of gatling-benchmarks, the classpath of the stub and of the generators
+# - RESULTS_DIRECTORY: Where the runs and generator-capacity.txt go. Default target/generator-capacity
+# - STUB_PORT, STUB_CORES: Port of the stub, which the local environment of EnvironmentConfig.XML points at, and the
+#   cores it gets. Default 8080 / 2
+# - SEARCH_START_RPM, SEARCH_MAX_RPM, SEARCH_RESOLUTION_RPM, SEARCH_STEP_SECONDS, SEARCH_WARMUP_SECONDS, USERS: The
+#   search, see the runner README. Default 6000 / 1800000 / 6000 / 60 / 15 / 1000
+# The machine needs the cores of the profile plus STUB_CORES, and the memory of the profile: with fewer cores the
+# generator, the runner and the stub share them (taskset pins them apart where there are enough) and the results are
+# lower bounds.
+set -e
+
+cd "$(dirname "$0")/.."
+BENCHMARK_JAR=$(realpath ${BENCHMARK_JAR:-target/gatling-benchmarks-1.0-SNAPSHOT-jar-with-dependencies.jar})
+RESULTS_DIRECTORY=$(realpath -m ${RESULTS_DIRECTORY:-target/generator-capacity})
+STUB_PORT=${STUB_PORT:-8080}
+STUB_CORES=${STUB_CORES:-2}
+CORES=$(nproc)
+SUMMARY=${RESULTS_DIRECTORY}/generator-capacity.txt
+
+if [ ! -f "${BENCHMARK_JAR}" ]; then
+  echo "${BENCHMARK_JAR} doesn't exist, build the project with mvn package first"
+  exit 1
+fi
+mkdir -p ${RESULTS_DIRECTORY}
+: > ${SUMMARY}
+
+# The settings of GeneratorProfile in gatling-stack
+function profile_settings {
+  case $1 in
+    small) VCPUS=1; JVM_HEAP="-Xms1280m -Xmx1280m"; JVM_GC="-XX:+UseParallelGC" ;;
+    medium) VCPUS=2; JVM_HEAP="-Xms2816m -Xmx2816m"; JVM_GC="-XX:+UseG1GC -XX:+ParallelRefProcEnabled" ;;
+    large) VCPUS=4; JVM_HEAP="-Xms6g -Xmx6g"; JVM_GC="-XX:+UseG1GC -XX:+ParallelRefProcEnabled -XX:MaxGCPauseMillis=100" ;;
+    *) echo "Unknown generator profile $1, use small, medium or large"; exit 1 ;;
+  esac
+}
+
+# The stub on the last STUB_CORES cores, the generators on the first ones
+STUB_PIN=()
+if command -v taskset >/dev/null 2>&1 && [ ${CORES} -gt ${STUB_CORES} ]; then
+  STUB_PIN=(taskset -c $((CORES - STUB_CORES))-$((CORES - 1)))
+fi
+"${STUB_PIN[@]}" java -Xmx512m -Dlogback.configurationFile=logback-aggregator.xml -cp ${BENCHMARK_JAR} benchmark.stub.PostcodeStub \
+  --port ${STUB_PORT} --threads ${STUB_CORES} > ${RESULTS_DIRECTORY}/stub.log 2>&1 &
+STUB_PID=$!
+trap "kill ${STUB_PID} 2>/dev/null" EXIT
+sleep 3
+
+for PROFILE in ${PROFILES:-small medium large}; do
+  profile_settings ${PROFILE}
+  RUN_ID=capacity-${PROFILE}-$(date +%Y%m%d-%H%M%S)
+
+  # The runner sizes the generator by the cores it sees: taskset gives it those of the profile, where there are enough
+  # besides the stub's, and the processor count of the profile applies either way
+  GENERATOR_PIN=()
+  if [ ${#STUB_PIN[@]} -gt 0 ] && [ $((VCPUS + STUB_CORES)) -le ${CORES} ]; then
+    GENERATOR_PIN=(taskset -c 0-$((VCPUS - 1)))
+  else
+    echo "WARNING - ${CORES} core(s) don't fit the ${VCPUS} of the ${PROFILE} profile next to the stub, they share the cores"
+  fi
+
+  echo "Generator capacity of the ${PROFILE} profile (${VCPUS} vCPU, ${JVM_HEAP}, ${JVM_GC}), run ${RUN_ID}"
+  (cd ../gatling-aws-test-runner && \
+    JAVA_TOOL_OPTIONS="-XX:ActiveProcessorCount=${VCPUS}" \
+    BACKEND=local \
+    LOCAL_CLASSPATH=${BENCHMARK_JAR} \
+    LOCAL_JAVA_OPTS="${JVM_HEAP} ${JVM_GC}" \
+    LOCAL_DIRECTORY=${RESULTS_DIRECTORY}/local-runs \
+    LOGS_DIRECTORY=${RESULTS_DIRECTORY}/runs \
+    RUN_ID=${RUN_ID} \
+    GENERATOR_PROFILE=${PROFILE} \
+    NUM_OF_LOAD_GENERATORS=1 \
+    USERS=${USERS:-1000} \
+    SIMULATION=simulations.PostCode.PostCodeSimulation \
+    SIMULATION_TYPE=capacitysearch \
+    ENVIRONMENT=local \
+    TARGET_RPM=${SEARCH_START_RPM:-6000} \
+    RAMP_UP_DURATION=0 \
+    PEAK_LOAD_DURATION=0 \
+    START_DELAY_SECONDS=20 \
+    SEARCH_MODE=binary \
+    SEARCH_START_RPM=${SEARCH_START_RPM:-6000} \
+    SEARCH_MAX_RPM=${SEARCH_MAX_RPM:-1800000} \
+    SEARCH_RESOLUTION_RPM=${SEARCH_RESOLUTION_RPM:-6000} \
+    SEARCH_STEP_SECONDS=${SEARCH_STEP_SECONDS:-60} \
+    SEARCH_WARMUP_SECONDS=${SEARCH_WARMUP_SECONDS:-15} \
+    SLO_P95_MS=0 \
+    SLO_MAX_SATURATED_SHARE=0.2 \
+    "${GENERATOR_PIN[@]}" mvn -B -q compile exec:exec) > ${RESULTS_DIRECTORY}/${RUN_ID}.log 2>&1 || \
+    echo "The run failed, see ${RESULTS_DIRECTORY}/${RUN_ID}.log"
+
+  RESULT=$(grep -h -o "Highest compliant rate: .*\|No step met the SLOs.*" ${RESULTS_DIRECTORY}/${RUN_ID}.log | tail -1)
+  echo "${PROFILE} (${VCPUS} vCPU): ${RESULT:-no result, see ${RUN_ID}.log}" | tee -a ${SUMMARY}
+done
+
+echo "******************** GENERATOR CAPACITY ********************"
+cat ${SUMMARY}
+echo "************************************************************"
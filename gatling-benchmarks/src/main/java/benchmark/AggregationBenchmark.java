@@ -0,0 +1,110 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import report.BinaryLogReader;
+import report.LogMerger;
+import report.LogRecord;
+import report.RecordSource;
+import report.ReportAggregator;
+import report.RunStatistics;
+import report.SimulationLogReader;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The consolidated report of a run of {@code generators} load generators with 400,000 requests between them: the k-way
+ * merge of their records alone, the run statistics (HDR histograms and time series) alone, and the whole aggregation
+ * of their text and binary logs as ReportAggregator does it, reading, parsing, merging and aggregating in one pass.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AggregationBenchmark {
+
+    static final int REQUESTS = 400_000;
+
+    @Param({"1", "4", "16"})
+    public int generators;
+
+    private List<LogRecord[]> records;
+    private List<String> texts;
+    private List<byte[]> binaries;
+    private LogRecord[] merged;
+
+    @Setup
+    public void setUp() throws IOException {
+        records = new ArrayList<>(generators);
+        texts = new ArrayList<>(generators);
+        binaries = new ArrayList<>(generators);
+        for (int generator = 0; generator < generators; generator++) {
+            final List<String> lines = SyntheticLog.lines(generator, REQUESTS / generators);
+            records.add(SyntheticLog.records(lines));
+            texts.add(SyntheticLog.text(lines));
+            binaries.add(SyntheticLog.binary(lines));
+        }
+        final List<LogRecord> all = new ArrayList<>();
+        new LogMerger(recordSources()).merge(all::add);
+        merged = all.toArray(new LogRecord[0]);
+    }
+
+    @Benchmark
+    public long merge(Blackhole blackhole) throws IOException {
+        return new LogMerger(recordSources()).merge(blackhole::consume);
+    }
+
+    @Benchmark
+    public RunStatistics statistics() {
+        // The bucket width and count of ReportAggregator
+        final RunStatistics statistics = new RunStatistics(1000, 1000);
+        for (LogRecord record : merged) {
+            statistics.accept(record);
+        }
+        return statistics;
+    }
+
+    @Benchmark
+    public RunStatistics aggregateText() throws IOException {
+        final List<RecordSource> sources = new ArrayList<>(generators);
+        for (int generator = 0; generator < generators; generator++) {
+            sources.add(new SimulationLogReader("generator-" + generator, new BufferedReader(new StringReader(texts.get(generator)), 64 * 1024)));
+        }
+        return ReportAggregator.aggregate(sources);
+    }
+
+    @Benchmark
+    public RunStatistics aggregateBinary() throws IOException {
+        final List<RecordSource> sources = new ArrayList<>(generators);
+        for (int generator = 0; generator < generators; generator++) {
+            sources.add(new BinaryLogReader("generator-" + generator, new ByteArrayInputStream(binaries.get(generator))));
+        }
+        return ReportAggregator.aggregate(sources);
+    }
+
+    private List<RecordSource> recordSources() {
+        final List<RecordSource> sources = new ArrayList<>(generators);
+        for (int generator = 0; generator < generators; generator++) {
+            sources.add(new SyntheticLog.RecordArraySource("generator-" + generator, records.get(generator)));
+        }
+        return sources;
+    }
+}
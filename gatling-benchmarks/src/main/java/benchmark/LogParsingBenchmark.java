@@ -0,0 +1,100 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import report.BinaryLogReader;
+import report.BinaryLogWriter;
+import report.LogRecord;
+import report.RecordSource;
+import report.SimulationLogReader;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a simulation.log, per line: parsing a text line (LogRecord.parse), streaming the records of a text log and
+ * of its binary version, and writing the binary version (what the agent does while Gatling runs with LOG_FORMAT=binary).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LogParsingBenchmark {
+
+    static final int REQUESTS = 100_000;
+    /** The REQUEST records plus the RUN header and a START and END per user. */
+    static final int LINES = REQUESTS + 201;
+
+    private List<String> lines;
+    private String text;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() {
+        lines = SyntheticLog.lines(0, REQUESTS);
+        text = SyntheticLog.text(lines);
+        binary = SyntheticLog.binary(lines);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void parseLines(Blackhole blackhole) {
+        for (String line : lines) {
+            blackhole.consume(LogRecord.parse(line));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public long readText() throws IOException {
+        try (SimulationLogReader reader = new SimulationLogReader("text", new BufferedReader(new StringReader(text), 64 * 1024))) {
+            return count(reader);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public long readBinary() throws IOException {
+        try (BinaryLogReader reader = new BinaryLogReader("binary", new ByteArrayInputStream(binary))) {
+            return count(reader);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public long writeBinary() throws IOException {
+        try (BinaryLogWriter writer = new BinaryLogWriter(OutputStream.nullOutputStream())) {
+            for (String line : lines) {
+                writer.write(line);
+            }
+            return writer.getLines();
+        }
+    }
+
+    private static long count(RecordSource source) throws IOException {
+        long records = 0;
+        long responseTimes = 0;
+        for (LogRecord record = source.next(); record != null; record = source.next()) {
+            records++;
+            responseTimes += record.responseTime();
+        }
+        return records + responseTimes;
+    }
+}
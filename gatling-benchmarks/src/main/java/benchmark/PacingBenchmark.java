@@ -0,0 +1,64 @@
+package benchmark;
+
+import CommonFunctions.SimulationDetails;
+import CommonFunctions.ThroughputController;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import scala.Tuple2;
+import scala.Tuple3;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The pacing of the workload models: the iteration pacing of the closed model (SimulationDetails.calculateIterationPacing)
+ * and taking an arrival from the schedule of the open model (ThroughputController.takeArrival), which every virtual
+ * user does before every iteration, by one user at a time and by four at once. The schedule of the controller is always
+ * due, so the users never wait and the measurement is the cost of the schedule itself.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PacingBenchmark {
+
+    // Fields rather than constants, so the pacing isn't folded into a constant
+    private double targetRps = 10;
+    private int users = 200;
+    private double requestsPerIteration = 1.45;
+
+    private ThroughputController throughputController;
+
+    @Setup
+    public void setUp() {
+        throughputController = new ThroughputController(1e9, 0, 1);
+    }
+
+    @Benchmark
+    public Tuple2<Object, Object> iterationPacing() {
+        return SimulationDetails.calculateIterationPacing(targetRps, users, requestsPerIteration);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Tuple3<FiniteDuration, Object, Object> takeArrival() {
+        return throughputController.takeArrival();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Tuple3<FiniteDuration, Object, Object> takeArrivalContended() {
+        return throughputController.takeArrival();
+    }
+}
@@ -0,0 +1,66 @@
+package benchmark;
+
+import CommonFunctions.SimulationDetails;
+import config.ConfigDetails;
+import config.EnvironmentConfig;
+import config.SimulationConfig;
+import config.SimulationSettings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import scala.xml.Elem;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading the configuration of a simulation, which every load generator does once as it starts (see
+ * SimulationDetails): reading and parsing PostCodeConfig.XML and EnvironmentConfig.XML, parsing the simulation config
+ * alone, and looking up the resolved settings of a simulation type, which the scenarios do after that.
+ * The environment variables of a run (USERS, TARGET_RPM, ...) must not be set, the values come from the config xml.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SimulationConfigBenchmark {
+
+    private static final String SIMULATION = "PostCode";
+    private static final String CONFIG_FILE = "PostCodeConfig.XML";
+
+    private Elem simulationConfigXml;
+
+    @Setup
+    public void setUp() {
+        simulationConfigXml = SimulationDetails.getSimulationConfigXML(SIMULATION, "");
+    }
+
+    @Benchmark
+    public SimulationConfig loadSimulationConfig() {
+        return SimulationConfig.parse(CONFIG_FILE, SimulationDetails.getSimulationConfigXML(SIMULATION, ""));
+    }
+
+    @Benchmark
+    public SimulationConfig parseSimulationConfig() {
+        return SimulationConfig.parse(CONFIG_FILE, simulationConfigXml);
+    }
+
+    @Benchmark
+    public EnvironmentConfig loadEnvironmentConfig() {
+        return EnvironmentConfig.parse(ConfigDetails.getEnvironmentConfigXML());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public SimulationSettings resolvedSettings() {
+        return SimulationDetails.getSimulationSettings(SIMULATION, "loadtest");
+    }
+}
@@ -0,0 +1,109 @@
+package benchmark;
+
+import report.BinaryLogWriter;
+import report.LogRecord;
+import report.RecordSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The simulation.log of a load generator running the PostCode simulation, in the Gatling 3.4 layout: a RUN header,
+ * the virtual users starting, requests of the two PostCode requests in the order they ended (about 1% KO) and the users
+ * ending. The response times are log-normal around 40 ms. The same seed gives the same log, so the benchmarks of a
+ * commit and of its parent read the same records.
+ */
+public final class SyntheticLog {
+
+    static final String SCENARIO = "Postcode_RandomPostCodesOnly";
+    static final String[] REQUESTS = {"GET_Postcode_Random", "GET_Postcode"};
+    static final String KO_MESSAGE = "status.find.in(200,201,202,203,204,205,206,207,208,209,304), but actually found 503";
+    private static final int USERS = 100;
+    private static final long START = 1_790_000_000_000L;
+
+    private SyntheticLog() {
+    }
+
+    /**
+     * @param generator  the load generator, which offsets the timestamps a little like the logs of a real fleet
+     * @param requests   how many REQUEST records
+     */
+    public static List<String> lines(int generator, int requests) {
+        final Random random = new Random(31L * generator + requests);
+        final List<String> lines = new ArrayList<>(requests + 2 * USERS + 1);
+        long timestamp = START + generator * 7L;
+        lines.add("RUN\tsimulations.PostCode.PostCodeSimulation\tpostcodesimulation\t" + timestamp + "\t \t3.4.2");
+        for (int user = 0; user < USERS; user++) {
+            lines.add("USER\t" + SCENARIO + "\tSTART\t" + (timestamp += random.nextInt(3)));
+        }
+        for (int i = 0; i < requests; i++) {
+            // Requests end about every millisecond
+            timestamp += random.nextInt(3);
+            final long responseTime = Math.max(1, Math.round(Math.exp(3.7 + 0.5 * random.nextGaussian())));
+            final boolean ok = random.nextInt(100) != 0;
+            lines.add("REQUEST\t\t" + REQUESTS[random.nextInt(REQUESTS.length)] + "\t" + (timestamp - responseTime) + "\t" + timestamp
+                    + (ok ? "\tOK\t " : "\tKO\t" + KO_MESSAGE));
+        }
+        for (int user = 0; user < USERS; user++) {
+            lines.add("USER\t" + SCENARIO + "\tEND\t" + (timestamp += random.nextInt(3)));
+        }
+        return lines;
+    }
+
+    public static String text(List<String> lines) {
+        final StringBuilder text = new StringBuilder(lines.size() * 64);
+        for (String line : lines) {
+            text.append(line).append('\n');
+        }
+        return text.toString();
+    }
+
+    public static byte[] binary(List<String> lines) {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream(lines.size() * 8);
+        try (BinaryLogWriter writer = new BinaryLogWriter(output)) {
+            for (String line : lines) {
+                writer.write(line);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return output.toByteArray();
+    }
+
+    public static LogRecord[] records(List<String> lines) {
+        return lines.stream().map(LogRecord::parse).toArray(LogRecord[]::new);
+    }
+
+    /**
+     * Parsed records of a load generator, so the merge is measured without reading and parsing.
+     */
+    static final class RecordArraySource implements RecordSource {
+
+        private final String name;
+        private final LogRecord[] records;
+        private int next;
+
+        RecordArraySource(String name, LogRecord[] records) {
+            this.name = name;
+            this.records = records;
+        }
+
+        @Override
+        public LogRecord next() {
+            return next < records.length ? records[next++] : null;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
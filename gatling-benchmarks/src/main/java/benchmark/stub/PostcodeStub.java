@@ -0,0 +1,216 @@
+package benchmark.stub;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpServerKeepAliveHandler;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.ReferenceCountUtil;
+import org.slf4j.Logger;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * A stand-in for api.postcodes.io that answers the requests of the PostCode simulation as fast as a single Netty
+ * server can, so a load generator can be driven to its own limits on one machine. The local environment of
+ * EnvironmentConfig.XML points at it (port 8080).
+ * <ul>
+ *     <li>GET /random/postcodes: a fixed postcode</li>
+ *     <li>GET /postcodes/&lt;postcode&gt;: the postcode that was asked for</li>
+ *     <li>GET /: an empty 200, the warm-up path of HttpProtocols</li>
+ *     <li>anything else: 404</li>
+ * </ul>
+ * The responses are encoded once, apart from the postcode. The native epoll transport is used where it is available,
+ * and the responses to the requests of a read are flushed together.
+ * <p>
+ * Usage: PostcodeStub [--port &lt;port&gt;] [--threads &lt;event loops&gt;] [--latency-ms &lt;milliseconds&gt;]
+ * <p>
+ * --threads defaults to Netty's two per core; --latency-ms holds every response for a fixed time, to give the system
+ * under test a response time without using CPU.
+ */
+public class PostcodeStub {
+
+    private static final Logger LOG = getLogger(PostcodeStub.class);
+
+    private static final String RESULT_PREFIX = "{\"status\":200,\"result\":{\"postcode\":\"";
+    private static final String RESULT_SUFFIX = "\",\"quality\":1,\"eastings\":530047,\"northings\":179951,\"country\":\"England\","
+            + "\"nhs_ha\":\"London\",\"longitude\":-0.127695,\"latitude\":51.507321,\"european_electoral_region\":\"London\","
+            + "\"primary_care_trust\":\"Westminster\",\"region\":\"London\",\"lsoa\":\"Westminster 018C\",\"msoa\":\"Westminster 018\","
+            + "\"incode\":\"2DN\",\"outcode\":\"WC2N\",\"parliamentary_constituency\":\"Cities of London and Westminster\","
+            + "\"admin_district\":\"Westminster\",\"parish\":\"Westminster, unparished area\",\"admin_county\":null,"
+            + "\"admin_ward\":\"St James's\",\"ced\":null,\"ccg\":\"NHS North West London\",\"nuts\":\"Westminster\"}}";
+    private static final byte[] RESULT_PREFIX_BYTES = RESULT_PREFIX.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RESULT_SUFFIX_BYTES = RESULT_SUFFIX.getBytes(StandardCharsets.US_ASCII);
+    private static final ByteBuf RANDOM_POSTCODE = constant(RESULT_PREFIX + "WC2N 5DN" + RESULT_SUFFIX);
+    private static final ByteBuf NOT_FOUND = constant("{\"status\":404,\"error\":\"Resource not found\"}");
+    private static final String POSTCODES_PATH = "/postcodes/";
+
+    private final int port;
+    private final int threads;
+    private final long latencyMillis;
+
+    public PostcodeStub(int port, int threads, long latencyMillis) {
+        this.port = port;
+        this.threads = threads;
+        this.latencyMillis = latencyMillis;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int port = 8080;
+        int threads = 0;
+        long latencyMillis = 0;
+        if (args.length % 2 != 0) {
+            usage();
+        }
+        for (int i = 0; i < args.length; i += 2) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--latency-ms":
+                    latencyMillis = Long.parseLong(args[i + 1]);
+                    break;
+                default:
+                    usage();
+            }
+        }
+        new PostcodeStub(port, threads, latencyMillis).run();
+    }
+
+    private static void usage() {
+        System.err.println("Usage: PostcodeStub [--port <port>] [--threads <event loops>] [--latency-ms <milliseconds>]");
+        System.exit(1);
+    }
+
+    /**
+     * Serves until the JVM is stopped.
+     */
+    public void run() throws InterruptedException {
+        final boolean epoll = Epoll.isAvailable();
+        final EventLoopGroup bossGroup = epoll ? new EpollEventLoopGroup(1) : new NioEventLoopGroup(1);
+        final EventLoopGroup workerGroup = epoll ? new EpollEventLoopGroup(threads) : new NioEventLoopGroup(threads);
+        final Class<? extends ServerChannel> channelClass = epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+        final Handler handler = new Handler(latencyMillis);
+        try {
+            final Channel channel = new ServerBootstrap()
+                    .group(bossGroup, workerGroup)
+                    .channel(channelClass)
+                    .option(ChannelOption.SO_BACKLOG, 4096)
+                    .childOption(ChannelOption.TCP_NODELAY, true)
+                    .childHandler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(SocketChannel channel) {
+                            channel.pipeline().addLast(new HttpServerCodec(), new HttpServerKeepAliveHandler(), handler);
+                        }
+                    })
+                    .bind(port).sync().channel();
+            LOG.info("Postcode stub listening on port {} ({} transport, {} event loop(s){})", port, epoll ? "epoll" : "NIO",
+                    threads == 0 ? "default" : String.valueOf(threads), latencyMillis > 0 ? ", " + latencyMillis + " ms latency" : "");
+            Runtime.getRuntime().addShutdownHook(new Thread(channel::close, "stub-shutdown"));
+            channel.closeFuture().sync();
+        } finally {
+            bossGroup.shutdownGracefully();
+            workerGroup.shutdownGracefully();
+        }
+    }
+
+    private static ByteBuf constant(String body) {
+        return Unpooled.unreleasableBuffer(Unpooled.directBuffer(body.length()).writeBytes(body.getBytes(StandardCharsets.US_ASCII))).asReadOnly();
+    }
+
+    /**
+     * Stateless, so one instance serves every connection.
+     */
+    @ChannelHandler.Sharable
+    private static final class Handler extends ChannelInboundHandlerAdapter {
+
+        private final long latencyMillis;
+
+        Handler(long latencyMillis) {
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object message) {
+            try {
+                // The LastHttpContent that follows every request is only released
+                if (message instanceof HttpRequest) {
+                    final HttpRequest request = (HttpRequest) message;
+                    // HttpServerKeepAliveHandler closes the connection after the response when the request asks for it
+                    final FullHttpResponse response = respond(ctx, request.uri());
+                    if (latencyMillis > 0) {
+                        ctx.executor().schedule(() -> ctx.writeAndFlush(response), latencyMillis, TimeUnit.MILLISECONDS);
+                    } else {
+                        ctx.write(response);
+                    }
+                }
+            } finally {
+                ReferenceCountUtil.release(message);
+            }
+        }
+
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx) {
+            ctx.flush();
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            ctx.close();
+        }
+
+        private static FullHttpResponse respond(ChannelHandlerContext ctx, String uri) {
+            final int query = uri.indexOf('?');
+            final String path = query < 0 ? uri : uri.substring(0, query);
+            if (path.equals("/random/postcodes")) {
+                return json(HttpResponseStatus.OK, RANDOM_POSTCODE.duplicate());
+            }
+            if (path.startsWith(POSTCODES_PATH) && path.length() > POSTCODES_PATH.length()) {
+                final String postcode = path.substring(POSTCODES_PATH.length());
+                final ByteBuf body = ctx.alloc().buffer(RESULT_PREFIX_BYTES.length + postcode.length() + RESULT_SUFFIX_BYTES.length);
+                body.writeBytes(RESULT_PREFIX_BYTES).writeCharSequence(postcode, StandardCharsets.US_ASCII);
+                body.writeBytes(RESULT_SUFFIX_BYTES);
+                return json(HttpResponseStatus.OK, body);
+            }
+            if (path.equals("/")) {
+                return json(HttpResponseStatus.OK, Unpooled.EMPTY_BUFFER);
+            }
+            return json(HttpResponseStatus.NOT_FOUND, NOT_FOUND.duplicate());
+        }
+
+        private static FullHttpResponse json(HttpResponseStatus status, ByteBuf body) {
+            final FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, body);
+            response.headers()
+                    .set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON)
+                    .setInt(HttpHeaderNames.CONTENT_LENGTH, body.readableBytes());
+            return response;
+        }
+    }
+}
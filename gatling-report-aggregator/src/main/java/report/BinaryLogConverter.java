@@ -0,0 +1,65 @@
+package report;
+
+import org.slf4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Converts a simulation.log to the binary format of BinaryLogWriter, or a binary log back to Gatling's text format,
+ * e.g. to render the standard Gatling report of a run that was shipped in the binary format.
+ *
+ * Usage: BinaryLogConverter &lt;input&gt; &lt;output&gt;
+ */
+public class BinaryLogConverter {
+
+    private static final Logger LOG = getLogger(BinaryLogConverter.class);
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BinaryLogConverter <input> <output>");
+            System.exit(1);
+        }
+
+        final Path input = Paths.get(args[0]);
+        final Path output = Paths.get(args[1]);
+        final long start = System.currentTimeMillis();
+        final long lines = BinaryLogReader.isBinary(input) ? toText(input, output) : toBinary(input, output);
+        LOG.info("Converted {} lines from {} ({} KB) to {} ({} KB) in {} ms", lines, input, Files.size(input) / 1024,
+                output, Files.size(output) / 1024, System.currentTimeMillis() - start);
+    }
+
+    public static long toBinary(Path textLog, Path binaryLog) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(textLog, StandardCharsets.UTF_8);
+             BinaryLogWriter writer = new BinaryLogWriter(Files.newOutputStream(binaryLog))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    writer.write(line);
+                }
+            }
+            return writer.getLines();
+        }
+    }
+
+    public static long toText(Path binaryLog, Path textLog) throws IOException {
+        long lines = 0;
+        try (BinaryLogReader reader = new BinaryLogReader(binaryLog);
+             BufferedWriter writer = Files.newBufferedWriter(textLog, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.nextLine()) != null) {
+                writer.write(line);
+                writer.newLine();
+                lines++;
+            }
+        }
+        return lines;
+    }
+}
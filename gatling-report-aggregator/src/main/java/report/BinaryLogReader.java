@@ -0,0 +1,295 @@
+package report;
+
+import org.slf4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static org.slf4j.LoggerFactory.getLogger;
+import static report.BinaryLogWriter.*;
+
+/**
+ * Streams the records of a log written by BinaryLogWriter, one block in memory at a time. The records are decoded
+ * straight from the block, without going through the text lines, and the strings come from the dictionary; nextLine
+ * gives the original line instead, to convert the log back to Gatling's format.
+ */
+public class BinaryLogReader implements RecordSource {
+
+    private static final Logger LOG = getLogger(BinaryLogReader.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String name;
+    private final InputStream input;
+    private final Inflater inflater = new Inflater();
+    private final List<String> strings = new ArrayList<>();
+    /** The dictionary entries trimmed, as LogRecord.parse keeps the message of a request. */
+    private final List<String> trimmedStrings = new ArrayList<>();
+    private byte[] compressed = new byte[0];
+    private byte[] block = new byte[0];
+    private int length;
+    private int position;
+    private long previousTimestamp;
+    private boolean finished;
+    private long malformedLines;
+    /** The string that was read last, trimmed. */
+    private String trimmed;
+
+    // The fields of the record that was read last
+    private int tag;
+    private String first;
+    private String second;
+    private String third;
+    private String fourth;
+    private String trimmedFourth;
+    private long startTimestamp;
+    private long endTimestamp;
+    private long number;
+
+    public BinaryLogReader(Path file) throws IOException {
+        this(file.toString(), Files.newInputStream(file));
+    }
+
+    public BinaryLogReader(String name, InputStream input) throws IOException {
+        this.name = name;
+        this.input = new BufferedInputStream(input, BUFFER_SIZE);
+        final byte[] magic = this.input.readNBytes(MAGIC.length);
+        if (!Arrays.equals(magic, MAGIC)) {
+            this.input.close();
+            throw new IOException(name + " is not a binary simulation log");
+        }
+    }
+
+    /**
+     * @return whether the file was written by BinaryLogWriter
+     */
+    public static boolean isBinary(Path file) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            return Arrays.equals(input.readNBytes(MAGIC.length), MAGIC);
+        }
+    }
+
+    @Override
+    public LogRecord next() throws IOException {
+        while (readRecord()) {
+            switch (tag) {
+                case REQUEST:
+                    return new LogRecord(LogRecord.Type.REQUEST, second, first, startTimestamp, endTimestamp, third, trimmedFourth);
+                case INTENDED:
+                    return new LogRecord(LogRecord.Type.INTENDED, second, first, startTimestamp, endTimestamp, "", "");
+                case USER:
+                    return new LogRecord(LogRecord.Type.USER, first, "", startTimestamp, startTimestamp, second, "");
+                case GROUP:
+                    return new LogRecord(LogRecord.Type.GROUP, first, first, startTimestamp, endTimestamp, second, Long.toString(number));
+                case ERROR:
+                    return new LogRecord(LogRecord.Type.ERROR, first, "", startTimestamp, startTimestamp, "KO", first);
+                default:
+                    try {
+                        final LogRecord record = LogRecord.parse(first);
+                        if (record != null) {
+                            return record;
+                        }
+                    } catch (IllegalArgumentException e) {
+                        // Stored RAW because it didn't have the layout of its type
+                        if (malformedLines++ == 0) {
+                            LOG.warn("Skipping malformed lines of {}, the first one ({}): {}", name, e.getMessage(),
+                                    first.length() > 200 ? first.substring(0, 200) + "..." : first);
+                        }
+                    }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the next line as Gatling wrote it, or null at the end of the log
+     */
+    public String nextLine() throws IOException {
+        if (!readRecord()) {
+            return null;
+        }
+        switch (tag) {
+            case REQUEST:
+                return "REQUEST\t" + first + '\t' + second + '\t' + startTimestamp + '\t' + endTimestamp + '\t' + third + '\t' + fourth;
+            case INTENDED:
+                return "INTENDED\t" + first + '\t' + second + '\t' + startTimestamp + '\t' + endTimestamp;
+            case USER:
+                return "USER\t" + first + '\t' + second + '\t' + startTimestamp;
+            case GROUP:
+                return "GROUP\t" + first + '\t' + startTimestamp + '\t' + endTimestamp + '\t' + number + '\t' + second;
+            case ERROR:
+                return "ERROR\t" + first + '\t' + startTimestamp;
+            default:
+                return first;
+        }
+    }
+
+    /**
+     * Decodes the next record into the fields.
+     */
+    private boolean readRecord() throws IOException {
+        if (position == length && !readBlock()) {
+            return false;
+        }
+        tag = block[position++];
+        switch (tag) {
+            case REQUEST:
+                first = readString();
+                second = readString();
+                readTimes(true);
+                third = readString();
+                fourth = readString();
+                // next() hands out the message like LogRecord.parse, nextLine() as it was written
+                trimmedFourth = trimmed;
+                break;
+            case INTENDED:
+                first = readString();
+                second = readString();
+                readTimes(true);
+                break;
+            case USER:
+                first = readString();
+                second = readString();
+                readTimes(false);
+                break;
+            case GROUP:
+                first = readString();
+                readTimes(true);
+                number = readVarLong();
+                second = readString();
+                break;
+            case ERROR:
+                first = readString();
+                readTimes(false);
+                break;
+            case RAW:
+                first = readLiteral();
+                break;
+            default:
+                throw new IOException("Unknown record type " + tag + " in " + name);
+        }
+        return true;
+    }
+
+    private void readTimes(boolean withEnd) {
+        startTimestamp = previousTimestamp + readSignedVarLong();
+        endTimestamp = withEnd ? startTimestamp + readSignedVarLong() : startTimestamp;
+        previousTimestamp = startTimestamp;
+    }
+
+    private String readString() {
+        final long reference = readVarLong();
+        if (reference == NEW_STRING || reference == LITERAL_STRING) {
+            final String value = readLiteral();
+            trimmed = value.trim();
+            if (reference == NEW_STRING) {
+                strings.add(value);
+                trimmedStrings.add(trimmed);
+            }
+            return value;
+        }
+        trimmed = trimmedStrings.get((int) (reference - 2));
+        return strings.get((int) (reference - 2));
+    }
+
+    private String readLiteral() {
+        final int size = (int) readVarLong();
+        final String value = new String(block, position, size, StandardCharsets.UTF_8);
+        position += size;
+        return value;
+    }
+
+    private long readSignedVarLong() {
+        final long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private long readVarLong() {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            final byte b = block[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private boolean readBlock() throws IOException {
+        if (finished) {
+            return false;
+        }
+        final long rawLength = readHeaderVarLong(true);
+        if (rawLength <= 0) {
+            finished = true;
+            return false;
+        }
+        final int compressedLength = (int) readHeaderVarLong(false);
+        if (compressed.length < compressedLength) {
+            compressed = new byte[compressedLength];
+        }
+        if (input.readNBytes(compressed, 0, compressedLength) < compressedLength) {
+            throw new EOFException(name + " ends in the middle of a block");
+        }
+        if (block.length < rawLength) {
+            block = new byte[(int) rawLength];
+        }
+        inflater.reset();
+        inflater.setInput(compressed, 0, compressedLength);
+        try {
+            length = inflater.inflate(block, 0, (int) rawLength);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt block in " + name, e);
+        }
+        if (length != rawLength) {
+            throw new IOException("Corrupt block in " + name + ": " + length + " of " + rawLength + " bytes");
+        }
+        position = 0;
+        return true;
+    }
+
+    /**
+     * @return the varint of a block header, -1 at the end of a log that was cut off before its end (e.g. a killed
+     * load generator)
+     */
+    private long readHeaderVarLong(boolean atBoundary) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            final int b = input.read();
+            if (b < 0) {
+                if (atBoundary && shift == 0) {
+                    LOG.warn("{} ends without its last block, the log was cut off", name);
+                    return -1;
+                }
+                throw new EOFException(name + " ends in the middle of a block header");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (malformedLines > 0) {
+            LOG.warn("Skipped {} malformed line(s) of {}", malformedLines, name);
+        }
+        inflater.end();
+        input.close();
+    }
+}
@@ -0,0 +1,254 @@
+package report;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Writes simulation.log (or intended.log) lines in a compact binary form that BinaryLogReader reads back, either as
+ * records for the aggregation or as the original lines.
+ * <p>
+ * The file starts with {@link #MAGIC} and holds deflated blocks of records, each preceded by its raw and compressed
+ * length, and ends with a block of raw length 0. A record is a type tag followed by its fields: names, groups,
+ * scenarios, statuses and messages are references to a dictionary that grows as new strings appear, timestamps are
+ * zig-zag varints relative to the previous record and end times relative to the start. Lines that don't have the
+ * exact layout of their type (e.g. RUN and ASSERTION) are stored as they are, so every line converts back unchanged.
+ */
+public class BinaryLogWriter implements Closeable {
+
+    static final byte[] MAGIC = {'G', 'L', 'O', 'G', 1};
+
+    static final int REQUEST = 1;
+    static final int USER = 2;
+    static final int GROUP = 3;
+    static final int ERROR = 4;
+    static final int INTENDED = 5;
+    static final int RAW = 6;
+
+    /** String references: a new dictionary entry, a string kept out of the dictionary, or dictionary entry n - 2. */
+    static final int NEW_STRING = 0;
+    static final int LITERAL_STRING = 1;
+    static final int MAX_DICTIONARY_SIZE = 1 << 16;
+
+    private static final int BLOCK_SIZE = 256 * 1024;
+
+    private final OutputStream output;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private byte[] block = new byte[BLOCK_SIZE + 1024];
+    private int length;
+    private byte[] compressed = new byte[BLOCK_SIZE];
+    private long previousTimestamp;
+    private long lines;
+
+    public BinaryLogWriter(OutputStream output) throws IOException {
+        this.output = output;
+        output.write(MAGIC);
+    }
+
+    /**
+     * Adds a line, without its line separator.
+     */
+    public void write(String line) throws IOException {
+        if (!writeRecord(line)) {
+            writeByte(RAW);
+            writeLiteral(line);
+        }
+        lines++;
+        if (length >= BLOCK_SIZE) {
+            flushBlock();
+        }
+    }
+
+    public long getLines() {
+        return lines;
+    }
+
+    private boolean writeRecord(String line) {
+        final String[] fields = line.split("\t", -1);
+        switch (fields[0]) {
+            case "REQUEST":
+                // REQUEST groups name start end status message
+                if (fields.length != 7 || !areNumbers(fields, 3, 4)) {
+                    return false;
+                }
+                writeTimed(REQUEST, fields, 3, 4, 1, 2);
+                writeStrings(fields, 5, 6);
+                return true;
+            case "INTENDED":
+                // INTENDED groups name intendedStart end
+                if (fields.length != 5 || !areNumbers(fields, 3, 4)) {
+                    return false;
+                }
+                writeTimed(INTENDED, fields, 3, 4, 1, 2);
+                return true;
+            case "USER":
+                // USER scenario START|END timestamp
+                if (fields.length != 4 || !areNumbers(fields, 3)) {
+                    return false;
+                }
+                writeTimed(USER, fields, 3, -1, 1, 2);
+                return true;
+            case "GROUP":
+                // GROUP groups start end cumulatedResponseTime status
+                if (fields.length != 6 || !areNumbers(fields, 2, 3, 4)) {
+                    return false;
+                }
+                writeTimed(GROUP, fields, 2, 3, 1);
+                writeVarLong(parseNumber(fields[4]));
+                writeStrings(fields, 5);
+                return true;
+            case "ERROR":
+                // ERROR message timestamp
+                if (fields.length != 3 || !areNumbers(fields, 2)) {
+                    return false;
+                }
+                writeTimed(ERROR, fields, 2, -1, 1);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Writes the tag, the string fields and the start (and end) of a record.
+     */
+    private void writeTimed(int tag, String[] fields, int start, int end, int... strings) {
+        final long startTimestamp = parseNumber(fields[start]);
+        writeByte(tag);
+        writeStrings(fields, strings);
+        writeSignedVarLong(startTimestamp - previousTimestamp);
+        if (end >= 0) {
+            writeSignedVarLong(parseNumber(fields[end]) - startTimestamp);
+        }
+        previousTimestamp = startTimestamp;
+    }
+
+    private void writeStrings(String[] fields, int... indexes) {
+        for (int index : indexes) {
+            final Integer id = dictionary.get(fields[index]);
+            if (id != null) {
+                writeVarLong(id + 2L);
+            } else if (dictionary.size() < MAX_DICTIONARY_SIZE) {
+                dictionary.put(fields[index], dictionary.size());
+                writeVarLong(NEW_STRING);
+                writeLiteral(fields[index]);
+            } else {
+                writeVarLong(LITERAL_STRING);
+                writeLiteral(fields[index]);
+            }
+        }
+    }
+
+    private static boolean areNumbers(String[] fields, int... indexes) {
+        for (int index : indexes) {
+            if (parseNumber(fields[index]) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the value of a field that converts back to the same text, else -1
+     */
+    private static long parseNumber(String field) {
+        final int digits = field.length();
+        if (digits == 0 || digits > 18 || (digits > 1 && field.charAt(0) == '0')) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < digits; i++) {
+            final char c = field.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private void writeLiteral(String value) {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, block, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void writeSignedVarLong(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    private void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            block[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        block[length++] = (byte) value;
+    }
+
+    private void writeByte(int value) {
+        ensureCapacity(1);
+        block[length++] = (byte) value;
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (length + bytes > block.length) {
+            block = Arrays.copyOf(block, Math.max(block.length * 2, length + bytes));
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        if (length == 0) {
+            return;
+        }
+        deflater.reset();
+        deflater.setInput(block, 0, length);
+        deflater.finish();
+        int compressedLength = 0;
+        while (!deflater.finished()) {
+            if (compressedLength == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+        }
+        writeHeader(length, compressedLength);
+        output.write(compressed, 0, compressedLength);
+        length = 0;
+    }
+
+    private void writeHeader(int rawLength, int compressedLength) throws IOException {
+        final byte[] header = new byte[10];
+        int size = 0;
+        for (long value : new long[]{rawLength, compressedLength}) {
+            while ((value & ~0x7FL) != 0) {
+                header[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            header[size++] = (byte) value;
+        }
+        output.write(header, 0, size);
+    }
+
+    /**
+     * Writes the last block and the end of the file, and closes the stream.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBlock();
+            output.write(0);
+            output.flush();
+        } finally {
+            deflater.end();
+            output.close();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package report;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The resource usage of every load generator over the run, from their generator.log files: the peak of every metric
+ * and the time windows in which a generator was saturated. Response times measured in those windows say as much
+ * about the generator as about the system under test, so the report flags them.
+ */
+public class GeneratorHealth {
+
+    /** Saturated samples closer together than this belong to the same window. */
+    static final long MAX_GAP_MILLIS = 5000;
+    static final String LOG_SUFFIX = "generator.log";
+
+    private final Map<String, GeneratorSample> peaks = new TreeMap<>();
+    private final Map<String, Long> samples = new TreeMap<>();
+    private final Map<String, SaturationWindow> openWindows = new HashMap<>();
+    private final List<SaturationWindow> windows = new ArrayList<>();
+
+    /**
+     * Reads the generator logs, named &lt;generator&gt;-generator.log (generator.log for a single local generator).
+     */
+    public static GeneratorHealth read(Collection<Path> files) throws IOException {
+        final GeneratorHealth health = new GeneratorHealth();
+        for (Path file : files) {
+            final String fileName = file.getFileName().toString();
+            final String generator = fileName.length() > LOG_SUFFIX.length() + 1
+                    ? fileName.substring(0, fileName.length() - LOG_SUFFIX.length() - 1) : "generator";
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    final GeneratorSample sample = GeneratorSample.parse(line);
+                    if (sample != null) {
+                        health.record(generator, sample);
+                    }
+                }
+            }
+        }
+        return health;
+    }
+
+    /**
+     * Records the next sample of a generator, samples of one generator come in time order.
+     */
+    public void record(String generator, GeneratorSample sample) {
+        peaks.merge(generator, sample, GeneratorSample::worst);
+        samples.merge(generator, 1L, Long::sum);
+
+        final SaturationWindow open = openWindows.get(generator);
+        if (open != null && sample.timestamp - open.end > MAX_GAP_MILLIS) {
+            openWindows.remove(generator);
+        }
+        if (!sample.isSaturated()) {
+            return;
+        }
+        openWindows.computeIfAbsent(generator, name -> {
+            final SaturationWindow window = new SaturationWindow(name, sample.timestamp - sample.intervalMillis);
+            windows.add(window);
+            return window;
+        }).add(sample);
+    }
+
+    public Map<String, GeneratorSample> getPeaks() {
+        return peaks;
+    }
+
+    public long getSampleCount(String generator) {
+        return samples.getOrDefault(generator, 0L);
+    }
+
+    /**
+     * @return the saturation windows of all generators, by start time
+     */
+    public List<SaturationWindow> getSaturationWindows() {
+        final List<SaturationWindow> sorted = new ArrayList<>(windows);
+        sorted.sort(Comparator.comparingLong(window -> window.start));
+        return sorted;
+    }
+
+    public boolean isEmpty() {
+        return peaks.isEmpty();
+    }
+
+    public static class SaturationWindow {
+        public final String generator;
+        public final long start;
+        private long end;
+        private GeneratorSample worst;
+
+        SaturationWindow(String generator, long start) {
+            this.generator = generator;
+            this.start = start;
+        }
+
+        void add(GeneratorSample sample) {
+            end = sample.timestamp;
+            worst = sample.worst(worst);
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        /**
+         * @return what saturated the generator, at its worst in the window
+         */
+        public String getReason() {
+            return worst.getSaturation();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package report;
+
+import java.util.Locale;
+
+/**
+ * The resource usage of a load generator JVM over one sampling interval, as GeneratorMonitor writes it to
+ * generator.log next to simulation.log:
+ * GENERATOR timestamp intervalMillis cpuPercent gcMillis heapUsedMiB heapMaxMiB eventLoopLagMillis connections
+ * <p>
+ * A generator that runs out of CPU, spends its time in GC pauses or can't run its event loops on time delays the
+ * requests it sends and the responses it reads, so the response times it measures in that interval are its own.
+ */
+public final class GeneratorSample {
+
+    static final String HEADER = "GENERATOR";
+
+    public static final double MAX_CPU_PERCENT = 90;
+    /** Share of the interval spent in GC pauses. */
+    public static final double MAX_GC_PERCENT = 10;
+    public static final long MAX_EVENT_LOOP_LAG_MILLIS = 100;
+
+    public final long timestamp;
+    public final long intervalMillis;
+    public final double cpuPercent;
+    public final long gcMillis;
+    public final long heapUsedMiB;
+    public final long heapMaxMiB;
+    public final long eventLoopLagMillis;
+    /** Established TCP connections, -1 when unknown. */
+    public final long connections;
+
+    public GeneratorSample(long timestamp, long intervalMillis, double cpuPercent, long gcMillis, long heapUsedMiB, long heapMaxMiB,
+                           long eventLoopLagMillis, long connections) {
+        this.timestamp = timestamp;
+        this.intervalMillis = intervalMillis;
+        this.cpuPercent = cpuPercent;
+        this.gcMillis = gcMillis;
+        this.heapUsedMiB = heapUsedMiB;
+        this.heapMaxMiB = heapMaxMiB;
+        this.eventLoopLagMillis = eventLoopLagMillis;
+        this.connections = connections;
+    }
+
+    public double getGcPercentage() {
+        return intervalMillis == 0 ? 0 : gcMillis * 100.0 / intervalMillis;
+    }
+
+    /**
+     * @return what saturated the generator, or null if it kept up
+     */
+    public String getSaturation() {
+        final StringBuilder saturation = new StringBuilder();
+        if (cpuPercent >= MAX_CPU_PERCENT) {
+            saturation.append(String.format(Locale.ROOT, "CPU %.0f%%", cpuPercent));
+        }
+        if (getGcPercentage() >= MAX_GC_PERCENT) {
+            saturation.append(saturation.length() > 0 ? ", " : "").append(String.format(Locale.ROOT, "GC %.0f%%", getGcPercentage()));
+        }
+        if (eventLoopLagMillis >= MAX_EVENT_LOOP_LAG_MILLIS) {
+            saturation.append(saturation.length() > 0 ? ", " : "").append("event loop lag ").append(eventLoopLagMillis).append(" ms");
+        }
+        return saturation.length() == 0 ? null : saturation.toString();
+    }
+
+    public boolean isSaturated() {
+        return getSaturation() != null;
+    }
+
+    /**
+     * @return the highest value of every metric of both samples (the GC time of the sample with the highest GC share)
+     */
+    public GeneratorSample worst(GeneratorSample other) {
+        if (other == null) {
+            return this;
+        }
+        final GeneratorSample gc = getGcPercentage() >= other.getGcPercentage() ? this : other;
+        return new GeneratorSample(Math.max(timestamp, other.timestamp), gc.intervalMillis, Math.max(cpuPercent, other.cpuPercent), gc.gcMillis,
+                Math.max(heapUsedMiB, other.heapUsedMiB), Math.max(heapMaxMiB, other.heapMaxMiB),
+                Math.max(eventLoopLagMillis, other.eventLoopLagMillis), Math.max(connections, other.connections));
+    }
+
+    public String encode() {
+        return String.format(Locale.ROOT, "%s\t%d\t%d\t%.1f\t%d\t%d\t%d\t%d\t%d", HEADER, timestamp, intervalMillis, cpuPercent, gcMillis,
+                heapUsedMiB, heapMaxMiB, eventLoopLagMillis, connections);
+    }
+
+    /**
+     * @return the sample, or null if the line isn't one
+     */
+    public static GeneratorSample parse(String line) {
+        final String[] fields = line.split("\t");
+        if (fields.length < 9 || !HEADER.equals(fields[0])) {
+            return null;
+        }
+        return new GeneratorSample(Long.parseLong(fields[1]), Long.parseLong(fields[2]), Double.parseDouble(fields[3]), Long.parseLong(fields[4]),
+                Long.parseLong(fields[5]), Long.parseLong(fields[6]), Long.parseLong(fields[7]), Long.parseLong(fields[8]));
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "CPU %.0f%%, GC %.0f%%, heap %d/%d MiB, event loop lag %d ms, %d connection(s)",
+                cpuPercent, getGcPercentage(), heapUsedMiB, heapMaxMiB, eventLoopLagMillis, connections);
+    }
+}
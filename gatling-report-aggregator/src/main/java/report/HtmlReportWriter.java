@@ -0,0 +1,167 @@
+package report;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Writes a self-contained HTML report (index.html) with the request statistics, throughput and response time
+ * charts and the most frequent errors.
+ */
+public class HtmlReportWriter {
+
+    private static final int CHART_WIDTH = 1000;
+    private static final int CHART_HEIGHT = 240;
+
+    public void write(RunStatistics statistics, Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"utf-8\">\n");
+            out.write("<title>" + escape(statistics.getSimulation()) + "</title>\n");
+            out.write("<style>body{font-family:sans-serif;margin:2em}table{border-collapse:collapse}"
+                    + "th,td{border:1px solid #ccc;padding:4px 8px;text-align:right}th:first-child,td:first-child{text-align:left}"
+                    + "th{background:#f0f0f0}.ko{color:#c00}svg{border:1px solid #ccc;margin-bottom:1em}</style>\n");
+            out.write("</head>\n<body>\n");
+
+            out.write("<h1>" + escape(statistics.getSimulation()) + "</h1>\n");
+            out.write("<p>" + escape(statistics.getDescription()) + "</p>\n");
+            out.write("<p>Start: " + Instant.ofEpochMilli(statistics.getStart()) + " &middot; End: " + Instant.ofEpochMilli(statistics.getEnd())
+                    + " &middot; Load generators: " + statistics.getGenerators() + "</p>\n");
+            if (statistics.getAbortReason() != null) {
+                out.write("<p class=\"ko\"><strong>Aborted:</strong> " + escape(statistics.getAbortReason()) + "</p>\n");
+            }
+
+            final List<GeneratorHealth.SaturationWindow> saturationWindows = statistics.getGeneratorHealth().getSaturationWindows();
+            if (!saturationWindows.isEmpty()) {
+                out.write("<p class=\"ko\"><strong>Load generators saturated</strong> in " + saturationWindows.size()
+                        + " time window(s), discount the response times measured there (see Load generators).</p>\n");
+            }
+
+            writeRequestTable(statistics, out);
+
+            final TimeSeries timeSeries = statistics.getTimeSeries();
+            final double bucketSeconds = timeSeries.getBucketMillis() / 1000.0;
+            out.write("<h2>Throughput (requests per second)</h2>\n");
+            writeChart(out, timeSeries.getBuckets(), new String[]{"requests/s", "errors/s"}, new String[]{"#2a6ebb", "#c00"},
+                    bucket -> Math.round(bucket.getCount() / bucketSeconds), bucket -> Math.round(bucket.getKo() / bucketSeconds));
+            out.write("<h2>Response time percentiles (ms)</h2>\n");
+            writeChart(out, timeSeries.getBuckets(), new String[]{"p50", "p95", "p99"}, new String[]{"#4caf50", "#ff9800", "#c00"},
+                    bucket -> bucket.getPercentile(50), bucket -> bucket.getPercentile(95), bucket -> bucket.getPercentile(99));
+            out.write("<h2>Active users</h2>\n");
+            writeChart(out, timeSeries.getBuckets(), new String[]{"users"}, new String[]{"#673ab7"}, TimeSeries.Bucket::getMaxActiveUsers);
+
+            writeGenerators(statistics.getGeneratorHealth(), out);
+            writeErrors(statistics, out);
+            out.write("</body>\n</html>\n");
+        }
+    }
+
+    private void writeRequestTable(RunStatistics statistics, Writer out) throws IOException {
+        final boolean corrected = statistics.getAllRequests().hasCorrected();
+        out.write("<h2>Requests</h2>\n<table>\n<tr><th>Request</th><th>Count</th><th>OK</th><th>KO</th><th>% KO</th><th>Req/s</th>"
+                + "<th>Min</th><th>p50</th><th>p75</th><th>p95</th><th>p99</th><th>Max</th><th>Mean</th><th>Std Dev</th>"
+                + (corrected ? "<th>Corrected p50</th><th>Corrected p95</th><th>Corrected p99</th><th>Corrected Max</th>" : "") + "</tr>\n");
+        writeRequestRow(statistics, statistics.getAllRequests(), corrected, out);
+        for (RequestStats stats : statistics.getRequests()) {
+            writeRequestRow(statistics, stats, corrected, out);
+        }
+        out.write("</table>\n");
+        if (corrected) {
+            out.write("<p>Corrected response times are measured from the time each request was scheduled to be sent, "
+                    + "so they include the time a stalled virtual user held it back (coordinated omission).</p>\n");
+        }
+    }
+
+    private void writeRequestRow(RunStatistics statistics, RequestStats stats, boolean corrected, Writer out) throws IOException {
+        out.write(String.format(Locale.ROOT,
+                "<tr><td>%s</td><td>%d</td><td>%d</td><td class=\"ko\">%d</td><td>%.2f</td><td>%.2f</td>"
+                        + "<td>%d</td><td>%d</td><td>%d</td><td>%d</td><td>%d</td><td>%d</td><td>%.0f</td><td>%.0f</td>",
+                escape(stats.getName()), stats.getCount(), stats.getOk(), stats.getKo(), stats.getErrorPercentage(), statistics.getMeanRps(stats),
+                stats.getMin(), stats.getPercentile(50), stats.getPercentile(75), stats.getPercentile(95), stats.getPercentile(99),
+                stats.getMax(), stats.getMean(), stats.getStdDeviation()));
+        if (corrected) {
+            out.write(String.format(Locale.ROOT, "<td>%d</td><td>%d</td><td>%d</td><td>%d</td>", stats.getCorrectedPercentile(50),
+                    stats.getCorrectedPercentile(95), stats.getCorrectedPercentile(99), stats.getCorrectedMax()));
+        }
+        out.write("</tr>\n");
+    }
+
+    private void writeGenerators(GeneratorHealth health, Writer out) throws IOException {
+        if (health.isEmpty()) {
+            return;
+        }
+        out.write("<h2>Load generators</h2>\n<table>\n<tr><th>Generator</th><th>Max CPU %</th><th>Max GC %</th><th>Max heap (MiB)</th>"
+                + "<th>Max event loop lag (ms)</th><th>Max connections</th></tr>\n");
+        for (Map.Entry<String, GeneratorSample> peak : health.getPeaks().entrySet()) {
+            final GeneratorSample sample = peak.getValue();
+            out.write(String.format(Locale.ROOT, "<tr><td>%s</td><td>%.0f</td><td>%.0f</td><td>%d / %d</td><td>%d</td><td>%d</td></tr>\n",
+                    escape(peak.getKey()), sample.cpuPercent, sample.getGcPercentage(), sample.heapUsedMiB, sample.heapMaxMiB,
+                    sample.eventLoopLagMillis, sample.connections));
+        }
+        out.write("</table>\n");
+
+        final List<GeneratorHealth.SaturationWindow> windows = health.getSaturationWindows();
+        if (windows.isEmpty()) {
+            return;
+        }
+        out.write("<h3>Saturation</h3>\n<table>\n<tr><th>Generator</th><th>From</th><th>To</th><th>Cause</th></tr>\n");
+        for (GeneratorHealth.SaturationWindow window : windows) {
+            out.write("<tr><td>" + escape(window.generator) + "</td><td>" + Instant.ofEpochMilli(window.start) + "</td><td>"
+                    + Instant.ofEpochMilli(window.getEnd()) + "</td><td class=\"ko\">" + escape(window.getReason()) + "</td></tr>\n");
+        }
+        out.write("</table>\n");
+    }
+
+    private void writeErrors(RunStatistics statistics, Writer out) throws IOException {
+        final List<Map.Entry<String, Long>> errors = statistics.getErrors();
+        if (errors.isEmpty()) {
+            return;
+        }
+        out.write("<h2>Errors</h2>\n<table>\n<tr><th>Error</th><th>Count</th></tr>\n");
+        for (Map.Entry<String, Long> error : errors) {
+            out.write("<tr><td>" + escape(error.getKey()) + "</td><td>" + error.getValue() + "</td></tr>\n");
+        }
+        out.write("</table>\n");
+    }
+
+    /**
+     * Renders one SVG line chart with a series per value extractor.
+     */
+    @SafeVarargs
+    private final void writeChart(Writer out, List<TimeSeries.Bucket> buckets, String[] labels, String[] colours,
+                                  ToLongFunction<TimeSeries.Bucket>... series) throws IOException {
+        long maxValue = 1;
+        for (TimeSeries.Bucket bucket : buckets) {
+            for (ToLongFunction<TimeSeries.Bucket> values : series) {
+                maxValue = Math.max(maxValue, values.applyAsLong(bucket));
+            }
+        }
+
+        out.write(String.format(Locale.ROOT, "<svg width=\"%d\" height=\"%d\" viewBox=\"0 0 %d %d\">\n",
+                CHART_WIDTH, CHART_HEIGHT + 20, CHART_WIDTH, CHART_HEIGHT + 20));
+        out.write("<text x=\"4\" y=\"14\" font-size=\"12\">max " + maxValue + "</text>\n");
+        final double xStep = buckets.size() > 1 ? (double) CHART_WIDTH / (buckets.size() - 1) : 0;
+
+        for (int s = 0; s < series.length; s++) {
+            final StringBuilder points = new StringBuilder();
+            for (int i = 0; i < buckets.size(); i++) {
+                final double y = CHART_HEIGHT - (double) series[s].applyAsLong(buckets.get(i)) * (CHART_HEIGHT - 20) / maxValue;
+                points.append(String.format(Locale.ROOT, "%.1f,%.1f ", i * xStep, y + 10));
+            }
+            out.write("<polyline fill=\"none\" stroke=\"" + colours[s] + "\" stroke-width=\"1.5\" points=\"" + points + "\"/>\n");
+            out.write(String.format(Locale.ROOT, "<text x=\"%d\" y=\"%d\" font-size=\"12\" fill=\"%s\">%s</text>\n",
+                    100 + s * 90, 14, colours[s], escape(labels[s])));
+        }
+        out.write("</svg>\n");
+    }
+
+    static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
@@ -0,0 +1,146 @@
+package report;
+
+import org.slf4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * The compressed chunks a LogShipper uploads while the test runs: &lt;log&gt;.part-000001.gz, &lt;log&gt;.part-000002.gz,
+ * ... and, once the log is complete, &lt;log&gt;.parts holding the number of parts. Every part holds whole lines, gzip
+ * compressed text or (.bin) a BinaryLogWriter log of its own, so the parts read one after the other are the log itself.
+ */
+public final class LogChunks {
+
+    private static final Logger LOG = getLogger(LogChunks.class);
+    private static final Pattern PART = Pattern.compile("(.+)\\.part-(\\d{6})\\.(gz|bin)");
+    private static final String MANIFEST_SUFFIX = ".parts";
+
+    private LogChunks() {
+    }
+
+    public static String partName(String log, int index, boolean binary) {
+        return String.format("%s.part-%06d.%s", log, index, binary ? "bin" : "gz");
+    }
+
+    public static String manifestName(String log) {
+        return log + MANIFEST_SUFFIX;
+    }
+
+    /**
+     * Finds the chunked logs in the directory (and below) whose log wasn't stored whole as well, e.g. by run.sh
+     * when the shipper failed.
+     *
+     * @return the parts of every log, in order and up to the first missing part
+     */
+    static Map<Path, List<Path>> find(Path directory) throws IOException {
+        final Map<Path, TreeMap<Integer, Path>> parts = new TreeMap<>();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                final Matcher matcher = PART.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    parts.computeIfAbsent(file.resolveSibling(matcher.group(1)), log -> new TreeMap<>())
+                            .put(Integer.parseInt(matcher.group(2)), file);
+                }
+            }
+        }
+
+        final Map<Path, List<Path>> logs = new TreeMap<>();
+        parts.forEach((log, logParts) -> {
+            if (Files.isRegularFile(log)) {
+                return;
+            }
+            final List<Path> contiguous = new ArrayList<>();
+            for (int index = 1; logParts.containsKey(index); index++) {
+                contiguous.add(logParts.get(index));
+            }
+            final int expected = readManifest(log.resolveSibling(manifestName(log.getFileName().toString())));
+            if (contiguous.size() < logParts.size() || (expected >= 0 && contiguous.size() < expected)) {
+                LOG.warn("Parts of {} are missing, only the first {} of {} are used", log.getFileName(), contiguous.size(),
+                        Math.max(expected, logParts.lastKey()));
+            } else if (expected < 0) {
+                LOG.warn("{} has no manifest, its load generator stopped before it shipped the whole log", log.getFileName());
+            }
+            if (!contiguous.isEmpty()) {
+                logs.put(log, contiguous);
+            }
+        });
+        return logs;
+    }
+
+    /**
+     * @return the part count of the manifest, or -1 if there is none
+     */
+    public static int readManifest(Path manifest) {
+        try {
+            return Files.isRegularFile(manifest) ? Integer.parseInt(Files.readString(manifest).trim()) : -1;
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Reads the parts of a log as one simulation log.
+     */
+    static RecordSource open(Path log, List<Path> parts) {
+        return new RecordSource() {
+            private final Iterator<Path> next = parts.iterator();
+            private RecordSource part;
+
+            @Override
+            public LogRecord next() throws IOException {
+                // Every part is only opened once the previous one is read
+                while (true) {
+                    if (part == null) {
+                        if (!next.hasNext()) {
+                            return null;
+                        }
+                        part = openPart(next.next());
+                    }
+                    final LogRecord record = part.next();
+                    if (record != null) {
+                        return record;
+                    }
+                    part.close();
+                    part = null;
+                }
+            }
+
+            @Override
+            public String name() {
+                return log.toString();
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (part != null) {
+                    part.close();
+                }
+            }
+        };
+    }
+
+    private static RecordSource openPart(Path part) throws IOException {
+        if (part.getFileName().toString().endsWith(".bin")) {
+            return new BinaryLogReader(part);
+        }
+        return new SimulationLogReader(part.toString(), new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(part), 64 * 1024), StandardCharsets.UTF_8), 64 * 1024));
+    }
+}
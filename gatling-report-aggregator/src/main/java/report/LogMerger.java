@@ -0,0 +1,78 @@
+package report;
+
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * K-way merge of the per load generator record sources by timestamp.
+ * Only the current record of every source is held in memory, so the merge runs in a single streaming pass
+ * regardless of the size of the logs.
+ */
+public class LogMerger {
+
+    private static final Logger LOG = getLogger(LogMerger.class);
+
+    private final List<? extends RecordSource> sources;
+
+    public LogMerger(List<? extends RecordSource> sources) {
+        this.sources = sources;
+    }
+
+    /**
+     * Passes every record of every source to the consumer in timestamp order and closes the sources.
+     *
+     * @return the number of records merged
+     */
+    public long merge(Consumer<LogRecord> consumer) throws IOException {
+        final PriorityQueue<Head> heads = new PriorityQueue<>(Math.max(1, sources.size()), Comparator.comparingLong((Head head) -> head.record.timestamp()));
+        long merged = 0;
+
+        try {
+            for (RecordSource source : sources) {
+                final LogRecord first = source.next();
+                if (first != null) {
+                    heads.add(new Head(source, first));
+                } else {
+                    LOG.warn("{} contains no records", source.name());
+                }
+            }
+
+            while (!heads.isEmpty()) {
+                final Head head = heads.poll();
+                consumer.accept(head.record);
+                merged++;
+
+                final LogRecord next = head.source.next();
+                if (next != null) {
+                    head.record = next;
+                    heads.add(head);
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (RecordSource source : sources) {
+                source.close();
+            }
+        }
+        return merged;
+    }
+
+    private static final class Head {
+        private final RecordSource source;
+        private LogRecord record;
+
+        private Head(RecordSource source, LogRecord record) {
+            this.source = source;
+            this.record = record;
+        }
+    }
+}
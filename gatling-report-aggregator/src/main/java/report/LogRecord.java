@@ -0,0 +1,120 @@
+package report;
+
+/**
+ * A single record from a Gatling 3.4 simulation.log file, or from the intended.log the load generators write next to
+ * it when they account for coordinated omission.
+ * Only the fields needed for the aggregation are kept, the rest of the line is discarded while parsing.
+ */
+public final class LogRecord {
+
+    public enum Type { RUN, USER, REQUEST, GROUP, ERROR, INTENDED }
+
+    public final Type type;
+    /** Request, group or scenario name, the simulation class for RUN records or the message for ERROR records. */
+    public final String name;
+    /** Comma separated group hierarchy of REQUEST and GROUP records, empty when there is none. */
+    public final String groups;
+    /** Start of the record, the intended send time (from the pacing schedule) for INTENDED records. */
+    public final long startTimestamp;
+    public final long endTimestamp;
+    /** OK/KO for REQUEST and GROUP records, START/END for USER records. */
+    public final String status;
+    public final String message;
+
+    public LogRecord(Type type, String name, String groups, long startTimestamp, long endTimestamp, String status, String message) {
+        this.type = type;
+        this.name = name;
+        this.groups = groups;
+        this.startTimestamp = startTimestamp;
+        this.endTimestamp = endTimestamp;
+        this.status = status;
+        this.message = message;
+    }
+
+    /**
+     * The time the record was written at, which is what the per-file order of simulation.log follows.
+     */
+    public long timestamp() {
+        return endTimestamp;
+    }
+
+    public long responseTime() {
+        return endTimestamp - startTimestamp;
+    }
+
+    public boolean isOk() {
+        return "OK".equals(status);
+    }
+
+    /**
+     * Parses one tab separated simulation.log line.
+     *
+     * @return the record, or null for record types the aggregation doesn't use (e.g. ASSERTION)
+     * @throws IllegalArgumentException when the line is cut off or malformed, e.g. the last line of a load generator
+     *                                  that was killed while writing it
+     */
+    public static LogRecord parse(String line) {
+        final String[] fields = split(line);
+        try {
+            return parse(fields);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException(fields[0] + " line with " + fields.length + " field(s)");
+        }
+    }
+
+    private static LogRecord parse(String[] fields) {
+        switch (fields[0]) {
+            case "REQUEST":
+                // REQUEST groups name start end status message
+                final long requestStart = Long.parseLong(fields[3]);
+                final long requestEnd = Long.parseLong(fields[4]);
+                if (requestEnd < requestStart) {
+                    // The end timestamp was cut off
+                    throw new IllegalArgumentException("REQUEST line ending before it starts");
+                }
+                return new LogRecord(Type.REQUEST, fields[2], fields[1], requestStart, requestEnd,
+                        fields[5], fields.length > 6 ? fields[6].trim() : "");
+            case "INTENDED":
+                // INTENDED groups name intendedStart end
+                return new LogRecord(Type.INTENDED, fields[2], fields[1], Long.parseLong(fields[3]), Long.parseLong(fields[4]), "", "");
+            case "USER":
+                // USER scenario START|END timestamp
+                long userTimestamp = Long.parseLong(fields[3]);
+                return new LogRecord(Type.USER, fields[1], "", userTimestamp, userTimestamp, fields[2], "");
+            case "GROUP":
+                // GROUP groups start end cumulatedResponseTime status
+                return new LogRecord(Type.GROUP, fields[1], fields[1], Long.parseLong(fields[2]), Long.parseLong(fields[3]), fields[5], fields[4]);
+            case "ERROR":
+                // ERROR message timestamp
+                long errorTimestamp = Long.parseLong(fields[2]);
+                return new LogRecord(Type.ERROR, fields[1], "", errorTimestamp, errorTimestamp, "KO", fields[1]);
+            case "RUN":
+                // RUN simulationClass simulationId start description version
+                long runStart = Long.parseLong(fields[3]);
+                return new LogRecord(Type.RUN, fields[1], fields[2], runStart, runStart, "", fields.length > 4 ? fields[4].trim() : "");
+            default:
+                return null;
+        }
+    }
+
+    private static String[] split(String line) {
+        int count = 1;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == '\t') {
+                count++;
+            }
+        }
+
+        final String[] fields = new String[count];
+        int field = 0;
+        int from = 0;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == '\t') {
+                fields[field++] = line.substring(from, i);
+                from = i + 1;
+            }
+        }
+        fields[field] = line.substring(from);
+        return fields;
+    }
+}
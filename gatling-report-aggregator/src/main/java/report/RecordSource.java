@@ -0,0 +1,20 @@
+package report;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A stream of simulation records from a single load generator, in the order they were written.
+ */
+public interface RecordSource extends Closeable {
+
+    /**
+     * @return the next record, or null when the source is exhausted
+     */
+    LogRecord next() throws IOException;
+
+    /**
+     * @return a name identifying the source (e.g. the file or load generator), used for logging
+     */
+    String name();
+}
@@ -0,0 +1,148 @@
+package report;
+
+import org.slf4j.Logger;
+import report.history.RunHistory;
+import report.history.RunSummary;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Builds the consolidated report of a distributed run from the simulation.log files of all load generators, and their
+ * intended.log files when they accounted for coordinated omission. Their generator.log files flag the time windows in
+ * which a load generator was saturated. A log the generator shipped in compressed parts while it ran (see LogChunks)
+ * is read from its parts, and logs in the binary format (simulation.log.bin, see BinaryLogWriter) are read directly.
+ * The logs are merged in a single streaming pass, so memory use doesn't depend on the size of the logs.
+ *
+ * With --history the summary of the run is added to a run history (see RunHistory) and the run is compared with the
+ * earlier runs of the same simulation, simulation type and environment.
+ *
+ * Usage: ReportAggregator &lt;logs directory&gt; [&lt;report directory&gt;] [--history &lt;history directory&gt;
+ * [--run-id &lt;id&gt;] [--simulation &lt;name&gt;] [--simulation-type &lt;type&gt;] [--environment &lt;name&gt;]]
+ */
+public class ReportAggregator {
+
+    private static final Logger LOG = getLogger(ReportAggregator.class);
+
+    static final long INITIAL_BUCKET_MILLIS = 1000;
+    static final int MAX_BUCKETS = 1000;
+    /** Intended send times of the requests, written next to simulation.log in the latency accounting mode. */
+    static final String INTENDED_LOG = "intended.log";
+    /** Appended to the name of a log in the binary format. */
+    static final String BINARY_SUFFIX = ".bin";
+    /** Written next to the logs by the runner when it aborted the run. */
+    static final String ABORT_REASON_FILE = "aborted.txt";
+
+    private static final String USAGE = "Usage: ReportAggregator <logs directory> [<report directory>] [--history <history directory> "
+            + "[--run-id <id>] [--simulation <name>] [--simulation-type <type>] [--environment <name>]]";
+    private static final Set<String> HISTORY_OPTIONS = Set.of("--history", "--run-id", "--simulation", "--simulation-type", "--environment");
+
+    public static void main(String[] args) throws IOException {
+        final List<String> positional = new ArrayList<>();
+        final Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].startsWith("--")) {
+                if (i + 1 == args.length) {
+                    usage();
+                }
+                options.put(args[i], args[++i]);
+            } else {
+                positional.add(args[i]);
+            }
+        }
+        if (positional.isEmpty() || positional.size() > 2 || !HISTORY_OPTIONS.containsAll(options.keySet())) {
+            usage();
+        }
+
+        final Path logsDirectory = Paths.get(positional.get(0));
+        final Path reportDirectory = positional.size() > 1 ? Paths.get(positional.get(1)) : logsDirectory;
+
+        final RunStatistics statistics = new ReportAggregator().generate(logsDirectory, reportDirectory);
+
+        if (options.containsKey("--history")) {
+            final String runId = options.getOrDefault("--run-id", reportDirectory.toAbsolutePath().normalize().getFileName().toString());
+            final RunSummary summary = RunSummary.of(runId, options.get("--simulation"), options.get("--simulation-type"),
+                    options.get("--environment"), statistics);
+            new RunHistory(Paths.get(options.get("--history"))).record(summary, reportDirectory);
+        }
+    }
+
+    private static void usage() {
+        System.err.println(USAGE);
+        System.exit(1);
+    }
+
+    public RunStatistics generate(Path logsDirectory, Path reportDirectory) throws IOException {
+        final List<Path> logFiles = findLogFiles(logsDirectory);
+        final Map<Path, List<Path>> chunkedLogs = LogChunks.find(logsDirectory);
+        if (logFiles.isEmpty() && chunkedLogs.isEmpty()) {
+            throw new IllegalStateException("No simulation logs found in " + logsDirectory);
+        }
+        LOG.info("Aggregating {} log file(s) and {} chunked log(s) from {}", logFiles.size(), chunkedLogs.size(), logsDirectory);
+
+        final List<RecordSource> sources = new ArrayList<>(logFiles.size() + chunkedLogs.size());
+        for (Path logFile : logFiles) {
+            sources.add(logFile.getFileName().toString().endsWith(BINARY_SUFFIX) ? new BinaryLogReader(logFile) : new SimulationLogReader(logFile));
+        }
+        chunkedLogs.forEach((log, parts) -> sources.add(LogChunks.open(log, parts)));
+
+        final long start = System.currentTimeMillis();
+        final RunStatistics statistics = aggregate(sources);
+        LOG.info("Merged {} requests in {} ms", statistics.getAllRequests().getCount(), System.currentTimeMillis() - start);
+
+        final Path abortReasonFile = logsDirectory.resolve(ABORT_REASON_FILE);
+        if (Files.isRegularFile(abortReasonFile)) {
+            statistics.setAbortReason(Files.readString(abortReasonFile).trim());
+            LOG.warn("The run was aborted: {}", statistics.getAbortReason());
+        }
+
+        final List<Path> generatorLogs = findFiles(logsDirectory, GeneratorHealth.LOG_SUFFIX);
+        if (!generatorLogs.isEmpty()) {
+            statistics.setGeneratorHealth(GeneratorHealth.read(generatorLogs));
+            final int saturationWindows = statistics.getGeneratorHealth().getSaturationWindows().size();
+            if (saturationWindows > 0) {
+                LOG.warn("Load generators were saturated in {} time window(s), their response times there are suspect", saturationWindows);
+            }
+        }
+
+        Files.createDirectories(reportDirectory);
+        new StatsJsonWriter().write(statistics, reportDirectory.resolve("stats.json"));
+        new HtmlReportWriter().write(statistics, reportDirectory.resolve("index.html"));
+        LOG.info("Report written to {}", reportDirectory.resolve("index.html"));
+
+        return statistics;
+    }
+
+    /**
+     * Merges the given sources into the consolidated run statistics.
+     */
+    public static RunStatistics aggregate(List<? extends RecordSource> sources) throws IOException {
+        final RunStatistics statistics = new RunStatistics(INITIAL_BUCKET_MILLIS, MAX_BUCKETS);
+        new LogMerger(sources).merge(statistics);
+        return statistics;
+    }
+
+    static List<Path> findLogFiles(Path directory) throws IOException {
+        return findFiles(directory, "simulation.log", INTENDED_LOG, "simulation.log" + BINARY_SUFFIX, INTENDED_LOG + BINARY_SUFFIX);
+    }
+
+    static List<Path> findFiles(Path directory, String... suffixes) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(file -> Stream.of(suffixes).anyMatch(suffix -> file.getFileName().toString().endsWith(suffix)))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+}
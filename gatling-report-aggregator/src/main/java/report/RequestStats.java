@@ -0,0 +1,103 @@
+package report;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Response time distribution and counters for one request name (or for all requests combined).
+ */
+public class RequestStats {
+
+    /** Response times are tracked up to one hour with three significant digits. */
+    static final long HIGHEST_TRACKABLE_MILLIS = 3_600_000L;
+
+    private final String name;
+    private final Histogram histogram = new Histogram(1, HIGHEST_TRACKABLE_MILLIS, 3);
+    /** Response times measured from the intended send time, only when the load generators accounted for coordinated omission. */
+    private Histogram correctedHistogram;
+    private long ko;
+
+    public RequestStats(String name) {
+        this.name = name;
+    }
+
+    public void record(long responseTime, boolean ok) {
+        histogram.recordValue(Math.max(1, Math.min(responseTime, HIGHEST_TRACKABLE_MILLIS)));
+        if (!ok) {
+            ko++;
+        }
+    }
+
+    /**
+     * Records the response time measured from the time the request should have been sent (its place in the pacing or
+     * arrival schedule) rather than from the time it was sent, which includes the time a stalled user held it back.
+     */
+    public void recordCorrected(long responseTime) {
+        if (correctedHistogram == null) {
+            correctedHistogram = new Histogram(1, HIGHEST_TRACKABLE_MILLIS, 3);
+        }
+        correctedHistogram.recordValue(Math.max(1, Math.min(responseTime, HIGHEST_TRACKABLE_MILLIS)));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return histogram.getTotalCount();
+    }
+
+    public long getOk() {
+        return getCount() - ko;
+    }
+
+    public long getKo() {
+        return ko;
+    }
+
+    public double getErrorPercentage() {
+        return getCount() == 0 ? 0 : ko * 100.0 / getCount();
+    }
+
+    public long getMin() {
+        return getCount() == 0 ? 0 : histogram.getMinValue();
+    }
+
+    public long getMax() {
+        return histogram.getMaxValue();
+    }
+
+    public double getMean() {
+        return histogram.getMean();
+    }
+
+    public double getStdDeviation() {
+        return histogram.getStdDeviation();
+    }
+
+    public long getPercentile(double percentile) {
+        return histogram.getValueAtPercentile(percentile);
+    }
+
+    public Histogram getHistogram() {
+        return histogram;
+    }
+
+    public boolean hasCorrected() {
+        return correctedHistogram != null;
+    }
+
+    /**
+     * @return the coordinated omission corrected percentile, or 0 when none was recorded
+     */
+    public long getCorrectedPercentile(double percentile) {
+        return correctedHistogram == null ? 0 : correctedHistogram.getValueAtPercentile(percentile);
+    }
+
+    public long getCorrectedMax() {
+        return correctedHistogram == null ? 0 : correctedHistogram.getMaxValue();
+    }
+
+    public Histogram getCorrectedHistogram() {
+        return correctedHistogram;
+    }
+}
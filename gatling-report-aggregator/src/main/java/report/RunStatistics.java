@@ -0,0 +1,164 @@
+package report;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Consumes the merged records of a run and keeps the consolidated statistics: a response time histogram per
+ * request, a bounded time series and the most frequent errors. Nothing grows with the number of records.
+ */
+public class RunStatistics implements Consumer<LogRecord> {
+
+    static final String ALL_REQUESTS = "All Requests";
+    private static final int MAX_DISTINCT_ERRORS = 100;
+    private static final String OTHER_ERRORS = "Other errors";
+
+    private final Map<String, RequestStats> requests = new LinkedHashMap<>();
+    private final RequestStats allRequests = new RequestStats(ALL_REQUESTS);
+    private final Map<String, Long> errors = new LinkedHashMap<>();
+    private final TimeSeries timeSeries;
+
+    private String simulation = "";
+    private String description = "";
+    private int generators;
+    private long runStart = Long.MAX_VALUE;
+    private long start = Long.MAX_VALUE;
+    private long end = Long.MIN_VALUE;
+    private long activeUsers;
+    private String abortReason;
+    private GeneratorHealth generatorHealth = new GeneratorHealth();
+
+    public RunStatistics(long bucketMillis, int maxBuckets) {
+        this.timeSeries = new TimeSeries(bucketMillis, maxBuckets);
+    }
+
+    @Override
+    public void accept(LogRecord record) {
+        switch (record.type) {
+            case RUN:
+                generators++;
+                simulation = record.name;
+                description = record.message;
+                runStart = Math.min(runStart, record.startTimestamp);
+                timeSeries.setOrigin(record.startTimestamp);
+                break;
+            case REQUEST:
+                final long responseTime = record.responseTime();
+                requests.computeIfAbsent(requestKey(record), RequestStats::new).record(responseTime, record.isOk());
+                allRequests.record(responseTime, record.isOk());
+                timeSeries.recordRequest(record.startTimestamp, responseTime, record.isOk());
+                start = Math.min(start, record.startTimestamp);
+                if (!record.isOk() && !record.message.isEmpty()) {
+                    recordError(record.message);
+                }
+                end = Math.max(end, record.endTimestamp);
+                break;
+            case INTENDED:
+                requests.computeIfAbsent(requestKey(record), RequestStats::new).recordCorrected(record.responseTime());
+                allRequests.recordCorrected(record.responseTime());
+                break;
+            case USER:
+                activeUsers += "START".equals(record.status) ? 1 : -1;
+                timeSeries.recordActiveUsers(record.startTimestamp, Math.max(0, activeUsers));
+                end = Math.max(end, record.endTimestamp);
+                break;
+            case ERROR:
+                recordError(record.message);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static String requestKey(LogRecord record) {
+        return record.groups.isEmpty() ? record.name : record.groups.replace(',', '/') + " / " + record.name;
+    }
+
+    private void recordError(String message) {
+        if (errors.containsKey(message) || errors.size() < MAX_DISTINCT_ERRORS) {
+            errors.merge(message, 1L, Long::sum);
+        } else {
+            errors.merge(OTHER_ERRORS, 1L, Long::sum);
+        }
+    }
+
+    public Collection<RequestStats> getRequests() {
+        return requests.values();
+    }
+
+    public RequestStats getAllRequests() {
+        return allRequests;
+    }
+
+    public List<Map.Entry<String, Long>> getErrors() {
+        final List<Map.Entry<String, Long>> sorted = new ArrayList<>(errors.entrySet());
+        sorted.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        return sorted;
+    }
+
+    public TimeSeries getTimeSeries() {
+        return timeSeries;
+    }
+
+    public String getSimulation() {
+        return simulation;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public int getGenerators() {
+        return generators;
+    }
+
+    /**
+     * @return when the first request was sent, as the RUN records are written before the coordinated start hold and
+     * the warm-up (whose requests are silent, but whose users are logged). The first RUN record when there are no
+     * requests, 0 without either
+     */
+    public long getStart() {
+        if (start != Long.MAX_VALUE) {
+            return start;
+        }
+        return runStart == Long.MAX_VALUE ? 0 : runStart;
+    }
+
+    public long getEnd() {
+        return end == Long.MIN_VALUE ? getStart() : end;
+    }
+
+    /**
+     * @return why the run was aborted before its end, or null if it ran to completion
+     */
+    public String getAbortReason() {
+        return abortReason;
+    }
+
+    public void setAbortReason(String abortReason) {
+        this.abortReason = abortReason;
+    }
+
+    /**
+     * @return the resource usage of the load generators, empty when they didn't sample it
+     */
+    public GeneratorHealth getGeneratorHealth() {
+        return generatorHealth;
+    }
+
+    public void setGeneratorHealth(GeneratorHealth generatorHealth) {
+        this.generatorHealth = generatorHealth;
+    }
+
+    /**
+     * @return the mean throughput of the given request from the first request to the end of the run, in requests per second
+     */
+    public double getMeanRps(RequestStats stats) {
+        final long durationMillis = getEnd() - getStart();
+        return durationMillis <= 0 ? 0 : stats.getCount() * 1000.0 / durationMillis;
+    }
+}
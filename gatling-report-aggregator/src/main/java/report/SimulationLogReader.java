@@ -0,0 +1,75 @@
+package report;
+
+import org.slf4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Streams the records of a text simulation.log file. Only one line is held in memory at a time. Lines that are cut
+ * off or malformed are skipped and counted, see LogRecord.parse.
+ */
+public class SimulationLogReader implements RecordSource {
+
+    private static final Logger LOG = getLogger(SimulationLogReader.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String name;
+    private final BufferedReader reader;
+    private long malformedLines;
+
+    public SimulationLogReader(Path file) throws IOException {
+        this(file.toString(), new BufferedReader(Files.newBufferedReader(file, StandardCharsets.UTF_8), BUFFER_SIZE));
+    }
+
+    public SimulationLogReader(String name, BufferedReader reader) {
+        this.name = name;
+        this.reader = reader;
+    }
+
+    @Override
+    public LogRecord next() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            final LogRecord record;
+            try {
+                record = LogRecord.parse(line);
+            } catch (IllegalArgumentException e) {
+                skipMalformed(line, e);
+                continue;
+            }
+            if (record != null) {
+                return record;
+            }
+        }
+        return null;
+    }
+
+    private void skipMalformed(String line, IllegalArgumentException e) {
+        if (malformedLines++ == 0) {
+            LOG.warn("Skipping malformed lines of {}, the first one ({}): {}", name, e.getMessage(),
+                    line.length() > 200 ? line.substring(0, 200) + "..." : line);
+        }
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (malformedLines > 0) {
+            LOG.warn("Skipped {} malformed line(s) of {}", malformedLines, name);
+        }
+        reader.close();
+    }
+}
@@ -0,0 +1,141 @@
+package report;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes the consolidated statistics of a run as JSON (stats.json).
+ */
+public class StatsJsonWriter {
+
+    static final double[] PERCENTILES = {50, 75, 95, 99, 99.9};
+
+    public void write(RunStatistics statistics, Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("{\n");
+            out.write("  \"simulation\": " + quote(statistics.getSimulation()) + ",\n");
+            out.write("  \"description\": " + quote(statistics.getDescription()) + ",\n");
+            out.write("  \"generators\": " + statistics.getGenerators() + ",\n");
+            out.write("  \"start\": " + statistics.getStart() + ",\n");
+            out.write("  \"end\": " + statistics.getEnd() + ",\n");
+            out.write("  \"aborted\": " + (statistics.getAbortReason() == null ? "null" : quote(statistics.getAbortReason())) + ",\n");
+            out.write("  \"all\": " + requestJson(statistics, statistics.getAllRequests()) + ",\n");
+
+            out.write("  \"requests\": [");
+            String separator = "\n";
+            for (RequestStats stats : statistics.getRequests()) {
+                out.write(separator + "    " + requestJson(statistics, stats));
+                separator = ",\n";
+            }
+            out.write("\n  ],\n");
+
+            final TimeSeries timeSeries = statistics.getTimeSeries();
+            out.write("  \"timeSeries\": {\n");
+            out.write("    \"bucketMillis\": " + timeSeries.getBucketMillis() + ",\n");
+            out.write("    \"buckets\": [");
+            separator = "\n";
+            for (TimeSeries.Bucket bucket : timeSeries.getBuckets()) {
+                out.write(separator + String.format(Locale.ROOT,
+                        "      {\"start\": %d, \"count\": %d, \"ko\": %d, \"p50\": %d, \"p95\": %d, \"p99\": %d, \"max\": %d, \"users\": %d}",
+                        bucket.getStart(), bucket.getCount(), bucket.getKo(), bucket.getPercentile(50), bucket.getPercentile(95),
+                        bucket.getPercentile(99), bucket.getMax(), bucket.getMaxActiveUsers()));
+                separator = ",\n";
+            }
+            out.write("\n    ]\n  },\n");
+
+            final GeneratorHealth health = statistics.getGeneratorHealth();
+            out.write("  \"loadGenerators\": [");
+            separator = "\n";
+            for (Map.Entry<String, GeneratorSample> peak : health.getPeaks().entrySet()) {
+                final GeneratorSample sample = peak.getValue();
+                out.write(separator + String.format(Locale.ROOT,
+                        "    {\"name\": %s, \"samples\": %d, \"maxCpuPercent\": %.1f, \"maxGcPercent\": %.1f, \"maxHeapMiB\": %d, \"heapMaxMiB\": %d, "
+                                + "\"maxEventLoopLagMillis\": %d, \"maxConnections\": %d}",
+                        quote(peak.getKey()), health.getSampleCount(peak.getKey()), sample.cpuPercent, sample.getGcPercentage(),
+                        sample.heapUsedMiB, sample.heapMaxMiB, sample.eventLoopLagMillis, sample.connections));
+                separator = ",\n";
+            }
+            out.write("\n  ],\n");
+
+            out.write("  \"saturation\": [");
+            separator = "\n";
+            for (GeneratorHealth.SaturationWindow window : health.getSaturationWindows()) {
+                out.write(separator + "    {\"generator\": " + quote(window.generator) + ", \"start\": " + window.start
+                        + ", \"end\": " + window.getEnd() + ", \"reason\": " + quote(window.getReason()) + "}");
+                separator = ",\n";
+            }
+            out.write("\n  ],\n");
+
+            out.write("  \"errors\": [");
+            separator = "\n";
+            for (Map.Entry<String, Long> error : statistics.getErrors()) {
+                out.write(separator + "    {\"message\": " + quote(error.getKey()) + ", \"count\": " + error.getValue() + "}");
+                separator = ",\n";
+            }
+            out.write("\n  ]\n}\n");
+        }
+    }
+
+    private static String requestJson(RunStatistics statistics, RequestStats stats) {
+        final StringBuilder json = new StringBuilder("{\"name\": ").append(quote(stats.getName()))
+                .append(", \"count\": ").append(stats.getCount())
+                .append(", \"ok\": ").append(stats.getOk())
+                .append(", \"ko\": ").append(stats.getKo())
+                .append(", \"min\": ").append(stats.getMin())
+                .append(", \"max\": ").append(stats.getMax())
+                .append(String.format(Locale.ROOT, ", \"mean\": %.2f, \"stdDev\": %.2f, \"meanRps\": %.3f",
+                        stats.getMean(), stats.getStdDeviation(), statistics.getMeanRps(stats)));
+        for (double percentile : PERCENTILES) {
+            json.append(", \"").append(percentileKey(percentile)).append("\": ").append(stats.getPercentile(percentile));
+        }
+        if (stats.hasCorrected()) {
+            json.append(", \"corrected\": {\"count\": ").append(stats.getCorrectedHistogram().getTotalCount())
+                    .append(", \"max\": ").append(stats.getCorrectedMax());
+            for (double percentile : PERCENTILES) {
+                json.append(", \"").append(percentileKey(percentile)).append("\": ").append(stats.getCorrectedPercentile(percentile));
+            }
+            json.append('}');
+        }
+        return json.append('}').toString();
+    }
+
+    static String percentileKey(double percentile) {
+        return "p" + (percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile).replace(".", ""));
+    }
+
+    public static String quote(String value) {
+        final StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    quoted.append("\\\"");
+                    break;
+                case '\\':
+                    quoted.append("\\\\");
+                    break;
+                case '\n':
+                    quoted.append("\\n");
+                    break;
+                case '\r':
+                    quoted.append("\\r");
+                    break;
+                case '\t':
+                    quoted.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,134 @@
+package report;
+
+import org.HdrHistogram.IntCountsHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed-size time series of request statistics.
+ * When the run outgrows the series, adjacent buckets are merged and the bucket width doubles, so memory use
+ * stays bounded however long the test ran.
+ */
+public class TimeSeries {
+
+    private static final long HIGHEST_TRACKABLE_MILLIS = 60_000L;
+
+    private final int maxBuckets;
+    private final List<Bucket> buckets = new ArrayList<>();
+    private long origin = -1;
+    private long bucketMillis;
+
+    public TimeSeries(long initialBucketMillis, int maxBuckets) {
+        this.bucketMillis = initialBucketMillis;
+        this.maxBuckets = maxBuckets;
+    }
+
+    public void setOrigin(long origin) {
+        if (this.origin < 0) {
+            this.origin = origin;
+        }
+    }
+
+    public void recordRequest(long startTimestamp, long responseTime, boolean ok) {
+        final Bucket bucket = bucketAt(startTimestamp);
+        bucket.count++;
+        if (!ok) {
+            bucket.ko++;
+        }
+        bucket.histogram.recordValue(Math.max(1, Math.min(responseTime, HIGHEST_TRACKABLE_MILLIS)));
+    }
+
+    public void recordActiveUsers(long timestamp, long activeUsers) {
+        final Bucket bucket = bucketAt(timestamp);
+        bucket.maxActiveUsers = Math.max(bucket.maxActiveUsers, activeUsers);
+    }
+
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+
+    public long getOrigin() {
+        return origin;
+    }
+
+    public List<Bucket> getBuckets() {
+        return buckets;
+    }
+
+    private Bucket bucketAt(long timestamp) {
+        if (origin < 0) {
+            origin = timestamp;
+        }
+
+        int index = (int) (Math.max(0, timestamp - origin) / bucketMillis);
+        while (index >= maxBuckets) {
+            compact();
+            index = (int) (Math.max(0, timestamp - origin) / bucketMillis);
+        }
+        while (buckets.size() <= index) {
+            buckets.add(new Bucket(origin + buckets.size() * bucketMillis));
+        }
+        return buckets.get(index);
+    }
+
+    /**
+     * Halves the number of buckets by merging every pair of adjacent buckets.
+     */
+    private void compact() {
+        final List<Bucket> merged = new ArrayList<>((buckets.size() + 1) / 2);
+        for (int i = 0; i < buckets.size(); i += 2) {
+            final Bucket bucket = buckets.get(i);
+            if (i + 1 < buckets.size()) {
+                bucket.add(buckets.get(i + 1));
+            }
+            merged.add(bucket);
+        }
+        buckets.clear();
+        buckets.addAll(merged);
+        bucketMillis *= 2;
+    }
+
+    public static class Bucket {
+        private final long start;
+        private final IntCountsHistogram histogram = new IntCountsHistogram(1, HIGHEST_TRACKABLE_MILLIS, 2);
+        private long count;
+        private long ko;
+        private long maxActiveUsers;
+
+        Bucket(long start) {
+            this.start = start;
+        }
+
+        void add(Bucket other) {
+            histogram.add(other.histogram);
+            count += other.count;
+            ko += other.ko;
+            maxActiveUsers = Math.max(maxActiveUsers, other.maxActiveUsers);
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getKo() {
+            return ko;
+        }
+
+        public long getMaxActiveUsers() {
+            return maxActiveUsers;
+        }
+
+        public long getPercentile(double percentile) {
+            return count == 0 ? 0 : histogram.getValueAtPercentile(percentile);
+        }
+
+        public long getMax() {
+            return histogram.getMaxValue();
+        }
+    }
+}
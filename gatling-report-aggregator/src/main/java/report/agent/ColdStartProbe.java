@@ -0,0 +1,140 @@
+package report.agent;
+
+import report.LogRecord;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the cold start of a load generator: launches the Gatling command and reports the time from the launch to
+ * the first virtual user in its simulation.log (a USER START or REQUEST record, whichever comes first; the warm-up users
+ * of HttpProtocols send their first request when they start). Both ends are read from the clock of this machine.
+ * The image build uses it for the training run of the class data sharing archive and to report the cold start with
+ * and without the archive, see gatling-tests/scripts/train-cds.sh.
+ * <p>
+ * Usage: ColdStartProbe [--label &lt;label&gt;] [--results &lt;directory&gt;] [--run-seconds &lt;seconds&gt;]
+ * [--timeout-seconds &lt;seconds&gt;] [--output &lt;file&gt;] -- &lt;command&gt; [&lt;argument&gt;...]
+ * <p>
+ * The command runs until it exits, or is stopped (SIGTERM, which lets the JVM write its class list) --run-seconds
+ * after its first virtual user; 0 stops it right away. The line with the result is printed and appended to --output.
+ */
+public class ColdStartProbe {
+
+    private static final long POLL_MILLIS = 20;
+    private static final long STOP_TIMEOUT_SECONDS = 30;
+
+    public static void main(String[] args) throws Exception {
+        final int separator = Arrays.asList(args).indexOf("--");
+        if (separator < 0 || separator == args.length - 1 || separator % 2 != 0) {
+            System.err.println("Usage: ColdStartProbe [--label <label>] [--results <directory>] [--run-seconds <seconds>] "
+                    + "[--timeout-seconds <seconds>] [--output <file>] -- <command> [<argument>...]");
+            System.exit(1);
+        }
+
+        String label = "Cold start";
+        Path results = Paths.get("results");
+        long runSeconds = -1;
+        long timeoutSeconds = 300;
+        Path output = null;
+        for (int i = 0; i < separator; i += 2) {
+            switch (args[i]) {
+                case "--label":
+                    label = args[i + 1];
+                    break;
+                case "--results":
+                    results = Paths.get(args[i + 1]);
+                    break;
+                case "--run-seconds":
+                    runSeconds = Long.parseLong(args[i + 1]);
+                    break;
+                case "--timeout-seconds":
+                    timeoutSeconds = Long.parseLong(args[i + 1]);
+                    break;
+                case "--output":
+                    output = Paths.get(args[i + 1]);
+                    break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(1);
+            }
+        }
+        final List<String> command = new ArrayList<>(Arrays.asList(args).subList(separator + 1, args.length));
+
+        final long launched = System.currentTimeMillis();
+        final Process process = new ProcessBuilder(command).inheritIO().start();
+        final long firstUser = awaitFirstUser(process, results, launched, launched + timeoutSeconds * 1000);
+
+        final String result = firstUser < 0
+                ? label + ": no virtual user within " + timeoutSeconds + " seconds" + (process.isAlive() ? "" : ", the command exited with " + process.exitValue())
+                : label + ": " + (firstUser - launched) + " ms from launch to the first request";
+        System.out.println(result);
+        if (output != null) {
+            Files.writeString(output, result + System.lineSeparator(), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+
+        if (firstUser >= 0 && runSeconds >= 0) {
+            Thread.sleep(Math.max(0, firstUser + runSeconds * 1000 - System.currentTimeMillis()));
+            stop(process);
+        } else if (firstUser < 0) {
+            stop(process);
+        }
+        process.waitFor();
+        System.exit(firstUser < 0 ? 1 : 0);
+    }
+
+    /**
+     * @return the timestamp of the first virtual user, or -1 when the command exited or the deadline passed first
+     */
+    static long awaitFirstUser(Process process, Path results, long launched, long deadline) throws IOException, InterruptedException {
+        LogTailer tailer = null;
+        final AtomicLong firstUser = new AtomicLong(-1);
+        try {
+            while (System.currentTimeMillis() < deadline) {
+                final boolean exited = !process.isAlive();
+                if (tailer == null) {
+                    final Optional<Path> simulationLog = GeneratorAgent.findSimulationLog(results, launched);
+                    if (simulationLog.isPresent()) {
+                        tailer = new LogTailer(simulationLog.get());
+                    }
+                }
+                if (tailer != null) {
+                    tailer.read(record -> {
+                        if (firstUser.get() < 0 && (record.type == LogRecord.Type.REQUEST
+                                || (record.type == LogRecord.Type.USER && "START".equals(record.status)))) {
+                            firstUser.set(record.startTimestamp);
+                        }
+                    });
+                    if (firstUser.get() >= 0) {
+                        return firstUser.get();
+                    }
+                }
+                if (exited) {
+                    return -1;
+                }
+                Thread.sleep(POLL_MILLIS);
+            }
+            return -1;
+        } finally {
+            if (tailer != null) {
+                tailer.close();
+            }
+        }
+    }
+
+    private static void stop(Process process) throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package report.agent;
+
+import org.slf4j.Logger;
+import report.GeneratorSample;
+import report.LogRecord;
+import report.live.IntervalRecorder;
+import report.live.IntervalSnapshot;
+import report.live.MetricsChannel;
+import report.live.S3MetricsChannel;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Side process started by run.sh next to Gatling in every load generator container.
+ * It follows the simulation.log Gatling writes and publishes an interval snapshot (count, errors and response time
+ * histogram per request name) every METRICS_INTERVAL_SECONDS, so the runner can show fleet-wide metrics while the
+ * test is running. The resource usage samples GeneratorMonitor writes to generator.log are published with them.
+ * Unless LOG_SHIPPING is false it also ships simulation.log to the logs/ folder of the report bucket in compressed parts
+ * while the test runs (see LogShipper), in the binary format with LOG_FORMAT=binary, and writes results/shipped once
+ * the whole log is shipped so that run.sh doesn't upload it again.
+ * On SIGTERM (sent by run.sh once Gatling exits) the rest of the log is read and published.
+ */
+public class GeneratorAgent implements AutoCloseable {
+
+    private static final Logger LOG = getLogger(GeneratorAgent.class);
+
+    private final Config config;
+    private final MetricsChannel metricsChannel;
+    private final LogShipper logShipper;
+    private final IntervalRecorder intervalRecorder;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private volatile LogTailer logTailer;
+    private volatile LogTailer generatorLogTailer;
+
+    public static void main(String[] args) throws Exception {
+        final Config config = new Config();
+        if ((!config.liveMetrics && !config.logShipping) || config.reportBucket == null) {
+            LOG.info("Live metrics and log shipping are disabled");
+            return;
+        }
+
+        final S3ClientBuilder s3ClientBuilder = S3Client.builder();
+        if (config.s3Endpoint != null)
+            s3ClientBuilder.endpointOverride(URI.create(config.s3Endpoint)).serviceConfiguration(c -> c.pathStyleAccessEnabled(true));
+
+        final S3Client logsClient = s3ClientBuilder.build();
+        final LogShipper logShipper = !config.logShipping ? null
+                : new LogShipper((name, content) -> logsClient.putObject(PutObjectRequest.builder().bucket(config.reportBucket).key(config.logsPrefix + "/" + name).build(),
+                        RequestBody.fromBytes(content)),
+                config.generator + "-simulation.log", "binary".equalsIgnoreCase(config.logFormat),
+                config.logChunkMegabytes << 20, config.logChunkSeconds * 1000L, config.logUploadThreads);
+        final GeneratorAgent agent = new GeneratorAgent(config,
+                config.liveMetrics ? new S3MetricsChannel(s3ClientBuilder.build(), config.reportBucket, config.runId) : null, logShipper);
+        Runtime.getRuntime().addShutdownHook(new Thread(agent::close, "generator-agent-shutdown"));
+        agent.start();
+        agent.stopped.await();
+    }
+
+    public GeneratorAgent(Config config, MetricsChannel metricsChannel) {
+        this(config, metricsChannel, null);
+    }
+
+    /**
+     * @param metricsChannel where the live metrics go, null to only ship the log
+     * @param logShipper     ships simulation.log while it's written, or null
+     */
+    public GeneratorAgent(Config config, MetricsChannel metricsChannel, LogShipper logShipper) {
+        this.config = config;
+        this.metricsChannel = metricsChannel;
+        this.logShipper = logShipper;
+        this.intervalRecorder = new IntervalRecorder(config.generator, config.intervalSeconds * 1000L);
+    }
+
+    public void start() {
+        final long agentStart = System.currentTimeMillis();
+        scheduler.scheduleWithFixedDelay(() -> tick(agentStart), config.intervalSeconds, config.intervalSeconds, TimeUnit.SECONDS);
+        LOG.info("{} for {} every {} seconds", metricsChannel == null ? "Shipping the log" : "Publishing live metrics",
+                config.generator, config.intervalSeconds);
+    }
+
+    private void tick(long agentStart) {
+        try {
+            if (logTailer == null) {
+                final Optional<Path> simulationLog = findSimulationLog(Paths.get(config.resultsDirectory), agentStart);
+                if (simulationLog.isEmpty()) {
+                    return;
+                }
+                LOG.info("Following {}", simulationLog.get());
+                logTailer = new LogTailer(simulationLog.get());
+            }
+
+            readSimulationLog();
+            readGeneratorLog();
+            if (logShipper != null) {
+                logShipper.tick();
+            }
+            publish(intervalRecorder.drain(System.currentTimeMillis()));
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Could not publish live metrics: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the rest of the simulation log and publishes every remaining interval.
+     */
+    @Override
+    public void close() {
+        if (stopped.getCount() == 0) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+            if (logTailer != null) {
+                readSimulationLog();
+                // Gatling has exited, so a line it didn't finish stays unfinished and still belongs in the shipped log
+                logTailer.readPartialLine(this::readSimulationLine);
+                logTailer.close();
+            }
+            if (logShipper != null) {
+                logShipper.close();
+                if (logShipper.isComplete()) {
+                    Files.writeString(Paths.get(config.resultsDirectory, "shipped"), "");
+                }
+            }
+            readGeneratorLog();
+            if (generatorLogTailer != null) {
+                generatorLogTailer.close();
+            }
+            publish(intervalRecorder.drainAll());
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Could not publish the final live metrics: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (metricsChannel != null) {
+                metricsChannel.close();
+            }
+            stopped.countDown();
+        }
+    }
+
+    private void readSimulationLog() throws IOException {
+        logTailer.readLines(this::readSimulationLine);
+    }
+
+    /**
+     * Ships the line and records it. The tailer has already moved past the lines it reads, so a line that doesn't
+     * parse is only skipped and mustn't abort the rest of them.
+     */
+    private void readSimulationLine(String line) {
+        if (logShipper != null) {
+            logShipper.append(line);
+        }
+        final LogRecord record;
+        try {
+            record = LogRecord.parse(line);
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Skipping a malformed simulation.log line ({}): {}", e.getMessage(), line);
+            return;
+        }
+        if (record != null) {
+            intervalRecorder.record(record);
+        }
+    }
+
+    private void readGeneratorLog() throws IOException {
+        if (generatorLogTailer == null) {
+            final Path generatorLog = Paths.get(config.generatorLog);
+            if (!Files.isRegularFile(generatorLog)) {
+                return;
+            }
+            generatorLogTailer = new LogTailer(generatorLog);
+        }
+        generatorLogTailer.readLines(line -> {
+            final GeneratorSample sample;
+            try {
+                sample = GeneratorSample.parse(line);
+            } catch (IllegalArgumentException e) {
+                LOG.warn("Skipping a malformed generator.log line: {}", line);
+                return;
+            }
+            if (sample != null) {
+                intervalRecorder.record(sample);
+            }
+        });
+    }
+
+    private void publish(Iterable<IntervalSnapshot> snapshots) {
+        if (metricsChannel == null) {
+            return;
+        }
+        for (IntervalSnapshot snapshot : snapshots) {
+            metricsChannel.publish(snapshot);
+        }
+    }
+
+    /**
+     * Gatling writes to results/&lt;simulation&gt;-&lt;timestamp&gt;/simulation.log; the newest one written since the
+     * agent started belongs to the running simulation.
+     */
+    static Optional<Path> findSimulationLog(Path resultsDirectory, long since) throws IOException {
+        if (!Files.isDirectory(resultsDirectory)) {
+            return Optional.empty();
+        }
+        try (Stream<Path> files = Files.walk(resultsDirectory, 2)) {
+            return files.filter(file -> file.getFileName().toString().equals("simulation.log"))
+                    .filter(file -> file.toFile().lastModified() >= since - 1000)
+                    .max(Comparator.comparingLong(file -> file.toFile().lastModified()));
+        }
+    }
+
+    /**
+     * Agent settings, read from the container environment (or from a map when the agent runs in-process).
+     */
+    public static class Config {
+        final String reportBucket;
+        final String runId;
+        final String generator;
+        final String resultsDirectory;
+        final String generatorLog;
+        final int intervalSeconds;
+        final boolean liveMetrics;
+        final boolean logShipping;
+        final String logFormat;
+        final String logsPrefix;
+        final long logChunkMegabytes;
+        final int logChunkSeconds;
+        final int logUploadThreads;
+        final String s3Endpoint;
+
+        public Config() {
+            this(System.getenv());
+        }
+
+        public Config(Map<String, String> environment) {
+            reportBucket = environment.get("REPORT_BUCKET");
+            runId = getOrDefault(environment, "RUN_ID", "local");
+            generator = getOrDefault(environment, "HOSTNAME", "localhost");
+            resultsDirectory = getOrDefault(environment, "RESULTS_DIRECTORY", "results");
+            generatorLog = getOrDefault(environment, "GENERATOR_LOG", resultsDirectory + "/generator.log");
+            intervalSeconds = Integer.parseInt(getOrDefault(environment, "METRICS_INTERVAL_SECONDS", "5"));
+            liveMetrics = Boolean.parseBoolean(getOrDefault(environment, "LIVE_METRICS", "true"));
+            logShipping = Boolean.parseBoolean(getOrDefault(environment, "LOG_SHIPPING", "true"));
+            logFormat = getOrDefault(environment, "LOG_FORMAT", "text");
+            logsPrefix = getOrDefault(environment, "LOGS_PREFIX", "logs");
+            logChunkMegabytes = Long.parseLong(getOrDefault(environment, "LOG_CHUNK_MB", "16"));
+            logChunkSeconds = Integer.parseInt(getOrDefault(environment, "LOG_CHUNK_SECONDS", "30"));
+            logUploadThreads = Integer.parseInt(getOrDefault(environment, "LOG_UPLOAD_THREADS", "4"));
+            s3Endpoint = environment.get("S3_ENDPOINT");
+        }
+
+        static String getOrDefault(Map<String, String> environment, String var, String defaultValue) {
+            final String value = environment.get(var);
+            return value == null || value.isEmpty() ? defaultValue : value;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package report.agent;
+
+import org.slf4j.Logger;
+import report.GeneratorSample;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Samples the resource usage of the Gatling JVM it runs in and writes a GeneratorSample per second to generator.log,
+ * which run.sh uploads next to simulation.log and the GeneratorAgent adds to the live metrics.
+ * <p>
+ * The JVM is sampled through its platform MXBeans (the image runs Java 11, which has no JFR event streaming):
+ * process CPU time against the available processors, GC time, heap usage, and the established TCP connections of
+ * the container from /proc/net. The event loop lag is the delay of a probe task on every Netty event loop the
+ * simulation registered (watchEventLoop); without any it is the wake-up delay of the sampler itself.
+ */
+public final class GeneratorMonitor implements AutoCloseable {
+
+    private static final Logger LOG = getLogger(GeneratorMonitor.class);
+    private static final long SAMPLE_MILLIS = 1000;
+    private static final String[] TCP_TABLES = {"/proc/net/tcp", "/proc/net/tcp6"};
+    private static final String ESTABLISHED = "01";
+
+    private static GeneratorMonitor instance;
+
+    private final BufferedWriter writer;
+    private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "generator-monitor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final com.sun.management.OperatingSystemMXBean operatingSystem =
+            (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+    private final List<GarbageCollectorMXBean> garbageCollectors = ManagementFactory.getGarbageCollectorMXBeans();
+    /** Submit time of the probe pending on every watched event loop, 0 when it ran. */
+    private final Map<Executor, AtomicLong> eventLoops = new ConcurrentHashMap<>();
+    private final AtomicLong eventLoopLag = new AtomicLong();
+
+    private long lastSample;
+    private long lastCpuNanos;
+    private long lastGcMillis;
+
+    GeneratorMonitor(Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        this.lastSample = System.currentTimeMillis();
+        this.lastCpuNanos = operatingSystem.getProcessCpuTime();
+        this.lastGcMillis = gcMillis();
+        sampler.scheduleAtFixedRate(this::sample, SAMPLE_MILLIS, SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts monitoring this JVM, once, unless GENERATOR_MONITOR is false. The samples go to GENERATOR_LOG
+     * (default generator.log in RESULTS_DIRECTORY), where the GeneratorAgent looks for them.
+     */
+    public static synchronized void start() {
+        if (instance != null || !Boolean.parseBoolean(GeneratorAgent.Config.getOrDefault(System.getenv(), "GENERATOR_MONITOR", "true"))) {
+            return;
+        }
+        final Path file = Paths.get(new GeneratorAgent.Config().generatorLog);
+        try {
+            instance = new GeneratorMonitor(file);
+            Runtime.getRuntime().addShutdownHook(new Thread(instance::close, "generator-monitor-shutdown"));
+            LOG.info("Writing the generator resource usage to {}", file);
+        } catch (IOException e) {
+            LOG.warn("Could not start the generator monitor: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Measures the lag of the given event loop from now on (a Netty EventLoop, e.g. the one of a Gatling session).
+     */
+    public static void watchEventLoop(Executor eventLoop) {
+        final GeneratorMonitor monitor;
+        synchronized (GeneratorMonitor.class) {
+            monitor = instance;
+        }
+        if (monitor != null) {
+            monitor.eventLoops.putIfAbsent(eventLoop, new AtomicLong());
+        }
+    }
+
+    private void sample() {
+        try {
+            final long now = System.currentTimeMillis();
+            final long intervalMillis = Math.max(1, now - lastSample);
+            final long cpuNanos = operatingSystem.getProcessCpuTime();
+            final long gc = gcMillis();
+            final MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+
+            final double cpuPercent = cpuNanos < 0 ? -1
+                    : (cpuNanos - lastCpuNanos) / 1e6 * 100 / intervalMillis / Runtime.getRuntime().availableProcessors();
+            final GeneratorSample sample = new GeneratorSample(now, intervalMillis, Math.min(100, cpuPercent), gc - lastGcMillis,
+                    heap.getUsed() >> 20, heap.getMax() >> 20, eventLoopLag(now, intervalMillis), connections());
+
+            writer.write(sample.encode());
+            writer.newLine();
+            writer.flush();
+
+            lastSample = now;
+            lastCpuNanos = cpuNanos;
+            lastGcMillis = gc;
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Could not sample the generator: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return the longest delay of a probe since the previous sample, and sends a new probe to every idle event loop
+     */
+    private long eventLoopLag(long now, long intervalMillis) {
+        if (eventLoops.isEmpty()) {
+            // The sampler runs at a fixed rate, so a late wake-up is a stall of the whole JVM
+            return Math.max(0, intervalMillis - SAMPLE_MILLIS);
+        }
+
+        long lag = eventLoopLag.getAndSet(0);
+        for (Map.Entry<Executor, AtomicLong> eventLoop : eventLoops.entrySet()) {
+            final AtomicLong pending = eventLoop.getValue();
+            final long submitted = pending.get();
+            if (submitted > 0) {
+                lag = Math.max(lag, now - submitted);
+                continue;
+            }
+            pending.set(now);
+            try {
+                eventLoop.getKey().execute(() -> eventLoopLag.accumulateAndGet(System.currentTimeMillis() - pending.getAndSet(0), Math::max));
+            } catch (RuntimeException e) {
+                // The event loop shut down
+                eventLoops.remove(eventLoop.getKey());
+            }
+        }
+        return lag;
+    }
+
+    private long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean garbageCollector : garbageCollectors) {
+            total += Math.max(0, garbageCollector.getCollectionTime());
+        }
+        return total;
+    }
+
+    /**
+     * @return the established TCP connections in the network namespace of the container, -1 if unknown
+     */
+    static long connections() {
+        long connections = -1;
+        for (String table : TCP_TABLES) {
+            final Path path = Paths.get(table);
+            if (!Files.isReadable(path)) {
+                continue;
+            }
+            try (Stream<String> lines = Files.lines(path)) {
+                // sl local_address rem_address st ...
+                connections = Math.max(0, connections) + lines.skip(1).map(String::trim)
+                        .filter(line -> ESTABLISHED.equals(field(line, 3)))
+                        .count();
+            } catch (IOException | RuntimeException e) {
+                return -1;
+            }
+        }
+        return connections;
+    }
+
+    private static String field(String line, int index) {
+        int start = 0;
+        for (int field = 0; field < index; field++) {
+            start = line.indexOf(' ', start);
+            if (start < 0) {
+                return null;
+            }
+            while (start < line.length() && line.charAt(start) == ' ') {
+                start++;
+            }
+        }
+        final int end = line.indexOf(' ', start);
+        return end < 0 ? line.substring(start) : line.substring(start, end);
+    }
+
+    @Override
+    public synchronized void close() {
+        sampler.shutdown();
+        try {
+            sampler.awaitTermination(2, TimeUnit.SECONDS);
+            writer.close();
+        } catch (IOException e) {
+            LOG.warn("Could not close the generator log: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
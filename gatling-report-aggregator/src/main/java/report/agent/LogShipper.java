@@ -0,0 +1,211 @@
+package report.agent;
+
+import org.slf4j.Logger;
+import report.BinaryLogWriter;
+import report.LogChunks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Ships a log while it is being written, instead of uploading it whole once the test is over. The lines go into gzip
+ * compressed parts, or parts in the binary format of BinaryLogWriter (several times smaller and faster to read), that
+ * are sealed at maxChunkBytes (uncompressed) or after maxChunkMillis, and every sealed part is
+ * uploaded in the background, several at a time. Closing the shipper seals the last part and, once every part is
+ * uploaded, stores the manifest (see LogChunks). A load generator that is killed only loses its open part and the
+ * parts that were still uploading.
+ */
+public class LogShipper implements AutoCloseable {
+
+    private static final Logger LOG = getLogger(LogShipper.class);
+    private static final int MAX_ATTEMPTS = 4;
+    private static final long BACKOFF_MILLIS = 1000;
+    private static final long CLOSE_TIMEOUT_MINUTES = 5;
+
+    /**
+     * Where the parts go, e.g. the logs/ folder of the report bucket.
+     */
+    public interface ChunkStore {
+        void put(String name, byte[] content) throws IOException;
+    }
+
+    private final ChunkStore store;
+    private final String log;
+    private final long maxChunkBytes;
+    private final long maxChunkMillis;
+    private final boolean binary;
+    private final ExecutorService uploads;
+    /** Sealed parts held in memory until uploaded, so appending blocks when the uploads fall behind. */
+    private final Semaphore inFlight;
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private ByteArrayOutputStream buffer;
+    private GZIPOutputStream gzip;
+    private BinaryLogWriter binaryWriter;
+    private long chunkBytes;
+    private long chunkStarted;
+    private int parts;
+    private boolean closed;
+
+    /**
+     * @param log    the name of the log, e.g. &lt;generator&gt;-simulation.log like run.sh uploads it
+     * @param binary whether the parts are written by BinaryLogWriter rather than gzip compressed text
+     */
+    public LogShipper(ChunkStore store, String log, boolean binary, long maxChunkBytes, long maxChunkMillis, int uploadThreads) {
+        this.store = store;
+        this.log = log;
+        this.binary = binary;
+        this.maxChunkBytes = maxChunkBytes;
+        this.maxChunkMillis = maxChunkMillis;
+        this.inFlight = new Semaphore(2 * uploadThreads);
+        this.uploads = Executors.newFixedThreadPool(uploadThreads, runnable -> {
+            final Thread thread = new Thread(runnable, "log-shipper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public synchronized void append(String line) {
+        try {
+            if (buffer == null) {
+                buffer = new ByteArrayOutputStream();
+                if (binary) {
+                    binaryWriter = new BinaryLogWriter(buffer);
+                } else {
+                    gzip = new GZIPOutputStream(buffer, 64 * 1024);
+                }
+                chunkBytes = 0;
+                chunkStarted = System.currentTimeMillis();
+            }
+            if (binary) {
+                binaryWriter.write(line);
+                chunkBytes += line.length() + 1;
+            } else {
+                final byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+                gzip.write(bytes);
+                gzip.write('\n');
+                chunkBytes += bytes.length + 1;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (chunkBytes >= maxChunkBytes) {
+            seal();
+        }
+    }
+
+    /**
+     * Seals the open part once it is older than maxChunkMillis, so a slowly written log is shipped as well.
+     */
+    public synchronized void tick() {
+        if (buffer != null && System.currentTimeMillis() - chunkStarted >= maxChunkMillis) {
+            seal();
+        }
+    }
+
+    private void seal() {
+        final byte[] content;
+        try {
+            if (binary) {
+                binaryWriter.close();
+            } else {
+                gzip.close();
+            }
+            content = buffer.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            gzip = null;
+            binaryWriter = null;
+            buffer = null;
+        }
+
+        final String name = LogChunks.partName(log, ++parts, binary);
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to upload " + name, e);
+        }
+        uploads.execute(() -> {
+            try {
+                upload(name, content);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private void upload(String name, byte[] content) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                store.put(name, content);
+                return;
+            } catch (IOException | RuntimeException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    failures.incrementAndGet();
+                    LOG.warn("Could not upload {} after {} attempts: {}", name, attempt, e.getMessage());
+                    return;
+                }
+                try {
+                    Thread.sleep(BACKOFF_MILLIS * attempt);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    failures.incrementAndGet();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return whether every part and the manifest were uploaded
+     */
+    public synchronized boolean isComplete() {
+        return closed && failures.get() == 0;
+    }
+
+    /**
+     * Ships the rest of the log and waits for the uploads, then stores the manifest if none of them failed.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        if (buffer != null) {
+            seal();
+        }
+        uploads.shutdown();
+        try {
+            if (!uploads.awaitTermination(CLOSE_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+                failures.incrementAndGet();
+                LOG.warn("The parts of {} were still uploading after {} minutes", log, CLOSE_TIMEOUT_MINUTES);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failures.incrementAndGet();
+        }
+
+        if (failures.get() == 0) {
+            try {
+                store.put(LogChunks.manifestName(log), (parts + "\n").getBytes(StandardCharsets.UTF_8));
+                LOG.info("Shipped {} in {} part(s)", log, parts);
+            } catch (IOException | RuntimeException e) {
+                failures.incrementAndGet();
+                LOG.warn("Could not upload the manifest of {}: {}", log, e.getMessage());
+            }
+        }
+        closed = true;
+    }
+}
@@ -0,0 +1,113 @@
+package report.agent;
+
+import report.LogRecord;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Follows a simulation.log (or generator.log) file while Gatling is still writing it.
+ * Each read parses the complete lines appended since the previous read; a trailing partial line is kept until
+ * the rest of it has been written.
+ */
+public class LogTailer implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final RandomAccessFile file;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private byte[] partial = new byte[0];
+    private long position;
+
+    public LogTailer(Path path) throws IOException {
+        this.file = new RandomAccessFile(path.toFile(), "r");
+    }
+
+    /**
+     * Parses every complete line appended since the previous call.
+     *
+     * @return the number of bytes consumed
+     */
+    public long read(Consumer<LogRecord> consumer) throws IOException {
+        return readLines(line -> {
+            final LogRecord record;
+            try {
+                record = LogRecord.parse(line);
+            } catch (IllegalArgumentException e) {
+                // The lines read are consumed, so a malformed one is skipped rather than losing the rest of them
+                return;
+            }
+            if (record != null) {
+                consumer.accept(record);
+            }
+        });
+    }
+
+    /**
+     * Passes every complete, non empty line appended since the previous call.
+     *
+     * @return the number of bytes consumed
+     */
+    public synchronized long readLines(Consumer<String> consumer) throws IOException {
+        final long length = file.length();
+        long consumed = 0;
+
+        while (position < length) {
+            file.seek(position);
+            final int read = file.read(buffer, 0, (int) Math.min(buffer.length, length - position));
+            if (read <= 0) {
+                break;
+            }
+            position += read;
+            consumed += read;
+
+            int lineStart = 0;
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] == '\n') {
+                    final String line;
+                    if (partial.length > 0) {
+                        final byte[] joined = new byte[partial.length + i - lineStart];
+                        System.arraycopy(partial, 0, joined, 0, partial.length);
+                        System.arraycopy(buffer, lineStart, joined, partial.length, i - lineStart);
+                        line = new String(joined, StandardCharsets.UTF_8);
+                        partial = new byte[0];
+                    } else {
+                        line = new String(buffer, lineStart, i - lineStart, StandardCharsets.UTF_8);
+                    }
+                    if (!line.isEmpty()) {
+                        consumer.accept(line);
+                    }
+                    lineStart = i + 1;
+                }
+            }
+
+            if (lineStart < read) {
+                final byte[] joined = new byte[partial.length + read - lineStart];
+                System.arraycopy(partial, 0, joined, 0, partial.length);
+                System.arraycopy(buffer, lineStart, joined, partial.length, read - lineStart);
+                partial = joined;
+            }
+        }
+        return consumed;
+    }
+
+    /**
+     * Passes the trailing partial line, once the writer is done and won't complete it (e.g. a load generator killed
+     * while writing its last line).
+     */
+    public synchronized void readPartialLine(Consumer<String> consumer) {
+        if (partial.length > 0) {
+            final String line = new String(partial, StandardCharsets.UTF_8);
+            partial = new byte[0];
+            consumer.accept(line);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,57 @@
+package report.agent;
+
+import org.slf4j.Logger;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Uploads the result files of a load generator to the report bucket at the end of run.sh, in one JVM for all files,
+ * so the generator image doesn't need Python and the AWS CLI. Uses the same credentials and S3_ENDPOINT as the
+ * GeneratorAgent. Missing files are skipped, like the checks in run.sh.
+ * <p>
+ * Usage: S3Upload &lt;bucket&gt; &lt;file&gt; &lt;key&gt; [&lt;file&gt; &lt;key&gt;...]
+ */
+public class S3Upload {
+
+    private static final Logger LOG = getLogger(S3Upload.class);
+
+    public static void main(String[] args) {
+        if (args.length < 3 || args.length % 2 != 1) {
+            System.err.println("Usage: S3Upload <bucket> <file> <key> [<file> <key>...]");
+            System.exit(1);
+        }
+
+        final S3ClientBuilder builder = S3Client.builder();
+        final String s3Endpoint = System.getenv("S3_ENDPOINT");
+        if (s3Endpoint != null && !s3Endpoint.isEmpty())
+            builder.endpointOverride(URI.create(s3Endpoint)).serviceConfiguration(c -> c.pathStyleAccessEnabled(true));
+
+        int failed = 0;
+        try (S3Client s3 = builder.build()) {
+            for (int i = 1; i < args.length; i += 2) {
+                final Path file = Paths.get(args[i]);
+                if (!Files.isRegularFile(file)) {
+                    LOG.info("Skipping {}, it doesn't exist", file);
+                    continue;
+                }
+                try {
+                    s3.putObject(PutObjectRequest.builder().bucket(args[0]).key(args[i + 1]).build(), RequestBody.fromFile(file));
+                    LOG.info("Uploaded {} to s3://{}/{}", file, args[0], args[i + 1]);
+                } catch (RuntimeException e) {
+                    LOG.error("Could not upload {} to s3://{}/{}: {}", file, args[0], args[i + 1], e.getMessage());
+                    failed++;
+                }
+            }
+        }
+        System.exit(failed == 0 ? 0 : 1);
+    }
+}
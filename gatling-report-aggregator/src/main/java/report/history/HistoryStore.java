@@ -0,0 +1,317 @@
+package report.history;
+
+import org.slf4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * The run summaries of a history directory, kept for as long as the directory is (the reports in S3 expire).
+ * <p>
+ * {@link #RUNS_FILE} is append-only: it starts with {@link #RUNS_MAGIC} and holds one record per recorded run, its
+ * length, CRC32 and the serialized RunSummary. {@link #INDEX_FILE} lists the series, run id, start and offset of every
+ * run, so a comparison reads only the summaries of the runs it needs; it is small, loaded whole and rewritten
+ * atomically on every append. The index states how much of the runs file it covers and the missing part is indexed
+ * again when they disagree, e.g. after an append of another process or when the index was lost. A run recorded again
+ * (the report of a run generated again) replaces the earlier record in the index, found by its run id or else by its
+ * series and start. Appends hold a lock on the runs file, so several runners can share a history directory.
+ */
+public class HistoryStore {
+
+    private static final Logger LOG = getLogger(HistoryStore.class);
+
+    static final String RUNS_FILE = "runs.dat";
+    static final String INDEX_FILE = "index.dat";
+    static final byte[] RUNS_MAGIC = {'G', 'H', 'S', 'T', 1};
+    static final byte[] INDEX_MAGIC = {'G', 'H', 'I', 'X', 1};
+    private static final int RECORD_HEADER = 8;
+    private static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+
+    private final Path directory;
+    private final Path runsFile;
+    private final Path indexFile;
+    /** The runs of every series, in start order. */
+    private final Map<String, List<Entry>> series = new TreeMap<>();
+    private long indexedLength;
+
+    private HistoryStore(Path directory) {
+        this.directory = directory;
+        this.runsFile = directory.resolve(RUNS_FILE);
+        this.indexFile = directory.resolve(INDEX_FILE);
+    }
+
+    /**
+     * Opens the history in the given directory, creating it when it doesn't exist.
+     */
+    public static HistoryStore open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        final HistoryStore store = new HistoryStore(directory);
+        try (FileChannel runs = FileChannel.open(store.runsFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Released when the channel is closed
+            runs.lock();
+            if (runs.size() == 0) {
+                runs.write(ByteBuffer.wrap(RUNS_MAGIC));
+                runs.force(true);
+            }
+            store.checkMagic(runs);
+            if (!store.readIndex()) {
+                store.series.clear();
+                store.indexedLength = RUNS_MAGIC.length;
+            }
+            if (store.catchUp(runs)) {
+                store.writeIndex();
+            }
+        }
+        return store;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Adds the summary of a run, replacing an earlier summary of the same run.
+     */
+    public synchronized void append(RunSummary summary) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        summary.writeTo(new DataOutputStream(bytes));
+        final byte[] payload = bytes.toByteArray();
+        final CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        final ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + payload.length);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+
+        try (FileChannel runs = FileChannel.open(runsFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            runs.lock();
+            catchUp(runs);
+            final long offset = runs.size();
+            runs.position(offset);
+            while (record.hasRemaining()) {
+                runs.write(record);
+            }
+            runs.force(true);
+            add(new Entry(summary.getSeries(), summary.runId, summary.start, offset));
+            indexedLength = runs.size();
+            writeIndex();
+        }
+    }
+
+    /**
+     * @return the series of the history, see RunSummary.getSeries
+     */
+    public synchronized List<String> getSeries() {
+        return new ArrayList<>(series.keySet());
+    }
+
+    /**
+     * @return every run of the series, oldest first
+     */
+    public synchronized List<RunSummary> getRuns(String seriesKey) throws IOException {
+        return read(series.getOrDefault(seriesKey, Collections.emptyList()));
+    }
+
+    /**
+     * @return the latest runs of the series that started before the given instant, oldest first, at most limit of them
+     */
+    public synchronized List<RunSummary> getRunsBefore(String seriesKey, long start, String excludedRunId, int limit) throws IOException {
+        final List<Entry> before = new ArrayList<>();
+        for (Entry entry : series.getOrDefault(seriesKey, Collections.emptyList())) {
+            if (entry.start < start && !entry.runId.equals(excludedRunId)) {
+                before.add(entry);
+            }
+        }
+        return read(before.subList(Math.max(0, before.size() - limit), before.size()));
+    }
+
+    /**
+     * @return the number of runs in the history
+     */
+    public synchronized int size() {
+        return series.values().stream().mapToInt(List::size).sum();
+    }
+
+    private List<RunSummary> read(List<Entry> entries) throws IOException {
+        final List<RunSummary> summaries = new ArrayList<>(entries.size());
+        if (entries.isEmpty()) {
+            return summaries;
+        }
+        try (FileChannel runs = FileChannel.open(runsFile, StandardOpenOption.READ)) {
+            for (Entry entry : entries) {
+                final byte[] payload = readRecord(runs, entry.offset, runs.size());
+                if (payload == null) {
+                    throw new IOException("Corrupt record of run " + entry.runId + " at " + entry.offset + " of " + runsFile);
+                }
+                summaries.add(RunSummary.readFrom(new DataInputStream(new ByteArrayInputStream(payload))));
+            }
+        }
+        return summaries;
+    }
+
+    /**
+     * @return the payload of the record at the offset, or null when it is incomplete or corrupt
+     */
+    private static byte[] readRecord(FileChannel runs, long offset, long size) throws IOException {
+        if (offset + RECORD_HEADER > size) {
+            return null;
+        }
+        final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        readFully(runs, header, offset);
+        final int length = header.getInt(0);
+        if (length < 0 || length > MAX_RECORD_SIZE || offset + RECORD_HEADER + length > size) {
+            return null;
+        }
+        final ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(runs, payload, offset + RECORD_HEADER);
+        final CRC32 crc = new CRC32();
+        crc.update(payload.array());
+        return (int) crc.getValue() == header.getInt(4) ? payload.array() : null;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+
+    private void checkMagic(FileChannel runs) throws IOException {
+        final ByteBuffer magic = ByteBuffer.allocate(RUNS_MAGIC.length);
+        if (runs.size() < RUNS_MAGIC.length) {
+            throw new IOException(runsFile + " is not a run history");
+        }
+        readFully(runs, magic, 0);
+        if (!Arrays.equals(magic.array(), RUNS_MAGIC)) {
+            throw new IOException(runsFile + " is not a run history");
+        }
+    }
+
+    /**
+     * Indexes the records appended after the indexed part of the runs file. A record that was cut short (a writer
+     * died while appending) is truncated, so the next append lines up again; the caller holds the lock.
+     *
+     * @return whether the index changed
+     */
+    private boolean catchUp(FileChannel runs) throws IOException {
+        final long size = runs.size();
+        if (indexedLength > size) {
+            LOG.warn("The index of {} covers more than the runs file, indexing it again", directory);
+            series.clear();
+            indexedLength = RUNS_MAGIC.length;
+        }
+        if (indexedLength == size) {
+            return false;
+        }
+
+        long offset = indexedLength;
+        while (offset < size) {
+            final byte[] payload = readRecord(runs, offset, size);
+            if (payload == null) {
+                LOG.warn("Truncating the incomplete or corrupt record at {} of {} ({} bytes)", offset, runsFile, size - offset);
+                runs.truncate(offset);
+                break;
+            }
+            final RunSummary summary = RunSummary.readFrom(new DataInputStream(new ByteArrayInputStream(payload)));
+            add(new Entry(summary.getSeries(), summary.runId, summary.start, offset));
+            offset += RECORD_HEADER + payload.length;
+        }
+        indexedLength = offset;
+        return true;
+    }
+
+    private void add(Entry entry) {
+        for (List<Entry> runs : series.values()) {
+            // The same run may also come back under another id, e.g. recorded by the runner and by generateReport.sh
+            runs.removeIf(existing -> existing.runId.equals(entry.runId)
+                    || (existing.series.equals(entry.series) && existing.start == entry.start));
+        }
+        series.values().removeIf(List::isEmpty);
+        final List<Entry> runs = series.computeIfAbsent(entry.series, key -> new ArrayList<>());
+        runs.add(entry);
+        runs.sort(Comparator.comparingLong((Entry run) -> run.start).thenComparingLong(run -> run.offset));
+    }
+
+    /**
+     * @return whether the index was read, false when it is missing or unreadable
+     */
+    private boolean readIndex() {
+        if (!Files.isRegularFile(indexFile)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            final byte[] magic = new byte[INDEX_MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, INDEX_MAGIC)) {
+                throw new IOException("not an index");
+            }
+            indexedLength = in.readLong();
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final Entry entry = new Entry(in.readUTF(), in.readUTF(), in.readLong(), in.readLong());
+                series.computeIfAbsent(entry.series, key -> new ArrayList<>()).add(entry);
+            }
+            return true;
+        } catch (IOException e) {
+            LOG.warn("Could not read the index of {}, indexing the runs again: {}", directory, e.getMessage());
+            return false;
+        }
+    }
+
+    private void writeIndex() throws IOException {
+        final Path temporary = Files.createTempFile(directory, INDEX_FILE, ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.write(INDEX_MAGIC);
+                out.writeLong(indexedLength);
+                out.writeInt(size());
+                for (List<Entry> runs : series.values()) {
+                    for (Entry entry : runs) {
+                        out.writeUTF(entry.series);
+                        out.writeUTF(entry.runId);
+                        out.writeLong(entry.start);
+                        out.writeLong(entry.offset);
+                    }
+                }
+            }
+            Files.move(temporary, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static class Entry {
+        final String series;
+        final String runId;
+        final long start;
+        final long offset;
+
+        Entry(String series, String runId, long start, long offset) {
+            this.series = series;
+            this.runId = runId;
+            this.start = start;
+            this.offset = offset;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package report.history;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Compares a run with the rolling baseline of its series, the last {@code baselineRuns} runs that ran to completion,
+ * and flags the metrics of every request that got worse beyond the usual run to run variation.
+ * <p>
+ * A run is a single observation, so a metric is judged by how far it lies from the runs of the baseline: its modified
+ * z-score, the distance to the baseline median in units of the median absolute deviation (times 1.4826, which makes it
+ * comparable to a standard deviation), has to reach {@code threshold} (3.5 by default, the usual cut-off for outliers).
+ * The median and MAD aren't thrown by a single odd baseline run as the mean and standard deviation would be. A very
+ * steady baseline has a MAD of 0 (the percentiles are whole milliseconds), so the spread is at least the resolution of
+ * the metric or 1% of the median, and the change also has to reach a minimum in relative and absolute terms
+ * ({@code minChangePercent} and e.g. 5 ms for the latencies), so differences nobody would act on aren't flagged.
+ * Metrics of requests with fewer than {@code minRequests} requests in the run or the baseline are too noisy to judge.
+ * <p>
+ * The latencies (p50, p95, p99) regress when they are higher, the throughput (mean requests per second) when it is
+ * lower and the error percentage when it is higher, in percentage points rather than percent.
+ */
+public class RegressionDetector {
+
+    /** The MAD of a normal distribution is this fraction of its standard deviation. */
+    static final double MAD_SCALE = 1.4826;
+    /** The spread of a baseline is at least this fraction of its median. */
+    static final double MIN_SPREAD_FRACTION = 0.01;
+
+    private final int baselineRuns;
+    private final int minBaselineRuns;
+    private final double threshold;
+    private final double minChangePercent;
+    private final long minRequests;
+    private final List<Metric> metrics;
+
+    public RegressionDetector() {
+        this(5, 3, 3.5, 10, 100);
+    }
+
+    /**
+     * @param baselineRuns     how many of the latest runs of the series make the baseline
+     * @param minBaselineRuns  how many runs the baseline needs at least before a run is judged
+     * @param threshold        the modified z-score from which a change is significant
+     * @param minChangePercent the smallest relative change that is flagged
+     * @param minRequests      the fewest requests a request needs in the run and in every baseline run to be judged
+     */
+    public RegressionDetector(int baselineRuns, int minBaselineRuns, double threshold, double minChangePercent, long minRequests) {
+        if (minBaselineRuns < 2 || baselineRuns < minBaselineRuns) {
+            throw new IllegalArgumentException("The baseline needs at least 2 runs and baselineRuns >= minBaselineRuns, got "
+                    + baselineRuns + " and " + minBaselineRuns);
+        }
+        this.baselineRuns = baselineRuns;
+        this.minBaselineRuns = minBaselineRuns;
+        this.threshold = threshold;
+        this.minChangePercent = minChangePercent;
+        this.minRequests = minRequests;
+        this.metrics = Arrays.asList(
+                new Metric("p50", "ms", true, 1, 5, request -> request.getPercentile(50)),
+                new Metric("p95", "ms", true, 1, 5, request -> request.getPercentile(95)),
+                new Metric("p99", "ms", true, 1, 5, request -> request.getPercentile(99)),
+                new Metric("throughput", "req/s", false, 0.01, 0, request -> request.meanRps),
+                new Metric("errors", "%", true, 0.1, 1, RunSummary.RequestSummary::getErrorPercentage));
+    }
+
+    public int getBaselineRuns() {
+        return baselineRuns;
+    }
+
+    /**
+     * Compares the run with the baseline.
+     *
+     * @param run      the run
+     * @param previous the latest earlier runs of its series, oldest first; aborted runs don't count towards the baseline
+     */
+    public RegressionReport compare(RunSummary run, List<RunSummary> previous) {
+        final List<RunSummary> baseline = new ArrayList<>();
+        for (RunSummary candidate : previous) {
+            if (!candidate.aborted) {
+                baseline.add(candidate);
+            }
+        }
+        final List<RunSummary> used = baseline.subList(Math.max(0, baseline.size() - baselineRuns), baseline.size());
+        final List<String> baselineIds = new ArrayList<>();
+        used.forEach(summary -> baselineIds.add(summary.runId));
+
+        if (run.aborted) {
+            return RegressionReport.skipped(run, baselineIds, "the run was aborted, it is kept out of the baselines");
+        }
+        if (used.size() < minBaselineRuns) {
+            return RegressionReport.skipped(run, baselineIds, "the baseline has " + used.size() + " of the "
+                    + minBaselineRuns + " completed run(s) needed to judge a run");
+        }
+
+        final List<RegressionReport.Finding> findings = new ArrayList<>();
+        int compared = 0;
+        for (RunSummary.RequestSummary request : run.requests) {
+            final List<RunSummary.RequestSummary> history = new ArrayList<>();
+            for (RunSummary summary : used) {
+                final RunSummary.RequestSummary earlier = summary.getRequest(request.name);
+                if (earlier != null && earlier.count >= minRequests) {
+                    history.add(earlier);
+                }
+            }
+            if (request.count < minRequests || history.size() < minBaselineRuns) {
+                continue;
+            }
+            compared++;
+            for (Metric metric : metrics) {
+                final RegressionReport.Finding finding = judge(request, history, metric);
+                if (finding != null) {
+                    findings.add(finding);
+                }
+            }
+        }
+        return new RegressionReport(run, baselineIds, compared, findings, null);
+    }
+
+    private RegressionReport.Finding judge(RunSummary.RequestSummary request, List<RunSummary.RequestSummary> history, Metric metric) {
+        final double value = metric.value.applyAsDouble(request);
+        final double[] baseline = history.stream().mapToDouble(metric.value).toArray();
+        final double median = median(baseline);
+        final double[] deviations = Arrays.stream(baseline).map(v -> Math.abs(v - median)).toArray();
+        final double spread = Math.max(MAD_SCALE * median(deviations), Math.max(metric.resolution, Math.abs(median) * MIN_SPREAD_FRACTION));
+
+        // Positive is worse
+        final double change = metric.higherIsWorse ? value - median : median - value;
+        final double changePercent = median == 0 ? (change > 0 ? Double.POSITIVE_INFINITY : 0) : change * 100 / median;
+        final double score = change / spread;
+
+        // The error percentage is judged in percentage points: going from 0.1% to 0.2% doubles it but isn't worth a flag
+        final boolean bigEnough = metric.unit.equals("%")
+                ? change >= metric.minAbsoluteChange
+                : changePercent >= minChangePercent && change >= metric.minAbsoluteChange;
+        if (score < threshold || !bigEnough) {
+            return null;
+        }
+        return new RegressionReport.Finding(request.name, metric.name, metric.unit, value, median, spread, changePercent, score);
+    }
+
+    static double median(double[] values) {
+        final double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        final int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+
+    private static class Metric {
+        final String name;
+        final String unit;
+        final boolean higherIsWorse;
+        /** The smallest difference the metric shows, the least spread of a baseline. */
+        final double resolution;
+        final double minAbsoluteChange;
+        final ToDoubleFunction<RunSummary.RequestSummary> value;
+
+        Metric(String name, String unit, boolean higherIsWorse, double resolution, double minAbsoluteChange,
+               ToDoubleFunction<RunSummary.RequestSummary> value) {
+            this.name = name;
+            this.unit = unit;
+            this.higherIsWorse = higherIsWorse;
+            this.resolution = resolution;
+            this.minAbsoluteChange = minAbsoluteChange;
+            this.value = value;
+        }
+    }
+}
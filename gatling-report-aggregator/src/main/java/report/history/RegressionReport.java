@@ -0,0 +1,132 @@
+package report.history;
+
+import report.StatsJsonWriter;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The outcome of comparing a run with the baseline of its series, see RegressionDetector.
+ */
+public class RegressionReport {
+
+    public final String runId;
+    public final String series;
+    /** The runs of the baseline, oldest first. */
+    public final List<String> baselineRunIds;
+    /** How many request names had enough requests to be compared. */
+    public final int comparedRequests;
+    public final List<Finding> findings;
+    /** Why the run wasn't compared, or null when it was. */
+    public final String skippedReason;
+
+    RegressionReport(RunSummary run, List<String> baselineRunIds, int comparedRequests, List<Finding> findings, String skippedReason) {
+        this.runId = run.runId;
+        this.series = run.getSeries();
+        this.baselineRunIds = Collections.unmodifiableList(baselineRunIds);
+        this.comparedRequests = comparedRequests;
+        this.findings = Collections.unmodifiableList(findings);
+        this.skippedReason = skippedReason;
+    }
+
+    static RegressionReport skipped(RunSummary run, List<String> baselineRunIds, String reason) {
+        return new RegressionReport(run, baselineRunIds, 0, Collections.emptyList(), reason);
+    }
+
+    public boolean isSkipped() {
+        return skippedReason != null;
+    }
+
+    public boolean hasRegressions() {
+        return !findings.isEmpty();
+    }
+
+    /**
+     * @return a human readable summary, one line per regression
+     */
+    public String describe() {
+        if (isSkipped()) {
+            return "Run " + runId + " of " + series + " wasn't compared: " + skippedReason;
+        }
+        final StringBuilder description = new StringBuilder(String.format(Locale.ROOT, "Run %s of %s compared with %d run(s) (%s): ",
+                runId, series, baselineRunIds.size(), String.join(", ", baselineRunIds)));
+        if (findings.isEmpty()) {
+            return description.append("no regression in ").append(comparedRequests).append(" request(s)").toString();
+        }
+        description.append(findings.size()).append(" regression(s)");
+        for (Finding finding : findings) {
+            description.append("\n  ").append(finding.describe());
+        }
+        return description.toString();
+    }
+
+    public String toJson() {
+        final StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"runId\": ").append(StatsJsonWriter.quote(runId)).append(",\n");
+        json.append("  \"series\": ").append(StatsJsonWriter.quote(series)).append(",\n");
+        json.append("  \"baseline\": [");
+        String separator = "";
+        for (String baselineRunId : baselineRunIds) {
+            json.append(separator).append(StatsJsonWriter.quote(baselineRunId));
+            separator = ", ";
+        }
+        json.append("],\n");
+        json.append("  \"skipped\": ").append(skippedReason == null ? "null" : StatsJsonWriter.quote(skippedReason)).append(",\n");
+        json.append("  \"comparedRequests\": ").append(comparedRequests).append(",\n");
+        json.append("  \"regressions\": [");
+        separator = "\n";
+        for (Finding finding : findings) {
+            json.append(separator).append(String.format(Locale.ROOT,
+                    "    {\"request\": %s, \"metric\": %s, \"unit\": %s, \"value\": %.3f, \"baselineMedian\": %.3f, \"baselineSpread\": %.3f, "
+                            + "\"changePercent\": %s, \"score\": %s}",
+                    StatsJsonWriter.quote(finding.request), StatsJsonWriter.quote(finding.metric), StatsJsonWriter.quote(finding.unit),
+                    finding.value, finding.baselineMedian, finding.baselineSpread, number(finding.changePercent), number(finding.score)));
+            separator = ",\n";
+        }
+        return json.append("\n  ]\n}\n").toString();
+    }
+
+    /**
+     * JSON has no infinity: the relative change from a baseline of 0 is null
+     */
+    private static String number(double value) {
+        return Double.isInfinite(value) || Double.isNaN(value) ? "null" : String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    /**
+     * A metric of a request that got significantly worse.
+     */
+    public static class Finding {
+        public final String request;
+        /** p50, p95, p99, throughput or errors */
+        public final String metric;
+        public final String unit;
+        public final double value;
+        public final double baselineMedian;
+        /** The MAD of the baseline, scaled to compare with a standard deviation. */
+        public final double baselineSpread;
+        /** How much worse than the baseline median, in percent. */
+        public final double changePercent;
+        /** The modified z-score. */
+        public final double score;
+
+        Finding(String request, String metric, String unit, double value, double baselineMedian, double baselineSpread,
+                double changePercent, double score) {
+            this.request = request;
+            this.metric = metric;
+            this.unit = unit;
+            this.value = value;
+            this.baselineMedian = baselineMedian;
+            this.baselineSpread = baselineSpread;
+            this.changePercent = changePercent;
+            this.score = score;
+        }
+
+        public String describe() {
+            return String.format(Locale.ROOT, "%s %s: %.1f %s, baseline %.1f %s (%s, z %s)", request, metric, value, unit,
+                    baselineMedian, unit, Double.isInfinite(changePercent) ? "up from 0" : String.format(Locale.ROOT, "%.0f%% worse", changePercent),
+                    String.format(Locale.ROOT, "%.1f", score));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package report.history;
+
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Keeps the summary of every aggregated run in a history directory (see HistoryStore) and compares each new run with
+ * the baseline of its series (see RegressionDetector). The comparison is logged and written next to the report as
+ * {@link #REGRESSIONS_FILE}.
+ * <p>
+ * Usage: RunHistory &lt;history directory&gt; [&lt;series&gt; [&lt;request&gt;]] lists the series of the history, or
+ * the runs of a series with the statistics of all requests or of the given request.
+ */
+public class RunHistory {
+
+    private static final Logger LOG = getLogger(RunHistory.class);
+
+    public static final String REGRESSIONS_FILE = "regressions.json";
+    private static final DateTimeFormatter START_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
+
+    private final Path directory;
+    private final RegressionDetector detector;
+
+    public RunHistory(Path directory) {
+        this(directory, new RegressionDetector());
+    }
+
+    public RunHistory(Path directory, RegressionDetector detector) {
+        this.directory = directory;
+        this.detector = detector;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: RunHistory <history directory> [<series> [<request>]]");
+            System.exit(1);
+        }
+
+        final HistoryStore store = HistoryStore.open(Paths.get(args[0]));
+        if (args.length == 1) {
+            for (String series : store.getSeries()) {
+                System.out.println(series + "\t" + store.getRuns(series).size() + " run(s)");
+            }
+            return;
+        }
+
+        final String request = args.length > 2 ? args[2] : null;
+        System.out.println(String.format(Locale.ROOT, "%-24s %-16s %8s %10s %10s %8s %8s %8s %8s",
+                "Run", "Start", "Seconds", "Requests", "Req/s", "Errors%", "p50", "p95", "p99"));
+        for (RunSummary run : store.getRuns(args[1])) {
+            final RunSummary.RequestSummary stats = request == null ? run.getAllRequests() : run.getRequest(request);
+            if (stats == null) {
+                continue;
+            }
+            System.out.println(String.format(Locale.ROOT, "%-24s %-16s %8d %10d %10.2f %8.2f %8d %8d %8d%s", run.runId,
+                    START_FORMAT.format(Instant.ofEpochMilli(run.start)), run.getDurationMillis() / 1000, stats.count, stats.meanRps,
+                    stats.getErrorPercentage(), stats.getPercentile(50), stats.getPercentile(95), stats.getPercentile(99),
+                    run.aborted ? "  aborted" : ""));
+        }
+    }
+
+    /**
+     * Compares the run with the baseline of its series, then adds it to the history.
+     *
+     * @param reportDirectory where to write {@link #REGRESSIONS_FILE}, or null
+     */
+    public RegressionReport record(RunSummary summary, Path reportDirectory) throws IOException {
+        final HistoryStore store = HistoryStore.open(directory);
+        // Aborted runs don't count towards the baseline, read a few more so they don't shrink it
+        final List<RunSummary> previous = store.getRunsBefore(summary.getSeries(), summary.start, summary.runId, detector.getBaselineRuns() * 2);
+        final RegressionReport report = detector.compare(summary, previous);
+        store.append(summary);
+
+        if (report.hasRegressions()) {
+            LOG.warn(report.describe());
+        } else {
+            LOG.info(report.describe());
+        }
+        LOG.info("Run {} added to the history in {} ({} run(s))", summary.runId, directory, store.size());
+
+        if (reportDirectory != null) {
+            Files.createDirectories(reportDirectory);
+            Files.writeString(reportDirectory.resolve(REGRESSIONS_FILE), report.toJson(), StandardCharsets.UTF_8);
+        }
+        return report;
+    }
+}
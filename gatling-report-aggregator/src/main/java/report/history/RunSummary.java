@@ -0,0 +1,208 @@
+package report.history;
+
+import report.RequestStats;
+import report.RunStatistics;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The compact summary of an aggregated run that the history keeps: per-request counts, errors, throughput and
+ * response time percentiles (the histograms and time series stay in the report), tagged by simulation, simulation type
+ * and environment. Runs with the same tags form a series, the runs a new run is compared with.
+ */
+public class RunSummary {
+
+    static final double[] PERCENTILES = {50, 75, 95, 99, 99.9};
+
+    public final String runId;
+    public final String simulation;
+    public final String simulationType;
+    public final String environment;
+    public final long start;
+    public final long end;
+    public final int generators;
+    public final boolean aborted;
+    /** All Requests first, then every request name in the order of the report. */
+    public final List<RequestSummary> requests;
+
+    public RunSummary(String runId, String simulation, String simulationType, String environment, long start, long end,
+                      int generators, boolean aborted, List<RequestSummary> requests) {
+        this.runId = runId;
+        this.simulation = simulation;
+        this.simulationType = simulationType;
+        this.environment = environment;
+        this.start = start;
+        this.end = end;
+        this.generators = generators;
+        this.aborted = aborted;
+        this.requests = Collections.unmodifiableList(requests);
+    }
+
+    /**
+     * Summarizes the statistics of an aggregated run.
+     *
+     * @param simulation the simulation, or null for the name in the simulation logs
+     */
+    public static RunSummary of(String runId, String simulation, String simulationType, String environment, RunStatistics statistics) {
+        final List<RequestSummary> requests = new ArrayList<>();
+        requests.add(RequestSummary.of(statistics, statistics.getAllRequests()));
+        for (RequestStats stats : statistics.getRequests()) {
+            requests.add(RequestSummary.of(statistics, stats));
+        }
+        return new RunSummary(runId, simulation != null ? simulation : statistics.getSimulation(),
+                simulationType != null ? simulationType : "", environment != null ? environment : "",
+                statistics.getStart(), statistics.getEnd(), statistics.getGenerators(), statistics.getAbortReason() != null, requests);
+    }
+
+    /**
+     * @return the key of the series of the run: runs of the same simulation and simulation type on the same environment
+     */
+    public String getSeries() {
+        return series(simulation, simulationType, environment);
+    }
+
+    public static String series(String simulation, String simulationType, String environment) {
+        return simulation + '/' + simulationType + '/' + environment;
+    }
+
+    /**
+     * @return the summary of the given request, or null when the run didn't send it
+     */
+    public RequestSummary getRequest(String name) {
+        for (RequestSummary request : requests) {
+            if (request.name.equals(name)) {
+                return request;
+            }
+        }
+        return null;
+    }
+
+    public RequestSummary getAllRequests() {
+        return requests.get(0);
+    }
+
+    public long getDurationMillis() {
+        return end - start;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeUTF(runId);
+        out.writeUTF(simulation);
+        out.writeUTF(simulationType);
+        out.writeUTF(environment);
+        out.writeLong(start);
+        out.writeLong(end);
+        out.writeInt(generators);
+        out.writeBoolean(aborted);
+        out.writeInt(requests.size());
+        for (RequestSummary request : requests) {
+            request.writeTo(out);
+        }
+    }
+
+    static RunSummary readFrom(DataInput in) throws IOException {
+        final String runId = in.readUTF();
+        final String simulation = in.readUTF();
+        final String simulationType = in.readUTF();
+        final String environment = in.readUTF();
+        final long start = in.readLong();
+        final long end = in.readLong();
+        final int generators = in.readInt();
+        final boolean aborted = in.readBoolean();
+        final int count = in.readInt();
+        final List<RequestSummary> requests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            requests.add(RequestSummary.readFrom(in));
+        }
+        return new RunSummary(runId, simulation, simulationType, environment, start, end, generators, aborted, requests);
+    }
+
+    /**
+     * The summary of one request name (or of all requests combined) in a run.
+     */
+    public static class RequestSummary {
+
+        public final String name;
+        public final long count;
+        public final long ko;
+        public final double meanRps;
+        public final double mean;
+        public final double stdDev;
+        public final long max;
+        /** The response times at {@link #PERCENTILES}, in ms. */
+        private final long[] percentiles;
+
+        public RequestSummary(String name, long count, long ko, double meanRps, double mean, double stdDev, long max, long[] percentiles) {
+            this.name = name;
+            this.count = count;
+            this.ko = ko;
+            this.meanRps = meanRps;
+            this.mean = mean;
+            this.stdDev = stdDev;
+            this.max = max;
+            this.percentiles = percentiles;
+        }
+
+        static RequestSummary of(RunStatistics statistics, RequestStats stats) {
+            final long[] percentiles = new long[PERCENTILES.length];
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                percentiles[i] = stats.getPercentile(PERCENTILES[i]);
+            }
+            return new RequestSummary(stats.getName(), stats.getCount(), stats.getKo(), statistics.getMeanRps(stats),
+                    stats.getMean(), stats.getStdDeviation(), stats.getMax(), percentiles);
+        }
+
+        /**
+         * @param percentile one of {@link #PERCENTILES}
+         */
+        public long getPercentile(double percentile) {
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                if (PERCENTILES[i] == percentile) {
+                    return percentiles[i];
+                }
+            }
+            throw new IllegalArgumentException("The history doesn't keep the " + percentile + "th percentile");
+        }
+
+        public double getErrorPercentage() {
+            return count == 0 ? 0 : ko * 100.0 / count;
+        }
+
+        void writeTo(DataOutput out) throws IOException {
+            out.writeUTF(name);
+            out.writeLong(count);
+            out.writeLong(ko);
+            out.writeDouble(meanRps);
+            out.writeDouble(mean);
+            out.writeDouble(stdDev);
+            out.writeLong(max);
+            out.writeByte(percentiles.length);
+            for (long percentile : percentiles) {
+                out.writeLong(percentile);
+            }
+        }
+
+        static RequestSummary readFrom(DataInput in) throws IOException {
+            final String name = in.readUTF();
+            final long count = in.readLong();
+            final long ko = in.readLong();
+            final double meanRps = in.readDouble();
+            final double mean = in.readDouble();
+            final double stdDev = in.readDouble();
+            final long max = in.readLong();
+            final long[] percentiles = new long[in.readUnsignedByte()];
+            for (int i = 0; i < percentiles.length; i++) {
+                percentiles[i] = in.readLong();
+            }
+            if (percentiles.length != PERCENTILES.length) {
+                throw new IOException("Request summary with " + percentiles.length + " percentiles, expected " + PERCENTILES.length);
+            }
+            return new RequestSummary(name, count, ko, meanRps, mean, stdDev, max, percentiles);
+        }
+    }
+}
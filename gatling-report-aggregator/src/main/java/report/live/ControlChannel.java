@@ -0,0 +1,19 @@
+package report.live;
+
+/**
+ * Transports load steps from the runner to the load generators, the reverse direction of the MetricsChannel.
+ * Only the latest step matters, so a channel simply holds one step that the runner overwrites.
+ */
+public interface ControlChannel extends AutoCloseable {
+
+    void publish(LoadStep step);
+
+    /**
+     * @return the latest published step, or null if none was published yet
+     */
+    LoadStep poll();
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,46 @@
+package report.live;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Channel through a local directory, for load generators that run as processes on the runner's machine: the current
+ * step is a single file, control/&lt;run id&gt;/step, laid out like the key of the S3ControlChannel. The runner
+ * replaces the file in one move, so the load generators never read a partly written step.
+ */
+public class FileControlChannel implements ControlChannel {
+
+    private final Path file;
+
+    public FileControlChannel(Path directory, String runId) {
+        this.file = directory.resolve("control").resolve(runId).resolve("step");
+    }
+
+    @Override
+    public void publish(LoadStep step) {
+        try {
+            Files.createDirectories(file.getParent());
+            final Path next = Files.createTempFile(file.getParent(), "step", ".tmp");
+            Files.writeString(next, step.encode(), StandardCharsets.UTF_8);
+            Files.move(next, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not publish " + step, e);
+        }
+    }
+
+    @Override
+    public LoadStep poll() {
+        try {
+            return LoadStep.decode(Files.readString(file, StandardCharsets.UTF_8));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read " + file, e);
+        }
+    }
+}
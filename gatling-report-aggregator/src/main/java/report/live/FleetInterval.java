@@ -0,0 +1,79 @@
+package report.live;
+
+import report.GeneratorSample;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The merged statistics of all load generators for one metrics interval.
+ */
+public class FleetInterval {
+
+    public final long intervalStart;
+    public final long intervalMillis;
+    private final Set<String> generators = new TreeSet<>();
+    private final Map<String, IntervalStats> requests = new TreeMap<>();
+    private final IntervalStats total = new IntervalStats();
+    private final Map<String, GeneratorSample> generatorSamples = new TreeMap<>();
+
+    FleetInterval(long intervalStart, long intervalMillis) {
+        this.intervalStart = intervalStart;
+        this.intervalMillis = intervalMillis;
+    }
+
+    void add(IntervalSnapshot snapshot) {
+        generators.add(snapshot.generator);
+        if (snapshot.generatorSample != null) {
+            generatorSamples.merge(snapshot.generator, snapshot.generatorSample, GeneratorSample::worst);
+        }
+        for (Map.Entry<String, IntervalStats> request : snapshot.requests.entrySet()) {
+            requests.computeIfAbsent(request.getKey(), name -> new IntervalStats()).add(request.getValue());
+            total.add(request.getValue());
+        }
+    }
+
+    public Set<String> getGenerators() {
+        return generators;
+    }
+
+    public Map<String, IntervalStats> getRequests() {
+        return requests;
+    }
+
+    public IntervalStats getTotal() {
+        return total;
+    }
+
+    /**
+     * @return the worst resource usage sample of every generator that reported one
+     */
+    public Map<String, GeneratorSample> getGeneratorSamples() {
+        return generatorSamples;
+    }
+
+    /**
+     * @return what saturated each generator that couldn't keep up in this interval, whose response times are suspect
+     */
+    public Map<String, String> getSaturatedGenerators() {
+        final Map<String, String> saturated = new TreeMap<>();
+        for (Map.Entry<String, GeneratorSample> sample : generatorSamples.entrySet()) {
+            if (sample.getValue().isSaturated()) {
+                saturated.put(sample.getKey(), sample.getValue().getSaturation());
+            }
+        }
+        return saturated;
+    }
+
+    public double getRps(IntervalStats stats) {
+        return stats.getCount() * 1000.0 / intervalMillis;
+    }
+
+    public String summary() {
+        return String.format("%.1f req/s, %.2f%% KO, p50 %d ms, p95 %d ms, p99 %d ms (%d generator(s))",
+                getRps(total), total.getErrorPercentage(), total.getPercentile(50), total.getPercentile(95),
+                total.getPercentile(99), generators.size());
+    }
+}
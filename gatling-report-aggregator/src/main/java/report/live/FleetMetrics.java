@@ -0,0 +1,55 @@
+package report.live;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Merges the interval snapshots of all load generators into fleet-wide intervals.
+ * An interval is completed once every expected generator reported it and one more interval has passed (to let
+ * buffered records arrive), or once the report delay passed after the end of the interval, whichever comes first.
+ */
+public class FleetMetrics {
+
+    private final int expectedGenerators;
+    private final long reportDelayMillis;
+    private final TreeMap<Long, FleetInterval> open = new TreeMap<>();
+    private long lastCompleted = Long.MIN_VALUE;
+
+    public FleetMetrics(int expectedGenerators, long reportDelayMillis) {
+        this.expectedGenerators = expectedGenerators;
+        this.reportDelayMillis = reportDelayMillis;
+    }
+
+    public synchronized void add(IntervalSnapshot snapshot) {
+        if (snapshot.intervalStart <= lastCompleted) {
+            // Too late to be reported with its interval
+            return;
+        }
+        open.computeIfAbsent(snapshot.intervalStart, start -> new FleetInterval(start, snapshot.intervalMillis)).add(snapshot);
+    }
+
+    /**
+     * @return the intervals completed since the previous call, oldest first
+     */
+    public synchronized List<FleetInterval> complete(long now) {
+        final List<FleetInterval> completed = new ArrayList<>();
+        final Iterator<Map.Entry<Long, FleetInterval>> intervals = open.entrySet().iterator();
+
+        while (intervals.hasNext()) {
+            final FleetInterval interval = intervals.next().getValue();
+            final long intervalEnd = interval.intervalStart + interval.intervalMillis;
+            final boolean allReported = interval.getGenerators().size() >= expectedGenerators && intervalEnd + interval.intervalMillis <= now;
+            final boolean overdue = intervalEnd + reportDelayMillis <= now;
+            if (!allReported && !overdue) {
+                break;
+            }
+            completed.add(interval);
+            lastCompleted = interval.intervalStart;
+            intervals.remove();
+        }
+        return completed;
+    }
+}
@@ -0,0 +1,23 @@
+package report.live;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-process channel, for running the generators and the runner in the same JVM without AWS.
+ */
+public class InMemoryControlChannel implements ControlChannel {
+
+    private final AtomicReference<String> latest = new AtomicReference<>();
+
+    @Override
+    public void publish(LoadStep step) {
+        // Steps go through their encoded form, the same as over any other channel
+        latest.set(step.encode());
+    }
+
+    @Override
+    public LoadStep poll() {
+        final String encoded = latest.get();
+        return encoded == null ? null : LoadStep.decode(encoded);
+    }
+}
@@ -0,0 +1,29 @@
+package report.live;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * In-process channel, for running the generators and the collector in the same JVM without AWS.
+ */
+public class InMemoryMetricsChannel implements MetricsChannel {
+
+    private final ConcurrentLinkedQueue<String> published = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public void publish(IntervalSnapshot snapshot) {
+        // Snapshots go through their encoded form, the same as over any other channel
+        published.add(snapshot.encode());
+    }
+
+    @Override
+    public List<IntervalSnapshot> poll() {
+        final List<IntervalSnapshot> snapshots = new ArrayList<>();
+        String encoded;
+        while ((encoded = published.poll()) != null) {
+            snapshots.add(IntervalSnapshot.decode(encoded));
+        }
+        return snapshots;
+    }
+}
@@ -0,0 +1,74 @@
+package report.live;
+
+import report.GeneratorSample;
+import report.LogRecord;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Accumulates the requests a load generator completes into fixed, epoch aligned intervals.
+ * Every drain returns the intervals that received records since the previous drain. Records that arrive after
+ * their interval was drained (the simulation log is written through a buffer) are sent as an extra snapshot for
+ * the same interval, which the collector merges additively. The resource usage samples of the generator are kept
+ * per interval as well, as the worst sample of the interval.
+ */
+public class IntervalRecorder {
+
+    private final String generator;
+    private final long intervalMillis;
+    private final TreeMap<Long, Map<String, IntervalStats>> pending = new TreeMap<>();
+    private final TreeMap<Long, GeneratorSample> pendingSamples = new TreeMap<>();
+
+    public IntervalRecorder(String generator, long intervalMillis) {
+        this.generator = generator;
+        this.intervalMillis = intervalMillis;
+    }
+
+    public synchronized void record(LogRecord record) {
+        if (record.type != LogRecord.Type.REQUEST) {
+            return;
+        }
+        final long intervalStart = record.endTimestamp - Math.floorMod(record.endTimestamp, intervalMillis);
+        pending.computeIfAbsent(intervalStart, start -> new LinkedHashMap<>())
+                .computeIfAbsent(record.name, name -> new IntervalStats())
+                .record(record.responseTime(), record.isOk());
+    }
+
+    public synchronized void record(GeneratorSample sample) {
+        final long intervalStart = sample.timestamp - Math.floorMod(sample.timestamp, intervalMillis);
+        pendingSamples.merge(intervalStart, sample, GeneratorSample::worst);
+        // A stalled generator may complete no request at all in the interval, which is still reported
+        pending.computeIfAbsent(intervalStart, start -> new LinkedHashMap<>());
+    }
+
+    /**
+     * @param now the current time; intervals that haven't ended yet are kept
+     * @return the snapshots of all ended intervals with new records
+     */
+    public synchronized List<IntervalSnapshot> drain(long now) {
+        final List<IntervalSnapshot> snapshots = new ArrayList<>();
+        final Iterator<Map.Entry<Long, Map<String, IntervalStats>>> intervals = pending.entrySet().iterator();
+
+        while (intervals.hasNext()) {
+            final Map.Entry<Long, Map<String, IntervalStats>> interval = intervals.next();
+            if (interval.getKey() + intervalMillis > now) {
+                break;
+            }
+            snapshots.add(new IntervalSnapshot(generator, interval.getKey(), intervalMillis, interval.getValue(), pendingSamples.remove(interval.getKey())));
+            intervals.remove();
+        }
+        return snapshots;
+    }
+
+    /**
+     * @return the snapshots of every interval with records, including the current one
+     */
+    public List<IntervalSnapshot> drainAll() {
+        return drain(Long.MAX_VALUE - intervalMillis);
+    }
+}
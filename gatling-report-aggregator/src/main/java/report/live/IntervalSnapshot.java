@@ -0,0 +1,90 @@
+package report.live;
+
+import org.HdrHistogram.Histogram;
+import report.GeneratorSample;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+
+/**
+ * The request statistics one load generator recorded for one metrics interval.
+ * Snapshots are encoded as small text documents: a header line followed by one line per request name holding the
+ * counters and the compressed, base64 encoded HDR histogram, and the worst resource usage sample of the generator in
+ * the interval, if any, as a GeneratorSample line.
+ */
+public class IntervalSnapshot {
+
+    private static final String HEADER = "INTERVAL";
+
+    public final String generator;
+    public final long intervalStart;
+    public final long intervalMillis;
+    public final Map<String, IntervalStats> requests;
+    /** Null when the generator doesn't sample its resource usage. */
+    public final GeneratorSample generatorSample;
+
+    public IntervalSnapshot(String generator, long intervalStart, long intervalMillis, Map<String, IntervalStats> requests) {
+        this(generator, intervalStart, intervalMillis, requests, null);
+    }
+
+    public IntervalSnapshot(String generator, long intervalStart, long intervalMillis, Map<String, IntervalStats> requests,
+                            GeneratorSample generatorSample) {
+        this.generator = generator;
+        this.intervalStart = intervalStart;
+        this.intervalMillis = intervalMillis;
+        this.requests = requests;
+        this.generatorSample = generatorSample;
+    }
+
+    public String encode() {
+        final StringBuilder encoded = new StringBuilder(HEADER).append('\t').append(generator)
+                .append('\t').append(intervalStart).append('\t').append(intervalMillis).append('\n');
+        if (generatorSample != null) {
+            encoded.append(generatorSample.encode()).append('\n');
+        }
+
+        for (Map.Entry<String, IntervalStats> request : requests.entrySet()) {
+            final Histogram histogram = request.getValue().getHistogram();
+            final ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+            final int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+
+            encoded.append(request.getKey()).append('\t')
+                    .append(request.getValue().getKo()).append('\t')
+                    .append(Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length))).append('\n');
+        }
+        return encoded.toString();
+    }
+
+    public static IntervalSnapshot decode(String encoded) {
+        final String[] lines = encoded.split("\n");
+        final String[] header = lines[0].split("\t");
+        if (!HEADER.equals(header[0])) {
+            throw new IllegalArgumentException("Not an interval snapshot: " + lines[0]);
+        }
+
+        final Map<String, IntervalStats> requests = new LinkedHashMap<>();
+        GeneratorSample generatorSample = null;
+        for (int i = 1; i < lines.length; i++) {
+            if (lines[i].isEmpty()) {
+                continue;
+            }
+            final GeneratorSample sample = GeneratorSample.parse(lines[i]);
+            if (sample != null) {
+                generatorSample = sample;
+                continue;
+            }
+            final String[] fields = lines[i].split("\t");
+            try {
+                final Histogram histogram = Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(Base64.getDecoder().decode(fields[2])), 0);
+                requests.put(fields[0], new IntervalStats(histogram, Long.parseLong(fields[1])));
+            } catch (DataFormatException e) {
+                throw new IllegalArgumentException("Invalid histogram for " + fields[0], e);
+            }
+        }
+        return new IntervalSnapshot(header[1], Long.parseLong(header[2]), Long.parseLong(header[3]), requests, generatorSample);
+    }
+}
@@ -0,0 +1,60 @@
+package report.live;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Count, errors and response time histogram of one request name over one metrics interval.
+ * Interval stats are additive, so the stats of several generators (or late records) can simply be merged.
+ */
+public class IntervalStats {
+
+    static final long HIGHEST_TRACKABLE_MILLIS = 3_600_000L;
+
+    private final Histogram histogram;
+    private long ko;
+
+    public IntervalStats() {
+        this(new Histogram(1, HIGHEST_TRACKABLE_MILLIS, 2), 0);
+    }
+
+    IntervalStats(Histogram histogram, long ko) {
+        this.histogram = histogram;
+        this.ko = ko;
+    }
+
+    public void record(long responseTime, boolean ok) {
+        histogram.recordValue(Math.max(1, Math.min(responseTime, HIGHEST_TRACKABLE_MILLIS)));
+        if (!ok) {
+            ko++;
+        }
+    }
+
+    public void add(IntervalStats other) {
+        histogram.add(other.histogram);
+        ko += other.ko;
+    }
+
+    public long getCount() {
+        return histogram.getTotalCount();
+    }
+
+    public long getKo() {
+        return ko;
+    }
+
+    public double getErrorPercentage() {
+        return getCount() == 0 ? 0 : ko * 100.0 / getCount();
+    }
+
+    public long getPercentile(double percentile) {
+        return getCount() == 0 ? 0 : histogram.getValueAtPercentile(percentile);
+    }
+
+    public long getMax() {
+        return histogram.getMaxValue();
+    }
+
+    Histogram getHistogram() {
+        return histogram;
+    }
+}
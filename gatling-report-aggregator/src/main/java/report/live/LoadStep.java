@@ -0,0 +1,41 @@
+package report.live;
+
+/**
+ * A target rate the runner sets for the whole fleet while a test runs, e.g. the steps of a capacity search.
+ * Every load generator switches to its share of the target at startAt, so the fleet changes rate in step.
+ */
+public class LoadStep {
+
+    private static final String HEADER = "STEP";
+
+    public final int index;
+    /** Requests per minute of the whole fleet, 0 for the final step. */
+    public final double targetRpm;
+    public final long startAt;
+    /** The last step: the load generators finish their iterations and stop. */
+    public final boolean last;
+
+    public LoadStep(int index, double targetRpm, long startAt, boolean last) {
+        this.index = index;
+        this.targetRpm = targetRpm;
+        this.startAt = startAt;
+        this.last = last;
+    }
+
+    public String encode() {
+        return HEADER + '\t' + index + '\t' + targetRpm + '\t' + startAt + '\t' + last + '\n';
+    }
+
+    public static LoadStep decode(String encoded) {
+        final String[] fields = encoded.trim().split("\t");
+        if (fields.length != 5 || !HEADER.equals(fields[0])) {
+            throw new IllegalArgumentException("Not a load step: " + encoded);
+        }
+        return new LoadStep(Integer.parseInt(fields[1]), Double.parseDouble(fields[2]), Long.parseLong(fields[3]), Boolean.parseBoolean(fields[4]));
+    }
+
+    @Override
+    public String toString() {
+        return last ? "step " + index + " (last)" : String.format("step %d: %.0f RPM from %d", index, targetRpm, startAt);
+    }
+}
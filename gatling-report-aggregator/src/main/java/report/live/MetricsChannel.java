@@ -0,0 +1,20 @@
+package report.live;
+
+import java.util.List;
+
+/**
+ * Transports interval snapshots from the load generators to the runner.
+ */
+public interface MetricsChannel extends AutoCloseable {
+
+    void publish(IntervalSnapshot snapshot);
+
+    /**
+     * @return the snapshots published since the previous poll
+     */
+    List<IntervalSnapshot> poll();
+
+    @Override
+    default void close() {
+    }
+}
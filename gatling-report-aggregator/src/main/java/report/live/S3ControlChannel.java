@@ -0,0 +1,45 @@
+package report.live;
+
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Channel through the report bucket: the current step is a single object, control/&lt;run id&gt;/step, which the
+ * runner overwrites and the load generators read.
+ */
+public class S3ControlChannel implements ControlChannel {
+
+    private final S3Client s3Client;
+    private final String bucket;
+    private final String key;
+
+    public S3ControlChannel(S3Client s3Client, String bucket, String runId) {
+        this.s3Client = s3Client;
+        this.bucket = bucket;
+        this.key = "control/" + runId + "/step";
+    }
+
+    @Override
+    public void publish(LoadStep step) {
+        s3Client.putObject(PutObjectRequest.builder().bucket(bucket).key(key).build(), RequestBody.fromString(step.encode(), StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public LoadStep poll() {
+        try {
+            return LoadStep.decode(s3Client.getObjectAsBytes(GetObjectRequest.builder().bucket(bucket).key(key).build()).asString(StandardCharsets.UTF_8));
+        } catch (NoSuchKeyException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() {
+        s3Client.close();
+    }
+}
@@ -0,0 +1,98 @@
+package report.live;
+
+import org.slf4j.Logger;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Channel through the report bucket, which both the Fargate tasks and the runner can already reach.
+ * Every snapshot is a small object under metrics/&lt;run id&gt;/, keyed by publish time so the collector only has
+ * to list the keys published since its previous poll (with a look-back for generators whose uploads were slow).
+ */
+public class S3MetricsChannel implements MetricsChannel {
+
+    private static final Logger LOG = getLogger(S3MetricsChannel.class);
+    private static final long LOOK_BACK_MILLIS = 60_000;
+
+    private final S3Client s3Client;
+    private final String bucket;
+    private final String prefix;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, Long> seenKeys = new HashMap<>();
+    private long lastPoll;
+
+    public S3MetricsChannel(S3Client s3Client, String bucket, String runId) {
+        this.s3Client = s3Client;
+        this.bucket = bucket;
+        this.prefix = "metrics/" + runId + "/";
+    }
+
+    @Override
+    public void publish(IntervalSnapshot snapshot) {
+        final String key = String.format("%s%013d-%s-%06d", prefix, System.currentTimeMillis(), snapshot.generator, sequence.incrementAndGet());
+        s3Client.putObject(PutObjectRequest.builder().bucket(bucket).key(key).build(), RequestBody.fromString(snapshot.encode(), StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public List<IntervalSnapshot> poll() {
+        final long now = System.currentTimeMillis();
+        final long since = Math.max(0, lastPoll - LOOK_BACK_MILLIS);
+        final List<IntervalSnapshot> snapshots = new ArrayList<>();
+
+        String continuationToken = null;
+        do {
+            final ListObjectsV2Request.Builder request = ListObjectsV2Request.builder()
+                    .bucket(bucket)
+                    .prefix(prefix)
+                    .startAfter(String.format("%s%013d", prefix, since));
+            if (continuationToken != null) {
+                request.continuationToken(continuationToken);
+            }
+            final ListObjectsV2Response response = s3Client.listObjectsV2(request.build());
+
+            for (S3Object object : response.contents()) {
+                if (seenKeys.putIfAbsent(object.key(), publishTime(object.key())) == null) {
+                    try {
+                        final String encoded = s3Client.getObjectAsBytes(GetObjectRequest.builder().bucket(bucket).key(object.key()).build())
+                                .asString(StandardCharsets.UTF_8);
+                        snapshots.add(IntervalSnapshot.decode(encoded));
+                    } catch (RuntimeException e) {
+                        LOG.warn("Skipping unreadable metrics snapshot {}: {}", object.key(), e.getMessage());
+                    }
+                }
+            }
+            continuationToken = response.isTruncated() ? response.nextContinuationToken() : null;
+        } while (continuationToken != null);
+
+        seenKeys.values().removeIf(publishTime -> publishTime < since);
+        lastPoll = now;
+        return snapshots;
+    }
+
+    private long publishTime(String key) {
+        try {
+            return Long.parseLong(key.substring(prefix.length(), prefix.length() + 13));
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public void close() {
+        s3Client.close();
+    }
+}
@@ -0,0 +1,189 @@
+package report;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryLogTest {
+
+    private static final List<String> LINES = List.of(
+            "RUN\tsimulations.PostCode.PostCodeSimulation\tpostcodesimulation\t1790518400000\t \t3.4.2",
+            "USER\tPostcode_RandomPostCodesOnly\tSTART\t1790518400050",
+            "REQUEST\t\tGET_Postcode\t1790518400100\t1790518400141\tOK\t ",
+            "REQUEST\tPostcodes\tGET_Postcode\t1790518400120\t1790518400620\tKO\tstatus.find.in([200, 209], 304), found 503  ",
+            // Gatling writes the responses in the order they end, so timestamps go back as well
+            "REQUEST\t\tGET_Postcode\t1790518400090\t1790518400700\tOK\t ",
+            "INTENDED\t\tGET_Postcode\t1790518400080\t1790518400700",
+            "GROUP\tPostcodes\t1790518400120\t1790518400640\t500\tKO",
+            "ERROR\tj.n.ConnectException: Connection refused\t1790518400800",
+            "USER\tPostcode_RandomPostCodesOnly\tEND\t1790518401000",
+            "REQUEST\t\tGET_Straße_Gänsefüßchen\t1790518400100\t1790518400141\tOK\t ",
+            "ERROR\t测试 failed: «timeout» ✗\t1790518400900",
+            // Stored as they are, like the RUN line
+            "ASSERTION\tAAECAAAAAAAAAABZQAAAAA==",
+            "REQUEST\t\tGET_Postcode\t1790518400100\t1790518400141\tOK",
+            "REQUEST\t\tGET_Postcode\t01790518400100\t1790518400141\tOK\t ",
+            "USER\tPostcode_RandomPostCodesOnly\tSTART\t-1");
+
+    @Test
+    void convertsEveryLineBackUnchanged() throws IOException {
+        assertEquals(LINES, readLines(write(LINES)));
+    }
+
+    @Test
+    void readsTheRecordsLogRecordParses() throws IOException {
+        final List<LogRecord> expected = new ArrayList<>();
+        for (String line : LINES) {
+            final LogRecord record = LogRecord.parse(line);
+            if (record != null) {
+                expected.add(record);
+            }
+        }
+
+        final List<LogRecord> records = new ArrayList<>();
+        try (BinaryLogReader reader = reader(write(LINES))) {
+            for (LogRecord record = reader.next(); record != null; record = reader.next()) {
+                records.add(record);
+            }
+        }
+
+        assertEquals(expected.size(), records.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertRecord(expected.get(i), records.get(i));
+        }
+    }
+
+    @Test
+    void keepsStringsOutOfAFullDictionary() throws IOException {
+        final List<String> lines = new ArrayList<>();
+        for (int i = 0; i < BinaryLogWriter.MAX_DICTIONARY_SIZE + 5000; i++) {
+            lines.add(request("GET_Postcode_" + i, i));
+        }
+        // Names from the dictionary and names that didn't fit in it
+        lines.add(request("GET_Postcode_0", 0));
+        lines.add(request("GET_Postcode_" + (BinaryLogWriter.MAX_DICTIONARY_SIZE - 10), 1));
+        lines.add(request("GET_Postcode_" + (BinaryLogWriter.MAX_DICTIONARY_SIZE + 10), 2));
+        lines.add(request("GET_Postcode_new", 3));
+
+        final byte[] log = write(lines);
+
+        assertEquals(lines, readLines(log));
+        try (BinaryLogReader reader = reader(log)) {
+            for (String line : lines) {
+                assertRecord(LogRecord.parse(line), reader.next());
+            }
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    void endsALogCutOffAtABlockBoundary() throws IOException {
+        final List<String> lines = requests(100_000);
+        final byte[] log = write(lines);
+        final int boundary = firstBlockEnd(log);
+        assertTrue(boundary < log.length - 1, "more than one block");
+
+        final List<String> read = readLines(Arrays.copyOf(log, boundary));
+
+        assertTrue(!read.isEmpty() && read.size() < lines.size(), read.size() + " lines");
+        assertEquals(lines.subList(0, read.size()), read);
+        // Only the end of the file is missing
+        assertEquals(lines, readLines(Arrays.copyOf(log, log.length - 1)));
+    }
+
+    @Test
+    void failsOnALogCutOffInsideABlock() throws IOException {
+        final byte[] log = write(requests(100_000));
+        final int boundary = firstBlockEnd(log);
+
+        final EOFException inHeader = assertThrows(EOFException.class, () -> readLines(Arrays.copyOf(log, boundary + 1)));
+        assertTrue(inHeader.getMessage().endsWith("ends in the middle of a block header"), inHeader.getMessage());
+        final EOFException inBlock = assertThrows(EOFException.class, () -> readLines(Arrays.copyOf(log, boundary + 100)));
+        assertTrue(inBlock.getMessage().endsWith("ends in the middle of a block"), inBlock.getMessage());
+    }
+
+    @Test
+    void rejectsATextLog() {
+        final byte[] text = (LINES.get(0) + "\n").getBytes();
+
+        assertThrows(IOException.class, () -> reader(text));
+    }
+
+    private static String request(String name, int index) {
+        final long start = 1790518400000L + index * 7;
+        return "REQUEST\t\t" + name + "\t" + start + "\t" + (start + 40 + index % 13) + "\tOK\t ";
+    }
+
+    private static List<String> requests(int count) {
+        final List<String> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            lines.add(request("GET_Postcode", i));
+        }
+        return lines;
+    }
+
+    private static byte[] write(List<String> lines) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (BinaryLogWriter writer = new BinaryLogWriter(output)) {
+            for (String line : lines) {
+                writer.write(line);
+            }
+            assertEquals(lines.size(), writer.getLines());
+        }
+        return output.toByteArray();
+    }
+
+    private static BinaryLogReader reader(byte[] log) throws IOException {
+        return new BinaryLogReader("generator-0-simulation.log.part-000001.bin", new ByteArrayInputStream(log));
+    }
+
+    private static List<String> readLines(byte[] log) throws IOException {
+        final List<String> lines = new ArrayList<>();
+        try (BinaryLogReader reader = reader(log)) {
+            for (String line = reader.nextLine(); line != null; line = reader.nextLine()) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * @return the offset after the first block, from its header of raw and compressed length
+     */
+    private static int firstBlockEnd(byte[] log) {
+        int position = BinaryLogWriter.MAGIC.length;
+        long compressedLength = 0;
+        for (int value = 0; value < 2; value++) {
+            compressedLength = 0;
+            for (int shift = 0; ; shift += 7) {
+                final int b = log[position++];
+                compressedLength |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    break;
+                }
+            }
+        }
+        return position + (int) compressedLength;
+    }
+
+    private static void assertRecord(LogRecord expected, LogRecord actual) {
+        assertEquals(expected.type, actual.type);
+        assertEquals(expected.name, actual.name);
+        assertEquals(expected.groups, actual.groups);
+        assertEquals(expected.startTimestamp, actual.startTimestamp);
+        assertEquals(expected.endTimestamp, actual.endTimestamp);
+        assertEquals(expected.status, actual.status);
+        assertEquals(expected.message, actual.message);
+    }
+}
@@ -0,0 +1,179 @@
+package report;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogChunksTest {
+
+    private static final String LOG = "generator-0-simulation.log";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void findsThePartsInOrder() throws IOException {
+        for (int index : new int[]{11, 2, 10, 1, 3, 4, 5, 6, 7, 8, 9}) {
+            part(directory, LOG, index, false, request(index));
+        }
+        manifest(directory, LOG, 11);
+
+        final Map<Path, List<Path>> logs = LogChunks.find(directory);
+
+        assertEquals(List.of(directory.resolve(LOG)), new ArrayList<>(logs.keySet()));
+        final List<Path> parts = logs.get(directory.resolve(LOG));
+        assertEquals(11, parts.size());
+        for (int index = 1; index <= 11; index++) {
+            assertEquals(LogChunks.partName(LOG, index, false), parts.get(index - 1).getFileName().toString());
+        }
+    }
+
+    @Test
+    void usesThePartsUpToTheFirstGap() throws IOException {
+        part(directory, LOG, 1, false, request(1));
+        part(directory, LOG, 2, true, request(2));
+        part(directory, LOG, 4, false, request(4));
+        manifest(directory, LOG, 4);
+
+        assertEquals(List.of(directory.resolve(LogChunks.partName(LOG, 1, false)), directory.resolve(LogChunks.partName(LOG, 2, true))),
+                LogChunks.find(directory).get(directory.resolve(LOG)));
+    }
+
+    @Test
+    void usesThePartsOfALogWithoutManifest() throws IOException {
+        part(directory, LOG, 1, false, request(1));
+        part(directory, LOG, 2, false, request(2));
+
+        assertEquals(2, LogChunks.find(directory).get(directory.resolve(LOG)).size());
+    }
+
+    @Test
+    void usesThePartsThatArrivedWhenTheManifestCountsMore() throws IOException {
+        part(directory, LOG, 1, false, request(1));
+        manifest(directory, LOG, 3);
+
+        assertEquals(1, LogChunks.find(directory).get(directory.resolve(LOG)).size());
+    }
+
+    @Test
+    void skipsALogWithoutItsFirstPart() throws IOException {
+        part(directory, LOG, 2, false, request(2));
+        manifest(directory, LOG, 2);
+
+        assertTrue(LogChunks.find(directory).isEmpty());
+    }
+
+    @Test
+    void skipsALogThatWasStoredWhole() throws IOException {
+        part(directory, LOG, 1, false, request(1));
+        Files.writeString(directory.resolve(LOG), request(1) + "\n");
+
+        assertTrue(LogChunks.find(directory).isEmpty());
+    }
+
+    @Test
+    void findsTheLogsOfEveryDirectory() throws IOException {
+        final Path calibration = Files.createDirectories(directory.resolve("calibration").resolve("run-1"));
+        part(directory, LOG, 1, false, request(1));
+        part(directory, "generator-1-simulation.log", 1, true, request(1));
+        part(calibration, LOG, 1, false, request(1));
+        Files.writeString(directory.resolve("generator-0-generator.log"), "not a part\n");
+
+        final Map<Path, List<Path>> logs = LogChunks.find(directory);
+
+        assertEquals(3, logs.size());
+        assertTrue(logs.containsKey(calibration.resolve(LOG)));
+        assertTrue(logs.containsKey(directory.resolve("generator-1-simulation.log")));
+    }
+
+    @Test
+    void readsTheManifest() throws IOException {
+        manifest(directory, LOG, 12);
+        Files.writeString(directory.resolve("broken.log.parts"), "twelve\n");
+
+        assertEquals(12, LogChunks.readManifest(directory.resolve(LogChunks.manifestName(LOG))));
+        assertEquals(-1, LogChunks.readManifest(directory.resolve("broken.log.parts")));
+        assertEquals(-1, LogChunks.readManifest(directory.resolve("missing.log.parts")));
+    }
+
+    @Test
+    void readsThePartsAsOneLog() throws IOException {
+        part(directory, LOG, 1, false, "RUN\tsimulations.PostCode.PostCodeSimulation\tpostcodesimulation\t1790518400000\t \t3.4.2",
+                "USER\tPostcode_RandomPostCodesOnly\tSTART\t1790518400050", request(1));
+        part(directory, LOG, 2, true, request(2), request(3));
+        // Sealed by age while the generator had nothing to write
+        part(directory, LOG, 3, false);
+        part(directory, LOG, 4, false, request(4), "USER\tPostcode_RandomPostCodesOnly\tEND\t1790518401000");
+
+        final List<LogRecord> records = new ArrayList<>();
+        try (RecordSource source = LogChunks.open(directory.resolve(LOG), LogChunks.find(directory).get(directory.resolve(LOG)))) {
+            assertEquals(directory.resolve(LOG).toString(), source.name());
+            for (LogRecord record = source.next(); record != null; record = source.next()) {
+                records.add(record);
+            }
+            assertNull(source.next());
+        }
+
+        assertEquals(7, records.size());
+        assertEquals(LogRecord.Type.RUN, records.get(0).type);
+        assertEquals(LogRecord.Type.USER, records.get(1).type);
+        for (int i = 2; i < 6; i++) {
+            assertEquals(LogRecord.Type.REQUEST, records.get(i).type);
+            assertEquals(1790518400000L + (i - 1) * 100, records.get(i).startTimestamp);
+        }
+        assertEquals("END", records.get(6).status);
+    }
+
+    @Test
+    void opensEveryPartOnlyOnceThePreviousOneIsRead() throws IOException {
+        part(directory, LOG, 1, false, request(1));
+        final List<Path> parts = List.of(directory.resolve(LogChunks.partName(LOG, 1, false)), directory.resolve(LogChunks.partName(LOG, 2, false)));
+
+        try (RecordSource source = LogChunks.open(directory.resolve(LOG), parts)) {
+            assertNotNull(source.next());
+            assertThrows(NoSuchFileException.class, source::next);
+        }
+    }
+
+    private static String request(int index) {
+        final long start = 1790518400000L + index * 100;
+        return "REQUEST\t\tGET_Postcode\t" + start + "\t" + (start + 41) + "\tOK\t ";
+    }
+
+    private static void part(Path directory, String log, int index, boolean binary, String... lines) throws IOException {
+        final Path part = directory.resolve(LogChunks.partName(log, index, binary));
+        if (binary) {
+            try (BinaryLogWriter writer = new BinaryLogWriter(Files.newOutputStream(part))) {
+                for (String line : lines) {
+                    writer.write(line);
+                }
+            }
+        } else {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(part))) {
+                for (String line : lines) {
+                    out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+    }
+
+    private static void manifest(Path directory, String log, int parts) throws IOException {
+        Files.writeString(directory.resolve(LogChunks.manifestName(log)), parts + "\n");
+    }
+}
@@ -0,0 +1,70 @@
+package report;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LogMergerTest {
+
+    private static final long T = 1790518400000L;
+
+    @Test
+    void mergesTheLogsInTimestampOrder() throws IOException {
+        final List<LogRecord> records = new ArrayList<>();
+        final long merged = new LogMerger(List.of(
+                log("generator-0", request(0, 100), request(50, 150), request(200, 260)),
+                log("generator-1"),
+                log("generator-2", request(10, 40), request(20, 155), request(300, 301)),
+                log("generator-3", user("START", 5), request(90, 120), user("END", 400))))
+                .merge(records::add);
+
+        assertEquals(9, merged);
+        final List<Long> timestamps = new ArrayList<>();
+        records.forEach(record -> timestamps.add(record.timestamp() - T));
+        // By the time the records were written, the end of a request
+        assertEquals(List.of(5L, 40L, 100L, 120L, 150L, 155L, 260L, 301L, 400L), timestamps);
+    }
+
+    @Test
+    void skipsMalformedLines() throws IOException {
+        final List<LogRecord> records = new ArrayList<>();
+        new LogMerger(List.of(
+                log("generator-0", request(0, 100), "REQUEST\t\tGET_Postcode\tnot a number\t" + T + "\tOK\t ", request(50, 150)),
+                // Killed while writing its last line, the end timestamp was cut off
+                log("generator-1", request(10, 40), "REQUEST\t\tGET_Postcode\t" + (T + 90) + "\t17905"),
+                log("generator-2", request(20, 60), "USER\tPostcode_RandomPostCodesOnly\tSTART")))
+                .merge(records::add);
+
+        assertEquals(4, records.size());
+        records.forEach(record -> assertEquals(LogRecord.Type.REQUEST, record.type));
+    }
+
+    @Test
+    void rejectsMalformedLines() {
+        assertThrows(IllegalArgumentException.class, () -> LogRecord.parse("REQUEST\t\tGET_Postcode\t" + T));
+        assertThrows(IllegalArgumentException.class, () -> LogRecord.parse("REQUEST\t\tGET_Postcode\t" + T + "\t1790\tOK\t "));
+        assertThrows(IllegalArgumentException.class, () -> LogRecord.parse("GROUP\tPostcodes\t" + T + "\t" + T));
+        assertThrows(IllegalArgumentException.class, () -> LogRecord.parse("ERROR\tConnection refused\t"));
+        assertNull(LogRecord.parse("ASSERTION\tAAECAAAAAAAAAABZQAAAAA=="));
+    }
+
+    private static RecordSource log(String name, String... lines) {
+        return new SimulationLogReader(name, new BufferedReader(new StringReader(String.join("\n", lines))));
+    }
+
+    private static String request(long start, long end) {
+        return "REQUEST\t\tGET_Postcode\t" + (T + start) + "\t" + (T + end) + "\tOK\t ";
+    }
+
+    private static String user(String status, long timestamp) {
+        return "USER\tPostcode_RandomPostCodesOnly\t" + status + "\t" + (T + timestamp);
+    }
+}
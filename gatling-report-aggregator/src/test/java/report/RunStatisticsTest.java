@@ -0,0 +1,122 @@
+package report;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RunStatisticsTest {
+
+    private static final long T = 1790518400000L;
+    private static final String SIMULATION = "simulations.PostCode.PostCodeSimulation";
+
+    private final RunStatistics statistics = new RunStatistics(1000, 100);
+
+    @Test
+    void keepsTheStatisticsOfEveryRequest() {
+        accept("RUN\t" + SIMULATION + "\tpostcodesimulation\t" + T + "\tnightly \t3.4.2",
+                "RUN\t" + SIMULATION + "\tpostcodesimulation\t" + (T + 20) + "\tnightly \t3.4.2",
+                "USER\tPostcode_RandomPostCodesOnly\tSTART\t" + (T + 5_000),
+                request("GET_Postcode", 10_000, 100, "OK", " "),
+                request("GET_Postcode", 10_500, 300, "KO", "status.find.is(200), but actually found 503"),
+                "REQUEST\tPostcodes,Lookup\tGET_Outcode\t" + (T + 11_000) + "\t" + (T + 11_050) + "\tOK\t ",
+                request("GET_Postcode", 12_000, 200, "OK", " "),
+                "USER\tPostcode_RandomPostCodesOnly\tEND\t" + (T + 14_000));
+
+        assertEquals(SIMULATION, statistics.getSimulation());
+        assertEquals("nightly", statistics.getDescription());
+        assertEquals(2, statistics.getGenerators());
+
+        final List<String> names = new ArrayList<>();
+        statistics.getRequests().forEach(stats -> names.add(stats.getName()));
+        assertEquals(List.of("GET_Postcode", "Postcodes/Lookup / GET_Outcode"), names);
+
+        final RequestStats postcode = statistics.getRequests().iterator().next();
+        assertEquals(3, postcode.getCount());
+        assertEquals(1, postcode.getKo());
+        assertEquals(100, postcode.getMin());
+        assertEquals(300, postcode.getMax());
+        assertEquals(200, postcode.getMean(), 0.001);
+
+        final RequestStats all = statistics.getAllRequests();
+        assertEquals(RunStatistics.ALL_REQUESTS, all.getName());
+        assertEquals(4, all.getCount());
+        assertEquals(25.0, all.getErrorPercentage(), 0.001);
+    }
+
+    @Test
+    void runsFromTheFirstRequestToTheLastRecord() {
+        // The RUN record is written before the coordinated start hold and the warm-up
+        accept("RUN\t" + SIMULATION + "\tpostcodesimulation\t" + T + "\t \t3.4.2",
+                "USER\tWarmUp\tSTART\t" + (T + 5_000),
+                request("GET_Postcode", 20_000, 100, "OK", " "),
+                request("GET_Postcode", 29_000, 500, "OK", " "),
+                "USER\tWarmUp\tEND\t" + (T + 30_000));
+
+        assertEquals(T + 20_000, statistics.getStart());
+        assertEquals(T + 30_000, statistics.getEnd());
+        assertEquals(0.2, statistics.getMeanRps(statistics.getAllRequests()), 0.0001);
+    }
+
+    @Test
+    void runsFromTheRunRecordWithoutRequests() {
+        assertEquals(0, statistics.getStart());
+        assertEquals(0, statistics.getMeanRps(statistics.getAllRequests()));
+
+        accept("RUN\t" + SIMULATION + "\tpostcodesimulation\t" + T + "\t \t3.4.2");
+
+        assertEquals(T, statistics.getStart());
+        assertEquals(T, statistics.getEnd());
+        assertEquals(0, statistics.getMeanRps(statistics.getAllRequests()));
+    }
+
+    @Test
+    void keepsTheMostFrequentErrors() {
+        accept(request("GET_Postcode", 0, 100, "KO", "i.n.c.ConnectTimeoutException"),
+                request("GET_Postcode", 10, 100, "KO", "status.find.is(200), but actually found 503"),
+                request("GET_Postcode", 20, 100, "KO", "status.find.is(200), but actually found 503"),
+                "ERROR\tj.n.ConnectException: Connection refused\t" + (T + 30));
+
+        assertEquals(List.of(Map.entry("status.find.is(200), but actually found 503", 2L),
+                Map.entry("i.n.c.ConnectTimeoutException", 1L),
+                Map.entry("j.n.ConnectException: Connection refused", 1L)), statistics.getErrors());
+    }
+
+    @Test
+    void countsTheErrorsBeyondTheDistinctOnesAsOtherErrors() {
+        for (int i = 0; i < 150; i++) {
+            accept(request("GET_Postcode", i, 100, "KO", "error " + i));
+        }
+        accept(request("GET_Postcode", 200, 100, "KO", "error 7"));
+
+        final List<Map.Entry<String, Long>> errors = statistics.getErrors();
+        assertEquals(101, errors.size());
+        assertEquals(Map.entry("Other errors", 50L), errors.get(0));
+        assertEquals(Map.entry("error 7", 2L), errors.get(1));
+    }
+
+    @Test
+    void correctsTheResponseTimesWithTheIntendedLog() {
+        accept(request("GET_Postcode", 1_000, 100, "OK", " "),
+                "INTENDED\t\tGET_Postcode\t" + (T + 500) + "\t" + (T + 1_100));
+
+        final RequestStats postcode = statistics.getRequests().iterator().next();
+        assertTrue(postcode.hasCorrected());
+        assertEquals(100, postcode.getPercentile(99));
+        assertEquals(600, postcode.getCorrectedMax(), 1);
+    }
+
+    private void accept(String... lines) {
+        for (String line : lines) {
+            statistics.accept(LogRecord.parse(line));
+        }
+    }
+
+    private static String request(String name, long start, long responseTime, String status, String message) {
+        return "REQUEST\t\t" + name + "\t" + (T + start) + "\t" + (T + start + responseTime) + "\t" + status + "\t" + message;
+    }
+}
@@ -0,0 +1,86 @@
+package report;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TimeSeriesTest {
+
+    private static final long T = 1790518400000L;
+
+    @Test
+    void bucketsTheRequestsByStart() {
+        final TimeSeries series = new TimeSeries(1000, 10);
+        series.setOrigin(T);
+        series.recordRequest(T + 100, 50, true);
+        series.recordRequest(T + 900, 150, false);
+        series.recordRequest(T + 2_500, 200_000, true);
+        series.recordActiveUsers(T + 2_000, 4);
+        series.recordActiveUsers(T + 2_999, 7);
+        series.recordActiveUsers(T + 2_500, 5);
+
+        final List<TimeSeries.Bucket> buckets = series.getBuckets();
+        assertEquals(3, buckets.size());
+        assertEquals(T, buckets.get(0).getStart());
+        assertEquals(2, buckets.get(0).getCount());
+        assertEquals(1, buckets.get(0).getKo());
+        assertEquals(150, buckets.get(0).getPercentile(99), 1);
+        assertEquals(T + 1_000, buckets.get(1).getStart());
+        assertEquals(0, buckets.get(1).getCount());
+        assertEquals(0, buckets.get(1).getPercentile(99));
+        assertEquals(1, buckets.get(2).getCount());
+        assertEquals(7, buckets.get(2).getMaxActiveUsers());
+        // Response times are capped at a minute
+        assertEquals(60_000, buckets.get(2).getMax(), 1_000);
+    }
+
+    @Test
+    void keepsTheFirstOrigin() {
+        final TimeSeries series = new TimeSeries(1000, 10);
+        series.setOrigin(T);
+        series.setOrigin(T + 5_000);
+        // Records before the origin count towards the first bucket
+        series.recordRequest(T - 500, 10, true);
+
+        assertEquals(T, series.getOrigin());
+        assertEquals(1, series.getBuckets().get(0).getCount());
+    }
+
+    @Test
+    void startsAtTheFirstRecordWithoutOrigin() {
+        final TimeSeries series = new TimeSeries(1000, 10);
+        series.recordActiveUsers(T + 300, 1);
+
+        assertEquals(T + 300, series.getOrigin());
+    }
+
+    @Test
+    void doublesTheBucketWidthOnceTheRunOutgrowsTheSeries() {
+        final TimeSeries series = new TimeSeries(1000, 4);
+        series.setOrigin(T);
+        for (int second = 0; second < 4; second++) {
+            series.recordRequest(T + second * 1000, 100, true);
+        }
+        series.recordActiveUsers(T + 1_000, 3);
+        assertEquals(1000, series.getBucketMillis());
+
+        series.recordRequest(T + 4_000, 100, false);
+
+        assertEquals(2000, series.getBucketMillis());
+        assertEquals(3, series.getBuckets().size());
+        assertEquals(T + 2_000, series.getBuckets().get(1).getStart());
+        assertEquals(2, series.getBuckets().get(0).getCount());
+        assertEquals(3, series.getBuckets().get(0).getMaxActiveUsers());
+        assertEquals(1, series.getBuckets().get(2).getKo());
+
+        // Twice at once
+        series.recordRequest(T + 20_000, 100, true);
+
+        assertEquals(8000, series.getBucketMillis());
+        assertEquals(3, series.getBuckets().size());
+        assertEquals(5, series.getBuckets().get(0).getCount());
+        assertEquals(T + 16_000, series.getBuckets().get(2).getStart());
+    }
+}
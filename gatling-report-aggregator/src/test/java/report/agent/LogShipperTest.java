@@ -0,0 +1,169 @@
+package report.agent;
+
+import org.junit.jupiter.api.Test;
+import report.BinaryLogReader;
+import report.LogChunks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogShipperTest {
+
+    private static final String LOG = "generator-0-simulation.log";
+    private static final long HOUR = 3_600_000;
+
+    private final FakeStore store = new FakeStore();
+
+    @Test
+    void sealsAPartOnceItReachesMaxChunkBytes() throws IOException {
+        final List<String> lines = requests(10);
+        // 55 bytes a line with the separator, so a part holds 4 lines
+        try (LogShipper shipper = new LogShipper(store, LOG, false, 200, HOUR, 2)) {
+            lines.forEach(shipper::append);
+        }
+
+        assertEquals(List.of(part(1), part(2), part(3), LogChunks.manifestName(LOG)), store.names());
+        assertEquals(lines.subList(0, 4), gunzip(part(1)));
+        assertEquals(lines.subList(4, 8), gunzip(part(2)));
+        assertEquals(lines.subList(8, 10), gunzip(part(3)));
+        assertEquals("3\n", new String(store.get(LogChunks.manifestName(LOG)), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void sealsAPartOnceItIsOlderThanMaxChunkMillis() throws Exception {
+        final List<String> lines = requests(3);
+        try (LogShipper shipper = new LogShipper(store, LOG, false, Long.MAX_VALUE, 500, 1)) {
+            shipper.tick();
+            shipper.append(lines.get(0));
+            shipper.append(lines.get(1));
+            shipper.tick();
+            Thread.sleep(600);
+            shipper.tick();
+            shipper.append(lines.get(2));
+        }
+
+        assertEquals(List.of(part(1), part(2), LogChunks.manifestName(LOG)), store.names());
+        assertEquals(lines.subList(0, 2), gunzip(part(1)));
+        assertEquals(lines.subList(2, 3), gunzip(part(2)));
+    }
+
+    @Test
+    void shipsBinaryParts() throws IOException {
+        final List<String> lines = requests(5);
+        lines.add(0, "RUN\tsimulations.PostCode.PostCodeSimulation\tpostcodesimulation\t1790518400000\t \t3.4.2");
+        try (LogShipper shipper = new LogShipper(store, LOG, true, 200, HOUR, 1)) {
+            lines.forEach(shipper::append);
+        }
+
+        final List<String> shipped = new ArrayList<>();
+        for (String name : store.names()) {
+            if (name.endsWith(".bin")) {
+                try (BinaryLogReader reader = new BinaryLogReader(name, new ByteArrayInputStream(store.get(name)))) {
+                    for (String line = reader.nextLine(); line != null; line = reader.nextLine()) {
+                        shipped.add(line);
+                    }
+                }
+            }
+        }
+        assertEquals(LogChunks.partName(LOG, 1, true), store.names().get(0));
+        assertEquals(lines, shipped);
+    }
+
+    @Test
+    void retriesAFailedUploadAndThenStoresTheManifest() {
+        store.failures.put(part(1), 2);
+        final LogShipper shipper = new LogShipper(store, LOG, false, Long.MAX_VALUE, HOUR, 1);
+        requests(3).forEach(shipper::append);
+        shipper.close();
+
+        assertTrue(shipper.isComplete());
+        assertEquals(List.of(part(1), LogChunks.manifestName(LOG)), store.names());
+        assertEquals(3, store.attempts.get(part(1)));
+    }
+
+    @Test
+    void withholdsTheManifestWhenAPartCouldNotBeUploaded() {
+        store.failures.put(part(1), Integer.MAX_VALUE);
+        final LogShipper shipper = new LogShipper(store, LOG, false, 200, HOUR, 2);
+        requests(6).forEach(shipper::append);
+        shipper.close();
+
+        assertFalse(shipper.isComplete());
+        assertEquals(List.of(part(2)), store.names());
+        assertNull(store.get(LogChunks.manifestName(LOG)));
+        assertEquals(4, store.attempts.get(part(1)));
+    }
+
+    @Test
+    void isOnlyCompleteOnceClosed() {
+        final LogShipper shipper = new LogShipper(store, LOG, false, Long.MAX_VALUE, HOUR, 1);
+        shipper.append(requests(1).get(0));
+        assertFalse(shipper.isComplete());
+
+        shipper.close();
+        shipper.close();
+        assertTrue(shipper.isComplete());
+        assertEquals(List.of(part(1), LogChunks.manifestName(LOG)), store.names());
+    }
+
+    private static String part(int index) {
+        return LogChunks.partName(LOG, index, false);
+    }
+
+    private static List<String> requests(int count) {
+        final List<String> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final long start = 1790518400000L + i * 100;
+            lines.add("REQUEST\t\tGET_Postcode\t" + start + "\t" + (start + 41) + "\tOK\t ");
+        }
+        return lines;
+    }
+
+    private List<String> gunzip(String name) throws IOException {
+        try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(store.get(name)))) {
+            final String text = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+            assertTrue(text.endsWith("\n"), "a part holds whole lines");
+            return List.of(text.substring(0, text.length() - 1).split("\n", -1));
+        }
+    }
+
+    /**
+     * Keeps what was stored in memory and fails the first puts of the given names.
+     */
+    private static class FakeStore implements LogShipper.ChunkStore {
+
+        final Map<String, Integer> failures = new ConcurrentHashMap<>();
+        final Map<String, Integer> attempts = new ConcurrentHashMap<>();
+        private final Map<String, byte[]> stored = new ConcurrentHashMap<>();
+
+        @Override
+        public void put(String name, byte[] content) throws IOException {
+            final int attempt = attempts.merge(name, 1, Integer::sum);
+            if (attempt <= failures.getOrDefault(name, 0)) {
+                throw new IOException("503 Slow Down");
+            }
+            assertNull(stored.putIfAbsent(name, content), name + " was stored twice");
+        }
+
+        byte[] get(String name) {
+            return stored.get(name);
+        }
+
+        List<String> names() {
+            final List<String> names = new ArrayList<>(stored.keySet());
+            names.sort(null);
+            return names;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package report.agent;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import report.LogRecord;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogTailerTest {
+
+    private static final long T = 1790518400000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void keepsAPartialLineUntilItIsComplete() throws IOException {
+        final Path log = directory.resolve("simulation.log");
+        final List<String> lines = new ArrayList<>();
+        try (LogTailer tailer = new LogTailer(log(log, request(0) + "\n" + request(1).substring(0, 20)))) {
+            tailer.readLines(lines::add);
+            assertEquals(List.of(request(0)), lines);
+
+            append(log, request(1).substring(20) + "\n\n" + request(2).substring(0, 10));
+            tailer.readLines(lines::add);
+            assertEquals(List.of(request(0), request(1)), lines);
+
+            // The writer is done, the cut-off line is all there will be
+            tailer.readPartialLine(lines::add);
+            tailer.readPartialLine(lines::add);
+            assertEquals(List.of(request(0), request(1), request(2).substring(0, 10)), lines);
+        }
+    }
+
+    @Test
+    void readsTheLinesAfterAMalformedOne() throws IOException {
+        final Path log = directory.resolve("simulation.log");
+        final List<LogRecord> records = new ArrayList<>();
+        try (LogTailer tailer = new LogTailer(log(log, request(0) + "\nREQUEST\t\tGET_Postcode\t" + T + "\n" + request(2) + "\n"))) {
+            assertTrue(tailer.read(records::add) > 0);
+        }
+
+        assertEquals(2, records.size());
+        assertEquals(T + 200, records.get(1).startTimestamp);
+    }
+
+    private static Path log(Path log, String content) throws IOException {
+        return Files.writeString(log, content);
+    }
+
+    private static void append(Path log, String content) throws IOException {
+        Files.writeString(log, content, StandardOpenOption.APPEND);
+    }
+
+    private static String request(int index) {
+        final long start = T + index * 100;
+        return "REQUEST\t\tGET_Postcode\t" + start + "\t" + (start + 41) + "\tOK\t ";
+    }
+}
@@ -0,0 +1,60 @@
+package report.history;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HistoryStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void keepsTheRunsOfASeriesInStartOrder() throws IOException {
+        final HistoryStore store = HistoryStore.open(directory);
+        store.append(RegressionDetectorTest.summary("run-2", 2, false, 1000, 200, 100));
+        store.append(RegressionDetectorTest.summary("run-0", 0, false, 1000, 200, 100));
+        store.append(RegressionDetectorTest.summary("run-1", 1, false, 1000, 200, 100));
+
+        final String series = store.getSeries().get(0);
+        assertEquals(List.of("run-0", "run-1", "run-2"), runIds(store.getRuns(series)));
+        assertEquals(List.of("run-0", "run-1"), runIds(store.getRunsBefore(series, Long.MAX_VALUE, "run-2", 5)));
+    }
+
+    @Test
+    void replacesARunRecordedAgain() throws IOException {
+        final HistoryStore store = HistoryStore.open(directory);
+        store.append(RegressionDetectorTest.summary("run-0", 0, false, 1000, 200, 100));
+        store.append(RegressionDetectorTest.summary("run-1", 1, false, 1000, 200, 100));
+        store.append(RegressionDetectorTest.summary("run-1", 1, false, 1000, 250, 100));
+        // Recorded by the runner and by generateReport.sh under the id of its report
+        store.append(RegressionDetectorTest.summary("Report-postcode-20260918-101500", 0, false, 1000, 210, 100));
+
+        assertReplaced(store);
+        assertReplaced(HistoryStore.open(directory));
+        // Indexed again from the runs file
+        Files.delete(directory.resolve(HistoryStore.INDEX_FILE));
+        assertReplaced(HistoryStore.open(directory));
+    }
+
+    private static void assertReplaced(HistoryStore store) throws IOException {
+        assertEquals(2, store.size());
+        final List<RunSummary> runs = store.getRuns(store.getSeries().get(0));
+        assertEquals(List.of("Report-postcode-20260918-101500", "run-1"), runIds(runs));
+        assertEquals(210, runs.get(0).getAllRequests().getPercentile(95));
+        assertEquals(250, runs.get(1).getAllRequests().getPercentile(95));
+    }
+
+    private static List<String> runIds(List<RunSummary> runs) {
+        final List<String> runIds = new ArrayList<>();
+        runs.forEach(run -> runIds.add(run.runId));
+        return runIds;
+    }
+}
@@ -0,0 +1,159 @@
+package report.history;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RegressionDetectorTest {
+
+    private static final long T = 1790518400000L;
+    private static final String ALL_REQUESTS = "All Requests";
+    private static final String REQUEST = "GET_Postcode";
+
+    private final RegressionDetector detector = new RegressionDetector(5, 3, 3.5, 10, 100);
+
+    @Test
+    void acceptsARunWithinTheUsualVariation() {
+        final RegressionReport report = detector.compare(run(5, 203, 100), baseline(200, 202, 199, 201, 200));
+
+        assertFalse(report.isSkipped());
+        assertEquals(2, report.comparedRequests);
+        assertFalse(report.hasRegressions(), report.describe());
+    }
+
+    @Test
+    void flagsALatencyBeyondTheUsualVariation() {
+        final RegressionReport report = detector.compare(run(5, 260, 100), baseline(200, 202, 199, 201, 200));
+
+        assertEquals(List.of(ALL_REQUESTS, REQUEST), names(report));
+        final RegressionReport.Finding finding = report.findings.get(1);
+        assertEquals("p95", finding.metric);
+        assertEquals(200, finding.baselineMedian);
+        assertEquals(30, finding.changePercent, 0.001);
+        assertTrue(finding.score >= 3.5, finding.describe());
+    }
+
+    @Test
+    void isNotThrownByAnOutlierInTheBaseline() {
+        // The mean and standard deviation of this baseline would be 340 and 280
+        final List<RunSummary> baseline = baseline(200, 201, 900, 199, 200);
+
+        assertFalse(detector.compare(run(5, 205, 100), baseline).hasRegressions());
+        assertTrue(detector.compare(run(5, 260, 100), baseline).hasRegressions());
+    }
+
+    @Test
+    void onlyFlagsChangesWorthActingOn() {
+        // No spread at all, so the spread is 1% of the median: 8 ms is a score of 4 but only 4% slower
+        assertFalse(detector.compare(run(5, 208, 100), baseline(200, 200, 200, 200, 200)).hasRegressions());
+        // 20% slower at a score of 4, but only by 4 ms
+        assertFalse(detector.compare(run(5, 24, 100), baseline(20, 20, 20, 20, 20)).hasRegressions());
+        assertTrue(detector.compare(run(5, 26, 100), baseline(20, 20, 20, 20, 20)).hasRegressions());
+    }
+
+    @Test
+    void flagsALowerThroughput() {
+        final List<RunSummary> baseline = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            baseline.add(run(i, 200, 100 + i % 2));
+        }
+
+        final RegressionReport report = detector.compare(run(5, 200, 80), baseline);
+
+        assertEquals("throughput", report.findings.get(0).metric);
+        assertFalse(detector.compare(run(5, 200, 130), baseline).hasRegressions());
+    }
+
+    @Test
+    void skipsAnAbortedRun() {
+        final RunSummary aborted = summary("run-5", 5, true, 1000, 260, 100);
+
+        final RegressionReport report = detector.compare(aborted, baseline(200, 202, 199, 201, 200));
+
+        assertTrue(report.isSkipped());
+        assertTrue(report.skippedReason.contains("aborted"), report.skippedReason);
+        assertFalse(report.hasRegressions());
+    }
+
+    @Test
+    void leavesTheAbortedRunsOutOfTheBaseline() {
+        final List<RunSummary> previous = new ArrayList<>(baseline(200, 202, 199));
+        previous.add(1, summary("aborted-1", 1, true, 1000, 5000, 10));
+        previous.add(summary("aborted-2", 4, true, 1000, 5000, 10));
+
+        final RegressionReport report = detector.compare(run(5, 201, 100), previous);
+
+        assertEquals(List.of("run-0", "run-1", "run-2"), report.baselineRunIds);
+        assertFalse(report.hasRegressions(), report.describe());
+    }
+
+    @Test
+    void skipsARunWithTooFewRunsInTheBaseline() {
+        final RegressionReport report = detector.compare(run(5, 900, 100), baseline(200, 201));
+
+        assertTrue(report.isSkipped());
+        assertTrue(report.skippedReason.contains("2 of the 3"), report.skippedReason);
+        assertEquals(List.of("run-0", "run-1"), report.baselineRunIds);
+    }
+
+    @Test
+    void usesTheLatestRunsAsTheBaseline() {
+        final RegressionReport report = detector.compare(run(7, 260, 100), baseline(260, 260, 200, 202, 199, 201, 200));
+
+        assertEquals(List.of("run-2", "run-3", "run-4", "run-5", "run-6"), report.baselineRunIds);
+        assertTrue(report.hasRegressions());
+    }
+
+    @Test
+    void doesNotJudgeRequestsWithTooFewRequests() {
+        final RunSummary run = summary("run-5", 5, false, 50, 900, 100);
+
+        final RegressionReport report = detector.compare(run, baseline(200, 202, 199, 201, 200));
+
+        assertEquals(0, report.comparedRequests);
+        assertFalse(report.hasRegressions());
+    }
+
+    @Test
+    void rejectsABaselineOfASingleRun() {
+        assertThrows(IllegalArgumentException.class, () -> new RegressionDetector(5, 1, 3.5, 10, 100));
+        assertThrows(IllegalArgumentException.class, () -> new RegressionDetector(2, 3, 3.5, 10, 100));
+    }
+
+    private static List<String> names(RegressionReport report) {
+        final List<String> names = new ArrayList<>();
+        report.findings.forEach(finding -> names.add(finding.request));
+        return names;
+    }
+
+    private static List<RunSummary> baseline(long... p95s) {
+        final List<RunSummary> runs = new ArrayList<>();
+        for (int i = 0; i < p95s.length; i++) {
+            runs.add(run(i, p95s[i], 100));
+        }
+        return runs;
+    }
+
+    private static RunSummary run(int index, long p95, double meanRps) {
+        return summary("run-" + index, index, false, 1000, p95, meanRps);
+    }
+
+    /**
+     * A run of one request that only differs from the others in its p95, throughput and request count.
+     */
+    static RunSummary summary(String runId, int index, boolean aborted, long count, long p95, double meanRps) {
+        final long[] percentiles = {100, 150, p95, 1000, 2000};
+        final List<RunSummary.RequestSummary> requests = List.of(
+                new RunSummary.RequestSummary(ALL_REQUESTS, count, 0, meanRps, 120, 40, 2000, percentiles),
+                new RunSummary.RequestSummary(REQUEST, count, 0, meanRps, 120, 40, 2000, percentiles));
+        final long start = T + index * 3_600_000L;
+        return new RunSummary(runId, "simulations.PostCode.PostCodeSimulation", "postcode", "test", start, start + 600_000,
+                2, aborted, requests);
+    }
+}
@@ -19,6 +19,8 @@ public class GatlingStackApp {
         final String region = Objects.requireNonNull(System.getenv("CDK_DEFAULT_REGION"), "CDK_DEFAULT_REGION is required.");
         final String vpcID = Objects.requireNonNull(System.getenv("VPC_ID"), "VPC_ID is required.");
         final String bucketName = Objects.requireNonNull(System.getenv("REPORT_BUCKET"), "BUCKET is required.");
+        // Dockerfile.fast for generators that start faster, see the README
+        final String generatorDockerfile = Objects.requireNonNullElse(System.getenv("GENERATOR_DOCKERFILE"), "Dockerfile");
 
         StackProps stackProps = StackProps.builder()
                 .env(Environment.builder()
@@ -32,6 +34,7 @@ public class GatlingStackApp {
                 .namespace("gatling-tests")
                 .ecsClusterName("gatling-performance-test-cluster")
                 .vpcId(vpcID)
+                .dockerfile(generatorDockerfile)
                 .build(app, "GatlingEcsStack", stackProps);
 
         app.synth();
@@ -1,6 +1,7 @@
 package cdk.gatling.gatlingstack;
 
 import software.amazon.awscdk.core.Construct;
+import software.amazon.awscdk.core.Duration;
 import software.amazon.awscdk.core.RemovalPolicy;
 import software.amazon.awscdk.services.ecr.assets.DockerImageAsset;
 import software.amazon.awscdk.services.ecs.AwsLogDriverProps;
@@ -11,20 +12,28 @@ import software.amazon.awscdk.services.logs.LogGroup;
 import software.amazon.awscdk.services.logs.RetentionDays;
 
 import java.util.Arrays;
+import java.util.Map;
 
 class GatlingContainerOptions extends Construct {
     private final ContainerDefinitionOptions containerDefinitionOptions;
 
-    public GatlingContainerOptions(Construct scope, String id, String clusterNamespace, String taskDefinitionName, String bucket) {
+    public GatlingContainerOptions(Construct scope, String id, String clusterNamespace, String taskDefinitionName, String bucket,
+                                   String dockerfile, Map<String, String> environment) {
         super(scope, id);
 
         DockerImageAsset gatlingDockerImageAsset = DockerImageAsset.Builder.create(this, "GatlingDockerImageAsset")
                 .directory("../gatling-tests")
+                // Dockerfile.fast bakes a class data sharing archive into the image, see gatling-tests/scripts/train-cds.sh
+                .file(dockerfile)
                 .build();
 
         this.containerDefinitionOptions = ContainerDefinitionOptions.builder()
                 .image(ContainerImage.fromDockerImageAsset(gatlingDockerImageAsset))
                 .command(Arrays.asList("-r", bucket))
+                // JVM and Netty settings of the generator profile, picked up by run.sh
+                .environment(environment)
+                // Time between SIGTERM and SIGKILL when a task is stopped, for uploading the partial logs (Fargate maximum)
+                .stopTimeout(Duration.seconds(120))
                 .logging(LogDriver.awsLogs(AwsLogDriverProps.builder()
                         .logGroup(LogGroup.Builder.create(this, "GatlingFargateLogGroup")
                                 .logGroupName(String.format("/ecs/%s/%s", clusterNamespace, taskDefinitionName))
@@ -18,6 +18,8 @@ import java.util.List;
  */
 public class GatlingEcsStack extends Stack {
 
+    static final String TASK_DEFINITION_NAME = "gatling-tests";
+
     private GatlingEcsStack(Construct scope, String id, StackProps stackProps, Builder builder) {
         super(scope, id, stackProps);
 
@@ -49,15 +51,31 @@ public class GatlingEcsStack extends Stack {
         Role fargateExecutionRole = new FargateExecutionRole(this, "FargateEcsExecutionRole", builder.namespace);
         Role fargateTaskRole = new FargateTaskRole(this, "FargateEcsTaskRole", builder.bucketName, builder.namespace);
 
-        // Create task definition
+        // Create task definition, gatling-tests is the large profile
         GatlingRunnerFargateTaskDefinition.builder()
-                .taskDefinitionName("gatling-tests")
+                .taskDefinitionName(TASK_DEFINITION_NAME)
                 .clusterNamespace(builder.namespace)
                 .bucketName(builder.bucketName)
                 .fargateExecutionRole(fargateExecutionRole)
                 .fargateTaskRole(fargateTaskRole)
+                .generatorProfile(GeneratorProfile.LARGE)
+                .dockerfile(builder.dockerfile)
                 .build(this, "GatlingTaskDefinition");
 
+        // One task definition per generator profile (gatling-tests-small, ...), the runner picks one with GENERATOR_PROFILE
+        for (GeneratorProfile generatorProfile : builder.generatorProfiles) {
+            final String suffix = generatorProfile.getFamilySuffix();
+            GatlingRunnerFargateTaskDefinition.builder()
+                    .taskDefinitionName(TASK_DEFINITION_NAME + "-" + suffix)
+                    .clusterNamespace(builder.namespace)
+                    .bucketName(builder.bucketName)
+                    .fargateExecutionRole(fargateExecutionRole)
+                    .fargateTaskRole(fargateTaskRole)
+                    .generatorProfile(generatorProfile)
+                    .dockerfile(builder.dockerfile)
+                    .build(this, "GatlingTaskDefinition" + Character.toUpperCase(suffix.charAt(0)) + suffix.substring(1));
+        }
+
     }
 
     public static Builder builder() {
@@ -69,6 +87,8 @@ public class GatlingEcsStack extends Stack {
         private String vpcId;
         private String ecsClusterName;
         private String namespace;
+        private List<GeneratorProfile> generatorProfiles = List.of(GeneratorProfile.values());
+        private String dockerfile = "Dockerfile";
 
         public Builder bucketName(String bucketName) {
             this.bucketName = bucketName;
@@ -89,6 +109,20 @@ public class GatlingEcsStack extends Stack {
             return this;
         }
 
+        public Builder generatorProfiles(List<GeneratorProfile> generatorProfiles) {
+            this.generatorProfiles = generatorProfiles;
+            return this;
+        }
+
+        /**
+         * The Dockerfile of the generator image in gatling-tests, Dockerfile.fast for the image with the class data
+         * sharing archive
+         */
+        public Builder dockerfile(String dockerfile) {
+            this.dockerfile = dockerfile;
+            return this;
+        }
+
         public GatlingEcsStack build(Construct scope, String id, StackProps stackProps) {
             return new GatlingEcsStack(scope, id, stackProps, this);
         }
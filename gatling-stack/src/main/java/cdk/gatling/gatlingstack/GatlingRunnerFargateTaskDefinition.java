@@ -12,17 +12,18 @@ public class GatlingRunnerFargateTaskDefinition extends Construct {
     public GatlingRunnerFargateTaskDefinition(Construct scope, String id, Builder builder) {
         super(scope, id);
 
-        // Task definition
+        // Task definition, sized by the generator profile
         final FargateTaskDefinition fargateTaskDefinition = FargateTaskDefinition.Builder.create(this, "GatlingRunnerTaskDefinition")
-                .cpu(4096)
-                .memoryLimitMiB(8192)
+                .cpu(builder.generatorProfile.getCpu())
+                .memoryLimitMiB(builder.generatorProfile.getMemoryLimitMiB())
                 .executionRole(builder.fargateExecutionRole)
                 .taskRole(builder.fargateTaskRole)
                 .family(builder.taskDefinitionName)
                 .build();
 
         // Container
-        final ContainerDefinitionOptions gatlingRunnerContainerDefinitionOptions = new GatlingContainerOptions(this, "GatlingRunnerContainerOptions", builder.clusterNamespace, builder.taskDefinitionName, builder.bucketName)
+        final ContainerDefinitionOptions gatlingRunnerContainerDefinitionOptions = new GatlingContainerOptions(this, "GatlingRunnerContainerOptions", builder.clusterNamespace, builder.taskDefinitionName, builder.bucketName,
+                builder.dockerfile, builder.generatorProfile.getEnvironment())
                 .getContainerDefinitionOptions();
 
         final Ulimit nprocUlimit = Ulimit.builder().name(UlimitName.NPROC).hardLimit(65535).softLimit(65535).build();
@@ -41,6 +42,8 @@ public class GatlingRunnerFargateTaskDefinition extends Construct {
         private String bucketName;
         private Role fargateExecutionRole;
         private Role fargateTaskRole;
+        private GeneratorProfile generatorProfile = GeneratorProfile.LARGE;
+        private String dockerfile = "Dockerfile";
 
         public Builder taskDefinitionName(String taskDefinitionName) {
             this.taskDefinitionName = taskDefinitionName;
@@ -67,6 +70,16 @@ public class GatlingRunnerFargateTaskDefinition extends Construct {
             return this;
         }
 
+        public Builder generatorProfile(GeneratorProfile generatorProfile) {
+            this.generatorProfile = generatorProfile;
+            return this;
+        }
+
+        public Builder dockerfile(String dockerfile) {
+            this.dockerfile = dockerfile;
+            return this;
+        }
+
         public GatlingRunnerFargateTaskDefinition build(Construct scope, String id) {
             return new GatlingRunnerFargateTaskDefinition(scope, id, this);
         }
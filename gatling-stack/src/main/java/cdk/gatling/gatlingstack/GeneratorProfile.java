@@ -0,0 +1,62 @@
+package cdk.gatling.gatlingstack;
+
+import java.util.Map;
+
+/**
+ * Size of a load generator: the Fargate task CPU and memory, and the JVM and Netty settings that match them.
+ * The settings reach run.sh as environment variables of the container:
+ * <ul>
+ *     <li>JVM_HEAP: fixed heap size, what is left of the task memory after the metrics agent, metaspace, thread stacks
+ *     and Netty's direct buffers</li>
+ *     <li>JVM_GC: the parallel collector on a single vCPU, where G1's concurrent threads would compete with the load
+ *     generation, G1 from two vCPUs on</li>
+ *     <li>JVM_NETTY: the processor count the JVM sizes its thread pools by and one Netty event loop per vCPU. Gatling
+ *     uses the native (epoll) transport by default where it loads, which the generator images make sure of</li>
+ * </ul>
+ */
+public enum GeneratorProfile {
+
+    SMALL(1024, 2048, "-Xms1280m -Xmx1280m", "-XX:+UseParallelGC"),
+    MEDIUM(2048, 4096, "-Xms2816m -Xmx2816m", "-XX:+UseG1GC -XX:+ParallelRefProcEnabled"),
+    LARGE(4096, 8192, "-Xms6g -Xmx6g", "-XX:+UseG1GC -XX:+ParallelRefProcEnabled -XX:MaxGCPauseMillis=100");
+
+    private final int cpu;
+    private final int memoryLimitMiB;
+    private final String heap;
+    private final String garbageCollector;
+
+    GeneratorProfile(int cpu, int memoryLimitMiB, String heap, String garbageCollector) {
+        this.cpu = cpu;
+        this.memoryLimitMiB = memoryLimitMiB;
+        this.heap = heap;
+        this.garbageCollector = garbageCollector;
+    }
+
+    public int getCpu() {
+        return cpu;
+    }
+
+    public int getMemoryLimitMiB() {
+        return memoryLimitMiB;
+    }
+
+    public int getVcpus() {
+        return Math.max(1, cpu / 1024);
+    }
+
+    /**
+     * Suffix of the task definition family of the profile, e.g. gatling-tests-small
+     */
+    public String getFamilySuffix() {
+        return name().toLowerCase();
+    }
+
+    public Map<String, String> getEnvironment() {
+        return Map.of(
+                "GENERATOR_PROFILE", getFamilySuffix(),
+                "JVM_HEAP", heap,
+                "JVM_GC", garbageCollector,
+                "JVM_NETTY", String.format("-XX:ActiveProcessorCount=%d -Dio.netty.eventLoopThreads=%d",
+                        getVcpus(), getVcpus()));
+    }
+}
@@ -2,15 +2,88 @@
 # ENV VARS:
 # - REPORT_BUCKET: S3 bucket where to copy the simulation.log file to
 # - SIMULATION: Full classpath of simulation file to run, e.g. nl.codecontrol.gatling.simulations.BasicSimulation
+# - RUN_ID, LIVE_METRICS, METRICS_INTERVAL_SECONDS: Live metrics settings passed on by the runner
+# - GENERATOR_PROFILE, JVM_HEAP, JVM_GC, JVM_NETTY: JVM and Netty settings of the generator profile (task definition)
+# - CORRECTED_LATENCY: The simulation also writes results/intended.log, uploaded next to simulation.log
+# - GENERATOR_MONITOR: The simulation samples its resource usage to results/generator.log unless this is false
+# - LOGS_PREFIX: Where in the bucket the logs go, default logs (the calibration probe of the runner uses its own)
+# - LOG_SHIPPING, LOG_CHUNK_MB, LOG_CHUNK_SECONDS, LOG_UPLOAD_THREADS: The agent ships simulation.log in compressed
+#   parts while Gatling runs unless LOG_SHIPPING is false, and writes results/shipped once all of it is uploaded
+# - LOG_FORMAT: text (gzip) or binary, the compact record format the report aggregator reads directly
+# - GATLING_CLASSPATH, CDS_ARCHIVE: Fixed classpath and class data sharing archive of the fast image (Dockerfile.fast)
+# - CDS_TRAINING: Directory the JVMs write the classes they load to, for the training run of scripts/train-cds.sh
 
 # Run Gatling from jar
 USER_ARGS=""
-COMPILATION_CLASSPATH=`find -L ./target -maxdepth 1 -name "*.jar" -type f -exec printf :{} ';'`
-JAVA_OPTS="-server -Xmx1G -XX:+UseG1GC -XX:+ParallelRefProcEnabled -XX:+HeapDumpOnOutOfMemoryError -XX:MaxInlineLevel=20 -XX:MaxTrivialSize=12 -Djava.net.preferIPv4Stack=true -Djava.net.preferIPv6Addresses=false ${JAVA_OPTS}"
-java $JAVA_OPTS $USER_ARGS -cp $COMPILATION_CLASSPATH io.gatling.app.Gatling -s $SIMULATION
-
-# Upload simulation.log to S3
-for _dir in results/*/
-do
-   aws s3 cp ${_dir}simulation.log s3://${REPORT_BUCKET}/logs/${HOSTNAME}-simulation.log
-done
+# The fast image has a fixed classpath, which its class data sharing archive was dumped with
+COMPILATION_CLASSPATH=${GATLING_CLASSPATH:-`find -L ./target -maxdepth 1 -name "*.jar" -type f -exec printf :{} ';'`}
+# Map the classes of Gatling, the simulations and the agent from the archive instead of loading and verifying them
+# from the jars; -Xshare:auto starts without it when the archive doesn't match the JVM or the classpath
+if [ -n "${CDS_ARCHIVE}" ] && [ -f "${CDS_ARCHIVE}" ]; then
+  CDS_OPTS="-XX:SharedArchiveFile=${CDS_ARCHIVE} -Xshare:auto"
+fi
+# Training run: every JVM lists the classes it loads, the archive is dumped from the lists
+if [ -n "${CDS_TRAINING}" ]; then
+  mkdir -p ${CDS_TRAINING}
+  CDS_OPTS="-Xshare:off -XX:DumpLoadedClassList=${CDS_TRAINING}/gatling.classlist"
+  AGENT_CDS_OPTS="-Xshare:off -XX:DumpLoadedClassList=${CDS_TRAINING}/agent.classlist"
+  UPLOAD_CDS_OPTS="-Xshare:off -XX:DumpLoadedClassList=${CDS_TRAINING}/upload.classlist"
+fi
+# Heap, GC and Netty settings come from the generator profile of the task definition (JVM_HEAP, JVM_GC, JVM_NETTY)
+JVM_HEAP=${JVM_HEAP:-"-Xmx1G"}
+JVM_GC=${JVM_GC:-"-XX:+UseG1GC -XX:+ParallelRefProcEnabled"}
+JAVA_OPTS="-server ${JVM_HEAP} ${JVM_GC} ${JVM_NETTY} ${CDS_OPTS} -XX:+HeapDumpOnOutOfMemoryError -XX:MaxInlineLevel=20 -XX:MaxTrivialSize=12 -Djava.net.preferIPv4Stack=true -Djava.net.preferIPv6Addresses=false ${JAVA_OPTS}"
+echo "Generator profile: ${GENERATOR_PROFILE:-none}, JVM options: ${JAVA_OPTS}"
+
+# Follow simulation.log, publish live metrics and ship the log to S3 while Gatling runs
+java -Xmx128m -XX:+UseSerialGC ${AGENT_CDS_OPTS:-${CDS_OPTS}} -Dlogback.configurationFile=logback-aggregator.xml -cp $COMPILATION_CLASSPATH report.agent.GeneratorAgent &
+AGENT_PID=$!
+
+# When the runner stops the task (e.g. the SLA guard aborted the test) ECS sends SIGTERM: stop Gatling and still
+# upload the partial simulation.log before ECS kills the container (stopTimeout)
+stop_gatling() {
+  echo "Stop requested, stopping Gatling and uploading the partial results"
+  kill -TERM $GATLING_PID 2>/dev/null
+}
+trap stop_gatling TERM INT
+
+java $JAVA_OPTS $USER_ARGS -cp $COMPILATION_CLASSPATH io.gatling.app.Gatling -s $SIMULATION &
+GATLING_PID=$!
+wait $GATLING_PID
+GATLING_EXIT_CODE=$?
+# wait returns as soon as a trapped signal arrives, wait again for Gatling to exit
+if kill -0 $GATLING_PID 2>/dev/null; then
+  wait $GATLING_PID
+  GATLING_EXIT_CODE=$?
+fi
+
+# Let the agent publish the last intervals and ship the rest of the log
+kill $AGENT_PID
+wait $AGENT_PID
+
+# Upload the results to S3 as pairs of file and key: simulation.log unless the agent already shipped all of it,
+# intended.log and the resource usage of this generator (GeneratorMonitor), for flagging the windows in which it was saturated
+UPLOADS=""
+if [ ! -f results/shipped ]; then
+  for _dir in results/*/
+  do
+     UPLOADS="${UPLOADS} ${_dir}simulation.log ${LOGS_PREFIX:-logs}/${HOSTNAME}-simulation.log"
+  done
+fi
+UPLOADS="${UPLOADS} results/intended.log ${LOGS_PREFIX:-logs}/${HOSTNAME}-intended.log"
+UPLOADS="${UPLOADS} results/generator.log ${LOGS_PREFIX:-logs}/${HOSTNAME}-generator.log"
+
+# With the AWS CLI where the image has it, else all files in one JVM (the fast image has no Python)
+if command -v aws >/dev/null 2>&1; then
+  set -- ${UPLOADS}
+  while [ $# -ge 2 ]; do
+    if [ -f "$1" ]; then
+      aws s3 cp $1 s3://${REPORT_BUCKET}/$2
+    fi
+    shift 2
+  done
+else
+  java -Xmx128m -XX:+UseSerialGC ${UPLOAD_CDS_OPTS:-${CDS_OPTS}} -Dlogback.configurationFile=logback-aggregator.xml -cp $COMPILATION_CLASSPATH report.agent.S3Upload ${REPORT_BUCKET} ${UPLOADS}
+fi
+
+exit $GATLING_EXIT_CODE
@@ -0,0 +1,56 @@
+#!/bin/sh
+# Builds the class data sharing archive of the fast generator image (Dockerfile.fast) and reports the cold start of a
+# generator, the time from starting run.sh to the first request, without and with the archive.
+# ENV VARS:
+# - GATLING_CLASSPATH: The fixed classpath, the archive only serves JVMs started with this classpath
+# - CDS_ARCHIVE: Where the archive goes
+# - TRAINING_SIMULATION, TRAINING_SIMULATION_TYPE, TRAINING_ENVIRONMENT: What the training run runs. Default the
+#   PostCode load test against the local environment; nothing has to listen there, failed requests load the classes
+#   of the HTTP stack as well
+# - TRAINING_SECONDS: How long the training run sends requests. Default 20
+# - COLD_START_REPORT: Where the cold start measurements go. Default cold-start.txt next to the archive
+# - TRAINING_DIRECTORY: Where the class lists of the training run go. Default /tmp/cds-training
+set -e
+
+TRAINING_DIRECTORY=${TRAINING_DIRECTORY:-/tmp/cds-training}
+COLD_START_REPORT=${COLD_START_REPORT:-$(dirname ${CDS_ARCHIVE})/cold-start.txt}
+PROBE="java -Xmx64m -XX:+UseSerialGC -cp ${GATLING_CLASSPATH} report.agent.ColdStartProbe"
+
+# The generators of the training run talk to nothing: the simulation to the local environment, the agent and the
+# uploader to a closed port, so their S3 clients are loaded as well
+export SIMULATION=${TRAINING_SIMULATION:-simulations.PostCode.PostCodeSimulation}
+export SIMULATION_TYPE=${TRAINING_SIMULATION_TYPE:-loadtest}
+export ENVIRONMENT=${TRAINING_ENVIRONMENT:-local}
+export REPORT_BUCKET=cds-training
+export S3_ENDPOINT=http://127.0.0.1:9
+export AWS_REGION=us-east-1
+export AWS_ACCESS_KEY_ID=cds-training
+export AWS_SECRET_ACCESS_KEY=cds-training
+export METRICS_INTERVAL_SECONDS=1
+export LOG_CHUNK_SECONDS=5
+# Gatling writes simulation.log through an 8 KiB buffer, the probe would only see the first request once it fills
+export JAVA_OPTS="-Dgatling.data.file.bufferSize=64 ${JAVA_OPTS}"
+
+rm -rf ${TRAINING_DIRECTORY} results ${CDS_ARCHIVE} ${COLD_START_REPORT}
+
+echo "Training run of ${SIMULATION} (${SIMULATION_TYPE}) on ${ENVIRONMENT}"
+CDS_TRAINING=${TRAINING_DIRECTORY} ${PROBE} --label "Training run" --run-seconds ${TRAINING_SECONDS:-20} -- ./run.sh
+rm -rf results
+
+# Classes that couldn't be archived (e.g. generated at runtime) are skipped by the dump with a warning
+sort -u ${TRAINING_DIRECTORY}/*.classlist > ${TRAINING_DIRECTORY}/classes.lst
+echo "Dumping $(wc -l < ${TRAINING_DIRECTORY}/classes.lst) classes to ${CDS_ARCHIVE}"
+java -Xshare:dump -XX:SharedClassListFile=${TRAINING_DIRECTORY}/classes.lst -XX:SharedArchiveFile=${CDS_ARCHIVE} \
+  -cp ${GATLING_CLASSPATH} > ${TRAINING_DIRECTORY}/dump.log 2>&1 || { cat ${TRAINING_DIRECTORY}/dump.log; exit 1; }
+# Fails the build when the archive can't be mapped with the classpath of the image
+java -Xshare:on -XX:SharedArchiveFile=${CDS_ARCHIVE} -cp ${GATLING_CLASSPATH} -version > /dev/null
+
+# Cold start without and with the archive, in the same container
+CDS_ARCHIVE= ${PROBE} --label "Cold start without CDS" --run-seconds 0 --output ${COLD_START_REPORT} -- ./run.sh
+rm -rf results
+${PROBE} --label "Cold start with CDS" --run-seconds 0 --output ${COLD_START_REPORT} -- ./run.sh
+rm -rf results ${TRAINING_DIRECTORY}
+
+echo "******************** COLD START ********************"
+cat ${COLD_START_REPORT}
+echo "****************************************************"
@@ -0,0 +1,32 @@
+package CommonFunctions
+
+import io.gatling.core.Predef._
+import io.gatling.core.structure.ChainBuilder
+import io.netty.channel.epoll.Epoll
+import report.agent.GeneratorMonitor
+
+/**
+ * Samples the CPU, GC, heap, event loop lag and connections of this load generator to generator.log while the test
+ * runs (GENERATOR_MONITOR=false disables it), so that the runner and the report can flag the intervals in which the
+ * generator rather than the system under test was the bottleneck.
+ * Also reports the transport of Gatling's connections: the native epoll transport needs glibc, which the Alpine images
+ * get from libc6-compat, and Gatling silently falls back to Java NIO without it.
+ */
+object GeneratorMonitoring {
+
+  GeneratorMonitor.start()
+
+  if (Epoll.isAvailable)
+    println("\nNetty transport: epoll")
+  else
+    println("\nWARNING - Netty transport: Java NIO, epoll is not available: " + Epoll.unavailabilityCause())
+
+  /**
+   * Registers the event loop of the user for the event loop lag; put at the start of every scenario
+   */
+  val watchEventLoop: ChainBuilder = exec { session =>
+    GeneratorMonitor.watchEventLoop(session.eventLoop)
+    session
+  }
+
+}
@@ -0,0 +1,132 @@
+package CommonFunctions
+
+import config.ConfigDetails
+import io.gatling.core.Predef._
+import io.gatling.core.structure.PopulationBuilder
+import io.gatling.http.Predef._
+import io.gatling.http.protocol.HttpProtocolBuilder
+
+import scala.collection.mutable
+import scala.concurrent.duration.{Duration, DurationInt, FiniteDuration}
+import scala.language.postfixOps
+
+/**
+ * The HTTP protocol every simulation uses, built from the HttpProtocol settings of the environment in
+ * EnvironmentConfig.XML: the base URL of the host, shared or per user connections, keep-alive, HTTP/2, DNS resolution
+ * and the warm-up. With the defaults the virtual users share one pool of kept-alive connections that the warm-up
+ * opens before the injection starts, so the measured response times are those of the server rather than of
+ * connection set-up and DNS lookups.
+ *
+ * The requests use paths relative to the base URL.
+ */
+object HttpProtocols {
+
+  val jsonHeaders = Map("Content-Type" -> """application/json""")
+
+  /**
+   * Builds the protocol of a host
+   * @param environment Environment where test needs to run
+   * @param hostName The name of the host in EnvironmentConfig.xml
+   * @return The protocol, to be set on the simulation with protocols
+   */
+  def forHost(environment: String, hostName: String): HttpProtocolBuilder = {
+
+    val settings = ConfigDetails.getHttpProtocolSettings(environment)
+    val baseUrl = ConfigDetails.getHostBaseUrl(environment, hostName)
+
+    val summary = new mutable.StringBuilder("\n******************** HTTP PROTOCOL ********************")
+    summary.append("\nHost: " + hostName + " - " + baseUrl)
+
+    var protocol = http.baseUrl(baseUrl).headers(jsonHeaders)
+
+    // The settings are validated when EnvironmentConfig.XML is parsed
+    settings.connectionMode match {
+      case "shared" =>
+        protocol = protocol.shareConnections
+        summary.append("\nConnections: shared by all users")
+      case "perUser" =>
+        protocol = protocol.maxConnectionsPerHost(settings.maxConnectionsPerHost)
+        summary.append("\nConnections: per user, at most " + settings.maxConnectionsPerHost + " per host")
+    }
+
+    if (!settings.keepAlive) {
+      protocol = protocol.connectionHeader("close")
+      summary.append("\nKeep-alive: off, every request opens a new connection")
+    }
+
+    if (settings.http2) {
+      protocol = protocol.enableHttp2
+      summary.append("\nHTTP/2: enabled where the server offers it")
+    }
+
+    settings.dnsResolution match {
+      case "async" =>
+        protocol = protocol.asyncNameResolution()
+        summary.append("\nDNS: one cache for all users")
+      case "perUser" =>
+        protocol = protocol.asyncNameResolution().perUserNameResolution
+        summary.append("\nDNS: resolved by every user")
+      case "jvm" =>
+        summary.append("\nDNS: JDK resolver")
+    }
+
+    // Gatling warms up with a request to gatling.io by default, warm up against the host under test instead
+    if (settings.warmUpPath.isEmpty) {
+      protocol = protocol.disableWarmUp
+    } else {
+      protocol = protocol.warmUp(baseUrl + settings.warmUpPath)
+      summary.append("\nWarm-up: " + settings.warmUpPath)
+    }
+
+    summary.append("\n*******************************************************\n")
+    print(summary)
+
+    protocol
+  }
+
+  /**
+   * The warm-up phase: WarmUpUsers users that request WarmUpPath silently (it isn't in the results) for the last
+   * WarmUpSeconds (at most) before the injection starts. In the shared connection mode this opens the connections the
+   * virtual users then take from the pool; ending with the hold keeps them from idling out of it (Gatling's
+   * pooledConnectionIdleTimeout is 60 seconds) during a long coordinated start.
+   * @param environment Environment where test needs to run
+   * @param injectionDelay When the injection of the simulation starts, see injectionDelay
+   * @return The warm-up population to set up next to the simulation, if the warm-up is enabled
+   */
+  def warmUp(environment: String, injectionDelay: FiniteDuration): Option[PopulationBuilder] = {
+
+    val settings = ConfigDetails.getHttpProtocolSettings(environment)
+    val warmUpDuration = math.min(settings.warmUpSeconds, injectionDelay.toSeconds.toInt)
+
+    if (!settings.warmUpEnabled || warmUpDuration <= 0)
+      return None
+
+    println("\nWarming up with " + settings.warmUpUsers + " user(s) for " + warmUpDuration + " seconds")
+
+    Some(scenario("WarmUp")
+      .during(warmUpDuration seconds) {
+        exec(http("WarmUp").get(settings.warmUpPath).silent)
+          .pause(100 milliseconds)
+      }
+      .inject(nothingFor(injectionDelay - (warmUpDuration seconds)), atOnceUsers(settings.warmUpUsers)))
+  }
+
+  /**
+   * The delay before the injection of the simulation: the coordinated start, or else long enough for the warm-up
+   * @param environment Environment where test needs to run
+   * @param startDelay The delay until the coordinated start, see SimulationDetails.getStartDelay
+   * @return The delay to hold the injection for
+   */
+  def injectionDelay(environment: String, startDelay: FiniteDuration): FiniteDuration = {
+
+    if (startDelay > Duration.Zero)
+      return startDelay
+
+    val settings = ConfigDetails.getHttpProtocolSettings(environment)
+    if (settings.warmUpEnabled)
+      settings.warmUpSeconds seconds
+    else
+      startDelay
+  }
+
+}
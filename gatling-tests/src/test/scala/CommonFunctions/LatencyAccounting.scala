@@ -0,0 +1,137 @@
+package CommonFunctions
+
+import java.io.{BufferedWriter, IOException}
+import java.nio.charset.StandardCharsets
+import java.nio.file.{Files, Paths}
+import java.util.concurrent.{Executors, ThreadLocalRandom, TimeUnit}
+
+import io.gatling.commons.validation._
+import io.gatling.core.Predef._
+import io.gatling.core.structure.ChainBuilder
+
+import scala.concurrent.duration.{DurationLong, FiniteDuration}
+import scala.language.postfixOps
+
+/**
+ * Coordinated omission corrected latency (CORRECTED_LATENCY=true).
+ *
+ * A closed loop only sends its next request once the previous one returned, so when the system under test stalls the
+ * users stop sending and the stall shows up in a handful of slow requests instead of in every request that should
+ * have been sent meanwhile. In this mode every iteration has an intended start: its place in a fixed pacing schedule
+ * (closed model, see pace) or the due time of its arrival (open model, see ThroughputController). Every timed request
+ * writes its intended send time, the intended start plus its offset within the iteration, to intended.log next to
+ * simulation.log, and the report aggregator adds the percentiles measured from the intended send time to the report.
+ *
+ * Unlike Gatling's pace, the fixed schedule does not drop the iterations a stalled user missed: the user sends them
+ * as soon as it can, and they are measured from the time they were due.
+ */
+object LatencyAccounting {
+
+  private val IntendedKey = "latency.intended"
+  private val StartedKey = "latency.started"
+  private val NextKey = "latency.next"
+  private val DelayKey = "latency.delay"
+  private val SentKey = "latency.sent"
+  private val FlushIntervalMillis = 1000L
+
+  val enabled: Boolean = SimulationDetails.getEnvVarOrDefault("CORRECTED_LATENCY", "false").toBoolean
+
+  private lazy val log = new IntendedLog(SimulationDetails.getEnvVarOrDefault("INTENDED_LOG", "results/intended.log"))
+
+  /**
+   * Replaces Gatling's pace: waits for the next start of the user's pacing schedule, a random interval between
+   * min and max after its previous intended start. Without CORRECTED_LATENCY it is Gatling's pace.
+   */
+  def pace(min: FiniteDuration, max: FiniteDuration): ChainBuilder =
+    if (!enabled)
+      io.gatling.core.Predef.pace(min, max)
+    else
+      exec { session =>
+        val now = System.currentTimeMillis()
+        val intended = session(NextKey).asOption[Long].getOrElse(now)
+        val interval = ThreadLocalRandom.current().nextLong(min.toMillis, max.toMillis + 1)
+        scheduled(session, intended).set(NextKey, intended + interval).set(DelayKey, math.max(0L, intended - now) milliseconds)
+      }.pause(session => session(DelayKey).validate[FiniteDuration])
+        .exec(iterationStarted)
+
+  /**
+   * Sets the intended start of the iteration the user is about to start
+   */
+  def scheduled(session: Session, intendedMillis: Long): Session =
+    if (enabled) session.set(IntendedKey, intendedMillis) else session
+
+  /**
+   * Marks the actual start of the iteration; put after the pause that waits for the intended start
+   */
+  val iterationStarted: ChainBuilder = exec { session =>
+    if (enabled) session.set(StartedKey, System.currentTimeMillis()) else session
+  }
+
+  /**
+   * Writes the intended send time of every request of the chain to intended.log. A user without an intended start
+   * (no schedule) is taken to be on time.
+   * @param requestName the name of the request, as in simulation.log
+   */
+  def timed(requestName: String)(request: ChainBuilder): ChainBuilder =
+    timedAs(_ => requestName)(request)
+
+  /**
+   * timed for requests whose name depends on the session, e.g. the requests of a TraceReplay
+   * @param requestName the name of the request, as in simulation.log
+   */
+  def timedAs(requestName: Session => String)(request: ChainBuilder): ChainBuilder =
+    if (!enabled)
+      request
+    else
+      exec(_.set(SentKey, System.currentTimeMillis()))
+        .exec(request)
+        .exec { session =>
+          val sent = session(SentKey).as[Long]
+          val lateness = (for {
+            intended <- session(IntendedKey).asOption[Long]
+            started <- session(StartedKey).asOption[Long]
+          } yield started - intended).getOrElse(0L)
+          log.write(session.groups.mkString(","), requestName(session), sent - math.max(0L, lateness))
+          session
+        }
+
+  /**
+   * INTENDED groups name intendedStart end, tab separated like simulation.log. The end is taken when the record
+   * is written, so that every file is ordered by its timestamps like simulation.log.
+   */
+  private class IntendedLog(fileName: String) {
+
+    private val writer: BufferedWriter = {
+      val path = Paths.get(fileName)
+      if (path.getParent != null)
+        Files.createDirectories(path.getParent)
+      Files.newBufferedWriter(path, StandardCharsets.UTF_8)
+    }
+
+    private val flusher = Executors.newSingleThreadScheduledExecutor { runnable: Runnable =>
+      val thread = new Thread(runnable, "intended-log-flusher")
+      thread.setDaemon(true)
+      thread
+    }
+    flusher.scheduleWithFixedDelay(() => flush(), FlushIntervalMillis, FlushIntervalMillis, TimeUnit.MILLISECONDS)
+    sys.addShutdownHook(close())
+    println("\nCoordinated omission corrected latency: writing the intended send times to " + fileName)
+
+    def write(groups: String, requestName: String, intendedMillis: Long): Unit = synchronized {
+      writer.write("INTENDED\t" + groups + "\t" + requestName + "\t" + intendedMillis + "\t" + System.currentTimeMillis() + "\n")
+    }
+
+    private def flush(): Unit = synchronized {
+      try writer.flush()
+      catch {
+        case e: IOException => println("\nWARNING - Could not write the intended send times: " + e.getMessage)
+      }
+    }
+
+    private def close(): Unit = synchronized {
+      flusher.shutdown()
+      writer.close()
+    }
+  }
+
+}
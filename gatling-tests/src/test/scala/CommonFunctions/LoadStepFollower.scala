@@ -0,0 +1,89 @@
+package CommonFunctions
+
+import java.net.URI
+import java.nio.file.Paths
+import java.util.concurrent.{Executors, TimeUnit}
+
+import report.live.{ControlChannel, FileControlChannel, LoadStep, S3ControlChannel}
+import software.amazon.awssdk.services.s3.S3Client
+
+/**
+ * Follows the load steps the runner publishes while a test runs (e.g. during a capacity search) and applies this
+ * load generator's share of every step to the ThroughputController at the start of the step.
+ *
+ * @param controlChannel channel the runner publishes the steps to
+ * @param throughput the controller of this load generator
+ * @param numOfLoadGenerators number of load generators sharing the target of a step
+ * @param pollMillis how often the channel is polled
+ */
+class LoadStepFollower(controlChannel: ControlChannel, throughput: ThroughputController, numOfLoadGenerators: Int, pollMillis: Long) {
+
+  private val scheduler = Executors.newSingleThreadScheduledExecutor { runnable: Runnable =>
+    val thread = new Thread(runnable, "load-step-follower")
+    thread.setDaemon(true)
+    thread
+  }
+  private var lastStep = -1
+
+  def start(): LoadStepFollower = {
+    scheduler.scheduleWithFixedDelay(() => poll(), pollMillis, pollMillis, TimeUnit.MILLISECONDS)
+    this
+  }
+
+  private def poll(): Unit = {
+    try {
+      val step = controlChannel.poll()
+      if (step != null && step.index > lastStep) {
+        lastStep = step.index
+        println("\nNext load step: " + step)
+        scheduler.schedule(new Runnable { def run(): Unit = apply(step) }, math.max(0L, step.startAt - System.currentTimeMillis()), TimeUnit.MILLISECONDS)
+      }
+    } catch {
+      case e: RuntimeException => println("\nWARNING - Could not poll the load steps: " + e.getMessage)
+    }
+  }
+
+  private def apply(step: LoadStep): Unit = {
+    if (step.last) {
+      throughput.finish()
+      scheduler.shutdown()
+      controlChannel.close()
+    } else
+      throughput.setTargetRPS(step.targetRpm / numOfLoadGenerators / 60)
+  }
+
+}
+
+object LoadStepFollower {
+
+  /**
+   * Follows the steps of this run (RUN_ID) in the report bucket, the same bucket the live metrics go through, or in
+   * CONTROL_DIRECTORY when the runner started this load generator as a local process
+   */
+  def fromEnvironment(throughput: ThroughputController, numOfLoadGenerators: Int): LoadStepFollower = {
+    val runId = SimulationDetails.getEnvVarOrDefault("RUN_ID", "local")
+    val controlDirectory = SimulationDetails.getEnvVarOrDefault("CONTROL_DIRECTORY", "")
+    val controlChannel =
+      if (controlDirectory.nonEmpty)
+        new FileControlChannel(Paths.get(controlDirectory), runId)
+      else
+        s3ControlChannel(runId)
+    val pollMillis = SimulationDetails.getEnvVarOrDefault("METRICS_INTERVAL_SECONDS", "5").toLong * 1000 / 2
+
+    new LoadStepFollower(controlChannel, throughput, numOfLoadGenerators, pollMillis).start()
+  }
+
+  private def s3ControlChannel(runId: String): ControlChannel = {
+    val bucket = SimulationDetails.getEnvVarOrDefault("REPORT_BUCKET", "")
+    if (bucket.isEmpty)
+      throw new Exception("ERROR - REPORT_BUCKET is required to follow the load steps of the runner")
+
+    val s3ClientBuilder = S3Client.builder()
+    val s3Endpoint = SimulationDetails.getEnvVarOrDefault("S3_ENDPOINT", "")
+    if (s3Endpoint.nonEmpty)
+      s3ClientBuilder.endpointOverride(URI.create(s3Endpoint)).serviceConfiguration(c => c.pathStyleAccessEnabled(true))
+
+    new S3ControlChannel(s3ClientBuilder.build(), bucket, runId)
+  }
+
+}
@@ -0,0 +1,323 @@
+package CommonFunctions
+
+import java.nio.ByteOrder
+import java.nio.channels.FileChannel
+import java.nio.charset.StandardCharsets
+import java.nio.file.{Files, Path, Paths, StandardCopyOption, StandardOpenOption}
+import java.util.concurrent.ThreadLocalRandom
+
+import scala.collection.mutable.ArrayBuffer
+
+/**
+ * Feeder over a memory-mapped CSV (first line is the header) or line-delimited data file.
+ *
+ * The file is never loaded onto the heap: it is mapped read-only, records are read straight from the mapping when
+ * they are fed, and the only index is a sparse one (the offset of every IndexStride-th record) that is built lazily,
+ * only as far into the file as the records that are actually used. A feeder over tens of millions of rows therefore
+ * starts instantly and costs a few hundred KB at most.
+ *
+ * Every load generator only serves its own range of records, recordCount records starting at firstRecord
+ * (see MappedFileFeeder.apply for how the range follows FEEDER_START and USERS). A range past the end of the file
+ * wraps around to the start of the file.
+ *
+ * @param path the data file
+ * @param column name of the value of a line-delimited file, ignored for CSV files which take the names from the header
+ * @param firstRecord first record (0 based, header excluded) of this load generator
+ * @param recordCount number of records of this load generator
+ * @param random feed random records of the range instead of going through the range in order (circular)
+ */
+class MappedFileFeeder(path: Path, column: String, firstRecord: Long, recordCount: Long, random: Boolean)
+  extends Iterator[Map[String, Any]] {
+
+  import MappedFileFeeder._
+
+  private val csv = path.getFileName.toString.toLowerCase.endsWith(".csv")
+
+  private val (segments, fileSize) = {
+    val channel = FileChannel.open(path, StandardOpenOption.READ)
+    try {
+      val size = channel.size()
+      val mapped = (0L until size by SegmentSize).map { from =>
+        val segment = channel.map(FileChannel.MapMode.READ_ONLY, from, math.min(SegmentSize, size - from))
+        // Byte i of getLong is bits 8i to 8i + 7, see newlineMask
+        segment.order(ByteOrder.LITTLE_ENDIAN)
+        segment
+      }
+      (mapped.toArray, size)
+    } finally {
+      // The mappings stay valid after the channel is closed
+      channel.close()
+    }
+  }
+
+  private var lineBuffer = new Array[Byte](256)
+  private var lineEnd = 0L
+
+  private val (columns, dataStart) =
+    if (csv) {
+      val header = readLine(0)
+      (parseCsv(header).map(_.trim).toArray, lineEnd)
+    } else {
+      (Array(column), 0L)
+    }
+
+  // Sparse index: checkpoints(k) is the offset of record k * IndexStride, extended only as far as needed
+  private var checkpoints = Array[Long](dataStart)
+  private var checkpointCount = 1
+  private var totalRecords = -1L
+  private var skippedLines = 0
+
+  if (dataStart >= fileSize)
+    throw new Exception("ERROR - Feeder file " + path + " has no records")
+
+  private val (rangeStart, rangeEnd) = {
+    var start = firstRecord
+    if (offsetOf(start) < 0) {
+      start = firstRecord % totalRecords
+      println("\nWARNING - Feeder " + path.getFileName + " has only " + totalRecords + " record(s), record " + firstRecord + " wraps around to record " + start)
+    }
+    (start, if (recordCount == Long.MaxValue) Long.MaxValue else start + recordCount)
+  }
+
+  // A random feeder picks from the range, or up to the end of the file if the range goes past it
+  private lazy val randomEnd =
+    if (rangeEnd != Long.MaxValue && offsetOf(rangeEnd - 1) >= 0) rangeEnd
+    else {
+      offsetOf(Long.MaxValue)
+      totalRecords
+    }
+
+  private var cursor = rangeStart
+  private var position = offsetOf(rangeStart)
+
+  println("\nFeeder " + path.getFileName + ": " + fileSize + " bytes mapped, serving records " + rangeStart + " to " +
+    (if (rangeEnd == Long.MaxValue) "the end of the file" else (rangeEnd - 1).toString) + (if (random) " at random" else " in order"))
+
+  override def hasNext: Boolean = true
+
+  override def next(): Map[String, Any] = synchronized {
+    if (random) {
+      readRecord(offsetOf(ThreadLocalRandom.current().nextLong(rangeStart, randomEnd)))
+    } else {
+      // Wrap around at the end of the range, or at the end of the file if the range goes past it
+      if (cursor >= rangeEnd || position >= fileSize) {
+        cursor = rangeStart
+        position = offsetOf(rangeStart)
+      }
+      val record = readRecord(position)
+      position = lineEnd
+      cursor += 1
+      record
+    }
+  }
+
+  /**
+   * @return the offset of the record, or -1 if the file has fewer records (totalRecords is known from then on)
+   */
+  private def offsetOf(record: Long): Long = {
+    if (totalRecords >= 0 && record >= totalRecords)
+      return -1
+
+    val checkpoint = record / IndexStride
+    while (checkpointCount <= checkpoint && totalRecords < 0)
+      extendIndex()
+    if (checkpointCount <= checkpoint)
+      return -1
+
+    val offset = skipLines(checkpoints(checkpoint.toInt), (record % IndexStride).toInt)
+    if (offset < fileSize)
+      offset
+    else {
+      totalRecords = checkpoint * IndexStride + skippedLines
+      -1
+    }
+  }
+
+  private def extendIndex(): Unit = {
+    val offset = skipLines(checkpoints(checkpointCount - 1), IndexStride)
+    if (skippedLines == IndexStride && offset < fileSize) {
+      if (checkpointCount == checkpoints.length)
+        checkpoints = java.util.Arrays.copyOf(checkpoints, checkpointCount * 2)
+      checkpoints(checkpointCount) = offset
+      checkpointCount += 1
+    } else
+      totalRecords = (checkpointCount - 1).toLong * IndexStride + skippedLines
+  }
+
+  /**
+   * Skips up to the given number of lines, stopping at the end of the file (skippedLines tells how many were skipped).
+   * Newlines are counted eight bytes at a time, so that seeking deep into a large file stays fast.
+   * @return the offset of the line after the skipped ones, fileSize at the end of the file
+   */
+  private def skipLines(from: Long, lines: Int): Long = {
+    var offset = from
+    skippedLines = 0
+    while (skippedLines < lines && offset < fileSize) {
+      val segment = segments((offset / SegmentSize).toInt)
+      val index = (offset % SegmentSize).toInt
+      if (index + 8 <= segment.limit()) {
+        var newlines = newlineMask(segment.getLong(index))
+        if (java.lang.Long.bitCount(newlines) < lines - skippedLines) {
+          skippedLines += java.lang.Long.bitCount(newlines)
+          offset += 8
+        } else {
+          // Stop right after the newline that ends the last line to skip
+          while (skippedLines < lines) {
+            val bit = java.lang.Long.numberOfTrailingZeros(newlines)
+            newlines &= newlines - 1
+            skippedLines += 1
+            if (skippedLines == lines)
+              offset += bit / 8 + 1
+          }
+        }
+      } else {
+        offset = endOfLine(offset)
+        skippedLines += 1
+      }
+    }
+    offset
+  }
+
+  /**
+   * @return the offset after the newline that ends the line starting at the given offset
+   */
+  private def endOfLine(from: Long): Long = {
+    var offset = from
+    var segment = segments((offset / SegmentSize).toInt)
+    var index = (offset % SegmentSize).toInt
+    while (offset < fileSize) {
+      if (index == segment.limit()) {
+        segment = segments((offset / SegmentSize).toInt)
+        index = 0
+      }
+      val byte = segment.get(index)
+      offset += 1
+      index += 1
+      if (byte == '\n')
+        return offset
+    }
+    offset
+  }
+
+  private def readLine(from: Long): String = {
+    lineEnd = endOfLine(from)
+    var length = (lineEnd - from).toInt
+    if (length > lineBuffer.length)
+      lineBuffer = new Array[Byte](math.max(length, lineBuffer.length * 2))
+
+    var offset = from
+    var i = 0
+    while (i < length) {
+      lineBuffer(i) = segments((offset / SegmentSize).toInt).get((offset % SegmentSize).toInt)
+      offset += 1
+      i += 1
+    }
+    while (length > 0 && (lineBuffer(length - 1) == '\n' || lineBuffer(length - 1) == '\r'))
+      length -= 1
+    new String(lineBuffer, 0, length, StandardCharsets.UTF_8)
+  }
+
+  private def readRecord(from: Long): Map[String, Any] = {
+    val line = readLine(from)
+    if (!csv)
+      Map(column -> line)
+    else {
+      val values = parseCsv(line)
+      columns.indices.map(i => columns(i) -> (if (i < values.size) values(i) else "")).toMap
+    }
+  }
+
+}
+
+object MappedFileFeeder {
+
+  val SegmentSize: Long = 1L << 30
+  val IndexStride = 256
+
+  /**
+   * Creates the feeder of this load generator. The runner starts every container at its own FEEDER_START, stepped
+   * by USERS, so a load generator serves records FEEDER_START * FEEDER_RECORDS_PER_USER to
+   * (FEEDER_START + USERS) * FEEDER_RECORDS_PER_USER - 1. Without FEEDER_START (e.g. running locally) the whole file is used.
+   *
+   * @param fileName file in FEEDER_DIRECTORY (default data), or in the data folder of the test resources
+   * @param strategy circular (default) or random
+   * @param column name of the value of a line-delimited file
+   */
+  def apply(fileName: String, strategy: String = "circular", column: String = "record"): MappedFileFeeder = {
+
+    val feederStart = SimulationDetails.getEnvVarOrDefault("FEEDER_START", "")
+    val users = SimulationDetails.getEnvVarOrDefault("USERS", "0").toLong
+    val recordsPerUser = SimulationDetails.getEnvVarOrDefault("FEEDER_RECORDS_PER_USER", "1").toLong
+
+    val (firstRecord, recordCount) =
+      if (feederStart.isEmpty || users < 1) (0L, Long.MaxValue)
+      else (feederStart.toLong * recordsPerUser, users * recordsPerUser)
+
+    strategy match {
+      case "circular" | "random" => new MappedFileFeeder(locate(fileName), column, firstRecord, recordCount, strategy == "random")
+      case other => throw new Exception("ERROR - Invalid feeder strategy - " + other + ". Valid values are circular and random.")
+    }
+  }
+
+  /**
+   * Finds the data file on disk. A file that is only available inside a jar is extracted to a temporary file first,
+   * since a file can only be mapped from disk.
+   */
+  def locate(fileName: String): Path = {
+    val file = Paths.get(SimulationDetails.getEnvVarOrDefault("FEEDER_DIRECTORY", "data"), fileName)
+    if (Files.isRegularFile(file))
+      return file
+
+    val resource = getClass.getResource("/data/" + fileName)
+    if (resource == null)
+      throw new Exception("ERROR - Feeder file " + fileName + " not found in " + file.getParent + " or in the test resources")
+
+    if (resource.getProtocol == "file")
+      Paths.get(resource.toURI)
+    else {
+      val extracted = Files.createTempFile("feeder-", "-" + fileName)
+      extracted.toFile.deleteOnExit()
+      val in = resource.openStream()
+      try Files.copy(in, extracted, StandardCopyOption.REPLACE_EXISTING) finally in.close()
+      extracted
+    }
+  }
+
+  /**
+   * @return the high bit of every byte of the word that is a newline, e.g. 0x80 if only the first byte is one
+   */
+  def newlineMask(word: Long): Long = {
+    val newlines = word ^ 0x0A0A0A0A0A0A0A0AL
+    // Exact zero byte detection: no carries between bytes, unlike the shorter (x - 0x01..) & ~x & 0x80.. variant
+    val low = (newlines & 0x7F7F7F7F7F7F7F7FL) + 0x7F7F7F7F7F7F7F7FL
+    ~(low | newlines | 0x7F7F7F7F7F7F7F7FL)
+  }
+
+  /**
+   * Splits a CSV line on commas, honouring double quoted values ("" is an escaped quote)
+   */
+  def parseCsv(line: String): IndexedSeq[String] = {
+    val values = ArrayBuffer[String]()
+    val value = new StringBuilder
+    var quoted = false
+    var i = 0
+    while (i < line.length) {
+      val c = line.charAt(i)
+      if (quoted) {
+        if (c == '"' && i + 1 < line.length && line.charAt(i + 1) == '"') {
+          value.append('"')
+          i += 1
+        } else if (c == '"') quoted = false
+        else value.append(c)
+      } else if (c == '"') quoted = true
+      else if (c == ',') {
+        values += value.toString
+        value.clear()
+      } else value.append(c)
+      i += 1
+    }
+    values += value.toString
+    values
+  }
+
+}
@@ -1,14 +1,21 @@
 package CommonFunctions
 
+import config.{ConfigDetails, SimulationConfig, SimulationSettings}
+
+import java.util.concurrent.ConcurrentHashMap
 import scala.collection.mutable
+import scala.concurrent.duration.{DurationLong, FiniteDuration}
+import scala.language.postfixOps
+import scala.util.{Failure, Success, Try}
 import scala.xml.{Elem, XML}
 
 object SimulationDetails {
 
-  var noOfUsers = 0
-  var rampUpDuration = 0
-  var peakLoadDuration = 0
-  var targetRPM = 0
+  /** The simulation config xmls by file name, parsed once and shared by all scenarios of the JVM */
+  private val simulationConfigs = new ConcurrentHashMap[String, SimulationConfig]()
+
+  /** The settings (or the errors) of every simulation type by simulation name and type, resolved once */
+  private val simulationSettings = new ConcurrentHashMap[(String, String), Either[Seq[String], SimulationSettings]]()
 
   /**
    * Opens the XML file containing the details of the simulation
@@ -32,16 +39,149 @@ object SimulationDetails {
   }
 
   /**
-   * Get the environment variables required for simulation
-   * @return noOfUsers, rampUpDuration, peakLoadDuration, targetRPM
+   * Get the parsed simulation config, reading the XML file only the first time
+   * @param simulationName Name of the running simulation
+   * @param configFileName Optional - Name of the config file, see getSimulationConfigXML
+   * @return The config of every simulation type in the file
+   */
+  def getSimulationConfig(simulationName: String, configFileName: String = ""): SimulationConfig = {
+
+    val fileName = if (configFileName.isEmpty) simulationName + "Config.XML" else configFileName
+
+    simulationConfigs.computeIfAbsent(fileName, _ => SimulationConfig.parse(fileName, getSimulationConfigXML(simulationName, configFileName)))
+  }
+
+  /**
+   * Get the settings of the simulation type, resolving and validating them the first time
+   * @param simulationName Name of the running simulation
+   * @param simulationType Type of the simulation
+   * @return The settings, if the configuration is valid
+   */
+  def getSimulationSettings(simulationName: String, simulationType: String): SimulationSettings = {
+
+    resolvedSettings(simulationName, simulationType) match {
+      case Right(settings) => settings
+      case Left(errors) => throw ConfigDetails.configurationError(errors)
+    }
+  }
+
+  /**
+   * Validate everything the simulation type and the environment need, the config xmls and the environment variables,
+   * and report all the errors in one exception. Simulations call this (through getSimulationValues) before they set up
+   * the injection, so that a wrong configuration fails the load generator as soon as it starts.
+   * @param simulationName Name of the running simulation
+   * @param simulationType Type of the simulation
+   * @param environment Environment where test needs to run
+   * @return The settings, if the configuration is valid
    */
-  def getEnvironmentVariables(): Unit = {
+  def validateConfiguration(simulationName: String, simulationType: String, environment: String): SimulationSettings = {
 
-    noOfUsers = getEnvVarOrDefault("USERS", "0").toInt
-    rampUpDuration = getEnvVarOrDefault("RAMP_UP_DURATION", "0").toInt
-    peakLoadDuration = getEnvVarOrDefault("PEAK_LOAD_DURATION", "0").toInt
-    targetRPM = getEnvVarOrDefault("TARGET_RPM", "0").toInt
+    val resolved = resolvedSettings(simulationName, simulationType)
+    val environmentErrors = ConfigDetails.getEnvironmentErrors(environment)
 
+    resolved match {
+      case Right(settings) if environmentErrors.isEmpty => settings
+      case _ => throw ConfigDetails.configurationError(resolved.left.getOrElse(Nil) ++ environmentErrors)
+    }
+  }
+
+  private def resolvedSettings(simulationName: String, simulationType: String): Either[Seq[String], SimulationSettings] =
+    simulationSettings.computeIfAbsent((simulationName, simulationType), _ => resolveSettings(simulationName, simulationType))
+
+  /**
+   * Resolve the settings of the simulation type: the environment variables take precedence over the config xml
+   * @return The settings, or every error found
+   */
+  private def resolveSettings(simulationName: String, simulationType: String): Either[Seq[String], SimulationSettings] = {
+
+    val simulationConfig = getSimulationConfig(simulationName)
+
+    val typeConfig = simulationConfig.simulationTypes.get(simulationType) match {
+      case Some(typeConfig) => typeConfig
+      case None => return Left(Seq("Invalid Simulation type provided - " + simulationType + ". This simulation type does not exist in " + simulationConfig.fileName))
+    }
+
+    val errors = mutable.ListBuffer[String](typeConfig.errors: _*)
+
+    // The environment variable if it is set and not 0, otherwise the value from the config xml
+    def value(name: String, element: String, fromXml: Option[Int]): Option[Int] = {
+      val text = getEnvVarOrDefault(name, "0").trim
+      Try(text.toInt) match {
+        case Success(0) =>
+          // An invalid value is already among the errors of the config xml
+          if (fromXml.isEmpty && !typeConfig.errors.exists(_.startsWith(element + " ")))
+            errors += name + " isn't set and there is no " + element + " for '" + simulationType + "' in " + simulationConfig.fileName
+          fromXml
+        case Success(value) => Some(value)
+        case Failure(_) =>
+          errors += name + " must be a whole number, not '" + text + "'"
+          None
+      }
+    }
+
+    def atLeast(name: String, value: Option[Int], minimum: Int, meaning: String): Int = {
+      value.filter(_ < minimum).foreach { v =>
+        errors += "Invalid value provided. The minimum value accepted for " + name + " is " + minimum + " i.e. it cannot be less than " + meaning + ". Current value is " + v + "."
+      }
+      value.getOrElse(0)
+    }
+
+    val noOfUsers = atLeast("USERS", value("USERS", "NumberOfUsers", typeConfig.numberOfUsers), 1, "1 user")
+    val rampUpDuration = atLeast("RAMP_UP_DURATION", value("RAMP_UP_DURATION", "RampUpDuration", typeConfig.rampUpDuration), 1, "1 minute")
+    val peakLoadDuration = atLeast("PEAK_LOAD_DURATION", value("PEAK_LOAD_DURATION", "PeakLoadDuration", typeConfig.peakLoadDuration), 1, "1 minute")
+
+    // The workload model of the config xml is validated when the file is parsed
+    val workloadModelOverride = Some(getEnvVarOrDefault("WORKLOAD_MODEL", "").trim.toLowerCase).filter(_.nonEmpty)
+    workloadModelOverride.filterNot(SimulationConfig.WorkloadModels.contains).foreach { model =>
+      errors += "Invalid workload model - " + model + ". Valid values are closed, open and replay."
+    }
+    val workloadModel = workloadModelOverride.orElse(typeConfig.workloadModel).getOrElse("closed")
+
+    // A replay sends the requests of the trace at the rate they were recorded, there is no target
+    val targetRPM =
+      if (workloadModel == "replay") value("TARGET_RPM", "TargetRPM", typeConfig.targetRPM.orElse(Some(0))).getOrElse(0)
+      else atLeast("TARGET_RPM", value("TARGET_RPM", "TargetRPM", typeConfig.targetRPM), 60, "60 requests per minute")
+
+    val replayTrace = Some(getEnvVarOrDefault("REPLAY_TRACE", "").trim).filter(_.nonEmpty).orElse(typeConfig.replayTrace).getOrElse("")
+    if (workloadModel == "replay" && replayTrace.isEmpty)
+      errors += "REPLAY_TRACE isn't set and there is no ReplayTrace for '" + simulationType + "' in " + simulationConfig.fileName
+
+    val replaySpeedText = getEnvVarOrDefault("REPLAY_SPEED", "").trim
+    val replaySpeed = (if (replaySpeedText.isEmpty) typeConfig.replaySpeed else Try(replaySpeedText.toDouble).toOption).getOrElse(1.0)
+    if (replaySpeedText.nonEmpty && Try(replaySpeedText.toDouble).isFailure)
+      errors += "REPLAY_SPEED must be a number, not '" + replaySpeedText + "'"
+    else if (replaySpeed <= 0)
+      errors += "Invalid value provided. The replay speed must be more than 0. Current value is " + replaySpeed + "."
+
+    val numOfLoadGenerators = Try(getEnvVarOrDefault("NUM_OF_LOAD_GENERATORS", "1").trim.toInt).getOrElse(0)
+    if (numOfLoadGenerators < 1)
+      errors += "Invalid value provided. The minimum value accepted for NUM_OF_LOAD_GENERATORS is 1. Current value is " + getEnvVarOrDefault("NUM_OF_LOAD_GENERATORS", "1") + "."
+
+    val generatorIndex = Try(getEnvVarOrDefault("GENERATOR_INDEX", "0").trim.toInt).getOrElse {
+      errors += "GENERATOR_INDEX must be a whole number, not '" + getEnvVarOrDefault("GENERATOR_INDEX", "0") + "'"
+      0
+    }
+
+    if (errors.nonEmpty)
+      return Left(errors.toList)
+
+    val settings = SimulationSettings(simulationName, simulationType, noOfUsers, rampUpDuration * 60, peakLoadDuration * 60,
+      targetRPM, workloadModel, replayTrace, replaySpeed, typeConfig.actionWeighting, numOfLoadGenerators, generatorIndex, 0, 0)
+
+    if (workloadModel != "closed")
+      return Right(settings)
+
+    //Calculate minimum and maximum pacing
+    Try(calculateIterationPacing(targetRPM.toDouble / 60, noOfUsers, settings.weightedRequestsPerIteration)) match {
+      case Failure(e) =>
+        Left(Seq(e.getMessage.stripPrefix("ERROR - ")))
+      //Throw an error if pacing greater than the ramp up duration
+      case Success((_, pacingMax)) if pacingMax / 1000 > settings.rampUpDuration =>
+        Left(Seq("Calculated pacing is greater than ramp up duration. Pacing of " + pacingMax / 1000 +
+          " seconds is greater than the ramp up duration of " + settings.rampUpDuration + " seconds. Decrease the pacing by decreasing the number of users or increasing the ramp up duration"))
+      case Success((pacingMin, pacingMax)) =>
+        Right(settings.copy(pacingMin = pacingMin, pacingMax = pacingMax))
+    }
   }
 
   /**
@@ -58,7 +198,30 @@ object SimulationDetails {
   }
 
   /**
-   * Get the simulation values from the config xml
+   * Get the delay before injection starts. The runner passes the same START_AT instant (epoch milliseconds) to every
+   * load generator, so that all of them start injecting at the same time regardless of when their container started.
+   * @return time left until START_AT, or 0 if START_AT isn't set or has already passed
+   */
+  def getStartDelay(): FiniteDuration = {
+
+    val startAt = getEnvVarOrDefault("START_AT", "0").toLong
+
+    if (startAt <= 0)
+      return 0 milliseconds
+
+    val delay = startAt - System.currentTimeMillis()
+
+    if (delay < 0) {
+      println("\nWARNING - This load generator is " + (-delay) + " ms late for the coordinated start, starting injection immediately")
+      0 milliseconds
+    } else {
+      println("\nHolding injection for " + delay + " ms until the coordinated start at " + java.time.Instant.ofEpochMilli(startAt))
+      delay milliseconds
+    }
+  }
+
+  /**
+   * Get the simulation values, after validating the whole configuration of the run (see validateConfiguration)
    * @param simulationName Name of the running simulation
    * @param simulationType Type of the simulation
    * @param environment Environment where test needs to run
@@ -66,11 +229,7 @@ object SimulationDetails {
    */
   def getSimulationValues(simulationName: String, simulationType: String, environment: String) : (Int, Int, Int) = {
 
-    //Get all environment variables
-    getEnvironmentVariables()
-
-    //Open the XML which contains simulation details
-    val simulationParams = SimulationDetails.getSimulationConfigXML(simulationName)
+    val settings = validateConfiguration(simulationName, simulationType, environment)
 
     val summary = new mutable.StringBuilder("\n******************** SIMULATION VALUES ********************")
 
@@ -79,153 +238,137 @@ object SimulationDetails {
     summary.append("\nSimulationType: " + simulationType)
     summary.append("\n**********************************************************")
 
-    if ((simulationParams \\ "simulations" \ "simulation" \ simulationType).isEmpty)
-      throw new Exception("ERROR - Invalid Simulation type provided - " + simulationType + "This simulation type does not exist in Simulation")
-
-    // Get the number of users
-    if (noOfUsers == 0)
-      noOfUsers = (simulationParams \\ "simulations" \ "simulation" \ simulationType \ "NumberOfUsers").text.toInt
-
-    validateSimulationParameter("USERS", noOfUsers)
-    summary.append("\nThreads: " + noOfUsers)
+    summary.append("\nThreads: " + settings.noOfUsers)
 
-    // Get the Ramp-up Time
-    if (rampUpDuration == 0)
-      rampUpDuration = (simulationParams \\ "simulations" \ "simulation" \ simulationType \ "RampUpDuration").text.toInt
+    summary.append("\nRamp Up Duration: " + settings.rampUpDuration / 60 + " minute(s)")
+    summary.append(" (" + settings.rampUpDuration + " seconds)")
 
-    validateSimulationParameter("RAMP_UP_DURATION", rampUpDuration)
+    summary.append("\nPeak Load Duration: " + settings.peakLoadDuration / 60 + " minute(s)")
+    summary.append(" (" + settings.peakLoadDuration + " seconds)")
 
-    // Get the PeakLoadDuration
-    if (peakLoadDuration == 0)
-      peakLoadDuration = (simulationParams \\ "simulations" \ "simulation" \ simulationType \ "PeakLoadDuration").text.toInt
-
-    validateSimulationParameter("PEAK_LOAD_DURATION", peakLoadDuration)
-
-    summary.append("\nRamp Up Duration: " + rampUpDuration + " minute(s)")
-    rampUpDuration = rampUpDuration * 60
-    summary.append(" (" + rampUpDuration + " seconds)")
-
-    summary.append("\nPeak Load Duration: " + peakLoadDuration + " minute(s)")
-    peakLoadDuration = peakLoadDuration * 60
-    summary.append(" (" + peakLoadDuration + " seconds)")
-
-
-    summary.append("\nTotal Duration: " + (rampUpDuration + peakLoadDuration)/60 + " minute(s) (" + (rampUpDuration + peakLoadDuration) + " seconds)")
+    summary.append("\nTotal Duration: " + (settings.rampUpDuration + settings.peakLoadDuration)/60 + " minute(s) (" + (settings.rampUpDuration + settings.peakLoadDuration) + " seconds)")
 
     print(summary)
 
-    (noOfUsers, rampUpDuration, peakLoadDuration)
+    (settings.noOfUsers, settings.rampUpDuration, settings.peakLoadDuration)
 
   }
 
   /**
-   * Get the scenario values from the config xml
+   * Get the scenario values of the closed workload model
    * @param simulationName Name of the running simulation
    * @param simulationType Type of the simulation
-   * @return noOfUsers, rampUpDuration, peakLoadDuration
+   * @return pacingMin, pacingMax, userDistribution
    */
   def getScenarioValues(simulationName: String, simulationType: String) : (Int, Int, Map[String, Double]) = {
 
-    //Get all environment variables
-    getEnvironmentVariables()
-
-    //Open the XML which contains simulation details
-    val simulationParams = SimulationDetails.getSimulationConfigXML(simulationName)
+    val settings = getSimulationSettings(simulationName, simulationType)
 
     val summary = new mutable.StringBuilder("\n***********************************************************")
 
-    // Get the number of users
-    if (noOfUsers == 0)
-      noOfUsers = (simulationParams \\ "simulations" \ "simulation" \ simulationType \ "NumberOfUsers").text.toInt
-
-    validateSimulationParameter("USERS", noOfUsers)
-    summary.append("\nThreads: " + noOfUsers)
-
-    // Get the Ramp-up Time
-    if (rampUpDuration == 0)
-      rampUpDuration = (simulationParams \\ "simulations" \ "simulation" \ simulationType \ "RampUpDuration").text.toInt
-
-    validateSimulationParameter("RAMP_UP_DURATION", rampUpDuration)
-
-    // Get the Target RPS
-    if (targetRPM == 0)
-      targetRPM = (simulationParams \\ "simulations" \ "simulation" \ simulationType \ "TargetRPM").text.toInt
+    summary.append("\nThreads: " + settings.noOfUsers)
+    summary.append("\nTarget RPM: " + settings.targetRPM)
+    summary.append("\nTarget RPS: " + settings.targetRPM.toDouble / 60)
+    summary.append("\nRequests Per Iteration: " + settings.weightedRequestsPerIteration)
+    summary.append("\n***********************************************************")
 
-    validateSimulationParameter("TARGET_RPM", targetRPM)
+    summary.append("\nPacing Average: " + (settings.pacingMin + ((settings.pacingMax - settings.pacingMin) / 2)) + " ms")
+    summary.append("\nPacing Minimum: " + settings.pacingMin + " ms")
+    summary.append("\nPacing Maximum: " + settings.pacingMax + " ms")
 
-    summary.append("\nTarget RPM: " + targetRPM)
-    val targetRPS = targetRPM.toDouble / 60
-    summary.append("\nTarget RPS: " + targetRPS)
+    summary.append("\n***********************************************************\n\n")
+    print(summary)
 
-    // If simulation specific weighting exist then use it. Otherwise, use the default weightings.
-    val distributionParams = if ((simulationParams \\ "simulations" \ "simulation" \ simulationType \ "ActionWeighting").isEmpty) {
-      simulationParams \\ "simulations" \ "DefaultWeighting"
-    } else {
-      simulationParams \\ "simulations" \ "simulation" \ simulationType \ "ActionWeighting"
-    }
+    (settings.pacingMin, settings.pacingMax, settings.userDistribution)
 
-    val userDist = (distributionParams \ "_" \ "UserDistribution").map(w => w.text.toDouble)
+  }
 
-    //Get map of all ActionWeighting names and get all action weightings. Combine (zip) the action names and weightings into a map, eg ["GET_Postcode", 1.1]
-    val userDistribution = ((distributionParams \ "_").map(w => w.label) zip userDist).toMap
+  /**
+   * Get the workload model of the simulation type: "closed" (default) paces every user to reach the target RPM,
+   * "open" drives arrivals at the target RPM through a ThroughputController, "replay" sends the requests of a recorded
+   * trace through a TraceReplay
+   * @param simulationName Name of the running simulation
+   * @param simulationType Type of the simulation
+   * @return closed, open or replay
+   */
+  def getWorkloadModel(simulationName: String, simulationType: String): String = {
 
-    // Check sum of all weightings from the simulation type config equals to 100
-    if (userDist.sum.toFloat != 100)
-      throw new Exception ("ERROR - Sum of User Distribution must be 100. Current sum is - " + userDist.sum.toFloat )
+    getSimulationSettings(simulationName, simulationType).workloadModel
+  }
 
+  /**
+   * Get the open workload scenario values. In the open workload model TARGET_RPM is the target of the whole test, and
+   * every load generator drives its share of it (TARGET_RPM / NUM_OF_LOAD_GENERATORS)
+   * @param simulationName Name of the running simulation
+   * @param simulationType Type of the simulation
+   * @return throughputController, userDistribution, requestsPerIteration
+   */
+  def getOpenWorkloadValues(simulationName: String, simulationType: String) : (ThroughputController, Map[String, Double], Map[String, Double]) = {
 
-    //Store requests per iteration of each action weighting in a sequence var
-    val requestsPerIteration = (distributionParams \ "_" \ "RequestsPerIteration").map(w=> w.text.toDouble)
+    val settings = getSimulationSettings(simulationName, simulationType)
 
-    //Calculate weighted requests per iteration
-    val weightedRequestsPerIteration = userDist.zip(requestsPerIteration).map{case (a,b) => a * 0.01 * b}.sum
+    val summary = new mutable.StringBuilder("\n***********************************************************")
+    summary.append("\nWorkload Model: open")
 
-    summary.append("\nRequests Per Iteration: " + weightedRequestsPerIteration)
-    summary.append("\n***********************************************************")
+    // The number of users is the maximum number of concurrent iterations
+    summary.append("\nMaximum Concurrent Users: " + settings.noOfUsers)
 
-    //Calculate minimum and maximum pacing
-    val (pacingMin, pacingMax) = calculateIterationPacing(targetRPS, noOfUsers, weightedRequestsPerIteration)
+    // Every load generator takes an equal share, so the fleet adds up to exactly the target
+    val targetRPS = settings.targetRPM.toDouble / settings.numOfLoadGenerators / 60
 
-    summary.append("\nPacing Average: " + (pacingMin + ((pacingMax - pacingMin) / 2)) + " ms")
-    summary.append("\nPacing Minimum: " + pacingMin + " ms")
-    summary.append("\nPacing Maximum: " + pacingMax + " ms")
+    summary.append("\nTarget RPM (all load generators): " + settings.targetRPM)
+    summary.append("\nLoad Generator: " + (settings.generatorIndex + 1) + " of " + settings.numOfLoadGenerators)
+    summary.append("\nTarget RPS (this load generator): " + targetRPS)
 
-    val pacingMaxSeconds = pacingMax/1000
+    summary.append("\nRequests Per Iteration: " + settings.weightedRequestsPerIteration)
+    summary.append("\nIterations Per Second: " + targetRPS / settings.weightedRequestsPerIteration)
 
-    //Throw an error if pacing greater than the ramp up duration
-    if (pacingMaxSeconds/1000 > rampUpDuration)
-      throw new Exception("ERROR - Calculated pacing is greater than ramp up duration. Pacing of " + pacingMaxSeconds +
-        " seconds is greater than the ramp up duration of " + rampUpDuration + " seconds. Decrease the pacing by decreasing the number of users or increasing the ramp up duration"
+    val throughputController = new ThroughputController(targetRPS, settings.rampUpDuration, settings.weightedRequestsPerIteration)
 
-      )
+    // In a capacity search the runner sets the target of every step, TARGET_RPM is only the rate of the first step
+    if (getEnvVarOrDefault("CAPACITY_SEARCH", "false").toBoolean) {
+      summary.append("\nCapacity Search: following the load steps of the runner")
+      LoadStepFollower.fromEnvironment(throughputController, settings.numOfLoadGenerators)
+    }
 
     summary.append("\n***********************************************************\n\n")
     print(summary)
 
-    (pacingMin, pacingMax, userDistribution)
+    (throughputController, settings.userDistribution, settings.requestsPerIteration)
 
   }
 
   /**
-   * Validate the simulation parameter
-   * @param name Parameter for validation
-   * @param value Value of parameter for validation
-   * @return noOfUsers, rampUpDuration, peakLoadDuration
+   * Get the replay scenario values. The trace is indexed first if it isn't already (see TraceIndex.locate), and every
+   * load generator replays its share of the requests of the trace
+   * @param simulationName Name of the running simulation
+   * @param simulationType Type of the simulation
+   * @return traceReplay
    */
-  def validateSimulationParameter(name: String, value: Int): Unit = {
-    if(name == "USERS" || name == "RAMP_UP_DURATION" || name == "PEAK_LOAD_DURATION") {
-      if(value < 1)
-        throw new Exception("ERROR - Invalid value provided. The minimum value accepted for " + name + " is 1 i.e. it cannot be less than 1 minute. Current value is " + value + ".")
-    }
+  def getReplayValues(simulationName: String, simulationType: String) : TraceReplay = {
 
-    else if(name == "TARGET_RPM") {
-      if(value < 60)
-        throw new Exception("ERROR - Invalid value provided. The minimum value accepted for " + name + " is 60 i.e. it cannot be less than 60 requests per minute. Current value is " + value + ".")
-    }
+    val settings = getSimulationSettings(simulationName, simulationType)
+
+    val replay = TraceReplay(settings.replayTrace, settings.replaySpeed)
+
+    val summary = new mutable.StringBuilder("\n***********************************************************")
+    summary.append("\nWorkload Model: replay")
+    summary.append("\nTrace: " + replay.index.path + " (recorded from " + java.time.Instant.ofEpochMilli(replay.index.traceStartMillis) + ")")
+    summary.append("\nTrace Requests: " + replay.index.recordCount + " (" + replay.index.requestCount + " distinct)")
+    summary.append("\nTrace Duration: " + replay.index.durationMicros / 1000000 + " seconds")
+    summary.append("\nReplay Speed: " + settings.replaySpeed + "x (" + (replay.index.durationMicros / 1000000 / settings.replaySpeed).toLong + " seconds)")
+    summary.append("\nLoad Generator: " + (settings.generatorIndex + 1) + " of " + settings.numOfLoadGenerators + ", " + replay.ownedRecords + " request(s)")
+    summary.append("\nMaximum Concurrent Users: " + settings.noOfUsers)
+
+    if (replay.index.durationMicros / 1000000 / settings.replaySpeed > settings.rampUpDuration + settings.peakLoadDuration)
+      summary.append("\nWARNING - The simulation ends after " + (settings.rampUpDuration + settings.peakLoadDuration) +
+        " seconds (RAMP_UP_DURATION + PEAK_LOAD_DURATION), before the end of the trace")
+
+    summary.append("\n***********************************************************\n\n")
+    print(summary)
+
+    replay
 
-    else {
-      throw new Exception("ERROR - Invalid name - " + name)
-    }
   }
 
   /***
@@ -0,0 +1,183 @@
+package CommonFunctions
+
+import java.util.concurrent.atomic.{DoubleAdder, LongAdder}
+
+import io.gatling.commons.validation._
+import io.gatling.core.Predef._
+import io.gatling.core.session.Expression
+import io.gatling.core.structure.ChainBuilder
+
+import scala.concurrent.duration.{Duration, DurationLong, FiniteDuration}
+import scala.language.postfixOps
+
+/**
+ * Open workload model: iterations arrive on a shared schedule that delivers exactly the target requests per second,
+ * instead of each virtual user pacing itself. The schedule ramps up linearly over the ramp up duration and then holds
+ * the target rate. Virtual users only act as the pool that serves the arrivals, so the throughput no longer depends on
+ * the response times (as long as there are enough users), and there is no minimum pacing.
+ *
+ * The schedule is kept in requests rather than iterations: every arrival takes the measured number of requests per
+ * iteration from the budget, so the rate is corrected continuously when the actual mix differs from the configured
+ * weighting. Users never hold an arrival that is more than MaxWaitNanos away, so a new target (setTargetRPS) takes
+ * effect within that time.
+ *
+ * @param initialTargetRPS target requests per second of this load generator
+ * @param rampUpSeconds ramp up duration in seconds
+ * @param expectedRequestsPerIteration weighted requests per iteration from the config, used until enough iterations were measured
+ */
+class ThroughputController(initialTargetRPS: Double, rampUpSeconds: Int, expectedRequestsPerIteration: Double) {
+
+  private val MinimumMeasuredIterations = 100
+  private val MaxWaitNanos = 1000000000L
+  private val WaitingKey = "throughput.waiting"
+  private val DelayKey = "throughput.delay"
+  private val ReportIntervalNanos = 30000000000L
+  private val LateThresholdNanos = 100000000L
+
+  private val iterations = new LongAdder
+  private val requests = new DoubleAdder
+  private val lateArrivals = new LongAdder
+
+  @volatile private var targetRPS = initialTargetRPS
+  @volatile private var finished = false
+
+  private var startNanos = 0L
+  private var scheduledRequests = 0.0
+  // Once the target changed the schedule continues at the new rate from this point (nanoseconds since the start)
+  private var anchorNanos = -1L
+  private var anchorRequests = 0.0
+  private var lastReportNanos = 0L
+  private var lastReportRequests = 0.0
+
+  /**
+   * @return the measured requests per iteration, or the configured value until enough iterations completed
+   */
+  def requestsPerIteration: Double = {
+    val completed = iterations.sum()
+    if (completed < MinimumMeasuredIterations) expectedRequestsPerIteration else requests.sum() / completed
+  }
+
+  /**
+   * Time (in nanoseconds since the start) at which the schedule reaches the given number of requests.
+   * During the ramp up the cumulative number of requests is targetRPS * t^2 / (2 * rampUp), after it
+   * targetRPS * (t - rampUp / 2). After a change of the target the rate is constant from the anchor on.
+   */
+  private def dueNanos(budget: Double): Long = {
+    if (anchorNanos >= 0)
+      return anchorNanos + ((budget - anchorRequests) / targetRPS * 1e9).toLong
+
+    val rampUpRequests = targetRPS * rampUpSeconds / 2
+    val seconds =
+      if (rampUpSeconds > 0 && budget < rampUpRequests) math.sqrt(2 * rampUpSeconds * budget / targetRPS)
+      else budget / targetRPS + rampUpSeconds / 2.0
+    (seconds * 1e9).toLong
+  }
+
+  /**
+   * Takes the next arrival from the schedule, unless it is more than MaxWaitNanos away
+   * @return how long the calling virtual user has to wait, whether it got an arrival (or has to ask again), and the
+   *         time (epoch millis) the arrival was due at
+   */
+  def takeArrival(): (FiniteDuration, Boolean, Long) = {
+    val nowMillis = System.currentTimeMillis()
+    val now = System.nanoTime()
+
+    val due = synchronized {
+      if (startNanos == 0) {
+        startNanos = now
+        lastReportNanos = now
+      }
+      reportThroughput(now)
+      val arrival = startNanos + dueNanos(scheduledRequests)
+      if (!finished && arrival - now <= MaxWaitNanos)
+        scheduledRequests += requestsPerIteration
+      arrival
+    }
+
+    val dueMillis = nowMillis + (due - now) / 1000000
+
+    if (finished)
+      (Duration.Zero, true, nowMillis)
+    else if (due - now > MaxWaitNanos)
+      (MaxWaitNanos nanoseconds, false, dueMillis)
+    else {
+      // An arrival that is already due means every virtual user was busy: it starts late, and the schedule catches up
+      if (now - due > LateThresholdNanos)
+        lateArrivals.increment()
+
+      (math.max(0L, due - now) nanoseconds, true, dueMillis)
+    }
+  }
+
+  /**
+   * Changes the target from now on, e.g. for the next step of a capacity search. Arrivals that were missed
+   * under the previous target are not made up for.
+   * @param rps new target requests per second of this load generator, 0 or less finishes the workload
+   */
+  def setTargetRPS(rps: Double): Unit = synchronized {
+    if (rps <= 0) {
+      finish()
+      return
+    }
+    val now = System.nanoTime()
+    if (startNanos == 0) {
+      startNanos = now
+      lastReportNanos = now
+    }
+    anchorNanos = math.max(now - startNanos, dueNanos(scheduledRequests))
+    anchorRequests = scheduledRequests
+    targetRPS = rps
+    println(f"\nThroughput: target changed to $rps%.2f RPS")
+  }
+
+  /**
+   * Ends the workload: every user stops at its next arrival
+   */
+  def finish(): Unit = {
+    finished = true
+    println("\nThroughput: workload finished")
+  }
+
+  def isFinished: Boolean = finished
+
+  private def reportThroughput(now: Long): Unit = {
+    if (now - lastReportNanos >= ReportIntervalNanos) {
+      val sent = requests.sum()
+      val achieved = (sent - lastReportRequests) * 1e9 / (now - lastReportNanos)
+      val late = lateArrivals.sumThenReset()
+      println(f"\nThroughput: target $targetRPS%.2f RPS, achieved $achieved%.2f RPS, $requestsPerIteration%.2f requests per iteration, $late late arrival(s)")
+      if (late > 0)
+        println("WARNING - Not enough users to serve every arrival on time. Increase the number of users (USERS / NumberOfUsers).")
+      lastReportNanos = now
+      lastReportRequests = sent
+    }
+  }
+
+  /**
+   * Waits for the next arrival, or stops the user once the workload is finished; put at the start of every iteration.
+   * The due time of the arrival is the intended start of the iteration for LatencyAccounting.
+   */
+  def arrival(): ChainBuilder =
+    exec(_.set(WaitingKey, true))
+      .asLongAs(session => session(WaitingKey).validate[Boolean]) {
+        exec { session =>
+          val (delay, arrived, dueMillis) = takeArrival()
+          LatencyAccounting.scheduled(session, dueMillis).set(DelayKey, delay).set(WaitingKey, !arrived)
+        }.pause(session => session(DelayKey).validate[FiniteDuration])
+      }
+      .exitHereIf(stopped)
+      .exec(LatencyAccounting.iterationStarted)
+
+  private val stopped: Expression[Boolean] = _ => finished.success
+
+  /**
+   * Records the requests an iteration sent; put at the end of every branch of the iteration
+   * @param requestsSent the number of requests of the branch (its RequestsPerIteration)
+   */
+  def sent(requestsSent: Double): ChainBuilder = exec { session =>
+    requests.add(requestsSent)
+    iterations.increment()
+    session
+  }
+
+}
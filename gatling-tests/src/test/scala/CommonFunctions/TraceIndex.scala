@@ -0,0 +1,424 @@
+package CommonFunctions
+
+import java.io.{BufferedOutputStream, BufferedReader, DataOutputStream, InputStream, InputStreamReader}
+import java.nio.channels.FileChannel
+import java.nio.charset.StandardCharsets
+import java.nio.file.{Files, Path, StandardCopyOption, StandardOpenOption}
+import java.nio.ByteBuffer
+import java.time.format.DateTimeFormatter
+import java.time.{OffsetDateTime, ZonedDateTime}
+import java.util.Locale
+import java.util.zip.GZIPInputStream
+
+import com.fasterxml.jackson.core.JsonToken
+import com.fasterxml.jackson.databind.ObjectMapper
+
+import scala.collection.mutable
+
+/**
+ * A request of a trace, with the path (and query) relative to the base URL of the protocol
+ * @param name The request name in the results, the method and the path with its ids replaced, e.g. GET /postcodes/{id}
+ */
+case class TracedRequest(name: String, method: String, path: String, contentType: String, body: String)
+
+/**
+ * The index of a traffic trace (an access log or a HAR file, see TraceIndex.build) that TraceReplay replays: the
+ * requests in the order they were sent, each with its time since the start of the trace. The index is mapped like
+ * the files of MappedFileFeeder, so a trace of many hours replays without ever being on the heap.
+ *
+ * The file holds a header (see TraceIndex.HeaderSize), a record of RecordSize bytes per request (its time in
+ * microseconds since the start of the trace and the id of the request) and the requests, every distinct request
+ * stored once (up to MaxDictionarySize of them, the ones after that as often as they occur) behind a table of their
+ * offsets. A line of an access log takes 12 bytes.
+ */
+class TraceIndex(val path: Path) {
+
+  import TraceIndex._
+
+  private val (segments, fileSize) = {
+    val channel = FileChannel.open(path, StandardOpenOption.READ)
+    try {
+      val size = channel.size()
+      val mapped = (0L until size by MappedFileFeeder.SegmentSize).map { from =>
+        channel.map(FileChannel.MapMode.READ_ONLY, from, math.min(MappedFileFeeder.SegmentSize, size - from))
+      }
+      (mapped.toArray, size)
+    } finally {
+      // The mappings stay valid after the channel is closed
+      channel.close()
+    }
+  }
+
+  if (fileSize < HeaderSize || !Magic.indices.forall(i => byteAt(i) == Magic(i)))
+    throw new Exception("ERROR - " + path + " is not a trace index")
+
+  val recordCount: Long = longAt(8)
+  val requestCount: Long = longAt(16)
+  /** When the first request of the trace was sent, epoch milliseconds */
+  val traceStartMillis: Long = longAt(24)
+  /** Time between the first and the last request of the trace */
+  val durationMicros: Long = longAt(32)
+  private val requestsOffset = longAt(40)
+  private val requestTableOffset = longAt(48)
+
+  /**
+   * @return the time of the record in microseconds since the start of the trace
+   */
+  def timeMicros(record: Long): Long = longAt(HeaderSize + record * RecordSize)
+
+  /**
+   * @return the request of the record
+   */
+  def request(record: Long): TracedRequest = {
+    val id = intAt(HeaderSize + record * RecordSize + 8)
+    var offset = requestsOffset + longAt(requestTableOffset + id.toLong * 8)
+
+    def field(): String = {
+      val length = intAt(offset)
+      val bytes = new Array[Byte](length)
+      var i = 0
+      while (i < length) {
+        bytes(i) = byteAt(offset + 4 + i)
+        i += 1
+      }
+      offset += 4 + length
+      new String(bytes, StandardCharsets.UTF_8)
+    }
+
+    TracedRequest(field(), field(), field(), field(), field())
+  }
+
+  private def byteAt(offset: Long): Byte = segments((offset / MappedFileFeeder.SegmentSize).toInt).get((offset % MappedFileFeeder.SegmentSize).toInt)
+
+  // Values are big endian like DataOutputStream writes them, and may straddle two segments
+  private def longAt(offset: Long): Long = {
+    val segment = segments((offset / MappedFileFeeder.SegmentSize).toInt)
+    val index = (offset % MappedFileFeeder.SegmentSize).toInt
+    if (index + 8 <= segment.limit()) segment.getLong(index)
+    else (0 until 8).foldLeft(0L)((value, i) => value << 8 | (byteAt(offset + i) & 0xFF))
+  }
+
+  private def intAt(offset: Long): Int = {
+    val segment = segments((offset / MappedFileFeeder.SegmentSize).toInt)
+    val index = (offset % MappedFileFeeder.SegmentSize).toInt
+    if (index + 4 <= segment.limit()) segment.getInt(index)
+    else (0 until 4).foldLeft(0)((value, i) => value << 8 | (byteAt(offset + i) & 0xFF))
+  }
+
+}
+
+object TraceIndex {
+
+  val Magic: Array[Byte] = Array('G', 'R', 'P', 'L', 1).map(_.toByte)
+  val HeaderSize = 64
+  val RecordSize = 12
+  val MaxDictionarySize: Int = 1 << 16
+  val IndexSuffix = ".replay"
+  /** Requests may be logged out of order (e.g. by the workers of a web server) by up to this much */
+  val ReorderWindowMicros = 60000000L
+  val Methods = Set("GET", "POST", "PUT", "PATCH", "DELETE", "HEAD", "OPTIONS")
+
+  // Common and combined log format: host ident user [time] "method url protocol" status ...
+  private val AccessLogLine = """^\S+ \S+ \S+ \[([^\]]+)\] "(\S+) (\S+)[^"]*" \d{3}.*""".r
+  private val AccessLogTime = DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss[.SSS] Z", Locale.ENGLISH)
+
+  /**
+   * Indexes a trace: java CommonFunctions.TraceIndex &lt;access log or HAR file&gt; &lt;index&gt; [host]
+   */
+  def main(args: Array[String]): Unit = {
+    if (args.length < 2) {
+      System.err.println("Usage: TraceIndex <access log or HAR file> <index> [host of the HAR requests to keep]")
+      sys.exit(1)
+    }
+    build(java.nio.file.Paths.get(args(0)), java.nio.file.Paths.get(args(1)), if (args.length > 2) args(2) else "")
+  }
+
+  /**
+   * Finds the trace of a replay (see MappedFileFeeder.locate), indexing it first unless it is an index already. The
+   * index is written next to the trace and reused for as long as it is newer than the trace, so ship the index with
+   * a large trace rather than having every load generator index it when it starts.
+   * @param fileName The trace, an access log (optionally gzipped), a HAR file (.har) or an index (.replay)
+   * @return The index
+   */
+  def locate(fileName: String): TraceIndex = {
+    val trace = MappedFileFeeder.locate(fileName)
+    if (fileName.endsWith(IndexSuffix))
+      return new TraceIndex(trace)
+
+    val besideTrace = trace.resolveSibling(trace.getFileName.toString + IndexSuffix)
+    if (Files.isRegularFile(besideTrace) && Files.getLastModifiedTime(besideTrace).compareTo(Files.getLastModifiedTime(trace)) >= 0)
+      return new TraceIndex(besideTrace)
+
+    if (!Files.isWritable(trace.toAbsolutePath.getParent)) {
+      val temporary = Files.createTempFile("trace-", IndexSuffix)
+      temporary.toFile.deleteOnExit()
+      build(trace, temporary)
+      return new TraceIndex(temporary)
+    }
+
+    // Load generators that share the directory (e.g. the local backend) may index the trace at the same time
+    val temporary = Files.createTempFile(besideTrace.toAbsolutePath.getParent, "trace-", IndexSuffix + ".tmp")
+    try {
+      build(trace, temporary)
+      Files.move(temporary, besideTrace, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+    } finally {
+      Files.deleteIfExists(temporary)
+    }
+    new TraceIndex(besideTrace)
+  }
+
+  /**
+   * Indexes an access log (common or combined log format, optionally gzipped) or a HAR file. The trace is streamed,
+   * only the requests of the last ReorderWindowMicros and the dictionary are held in memory. Access logs with
+   * timestamps in seconds get the requests of a second spread evenly over it, in the order they were logged.
+   * @param trace The access log or HAR file
+   * @param output The index to write
+   * @param host Only keep the requests of a HAR file to this host (host or host:port), empty for all of them
+   */
+  def build(trace: Path, output: Path, host: String = ""): Unit = {
+
+    val startNanos = System.nanoTime()
+    val writer = new IndexWriter(output)
+    try {
+      if (trace.getFileName.toString.toLowerCase.endsWith(".har"))
+        readHar(trace, host, writer)
+      else
+        readAccessLog(trace, writer)
+      writer.finish()
+    } finally {
+      writer.close()
+    }
+
+    println("\nTrace " + trace.getFileName + ": indexed " + writer.indexed + " request(s), " + writer.distinctRequests +
+      " distinct, spanning " + writer.durationMicros / 1000000 + " seconds, into " + output + " (" + Files.size(output) / 1024 + " KB) in " +
+      (System.nanoTime() - startNanos) / 1000000 + " ms" +
+      (if (writer.skipped > 0) ", skipped " + writer.skipped + " line(s) or request(s) that can't be replayed" else "") +
+      (if (writer.reordered > 0) ", " + writer.reordered + " request(s) logged more than " + ReorderWindowMicros / 1000000 + " seconds late were moved up" else ""))
+  }
+
+  private def readAccessLog(trace: Path, writer: IndexWriter): Unit = {
+
+    val input: InputStream =
+      if (trace.getFileName.toString.endsWith(".gz")) new GZIPInputStream(Files.newInputStream(trace), 64 * 1024)
+      else Files.newInputStream(trace)
+    val reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), 64 * 1024)
+
+    // Requests of the current second of a log with timestamps in seconds
+    val second = mutable.ArrayBuffer[(String, String)]()
+    var secondMicros = Long.MinValue
+    // Consecutive lines mostly share their timestamp, which is only parsed when it changes
+    var lastTime = ""
+    var lastMicros: Option[Long] = None
+
+    def flushSecond(): Unit = {
+      second.indices.foreach(i => writer.add(secondMicros + i * 1000000L / second.size, second(i)._1, second(i)._2, "", ""))
+      second.clear()
+    }
+
+    try {
+      var line = reader.readLine()
+      while (line != null) {
+        line match {
+          case AccessLogLine(time, method, url) =>
+            if (time != lastTime) {
+              lastTime = time
+              lastMicros = scala.util.Try(ZonedDateTime.parse(time, AccessLogTime).toInstant).toOption
+                .map(instant => instant.getEpochSecond * 1000000L + instant.getNano / 1000)
+            }
+            if (lastMicros.isEmpty) {
+              writer.skip()
+            } else {
+              val micros = lastMicros.get
+              if (time.contains(".")) {
+                writer.add(micros, method, url, "", "")
+              } else {
+                if (micros != secondMicros) {
+                  flushSecond()
+                  secondMicros = micros
+                }
+                second += method -> url
+              }
+            }
+          case _ =>
+            writer.skip()
+        }
+        line = reader.readLine()
+      }
+      flushSecond()
+    } finally {
+      reader.close()
+    }
+  }
+
+  private def readHar(trace: Path, host: String, writer: IndexWriter): Unit = {
+
+    val mapper = new ObjectMapper()
+    val parser = mapper.getFactory.createParser(trace.toFile)
+    try {
+      // The entries are read one at a time, the HAR file can be larger than the heap
+      var token = parser.nextToken()
+      while (token != null) {
+        if (token == JsonToken.FIELD_NAME && parser.getCurrentName == "entries" && parser.nextToken() == JsonToken.START_ARRAY) {
+          while (parser.nextToken() == JsonToken.START_OBJECT) {
+            val entry = mapper.readTree[com.fasterxml.jackson.databind.JsonNode](parser)
+            val request = entry.path("request")
+            val url = request.path("url").asText("")
+            val started = scala.util.Try(OffsetDateTime.parse(entry.path("startedDateTime").asText(""))).toOption
+            if (started.isEmpty || (host.nonEmpty && !hostOf(url).exists(h => h.equalsIgnoreCase(host) || h.toLowerCase.startsWith(host.toLowerCase + ":")))) {
+              writer.skip()
+            } else {
+              val instant = started.get.toInstant
+              val postData = request.path("postData")
+              writer.add(instant.getEpochSecond * 1000000L + instant.getNano / 1000, request.path("method").asText(""), url,
+                postData.path("mimeType").asText(""), postData.path("text").asText(""))
+            }
+          }
+        }
+        token = parser.nextToken()
+      }
+    } finally {
+      parser.close()
+    }
+  }
+
+  private def hostOf(url: String): Option[String] = {
+    val scheme = url.indexOf("://")
+    if (scheme < 0) None
+    else {
+      val end = url.indexOf('/', scheme + 3)
+      Some(if (end < 0) url.substring(scheme + 3) else url.substring(scheme + 3, end))
+    }
+  }
+
+  /**
+   * @return the path and query of a URL, which is relative to the base URL of the protocol on replay
+   */
+  def pathOf(url: String): String = {
+    val scheme = url.indexOf("://")
+    if (scheme < 0) url
+    else {
+      val start = url.indexOf('/', scheme + 3)
+      if (start < 0) "/" else url.substring(start)
+    }
+  }
+
+  /**
+   * @return the request name of a request: the method and the path without its query, with the path segments that
+   *         hold a digit (ids, postcodes, dates) replaced by {id}, so that the report groups the requests by endpoint
+   */
+  def nameOf(method: String, path: String): String = {
+    val query = path.indexOf('?')
+    val withoutQuery = if (query < 0) path else path.substring(0, query)
+    method + " " + withoutQuery.split("/", -1).map(segment => if (segment.exists(_.isDigit)) "{id}" else segment).mkString("/")
+  }
+
+  /**
+   * Writes the index: the records go straight to the file after the space of the header, the requests and their
+   * offsets to temporary files that are appended at the end. The records are written in time order, through a
+   * buffer of ReorderWindowMicros.
+   */
+  private class IndexWriter(output: Path) {
+
+    private val requestsFile = Files.createTempFile("trace-requests-", ".tmp")
+    private val tableFile = Files.createTempFile("trace-table-", ".tmp")
+    private val records = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(output), 64 * 1024))
+    private val requests = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(requestsFile), 64 * 1024))
+    private val table = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tableFile), 64 * 1024))
+    private val dictionary = mutable.HashMap[TracedRequest, Int]()
+    private val pending = mutable.PriorityQueue[(Long, Long, TracedRequest)]()(Ordering.by[(Long, Long, TracedRequest), (Long, Long)](e => (e._1, e._2)).reverse)
+
+    private var requestsBytes = 0L
+    private var sequence = 0L
+    private var latestMicros = Long.MinValue
+    private var startMicros = Long.MinValue
+    private var lastMicros = Long.MinValue
+    var indexed = 0L
+    var distinctRequests = 0
+    var skipped = 0L
+    var reordered = 0L
+
+    records.write(new Array[Byte](HeaderSize))
+
+    def durationMicros: Long = if (indexed == 0) 0 else lastMicros - startMicros
+
+    def skip(): Unit = skipped += 1
+
+    def add(micros: Long, method: String, url: String, contentType: String, body: String): Unit = {
+      val upperMethod = method.toUpperCase
+      if (!Methods.contains(upperMethod) || url.isEmpty) {
+        skipped += 1
+        return
+      }
+      val path = pathOf(url)
+      pending.enqueue((micros, sequence, TracedRequest(nameOf(upperMethod, path), upperMethod, path, contentType, body)))
+      sequence += 1
+      latestMicros = math.max(latestMicros, micros)
+      while (pending.nonEmpty && pending.head._1 < latestMicros - ReorderWindowMicros)
+        write(pending.dequeue())
+    }
+
+    private def write(entry: (Long, Long, TracedRequest)): Unit = {
+      val (entryMicros, _, request) = entry
+      if (startMicros == Long.MinValue)
+        startMicros = entryMicros
+      // A request that was logged later than the reorder window goes out with the requests it was logged with
+      val micros = if (entryMicros < lastMicros) {
+        reordered += 1
+        lastMicros
+      } else entryMicros
+      lastMicros = micros
+
+      val id = dictionary.getOrElse(request, {
+        val id = distinctRequests
+        if (dictionary.size < MaxDictionarySize)
+          dictionary.put(request, id)
+        table.writeLong(requestsBytes)
+        request.productIterator.foreach { field =>
+          val bytes = field.toString.getBytes(StandardCharsets.UTF_8)
+          requests.writeInt(bytes.length)
+          requests.write(bytes)
+          requestsBytes += 4 + bytes.length
+        }
+        distinctRequests += 1
+        id
+      })
+
+      records.writeLong(micros - startMicros)
+      records.writeInt(id)
+      indexed += 1
+    }
+
+    def finish(): Unit = {
+      while (pending.nonEmpty)
+        write(pending.dequeue())
+
+      requests.close()
+      table.close()
+      Files.copy(requestsFile, records)
+      Files.copy(tableFile, records)
+      records.close()
+
+      val requestsOffset = HeaderSize + indexed * RecordSize
+      val header = ByteBuffer.allocate(HeaderSize)
+      header.put(Magic)
+      header.putLong(8, indexed)
+      header.putLong(16, distinctRequests)
+      header.putLong(24, if (indexed == 0) 0 else startMicros / 1000)
+      header.putLong(32, durationMicros)
+      header.putLong(40, requestsOffset)
+      header.putLong(48, requestsOffset + requestsBytes)
+      header.rewind()
+      val channel = FileChannel.open(output, StandardOpenOption.WRITE)
+      try channel.write(header, 0) finally channel.close()
+    }
+
+    def close(): Unit = {
+      records.close()
+      requests.close()
+      table.close()
+      Files.deleteIfExists(requestsFile)
+      Files.deleteIfExists(tableFile)
+    }
+  }
+
+}
@@ -0,0 +1,184 @@
+package CommonFunctions
+
+import java.util.concurrent.atomic.LongAdder
+
+import io.gatling.commons.validation._
+import io.gatling.core.Predef._
+import io.gatling.core.structure.ChainBuilder
+import io.gatling.http.Predef._
+
+import scala.concurrent.duration.{Duration, DurationLong, FiniteDuration}
+import scala.language.postfixOps
+
+/**
+ * Replay workload model: the requests of a recorded trace (see TraceIndex) are sent with the time between them they
+ * had when they were recorded, speed times as fast, so the test has the request mix and the bursts of the real
+ * traffic. Like in the open workload model (see ThroughputController) the virtual users are only the pool that sends
+ * the requests: every user takes the next request of the trace, waits until it is due and sends it, so a slow response
+ * doesn't hold back the requests after it as long as there are enough users.
+ *
+ * The replay clock starts when the first user asks for a request, which is at the coordinated start of all load
+ * generators. The load generators replay the same trace, each its own share of the requests: the records are dealt to
+ * totalSlots slots in turn, and this load generator sends the records of its slots firstSlot to
+ * firstSlot + slots - 1 (see TraceReplay.apply).
+ *
+ * @param index the trace
+ * @param speed how many times as fast as recorded, e.g. 2 replays an hour of traffic in 30 minutes
+ * @param firstSlot first slot of this load generator
+ * @param slots number of slots of this load generator
+ * @param totalSlots number of slots of all load generators
+ */
+class TraceReplay(val index: TraceIndex, val speed: Double, firstSlot: Long, slots: Long, totalSlots: Long) {
+
+  private val NameKey = "replay.name"
+  private val MethodKey = "replay.method"
+  private val PathKey = "replay.path"
+  private val ContentTypeKey = "replay.contentType"
+  private val BodyKey = "replay.body"
+  private val DelayKey = "replay.delay"
+  private val EndKey = "replay.end"
+  private val ReportIntervalNanos = 30000000000L
+  private val LateThresholdNanos = 100000000L
+
+  private val taken = new LongAdder
+  private val lateRequests = new LongAdder
+
+  private var cursor = nextOwned(0)
+  private var startNanos = 0L
+  private var lastReportNanos = 0L
+  @volatile private var finished = false
+
+  /** The records this load generator sends */
+  val ownedRecords: Long = {
+    val rounds = index.recordCount / totalSlots
+    val rest = index.recordCount % totalSlots
+    rounds * math.min(slots, totalSlots) + (0L until math.min(slots, totalSlots)).count(slot => (firstSlot + slot) % totalSlots < rest)
+  }
+
+  /**
+   * @return the first record at or after the given one that belongs to a slot of this load generator
+   */
+  private def nextOwned(record: Long): Long = {
+    if (slots >= totalSlots)
+      return record
+    val position = ((record % totalSlots) - firstSlot % totalSlots + totalSlots) % totalSlots
+    if (position < slots) record else record + totalSlots - position
+  }
+
+  /**
+   * Takes the next request of the trace
+   * @return the record, how long the calling virtual user has to wait until it is due and the time (epoch millis) it is
+   *         due at, or None at the end of the trace
+   */
+  def takeRequest(): Option[(Long, FiniteDuration, Long)] = {
+    val nowMillis = System.currentTimeMillis()
+    val now = System.nanoTime()
+
+    val record = synchronized {
+      if (startNanos == 0) {
+        startNanos = now
+        lastReportNanos = now
+      }
+      reportProgress(now)
+      if (cursor >= index.recordCount) {
+        if (!finished) {
+          finished = true
+          println("\nReplay: all " + taken.sum() + " request(s) of the trace were sent")
+        }
+        -1L
+      } else {
+        val next = cursor
+        cursor = nextOwned(cursor + 1)
+        next
+      }
+    }
+
+    if (record < 0)
+      return None
+
+    taken.increment()
+    val due = startNanos + (index.timeMicros(record) * 1000 / speed).toLong
+    // A request that is already due means every virtual user was busy: it goes out late, like a late arrival
+    if (now - due > LateThresholdNanos)
+      lateRequests.increment()
+    Some((record, math.max(0L, due - now) nanoseconds, nowMillis + (due - now) / 1000000))
+  }
+
+  def isFinished: Boolean = finished
+
+  private def reportProgress(now: Long): Unit = {
+    if (now - lastReportNanos >= ReportIntervalNanos) {
+      val late = lateRequests.sumThenReset()
+      val traceSeconds = ((now - startNanos) / 1e9 * speed).toLong
+      println(f"\nReplay: ${taken.sum()} of $ownedRecords request(s) sent, at ${traceSeconds / 60}%d:${traceSeconds % 60}%02d of the trace, $late late request(s)")
+      if (late > 0)
+        println("WARNING - Not enough users to send every request of the trace on time. Increase the number of users (USERS / NumberOfUsers).")
+      lastReportNanos = now
+    }
+  }
+
+  /**
+   * Waits for the next request of the trace and sends it, or stops the user at the end of the trace; the body of the
+   * loop of a replay scenario. The due time of the request is its intended start for LatencyAccounting.
+   */
+  def next(): ChainBuilder =
+    exec { session =>
+      takeRequest() match {
+        case Some((record, delay, dueMillis)) =>
+          val request = index.request(record)
+          LatencyAccounting.scheduled(session, dueMillis).setAll(
+            NameKey -> request.name,
+            MethodKey -> request.method,
+            PathKey -> request.path,
+            ContentTypeKey -> request.contentType,
+            BodyKey -> request.body,
+            DelayKey -> delay,
+            EndKey -> false)
+        case None =>
+          session.setAll(DelayKey -> Duration.Zero, EndKey -> true)
+      }
+    }.pause(session => session(DelayKey).validate[FiniteDuration])
+      .exitHereIf(session => session(EndKey).validate[Boolean])
+      .exec(LatencyAccounting.iterationStarted)
+      .doSwitch(session => session(MethodKey).validate[String])(TraceIndex.Methods.toSeq.map(method => method -> send(method)): _*)
+
+  private def send(method: String): ChainBuilder =
+    LatencyAccounting.timedAs(session => session(NameKey).as[String]) {
+      doIfOrElse(session => session(BodyKey).validate[String].map(_.nonEmpty)) {
+        exec(http(session => session(NameKey).validate[String])
+          .httpRequest(method, session => session(PathKey).validate[String])
+          .header("Content-Type", session => session(ContentTypeKey).validate[String])
+          .body(StringBody(session => session(BodyKey).validate[String])))
+      } {
+        exec(http(session => session(NameKey).validate[String])
+          .httpRequest(method, session => session(PathKey).validate[String]))
+      }
+    }
+
+}
+
+object TraceReplay {
+
+  /**
+   * Creates the replay of this load generator. The runner starts every container at its own FEEDER_START, stepped by
+   * USERS, so the NUM_OF_LOAD_GENERATORS * USERS slots are split into one range per load generator, as for the
+   * records of a MappedFileFeeder. Without FEEDER_START (e.g. running locally) the whole trace is replayed.
+   *
+   * @param trace the trace, see TraceIndex.locate
+   * @param speed how many times as fast as recorded
+   */
+  def apply(trace: String, speed: Double): TraceReplay = {
+
+    val feederStart = SimulationDetails.getEnvVarOrDefault("FEEDER_START", "")
+    val users = SimulationDetails.getEnvVarOrDefault("USERS", "0").toLong
+    val numOfLoadGenerators = SimulationDetails.getEnvVarOrDefault("NUM_OF_LOAD_GENERATORS", "1").toLong
+
+    val index = TraceIndex.locate(trace)
+
+    if (feederStart.isEmpty || users < 1)
+      new TraceReplay(index, speed, 0, 1, 1)
+    else
+      new TraceReplay(index, speed, feederStart.toLong, users, users * numOfLoadGenerators)
+  }
+
+}
@@ -4,6 +4,11 @@ import scala.xml.{Elem, XML}
 
 object ConfigDetails {
 
+  /**
+   * EnvironmentConfig.XML, parsed once for the whole JVM when it is first needed
+   */
+  lazy val environmentConfig: EnvironmentConfig = EnvironmentConfig.parse(getEnvironmentConfigXML())
+
   /**
    * Opens the XML file containing the environment configuration parameters such as hosts(API endpoints)
    *  @return An Elem object that contains the elements from the XML file
@@ -13,6 +18,32 @@ object ConfigDetails {
     XML.load(getClass.getResourceAsStream("/config/EnvironmentConfig.XML"))
   }
 
+  /**
+   * Get the errors of the specified environment, to be reported together with the rest of the configuration
+   * @param environmentName The name of the environment
+   * @return Everything that is wrong with the environment, empty if it is valid
+   */
+  def getEnvironmentErrors(environmentName: String): Seq[String] = {
+    environmentConfig.environments.get(environmentName) match {
+      case Some(environment) => environment.errors
+      case None => Seq("Environment '" + environmentName + "' is not defined in EnvironmentConfig.xml")
+    }
+  }
+
+  /**
+   * Get the specified environment
+   * @param environmentName The name of the environment
+   * @return The environment, if it is defined and valid
+   */
+  def getEnvironment(environmentName: String): Environment = {
+    val errors = getEnvironmentErrors(environmentName)
+
+    if (errors.nonEmpty)
+      throw configurationError(errors)
+
+    environmentConfig.environments(environmentName)
+  }
+
   /**
    * Get the base URL for the host in specified environment
    * @param environmentName The name of the environment
@@ -20,15 +51,30 @@ object ConfigDetails {
    * @return The base URL for the host
    */
   def getHostBaseUrl(environmentName: String, hostName: String): String = {
-    val envConfig = ConfigDetails.getEnvironmentConfigXML()
-    val valueFromXml = (envConfig \\ "environments" \ environmentName \ hostName).text
-
-    if (valueFromXml.isEmpty) {
-      throw new Exception("ERROR - Endpoint is not defined for host '" + hostName + "' in EnvironmentConfig.xml for environment '" + environmentName + "'")
-    }
+    val valueFromXml = getEnvironment(environmentName).hosts.getOrElse(hostName,
+      throw new Exception("ERROR - Endpoint is not defined for host '" + hostName + "' in EnvironmentConfig.xml for environment '" + environmentName + "'"))
 
     scala.util.Properties.envOrElse(hostName.toUpperCase, valueFromXml)
 
   }
 
+  /**
+   * Get the HTTP protocol settings of the specified environment: the HttpProtocol defaults, overridden by the
+   * HttpProtocol element of the environment if it has one
+   * @param environmentName The name of the environment
+   * @return The settings
+   */
+  def getHttpProtocolSettings(environmentName: String): HttpProtocolSettings = {
+    getEnvironment(environmentName).httpProtocol
+  }
+
+  /**
+   * The exception that reports every error in the configuration of a run at once
+   * @param errors The errors
+   * @return The exception to throw
+   */
+  def configurationError(errors: Seq[String]): Exception = {
+    new Exception("ERROR - Invalid configuration, " + errors.size + " error(s):" + errors.map("\n  - " + _).mkString)
+  }
+
 }
@@ -0,0 +1,106 @@
+package config
+
+import scala.collection.mutable
+import scala.util.Try
+import scala.xml.{Elem, NodeSeq}
+
+/**
+ * The HTTP protocol settings of an environment, see HttpProtocols and the HttpProtocol element of EnvironmentConfig.XML
+ */
+case class HttpProtocolSettings(connectionMode: String,
+                                maxConnectionsPerHost: Int,
+                                keepAlive: Boolean,
+                                http2: Boolean,
+                                dnsResolution: String,
+                                warmUpPath: String,
+                                warmUpUsers: Int,
+                                warmUpSeconds: Int) {
+
+  def warmUpEnabled: Boolean = warmUpPath.nonEmpty && warmUpUsers > 0 && warmUpSeconds > 0
+}
+
+/**
+ * An environment of EnvironmentConfig.XML
+ * @param name The name of the environment, e.g. test
+ * @param hosts The base URL of every host, as in the file (see ConfigDetails.getHostBaseUrl for the overrides)
+ * @param httpProtocol The HttpProtocol defaults, overridden by the HttpProtocol element of the environment
+ * @param errors Everything that is wrong with the environment, empty if it is valid
+ */
+case class Environment(name: String, hosts: Map[String, String], httpProtocol: HttpProtocolSettings, errors: Seq[String])
+
+/**
+ * EnvironmentConfig.XML, parsed and validated once
+ * @param environments The environments by name
+ */
+case class EnvironmentConfig(environments: Map[String, Environment])
+
+object EnvironmentConfig {
+
+  val ConnectionModes = Set("shared", "perUser")
+  val DnsResolutions = Set("async", "perUser", "jvm")
+
+  /**
+   * Reads every environment of EnvironmentConfig.XML, collecting all the errors of an environment instead of stopping
+   * at the first
+   * @param xml The environment config xml
+   * @return The config
+   */
+  def parse(xml: Elem): EnvironmentConfig = {
+
+    def settings(protocol: NodeSeq): Map[String, String] = (protocol \ "_").map(setting => setting.label -> setting.text.trim).toMap
+
+    val defaults = settings(xml \\ "environments" \ "HttpProtocol")
+
+    val environments = (xml \\ "environments" \ "_").filter(_.label != "HttpProtocol").map { environment =>
+
+      val errors = mutable.ListBuffer[String]()
+
+      val hosts = (environment \ "_")
+        .filter(_.label != "HttpProtocol")
+        .map(host => host.label -> host.text.trim)
+        .filter(_._2.nonEmpty)
+        .toMap
+
+      val httpProtocol = parseHttpProtocol(defaults ++ settings(environment \ "HttpProtocol"), environment.label, errors)
+
+      environment.label -> Environment(environment.label, hosts, httpProtocol, errors.toList)
+    }
+
+    EnvironmentConfig(environments.toMap)
+  }
+
+  private def parseHttpProtocol(settings: Map[String, String], environment: String, errors: mutable.ListBuffer[String]): HttpProtocolSettings = {
+
+    val where = " of environment '" + environment + "' in EnvironmentConfig.xml"
+
+    def choice(name: String, defaultValue: String, choices: Set[String]): String = {
+      val value = settings.getOrElse(name, defaultValue)
+      if (!choices.contains(value))
+        errors += "Invalid " + name + " '" + value + "'" + where + ", use " + choices.mkString(" or ")
+      value
+    }
+
+    def number(name: String, defaultValue: Int): Int =
+      settings.get(name).map(text => Try(text.toInt).getOrElse {
+        errors += name + where + " must be a whole number, not '" + text + "'"
+        defaultValue
+      }).getOrElse(defaultValue)
+
+    def flag(name: String, defaultValue: Boolean): Boolean =
+      settings.get(name).map(text => Try(text.toBoolean).getOrElse {
+        errors += name + where + " must be true or false, not '" + text + "'"
+        defaultValue
+      }).getOrElse(defaultValue)
+
+    HttpProtocolSettings(
+      choice("ConnectionMode", "shared", ConnectionModes),
+      number("MaxConnectionsPerHost", 6),
+      flag("KeepAlive", true),
+      flag("Http2", false),
+      choice("DnsResolution", "async", DnsResolutions),
+      settings.getOrElse("WarmUpPath", "/"),
+      number("WarmUpUsers", 0),
+      number("WarmUpSeconds", 0))
+  }
+
+}
@@ -0,0 +1,126 @@
+package config
+
+import scala.collection.immutable.ListMap
+import scala.collection.mutable
+import scala.util.Try
+import scala.xml.{Elem, Node, NodeSeq}
+
+/**
+ * The weighting of an action of a scenario
+ * @param userDistribution Percentage of the iterations that run the action
+ * @param requestsPerIteration Requests the action sends per iteration
+ */
+case class ActionWeight(userDistribution: Double, requestsPerIteration: Double)
+
+/**
+ * A simulation type of a simulation config xml, e.g. loadtest, as it is in the file: durations are in minutes, and
+ * values the file leaves out are None (the environment variables may provide them)
+ * @param replayTrace The trace of the replay workload model, see TraceReplay
+ * @param replaySpeed How many times as fast as recorded the trace is replayed
+ * @param actionWeighting The ActionWeighting of the simulation type, or else the DefaultWeighting, in file order
+ * @param errors Everything that is wrong with the simulation type in the file, empty if it is valid
+ */
+case class SimulationTypeConfig(numberOfUsers: Option[Int],
+                                rampUpDuration: Option[Int],
+                                peakLoadDuration: Option[Int],
+                                targetRPM: Option[Int],
+                                workloadModel: Option[String],
+                                replayTrace: Option[String],
+                                replaySpeed: Option[Double],
+                                actionWeighting: ListMap[String, ActionWeight],
+                                errors: Seq[String])
+
+/**
+ * A simulation config xml (e.g. PostCodeConfig.XML), parsed and validated once
+ * @param fileName The resource the config was read from
+ * @param simulationTypes The simulation types by name
+ */
+case class SimulationConfig(fileName: String, simulationTypes: Map[String, SimulationTypeConfig])
+
+object SimulationConfig {
+
+  /** The workload models, see SimulationDetails.getWorkloadModel */
+  val WorkloadModels = Set("closed", "open", "replay")
+
+  /**
+   * Reads every simulation type of a simulation config xml, collecting all the errors of a simulation type
+   * instead of stopping at the first
+   * @param fileName The resource the xml was read from, for the error messages
+   * @param xml The simulation config xml
+   * @return The config
+   */
+  def parse(fileName: String, xml: Elem): SimulationConfig = {
+
+    val defaultWeighting = xml \\ "simulations" \ "DefaultWeighting"
+
+    val simulationTypes = (xml \\ "simulations" \ "simulation" \ "_").map { simulationType =>
+
+      val errors = mutable.ListBuffer[String]()
+      val name = simulationType.label
+      val where = "'" + name + "' in " + fileName
+
+      def number(element: String): Option[Int] = {
+        val text = (simulationType \ element).text.trim
+        if (text.isEmpty) {
+          None
+        } else {
+          val value = Try(text.toInt).toOption
+          if (value.isEmpty)
+            errors += element + " of " + where + " must be a whole number, not '" + text + "'"
+          value
+        }
+      }
+
+      val workloadModel = Some((simulationType \ "WorkloadModel").text.trim.toLowerCase).filter(_.nonEmpty)
+      workloadModel.filterNot(WorkloadModels.contains).foreach { model =>
+        errors += "WorkloadModel of " + where + " must be closed, open or replay, not '" + model + "'"
+      }
+
+      val replayTrace = Some((simulationType \ "ReplayTrace").text.trim).filter(_.nonEmpty)
+      val replaySpeedText = (simulationType \ "ReplaySpeed").text.trim
+      val replaySpeed = if (replaySpeedText.isEmpty) None else Try(replaySpeedText.toDouble).toOption.orElse {
+        errors += "ReplaySpeed of " + where + " must be a number, not '" + replaySpeedText + "'"
+        None
+      }
+
+      // If simulation specific weighting exist then use it. Otherwise, use the default weightings.
+      val weighting = if ((simulationType \ "ActionWeighting").isEmpty) defaultWeighting else simulationType \ "ActionWeighting"
+
+      name -> SimulationTypeConfig(
+        number("NumberOfUsers"),
+        number("RampUpDuration"),
+        number("PeakLoadDuration"),
+        number("TargetRPM"),
+        workloadModel,
+        replayTrace,
+        replaySpeed,
+        parseWeighting(weighting, where, errors),
+        errors.toList)
+    }
+
+    SimulationConfig(fileName, simulationTypes.toMap)
+  }
+
+  private def parseWeighting(weighting: NodeSeq, where: String, errors: mutable.ListBuffer[String]): ListMap[String, ActionWeight] = {
+
+    def weight(action: Node, element: String): Double = {
+      val text = (action \ element).text.trim
+      Try(text.toDouble).getOrElse {
+        errors += element + " of action '" + action.label + "' of " + where + " must be a number, not '" + text + "'"
+        0.0
+      }
+    }
+
+    val actions = ListMap((weighting \ "_").map(action =>
+      action.label -> ActionWeight(weight(action, "UserDistribution"), weight(action, "RequestsPerIteration"))): _*)
+
+    if (actions.isEmpty)
+      errors += "There is no ActionWeighting for " + where + " and no DefaultWeighting"
+    // Check sum of all weightings from the simulation type config equals to 100
+    else if (actions.values.map(_.userDistribution).sum.toFloat != 100)
+      errors += "Sum of User Distribution of " + where + " must be 100. Current sum is - " + actions.values.map(_.userDistribution).sum.toFloat
+
+    actions
+  }
+
+}
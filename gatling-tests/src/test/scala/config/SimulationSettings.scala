@@ -0,0 +1,39 @@
+package config
+
+import scala.collection.immutable.ListMap
+
+/**
+ * The values a simulation type runs with on this load generator: the simulation config xml overridden by the
+ * environment variables, resolved and validated once (see SimulationDetails.getSimulationSettings)
+ * @param rampUpDuration Ramp-up in seconds
+ * @param peakLoadDuration Peak load in seconds
+ * @param workloadModel closed, open or replay
+ * @param replayTrace The trace of the replay workload model, empty in the other ones
+ * @param replaySpeed How many times as fast as recorded the trace is replayed
+ * @param pacingMin Minimum iteration pacing in ms of the closed workload model, 0 in the others
+ * @param pacingMax Maximum iteration pacing in ms of the closed workload model, 0 in the others
+ */
+case class SimulationSettings(simulationName: String,
+                              simulationType: String,
+                              noOfUsers: Int,
+                              rampUpDuration: Int,
+                              peakLoadDuration: Int,
+                              targetRPM: Int,
+                              workloadModel: String,
+                              replayTrace: String,
+                              replaySpeed: Double,
+                              actionWeighting: ListMap[String, ActionWeight],
+                              numOfLoadGenerators: Int,
+                              generatorIndex: Int,
+                              pacingMin: Int,
+                              pacingMax: Int) {
+
+  /** Percentage of the iterations of every action, e.g. "Get_Postcode" -> 45.0 */
+  val userDistribution: Map[String, Double] = actionWeighting.map { case (action, weight) => action -> weight.userDistribution }
+
+  /** Requests per iteration of every action */
+  val requestsPerIteration: Map[String, Double] = actionWeighting.map { case (action, weight) => action -> weight.requestsPerIteration }
+
+  /** Requests of an average iteration */
+  val weightedRequestsPerIteration: Double = actionWeighting.values.map(w => w.userDistribution * 0.01 * w.requestsPerIteration).sum
+}
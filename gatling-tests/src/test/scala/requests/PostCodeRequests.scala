@@ -1,23 +1,23 @@
 package requests
 
+import CommonFunctions.LatencyAccounting
 import io.gatling.core.Predef._
 import io.gatling.core.structure.ChainBuilder
 import io.gatling.http.Predef._
 
+/**
+ * The requests of the PostCode host, relative to the base URL of its protocol (see HttpProtocols)
+ */
 object PostCodeRequests {
 
-  val headers_1 = Map("Content-Type" -> """application/json""")
-
-  def GET_Postcode_Random(host: String): ChainBuilder = {
+  def GET_Postcode_Random(): ChainBuilder = LatencyAccounting.timed("GET_Postcode_Random") {
     exec(http("GET_Postcode_Random")
-      .get(host + "/random/postcodes")
-      .headers(headers_1))
+      .get("/random/postcodes"))
   }
 
-  def GET_Postcode(host: String, postcode: String): ChainBuilder = {
+  def GET_Postcode(postcode: String): ChainBuilder = LatencyAccounting.timed("GET_Postcode") {
     exec(http("GET_Postcode")
-      .get(host + "/postcodes/" + postcode)
-      .headers(headers_1))
+      .get("/postcodes/" + postcode))
   }
 
 }
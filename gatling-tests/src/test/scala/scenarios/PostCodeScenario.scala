@@ -1,7 +1,6 @@
 package scenarios
 
-import CommonFunctions.SimulationDetails
-import config.ConfigDetails
+import CommonFunctions.{GeneratorMonitoring, LatencyAccounting, MappedFileFeeder, SimulationDetails}
 import io.gatling.core.Predef._
 import io.gatling.core.structure.ScenarioBuilder
 import requests.PostCodeRequests
@@ -11,26 +10,82 @@ import scala.language.postfixOps
 
 object PostCodeScenario {
 
-  def PostCodeScn_RandomPostcodesOnly(simulationName: String, simulationType: String, environment: String): ScenarioBuilder = {
+  def PostCodeScn_RandomPostcodesOnly(simulationName: String, simulationType: String): ScenarioBuilder = {
 
-    def pcHost = ConfigDetails.getHostBaseUrl(environment, "PostCode")
+    SimulationDetails.getWorkloadModel(simulationName, simulationType) match {
+      case "open" => return PostCodeScn_RandomPostcodesOnly_Open(simulationName, simulationType)
+      case "replay" => return PostCodeScn_Replay(simulationName, simulationType)
+      case _ =>
+    }
+
+    //Every load generator requests its own range of postcodes
+    val postcodes = MappedFileFeeder("postcodes.csv")
 
     //Get scenario values
     val (pacingMin, pacingMax, userDistribution) = SimulationDetails.getScenarioValues(simulationName, simulationType)
 
     val scn: ScenarioBuilder = scenario("Postcode_RandomPostCodesOnly")
+      .exec(GeneratorMonitoring.watchEventLoop)
       .forever {
-        pace(pacingMin milliseconds, pacingMax milliseconds)
+        LatencyAccounting.pace(pacingMin milliseconds, pacingMax milliseconds)
           .randomSwitch(
             userDistribution("Get_Postcode_Random") ->
-              exec(PostCodeRequests.GET_Postcode_Random(pcHost)),
+              exec(PostCodeRequests.GET_Postcode_Random()),
 
             userDistribution("Get_Postcode") ->
-              exec(PostCodeRequests.GET_Postcode(pcHost, "OX495NU"))
+              feed(postcodes)
+                .exec(PostCodeRequests.GET_Postcode("${postcode}"))
           )
       }
 
     scn
   }
 
+  /**
+   * Open workload variant: the users take their iterations from a ThroughputController instead of pacing themselves
+   */
+  def PostCodeScn_RandomPostcodesOnly_Open(simulationName: String, simulationType: String): ScenarioBuilder = {
+
+    //Every load generator requests its own range of postcodes
+    val postcodes = MappedFileFeeder("postcodes.csv")
+
+    //Get scenario values
+    val (throughput, userDistribution, requestsPerIteration) = SimulationDetails.getOpenWorkloadValues(simulationName, simulationType)
+
+    val scn: ScenarioBuilder = scenario("Postcode_RandomPostCodesOnly")
+      .exec(GeneratorMonitoring.watchEventLoop)
+      .forever {
+        throughput.arrival()
+          .randomSwitch(
+            userDistribution("Get_Postcode_Random") ->
+              exec(PostCodeRequests.GET_Postcode_Random())
+                .exec(throughput.sent(requestsPerIteration("Get_Postcode_Random"))),
+
+            userDistribution("Get_Postcode") ->
+              feed(postcodes)
+                .exec(PostCodeRequests.GET_Postcode("${postcode}"))
+                .exec(throughput.sent(requestsPerIteration("Get_Postcode")))
+          )
+      }
+
+    scn
+  }
+
+  /**
+   * Replay workload variant: the requests of the recorded trace of the simulation type instead of the action weighting
+   */
+  def PostCodeScn_Replay(simulationName: String, simulationType: String): ScenarioBuilder = {
+
+    //Every load generator replays its own share of the trace
+    val replay = SimulationDetails.getReplayValues(simulationName, simulationType)
+
+    val scn: ScenarioBuilder = scenario("Postcode_Replay")
+      .exec(GeneratorMonitoring.watchEventLoop)
+      .forever {
+        replay.next()
+      }
+
+    scn
+  }
+
 }
@@ -1,22 +1,21 @@
 package simulations.Basic
 
+import CommonFunctions.{HttpProtocols, SimulationDetails}
 import io.gatling.core.Predef._
 import io.gatling.core.scenario.Simulation
 import io.gatling.core.structure.ScenarioBuilder
-import io.gatling.http.Predef.{http, status}
+import io.gatling.http.Predef.http
 import io.gatling.http.protocol.HttpProtocolBuilder
 
 import scala.language.postfixOps
 
 class BasicSimulation extends Simulation {
 
-  // Define headers
-  val headers: Map[String, String] = Map("Content-Type" -> """application/json""")
+  // Define test environment
+  val environment: String = SimulationDetails.getEnvVarOrDefault("ENVIRONMENT", "test")
 
   // Http protocol
-  val httpProtocol: HttpProtocolBuilder = http
-    .baseUrl("http://api.postcodes.io")
-    .headers(headers)
+  val httpProtocol: HttpProtocolBuilder = HttpProtocols.forHost(environment, "PostCode")
 
   // Scenario Definition
   val scn: ScenarioBuilder = scenario("PostcodeScenario")
@@ -25,9 +24,11 @@ class BasicSimulation extends Simulation {
     .exec(http("GET_Postcode").get("/postcodes/" + "OX495NU"))
     .pause(5)
 
-  // Simulation
+  // Simulation, holding injection until the coordinated start of all load generators
+  val startDelay = HttpProtocols.injectionDelay(environment, SimulationDetails.getStartDelay())
+
   setUp(
-    scn.inject(atOnceUsers(5)))
+    scn.inject(nothingFor(startDelay), atOnceUsers(5)) :: HttpProtocols.warmUp(environment, startDelay).toList)
     .protocols(httpProtocol)
 
 }
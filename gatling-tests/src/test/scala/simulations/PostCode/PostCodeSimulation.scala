@@ -1,6 +1,6 @@
 package simulations.PostCode
 
-import CommonFunctions.SimulationDetails
+import CommonFunctions.{HttpProtocols, SimulationDetails}
 import io.gatling.core.Predef._
 import io.gatling.core.scenario.Simulation
 import io.gatling.core.structure.ScenarioBuilder
@@ -24,9 +24,23 @@ class PostCodeSimulation extends Simulation {
   val (noOfUsers, rampupTime, peakLoadDuration) = SimulationDetails.getSimulationValues(simulationName, simulationType, environment)
   var RandomPostcodeScenario: ScenarioBuilder =_
 
-  RandomPostcodeScenario = PostCodeScenario.PostCodeScn_RandomPostcodesOnly(simulationName, simulationType, environment)
+  RandomPostcodeScenario = PostCodeScenario.PostCodeScn_RandomPostcodesOnly(simulationName, simulationType)
+
+  //Shared, kept-alive connections to the PostCode host of the environment
+  val httpProtocol = HttpProtocols.forHost(environment, "PostCode")
+
+  //Hold injection until the coordinated start of all load generators, warming up the connections meanwhile
+  val startDelay = HttpProtocols.injectionDelay(environment, SimulationDetails.getStartDelay())
+
+  //In the open and replay workload models all users start at once, the arrivals come from the ThroughputController or the trace
+  val injection =
+    if (SimulationDetails.getWorkloadModel(simulationName, simulationType) != "closed")
+      RandomPostcodeScenario.inject(nothingFor(startDelay), atOnceUsers(noOfUsers))
+    else
+      RandomPostcodeScenario.inject(nothingFor(startDelay), rampUsers(noOfUsers) during (rampupTime seconds))
 
   setUp(
-    RandomPostcodeScenario.inject(rampUsers(noOfUsers) during (rampupTime seconds))
-  ).maxDuration(rampupTime + peakLoadDuration seconds)
+    injection :: HttpProtocols.warmUp(environment, startDelay).toList
+  ).protocols(httpProtocol)
+    .maxDuration(startDelay + (rampupTime + peakLoadDuration seconds))
 }